@@ -0,0 +1,124 @@
+package de.berlin.htw.boundary.cluster;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import de.berlin.htw.boundary.ws.dto.SubEvent;
+import de.berlin.htw.boundary.ws.dto.UnsubEvent;
+import de.berlin.htw.trading.marketdata.BufferAdvancedEvent;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Rolle dieses Knotens im Cluster (cluster.role):
+ * <ul>
+ * <li>standalone: Upstream-Verbindung und WebSocket-Clients in einer JVM (Standard)</li>
+ * <li>ingest: zusätzlich Replikations-Port für Gateways (cluster.port)</li>
+ * <li>gateway: keine Upstream-Verbindung; der Buffer wird vom Ingest-Knoten (cluster.ingest)
+ * befüllt, Abos werden dorthin weitergereicht</li>
+ * </ul>
+ * Consumer und WebSocket-Endpunkte laufen auf jedem Knoten unverändert gegen den lokalen Buffer.
+ */
+@Startup
+@ApplicationScoped
+public class ClusterNode {
+
+    public static final String STANDALONE = "standalone";
+    public static final String INGEST = "ingest";
+    public static final String GATEWAY = "gateway";
+
+    @ConfigProperty(name = "cluster.role", defaultValue = STANDALONE)
+    String role;
+
+    @ConfigProperty(name = "cluster.port", defaultValue = "9400")
+    int port;
+
+    @ConfigProperty(name = "cluster.ingest", defaultValue = "localhost:9400")
+    String ingest;
+
+    @ConfigProperty(name = "cluster.heartbeat-ms", defaultValue = "1000")
+    long heartbeatMs;
+
+    @Inject
+    IMarketDataBuffer buffer;
+
+    @Inject
+    Event<SubEvent> subEvent;
+
+    @Inject
+    Event<UnsubEvent> unsubEvent;
+
+    @Inject
+    Logger logger;
+
+    private ReplicationPublisher publisher;
+    private ReplicationSubscriber subscriber;
+
+    @PostConstruct
+    void start() {
+        if (INGEST.equals(role)) {
+            publisher = new ReplicationPublisher(buffer, Duration.ofHours(1),
+                    key -> subEvent.fire(new SubEvent(key)),
+                    key -> unsubEvent.fire(new UnsubEvent(key)),
+                    heartbeatMs);
+            try {
+                int bound = publisher.start(new InetSocketAddress(port));
+                logger.infov("Ingest-Knoten: Replikation auf Port {0}", bound);
+            } catch (IOException e) {
+                throw new IllegalStateException("Replikations-Port " + port + " nicht verfügbar", e);
+            }
+        } else if (GATEWAY.equals(role)) {
+            int colon = ingest.lastIndexOf(':');
+            var address = new InetSocketAddress(ingest.substring(0, colon), Integer.parseInt(ingest.substring(colon + 1)));
+            subscriber = new ReplicationSubscriber(address, buffer::appendFull, heartbeatMs);
+            subscriber.start();
+            logger.infov("Gateway-Knoten: repliziere von {0}", address);
+        }
+    }
+
+    public boolean isGateway() {
+        return GATEWAY.equals(role);
+    }
+
+    /**
+     * Kennzahlen der Replikation für "metrics"; null im Standalone-Betrieb.
+     */
+    public Object stats() {
+        if (publisher != null)
+            return publisher.stats();
+        return subscriber != null ? subscriber.stats() : null;
+    }
+
+    void onAdvance(@Observes BufferAdvancedEvent ev) {
+        if (publisher != null)
+            publisher.signal();
+    }
+
+    void onSubscribe(@Observes SubEvent ev) {
+        if (subscriber != null)
+            subscriber.subscribe(ev.key());
+    }
+
+    void onUnsubscribe(@Observes UnsubEvent ev) {
+        if (subscriber != null)
+            subscriber.unsubscribe(ev.key());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (publisher != null)
+            publisher.close();
+        if (subscriber != null)
+            subscriber.close();
+    }
+}
@@ -0,0 +1,92 @@
+package de.berlin.htw.boundary.cluster;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
+
+/**
+ * Blockierender SocketChannel mit gepuffertem Schreiben und Frame-weisem Lesen. Schreiben ist
+ * synchronisiert (mehrere Threads dürfen senden), gelesen wird nur von einem Thread.
+ */
+final class ReplicationChannel implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(ReplicationCodec.MAX_FRAME + 4);
+    private ByteBuffer payload;
+
+    ReplicationChannel(SocketChannel channel) throws IOException {
+        this.channel = channel;
+        channel.configureBlocking(true);
+        channel.socket().setTcpNoDelay(true);
+        in.limit(0);
+    }
+
+    /**
+     * Schreibt einen Frame in den Puffer; ist nicht mehr genug Platz, wird vorher gesendet.
+     */
+    synchronized void write(int maxBytes, Consumer<ByteBuffer> frame) throws IOException {
+        if (out.remaining() < maxBytes)
+            flushLocked();
+        frame.accept(out);
+    }
+
+    synchronized void flush() throws IOException {
+        flushLocked();
+    }
+
+    /**
+     * Liest den nächsten Frame und liefert seinen Typ; die Nutzdaten stehen danach in
+     * {@link #payload()} bis zum nächsten Aufruf.
+     */
+    byte next() throws IOException {
+        fill(4);
+        int length = in.getInt();
+        if (length < 1 || length > ReplicationCodec.MAX_FRAME)
+            throw new IOException("Ungültige Frame-Länge " + length);
+        fill(length);
+        byte type = in.get();
+        payload = in.slice().limit(length - 1);
+        in.position(in.position() + length - 1);
+        return type;
+    }
+
+    ByteBuffer payload() {
+        return payload;
+    }
+
+    boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void flushLocked() throws IOException {
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+        out.clear();
+    }
+
+    private void fill(int n) throws IOException {
+        if (in.remaining() >= n)
+            return;
+        in.compact();
+        while (in.position() < n) {
+            if (channel.read(in) < 0)
+                throw new EOFException("Verbindung geschlossen");
+        }
+        in.flip();
+    }
+}
@@ -0,0 +1,184 @@
+package de.berlin.htw.boundary.cluster;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Wire-Format der Replikation zwischen Ingest- und Gateway-Knoten, big-endian.
+ *
+ * <pre>
+ * Frame:   i32 Länge (ohne dieses Feld) | u8 Typ | Nutzdaten
+ *
+ * Gateway -> Ingest
+ *   HELLO        i64 epoch, i64 lastSeq        (epoch 0 = noch kein Stand)
+ *   SUBSCRIBE    str key
+ *   UNSUBSCRIBE  str key
+ *
+ * Ingest -> Gateway
+ *   RESET        i64 epoch, i64 seq             (Snapshot folgt, Stand danach = seq)
+ *   SNAPSHOT     quote
+ *   READY        i64 seq                        (Snapshot vollständig)
+ *   CHANGE       i64 seq, quote
+ *   HEARTBEAT    i64 currentSeq
+ *
+ * quote:  u8 flags (bit0 active) | u8 presence | str symbolId | str venueId | str channel
+ *         i64 tsUnixSec | i64 tick | f64 price | f64 abs | f64 rel | f64 tickSize
+ *         [f64 high] [f64 low] [f64 open] [f64 prevClose] [i32 subId] [f64 precision]
+ * str:    u16 Länge (0xFFFF = null) | UTF-8
+ * </pre>
+ */
+public final class ReplicationCodec {
+
+    public static final byte HELLO = 1;
+    public static final byte SUBSCRIBE = 2;
+    public static final byte UNSUBSCRIBE = 3;
+    public static final byte RESET = 10;
+    public static final byte SNAPSHOT = 11;
+    public static final byte READY = 12;
+    public static final byte CHANGE = 13;
+    public static final byte HEARTBEAT = 14;
+
+    public static final int MAX_FRAME = 1 << 20;
+
+    private static final int NULL_STRING = 0xFFFF;
+
+    private ReplicationCodec() {
+    }
+
+    /**
+     * Obergrenze für die Größe eines Frames mit diesem Quote (inkl. Länge und Typ).
+     */
+    public static int maxQuoteFrame(Quote q) {
+        SymbolKey k = q.s();
+        return 5 + 8 + 2 + 6 * 2 + 3 * (len(k.symbolId) + len(k.venueId) + len(k.channel)) + 12 * 8;
+    }
+
+    public static void writeHello(ByteBuffer b, long epoch, long lastSeq) {
+        b.putInt(17).put(HELLO).putLong(epoch).putLong(lastSeq);
+    }
+
+    public static void writeKey(ByteBuffer b, byte type, SymbolKey key) {
+        int start = begin(b, type);
+        putString(b, key.toString());
+        end(b, start);
+    }
+
+    public static void writeSeq(ByteBuffer b, byte type, long seq) {
+        b.putInt(9).put(type).putLong(seq);
+    }
+
+    public static void writeReset(ByteBuffer b, long epoch, long seq) {
+        b.putInt(17).put(RESET).putLong(epoch).putLong(seq);
+    }
+
+    public static void writeSnapshot(ByteBuffer b, Quote q) {
+        int start = begin(b, SNAPSHOT);
+        putQuote(b, q);
+        end(b, start);
+    }
+
+    public static void writeChange(ByteBuffer b, long seq, Quote q) {
+        int start = begin(b, CHANGE);
+        b.putLong(seq);
+        putQuote(b, q);
+        end(b, start);
+    }
+
+    public static SymbolKey readKey(ByteBuffer b) {
+        return SymbolKey.fromSub(getString(b));
+    }
+
+    public static Quote readQuote(ByteBuffer b) {
+        int flags = b.get();
+        int presence = b.get();
+        SymbolKey key = new SymbolKey(getString(b), getString(b), getString(b));
+        long ts = b.getLong();
+        long tick = b.getLong();
+        double price = b.getDouble();
+        double abs = b.getDouble();
+        double rel = b.getDouble();
+        double tickSize = b.getDouble();
+        Double high = (presence & 1) != 0 ? b.getDouble() : null;
+        Double low = (presence & 1 << 1) != 0 ? b.getDouble() : null;
+        Double open = (presence & 1 << 2) != 0 ? b.getDouble() : null;
+        Double prevClose = (presence & 1 << 3) != 0 ? b.getDouble() : null;
+        Integer subId = (presence & 1 << 4) != 0 ? b.getInt() : null;
+        Double precision = (presence & 1 << 5) != 0 ? b.getDouble() : null;
+        return new Quote(key, ts, price, high, low, open, prevClose, abs, rel, tickSize, (flags & 1) != 0, tick,
+                subId, precision);
+    }
+
+    private static void putQuote(ByteBuffer b, Quote q) {
+        int presence = 0;
+        if (q.high() != null)
+            presence |= 1;
+        if (q.low() != null)
+            presence |= 1 << 1;
+        if (q.open() != null)
+            presence |= 1 << 2;
+        if (q.prevClose() != null)
+            presence |= 1 << 3;
+        if (q.subId() != null)
+            presence |= 1 << 4;
+        if (q.precision() != null)
+            presence |= 1 << 5;
+
+        b.put((byte) (q.active() ? 1 : 0)).put((byte) presence);
+        putString(b, q.s().symbolId);
+        putString(b, q.s().venueId);
+        putString(b, q.s().channel);
+        b.putLong(q.tsUnixSec())
+                .putLong(q.tick())
+                .putDouble(q.price())
+                .putDouble(q.abs())
+                .putDouble(q.rel())
+                .putDouble(q.tickSize());
+        if (q.high() != null)
+            b.putDouble(q.high());
+        if (q.low() != null)
+            b.putDouble(q.low());
+        if (q.open() != null)
+            b.putDouble(q.open());
+        if (q.prevClose() != null)
+            b.putDouble(q.prevClose());
+        if (q.subId() != null)
+            b.putInt(q.subId());
+        if (q.precision() != null)
+            b.putDouble(q.precision());
+    }
+
+    private static int begin(ByteBuffer b, byte type) {
+        int start = b.position();
+        b.putInt(0).put(type);
+        return start;
+    }
+
+    private static void end(ByteBuffer b, int start) {
+        b.putInt(start, b.position() - start - 4);
+    }
+
+    private static void putString(ByteBuffer b, String s) {
+        if (s == null) {
+            b.putShort((short) NULL_STRING);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        b.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer b) {
+        int n = b.getShort() & 0xFFFF;
+        if (n == NULL_STRING)
+            return null;
+        byte[] bytes = new byte[n];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int len(String s) {
+        return s == null ? 0 : s.length();
+    }
+}
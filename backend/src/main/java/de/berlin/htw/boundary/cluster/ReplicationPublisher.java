@@ -0,0 +1,265 @@
+package de.berlin.htw.boundary.cluster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.jboss.logging.Logger;
+
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.ChangeRecord;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.QuoteChange;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Ingest-Seite der Replikation: nimmt Gateway-Verbindungen an und streamt das Change-Log des
+ * Buffers in Sequenzreihenfolge. Ein Gateway meldet sich mit (epoch, lastSeq); liegt lastSeq
+ * noch im Log derselben Epoche, wird genau ab dort fortgesetzt, sonst geht ein Snapshot voraus.
+ *
+ * Abos der Gateways werden pro Verbindung gezählt und beim Verbindungsabbruch freigegeben.
+ */
+public final class ReplicationPublisher implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(ReplicationPublisher.class);
+    private static final int BATCH = 4_096;
+
+    public record Stats(int gateways, long records, long resumes, long resyncs) {
+    }
+
+    private final IMarketDataBuffer buffer;
+    private final Duration snapshotWindow;
+    private final Consumer<SymbolKey> subscribe;
+    private final Consumer<SymbolKey> unsubscribe;
+    private final long heartbeatMs;
+
+    private final Map<Link, Boolean> links = new ConcurrentHashMap<>();
+    private final Object advanced = new Object();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong resumes = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+
+    private ServerSocketChannel server;
+    private volatile boolean closed;
+
+    public ReplicationPublisher(IMarketDataBuffer buffer, Duration snapshotWindow,
+            Consumer<SymbolKey> subscribe, Consumer<SymbolKey> unsubscribe, long heartbeatMs) {
+        this.buffer = buffer;
+        this.snapshotWindow = snapshotWindow;
+        this.subscribe = subscribe;
+        this.unsubscribe = unsubscribe;
+        this.heartbeatMs = heartbeatMs;
+    }
+
+    /**
+     * Öffnet den Port und liefert den tatsächlich gebundenen Port (wichtig bei Port 0).
+     */
+    public int start(InetSocketAddress bind) throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(bind);
+        Thread acceptor = new Thread(this::acceptLoop, "cluster-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Weckt alle Verbindungen nach neuen Einträgen im Buffer.
+     */
+    public void signal() {
+        synchronized (advanced) {
+            advanced.notifyAll();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(links.size(), records.get(), resumes.get(), resyncs.get());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            if (server != null)
+                server.close();
+        } catch (IOException ignored) {
+        }
+        dropLinks();
+    }
+
+    /**
+     * Trennt alle Gateways (die sich anschließend selbst neu verbinden).
+     */
+    void dropLinks() {
+        links.keySet().forEach(l -> l.channel.close());
+        signal();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                SocketChannel sc = server.accept();
+                Link link = new Link(new ReplicationChannel(sc), sc.getRemoteAddress().toString());
+                Thread t = new Thread(link::run, "cluster-link-" + link.remote);
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!closed)
+                    LOG.warn("Annehmen einer Gateway-Verbindung fehlgeschlagen", e);
+            }
+        }
+    }
+
+    private final class Link {
+        final ReplicationChannel channel;
+        final String remote;
+        // guarded by this
+        final Set<SymbolKey> keys = new HashSet<>();
+        boolean released;
+
+        Link(ReplicationChannel channel, String remote) {
+            this.channel = channel;
+            this.remote = remote;
+        }
+
+        void run() {
+            links.put(this, Boolean.TRUE);
+            try {
+                if (channel.next() != ReplicationCodec.HELLO)
+                    throw new IOException("HELLO erwartet");
+                long epoch = channel.payload().getLong();
+                long lastSeq = channel.payload().getLong();
+
+                Thread reader = new Thread(this::readControl, "cluster-control-" + remote);
+                reader.setDaemon(true);
+                reader.start();
+
+                stream(epoch, lastSeq);
+            } catch (IOException e) {
+                LOG.infov("Gateway {0} getrennt: {1}", remote, e.toString());
+            } finally {
+                channel.close();
+                links.remove(this);
+                release();
+            }
+        }
+
+        private void stream(long epoch, long lastSeq) throws IOException {
+            long cursor;
+            if (epoch == buffer.epoch() && lastSeq + 1 >= buffer.firstSeq() && lastSeq <= buffer.currentSeq()) {
+                resumes.incrementAndGet();
+                cursor = lastSeq;
+                LOG.infov("Gateway {0} setzt ab Sequenz {1} fort", remote, lastSeq);
+            } else {
+                cursor = resync();
+            }
+
+            while (channel.isOpen() && !closed) {
+                List<ChangeRecord> batch = buffer.pollSince(cursor, BATCH);
+                if (batch.isEmpty()) {
+                    if (!awaitAdvance(cursor))
+                        send(ReplicationCodec.HEARTBEAT, buffer.currentSeq());
+                    continue;
+                }
+                // Log wurde zwischenzeitlich gekürzt: Lücke nur per Snapshot schließbar
+                if (batch.get(0).seq() > cursor + 1) {
+                    cursor = resync();
+                    continue;
+                }
+                for (ChangeRecord cr : batch) {
+                    if (cr instanceof QuoteChange qc) {
+                        Quote q = qc.quote();
+                        long seq = qc.seq();
+                        channel.write(ReplicationCodec.maxQuoteFrame(q), b -> ReplicationCodec.writeChange(b, seq, q));
+                    }
+                }
+                channel.flush();
+                records.addAndGet(batch.size());
+                cursor = batch.get(batch.size() - 1).seq();
+            }
+        }
+
+        private long resync() throws IOException {
+            resyncs.incrementAndGet();
+            var snap = buffer.snapshot(snapshotWindow);
+            LOG.infov("Gateway {0} erhält Snapshot bis Sequenz {1}", remote, snap.seq());
+            channel.write(32, b -> ReplicationCodec.writeReset(b, buffer.epoch(), snap.seq()));
+            for (var e : snap.lastPerSymbol().entrySet()) {
+                List<Quote> window = snap.windowPerSymbol().get(e.getKey());
+                for (Quote q : window != null && !window.isEmpty() ? window : List.of(e.getValue()))
+                    channel.write(ReplicationCodec.maxQuoteFrame(q), b -> ReplicationCodec.writeSnapshot(b, q));
+            }
+            send(ReplicationCodec.READY, snap.seq());
+            return snap.seq();
+        }
+
+        private void send(byte type, long seq) throws IOException {
+            channel.write(16, b -> ReplicationCodec.writeSeq(b, type, seq));
+            channel.flush();
+        }
+
+        /**
+         * Wartet auf neue Einträge; false, wenn stattdessen das Heartbeat-Intervall ablief.
+         */
+        private boolean awaitAdvance(long cursor) {
+            synchronized (advanced) {
+                if (buffer.currentSeq() > cursor)
+                    return true;
+                try {
+                    advanced.wait(heartbeatMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    channel.close();
+                }
+            }
+            return buffer.currentSeq() > cursor;
+        }
+
+        private void readControl() {
+            try {
+                while (channel.isOpen()) {
+                    byte type = channel.next();
+                    SymbolKey key = ReplicationCodec.readKey(channel.payload());
+                    if (type == ReplicationCodec.SUBSCRIBE) {
+                        boolean added;
+                        synchronized (this) {
+                            added = !released && keys.add(key);
+                        }
+                        if (added)
+                            subscribe.accept(key);
+                    } else if (type == ReplicationCodec.UNSUBSCRIBE) {
+                        boolean removed;
+                        synchronized (this) {
+                            removed = keys.remove(key);
+                        }
+                        if (removed)
+                            unsubscribe.accept(key);
+                    }
+                }
+            } catch (IOException e) {
+                channel.close();
+                signal();
+            }
+        }
+
+        private void release() {
+            Set<SymbolKey> held;
+            synchronized (this) {
+                held = Set.copyOf(keys);
+                keys.clear();
+                released = true;
+            }
+            held.forEach(unsubscribe);
+        }
+    }
+}
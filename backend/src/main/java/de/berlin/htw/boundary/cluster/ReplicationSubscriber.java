@@ -0,0 +1,180 @@
+package de.berlin.htw.boundary.cluster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.jboss.logging.Logger;
+
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Gateway-Seite der Replikation: hält die Verbindung zum Ingest-Knoten, übernimmt das
+ * Change-Log in Sequenzreihenfolge und verbindet sich nach Abbrüchen selbst neu. Dabei wird
+ * mit (epoch, lastSeq) fortgesetzt; schickt der Ingest-Knoten stattdessen einen Snapshot,
+ * werden nur Quotes übernommen, die neuer als der bisherige Stand des Symbols sind.
+ *
+ * Die aktiven Abos des Gateways werden nach jedem Verbindungsaufbau erneut gemeldet.
+ */
+public final class ReplicationSubscriber implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(ReplicationSubscriber.class);
+
+    public record Stats(boolean connected, long epoch, long lastSeq, long ingestSeq, long records,
+            long resyncs, long reconnects) {
+    }
+
+    private final InetSocketAddress ingest;
+    private final Consumer<Quote> apply;
+    private final long reconnectMs;
+
+    private final Set<SymbolKey> active = ConcurrentHashMap.newKeySet();
+    // Nur vom Replikations-Thread benutzt
+    private final Map<SymbolKey, Long> lastTs = new HashMap<>();
+
+    private volatile ReplicationChannel channel;
+    private volatile long epoch = 0;
+    private volatile long lastSeq = 0;
+    private volatile long ingestSeq = 0;
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private volatile boolean closed;
+
+    public ReplicationSubscriber(InetSocketAddress ingest, Consumer<Quote> apply, long reconnectMs) {
+        this.ingest = ingest;
+        this.apply = apply;
+        this.reconnectMs = reconnectMs;
+    }
+
+    public void start() {
+        Thread t = new Thread(this::run, "cluster-replica");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public void subscribe(SymbolKey key) {
+        if (active.add(key))
+            send(ReplicationCodec.SUBSCRIBE, key);
+    }
+
+    public void unsubscribe(SymbolKey key) {
+        if (active.remove(key))
+            send(ReplicationCodec.UNSUBSCRIBE, key);
+    }
+
+    public Stats stats() {
+        return new Stats(channel != null, epoch, lastSeq, ingestSeq, records.get(), resyncs.get(), reconnects.get());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ReplicationChannel ch = channel;
+        if (ch != null)
+            ch.close();
+    }
+
+    private void run() {
+        while (!closed) {
+            try (ReplicationChannel ch = new ReplicationChannel(SocketChannel.open(ingest))) {
+                ch.write(32, b -> ReplicationCodec.writeHello(b, epoch, lastSeq));
+                // Erst veröffentlichen, dann melden: parallele Abos gehen so nicht verloren,
+                // doppelte Meldungen ignoriert der Ingest-Knoten
+                channel = ch;
+                for (SymbolKey key : active)
+                    ch.write(keyFrame(key), b -> ReplicationCodec.writeKey(b, ReplicationCodec.SUBSCRIBE, key));
+                ch.flush();
+                LOG.infov("Mit Ingest-Knoten {0} verbunden (epoch {1}, seq {2})", ingest, epoch, lastSeq);
+                receive(ch);
+            } catch (IOException e) {
+                if (!closed)
+                    LOG.infov("Verbindung zum Ingest-Knoten {0} unterbrochen: {1}", ingest, e.toString());
+            } finally {
+                channel = null;
+            }
+            if (closed)
+                return;
+            reconnects.incrementAndGet();
+            try {
+                Thread.sleep(reconnectMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void receive(ReplicationChannel ch) throws IOException {
+        long pendingEpoch = 0;
+        // Stand pro Symbol vor dem Snapshot; null, solange kein Snapshot läuft
+        Map<SymbolKey, Long> known = null;
+        while (!closed) {
+            byte type = ch.next();
+            ByteBuffer p = ch.payload();
+            switch (type) {
+                case ReplicationCodec.CHANGE -> {
+                    long seq = p.getLong();
+                    Quote q = ReplicationCodec.readQuote(p);
+                    // Doppelte Einträge nach einem Neuaufbau überspringen
+                    if (seq > lastSeq) {
+                        accept(q);
+                        lastSeq = seq;
+                    }
+                    ingestSeq = Math.max(ingestSeq, seq);
+                }
+                case ReplicationCodec.HEARTBEAT -> ingestSeq = p.getLong();
+                case ReplicationCodec.RESET -> {
+                    pendingEpoch = p.getLong();
+                    ingestSeq = p.getLong();
+                    known = Map.copyOf(lastTs);
+                    resyncs.incrementAndGet();
+                }
+                case ReplicationCodec.SNAPSHOT -> {
+                    Quote q = ReplicationCodec.readQuote(p);
+                    Long ts = known != null ? known.get(q.s()) : null;
+                    if (known != null && (ts == null || q.tsUnixSec() > ts))
+                        accept(q);
+                }
+                case ReplicationCodec.READY -> {
+                    // Stand erst nach vollständigem Snapshot übernehmen
+                    lastSeq = p.getLong();
+                    epoch = pendingEpoch;
+                    known = null;
+                }
+                default -> throw new IOException("Unbekannter Frame-Typ " + type);
+            }
+        }
+    }
+
+    private void accept(Quote q) {
+        lastTs.merge(q.s(), q.tsUnixSec(), Math::max);
+        apply.accept(q);
+        records.incrementAndGet();
+    }
+
+    private void send(byte type, SymbolKey key) {
+        ReplicationChannel ch = channel;
+        if (ch == null)
+            return; // wird beim nächsten Verbindungsaufbau gemeldet
+        try {
+            ch.write(keyFrame(key), b -> ReplicationCodec.writeKey(b, type, key));
+            ch.flush();
+        } catch (IOException e) {
+            ch.close();
+        }
+    }
+
+    private static int keyFrame(SymbolKey key) {
+        return 8 + 3 * key.toString().length();
+    }
+}
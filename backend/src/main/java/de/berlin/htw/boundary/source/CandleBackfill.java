@@ -0,0 +1,112 @@
+package de.berlin.htw.boundary.source;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.logging.Logger;
+
+import de.berlin.htw.trading.candle.BatchCandleBuilder;
+import de.berlin.htw.trading.candle.CandleQuoteConsumer;
+import de.berlin.htw.trading.candle.dto.Candle;
+import de.berlin.htw.trading.clock.VirtualClock;
+import de.berlin.htw.trading.quote.dto.DeltaQuote;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Headless-Batch: liest eine mit {@link CaptureWriter} aufgezeichnete Sitzung, setzt die Deltas
+ * wie der Buffer zu Quotes zusammen und schreibt pro Symbol eine Candle-Datei. Die Uhr steht
+ * dabei auf der Empfangszeit des jeweiligen Frames, nicht auf der Systemzeit.
+ *
+ * Aufruf: CandleBackfill capture-datei ausgabe-verzeichnis [parallelität]
+ */
+public final class CandleBackfill {
+
+    private static final Logger LOG = Logger.getLogger(CandleBackfill.class);
+
+    private CandleBackfill() {
+    }
+
+    // Wie InMemoryMarketDataBuffer.doAppendDelta, aber ohne Buffer und pro Symbol gesammelt
+    private static final class TickCollector implements MarketDataSink {
+        final VirtualClock clock;
+        final Map<Integer, SymbolKey> idToKey = new HashMap<>();
+        final Map<SymbolKey, Quote> last = new HashMap<>();
+        final Map<SymbolKey, List<Quote>> ticks = new LinkedHashMap<>();
+
+        TickCollector(VirtualClock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public void initial(Quote quote) {
+            idToKey.put(quote.subId(), quote.s());
+            add(quote.s(), quote);
+        }
+
+        @Override
+        public void delta(DeltaQuote delta) {
+            SymbolKey key = idToKey.get(delta.subId());
+            if (key == null)
+                return;
+            Quote q = Quote.applyDelta(key, last.get(key), delta, key.channel, clock.millis() / 1000);
+            if (q != null)
+                add(key, q);
+        }
+
+        private void add(SymbolKey key, Quote q) {
+            last.put(key, q);
+            ticks.computeIfAbsent(key, k -> new ArrayList<>()).add(q);
+        }
+    }
+
+    /**
+     * Liest alle Frames der Aufzeichnung und liefert die Quotes pro Symbol in Empfangsreihenfolge.
+     */
+    public static Map<SymbolKey, List<Quote>> readCapture(Path file) throws IOException {
+        VirtualClock clock = new VirtualClock(0);
+        TickCollector collector = new TickCollector(clock);
+        Stock3Decoder decoder = new Stock3Decoder();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab < 0)
+                    continue;
+                clock.advanceTo(Long.parseLong(line, 0, tab, 10));
+                decoder.decode(line.substring(tab + 1), collector);
+            }
+        }
+        return collector.ticks;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Aufruf: CandleBackfill capture-datei ausgabe-verzeichnis [parallelität]");
+            System.exit(2);
+        }
+        Path capture = Path.of(args[0]);
+        Path dir = Path.of(args[1]);
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        long t0 = System.nanoTime();
+        Map<SymbolKey, List<Quote>> ticks = readCapture(capture);
+        long t1 = System.nanoTime();
+        Map<SymbolKey, List<Candle>> candles = new BatchCandleBuilder(CandleQuoteConsumer.FRAME_SEC, parallelism)
+                .build(ticks);
+        long t2 = System.nanoTime();
+        BatchCandleBuilder.write(candles, dir);
+
+        long n = ticks.values().stream().mapToLong(List::size).sum();
+        LOG.infov("Backfill {0}: {1} Symbole, {2} Ticks gelesen in {3} ms, Candles gebaut in {4} ms ({5} Threads)",
+                capture, ticks.size(), n, (t1 - t0) / 1_000_000, (t2 - t1) / 1_000_000, parallelism);
+    }
+}
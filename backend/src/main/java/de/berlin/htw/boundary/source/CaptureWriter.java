@@ -0,0 +1,48 @@
+package de.berlin.htw.boundary.source;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Zeichnet Stock3-Frames für {@link ReplaySource} auf: eine Zeile pro Frame,
+ * "Empfangszeit in ms" TAB "Frame". Frames enthalten keine Zeilenumbrüche.
+ */
+public final class CaptureWriter implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(CaptureWriter.class);
+
+    private final BufferedWriter out;
+
+    public CaptureWriter(Path file) throws IOException {
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    public synchronized void write(long receivedMs, String frame) {
+        try {
+            out.write(Long.toString(receivedMs));
+            out.write('\t');
+            out.write(frame);
+            out.newLine();
+            out.flush();
+        } catch (IOException e) {
+            LOG.warnv(e, "Aufzeichnung fehlgeschlagen");
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            LOG.debugv(e, "Aufzeichnung nicht sauber geschlossen");
+        }
+    }
+}
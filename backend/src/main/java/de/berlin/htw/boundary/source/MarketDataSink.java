@@ -0,0 +1,16 @@
+package de.berlin.htw.boundary.source;
+
+import de.berlin.htw.trading.quote.dto.DeltaQuote;
+import de.berlin.htw.trading.quote.dto.Quote;
+
+/**
+ * Ziel einer {@link MarketDataSource}: nimmt vollständige Quotes (mit Subscription-ID) und
+ * Deltas zu bereits bekannten Subscription-IDs entgegen. Deltas einer Subscription-ID kommen in
+ * Reihenfolge und nach ihrem initialen Quote.
+ */
+public interface MarketDataSink {
+
+    void initial(Quote quote);
+
+    void delta(DeltaQuote delta);
+}
@@ -0,0 +1,31 @@
+package de.berlin.htw.boundary.source;
+
+import java.io.Closeable;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Kursquelle des Ingest-Knotens, ausgewählt über marketdata.source:
+ * <ul>
+ * <li>stock3: WebSocket zu Stock3, liefert nur abonnierte Symbole (Standard)</li>
+ * <li>synthetic: In-Process-Generator (GBM oder mit Sprüngen) für Last- und Benchmarkläufe</li>
+ * <li>replay: spielt eine mit marketdata.capture-file aufgezeichnete Stock3-Sitzung ab</li>
+ * </ul>
+ * subscribe/unsubscribe werden pro Symbol nur beim ersten bzw. letzten Abonnenten aufgerufen.
+ */
+public interface MarketDataSource extends Closeable {
+
+    void start(MarketDataSink sink) throws Exception;
+
+    void subscribe(SymbolKey key);
+
+    void unsubscribe(SymbolKey key);
+
+    /**
+     * Kennzahlen der Quelle für "metrics".
+     */
+    Object stats();
+
+    @Override
+    void close();
+}
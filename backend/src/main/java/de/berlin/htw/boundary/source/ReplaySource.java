@@ -0,0 +1,114 @@
+package de.berlin.htw.boundary.source;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jboss.logging.Logger;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Spielt eine mit {@link CaptureWriter} aufgezeichnete Stock3-Sitzung ab. speed skaliert die
+ * aufgezeichneten Abstände (1 = Echtzeit, 0 = so schnell wie möglich); mit loop beginnt die
+ * Datei am Ende von vorn. Abgespielt werden alle aufgezeichneten Symbole, Abos ändern daran
+ * nichts.
+ */
+public final class ReplaySource implements MarketDataSource {
+
+    private static final Logger LOG = Logger.getLogger(ReplaySource.class);
+
+    public record Stats(String file, long frames, long emitted, long passes, boolean running) {
+    }
+
+    private final Path file;
+    private final double speed;
+    private final boolean loop;
+    private final Stock3Decoder decoder = new Stock3Decoder();
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong emitted = new AtomicLong();
+    private final AtomicLong passes = new AtomicLong();
+    private volatile boolean closed;
+    private volatile boolean running;
+
+    public ReplaySource(Path file, double speed, boolean loop) {
+        this.file = file;
+        this.speed = speed;
+        this.loop = loop;
+    }
+
+    @Override
+    public void start(MarketDataSink sink) throws IOException {
+        if (!Files.isReadable(file))
+            throw new IOException("Aufzeichnung nicht lesbar: " + file);
+        Thread t = new Thread(() -> run(sink), "replay-source");
+        t.setDaemon(true);
+        running = true;
+        t.start();
+    }
+
+    private void run(MarketDataSink sink) {
+        try {
+            do {
+                // Jeder Durchlauf beginnt mit den initialen Quotes der Aufzeichnung
+                decoder.reset();
+                replay(sink);
+                passes.incrementAndGet();
+            } while (loop && !closed);
+        } catch (IOException e) {
+            LOG.errorv(e, "Abspielen von {0} abgebrochen", file);
+        } finally {
+            running = false;
+        }
+        LOG.infov("Abspielen von {0} beendet: {1} Frames", file, frames.get());
+    }
+
+    private void replay(MarketDataSink sink) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long firstMs = -1;
+            long startNanos = System.nanoTime();
+            String line;
+            while (!closed && (line = in.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab < 0)
+                    continue;
+                long ms = Long.parseLong(line, 0, tab, 10);
+                if (firstMs < 0)
+                    firstMs = ms;
+                if (speed > 0) {
+                    long dueNanos = startNanos + (long) ((ms - firstMs) * 1_000_000L / speed);
+                    long wait = dueNanos - System.nanoTime();
+                    if (wait > 0)
+                        LockSupport.parkNanos(wait);
+                }
+                frames.incrementAndGet();
+                if (decoder.decode(line.substring(tab + 1), sink))
+                    emitted.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(SymbolKey key) {
+        LOG.debugv("Abspielen: Abo für {0} ohne Wirkung", key);
+    }
+
+    @Override
+    public void unsubscribe(SymbolKey key) {
+    }
+
+    @Override
+    public Stats stats() {
+        return new Stats(file.toString(), frames.get(), emitted.get(), passes.get(), running);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,77 @@
+package de.berlin.htw.boundary.source;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.logging.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.berlin.htw.trading.quote.dto.DeltaQuote;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.QuoteMessage;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Dekodiert Stock3-Textframes: JSON für das initiale Quote einer Subscription, sonst Deltas
+ * im Format "22:49032.7196395:3:::::". Gemeinsam genutzt von der Live-Verbindung und dem
+ * Abspielen aufgezeichneter Sitzungen.
+ */
+public final class Stock3Decoder {
+
+    private static final Logger LOG = Logger.getLogger(Stock3Decoder.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Map: Subscription-ID -> SymbolKey
+    // Die Subscription-ID (i) kommt vom Stock3-Server
+    private final Map<Integer, SymbolKey> subMap = new ConcurrentHashMap<>();
+
+    /**
+     * Dekodiert einen Frame und reicht ihn an sink weiter; liefert false für Frames ohne Kurs
+     * (Willkommensnachricht, unbekannte Subscription, Parse-Fehler).
+     */
+    public boolean decode(String message, MarketDataSink sink) {
+        // Filtere Willkommensnachrichten heraus
+        if (message.contains("[stock3-"))
+            return false;
+        try {
+            // Delta-Nachricht (Format: "22:49032.7196395:3:::::"), sonst vollständiges JSON
+            if (message.contains(":") && !message.contains("{"))
+                return decodeDelta(message, sink);
+            return decodeInitial(message, sink);
+        } catch (Exception e) {
+            LOG.errorv(e, "Fehler beim Verarbeiten der Stock3-Nachricht: {0}", message);
+            return false;
+        }
+    }
+
+    public void reset() {
+        subMap.clear();
+    }
+
+    private boolean decodeInitial(String message, MarketDataSink sink) throws Exception {
+        QuoteMessage qm = MAPPER.readValue(message, QuoteMessage.class);
+        LOG.infov("Initial Quote empfangen - SubID: {0}, Symbol: {1}, Preis: {2}", qm.i(), qm.s(), qm.q());
+
+        // Erstelle SymbolKey aus dem Symbol-String (Format: "symbolId:venueId:channel")
+        SymbolKey key = SymbolKey.fromSub(qm.s());
+        if (qm.i() != null)
+            subMap.put(qm.i(), key);
+
+        sink.initial(new Quote(key, qm.ts(), qm.q(), qm.h(), qm.l(), qm.o(), qm.pc(), qm.abs(), qm.rel(),
+                qm.tickSize(), qm.active(), qm.t(), qm.i(), qm.precision()));
+        return true;
+    }
+
+    private boolean decodeDelta(String message, MarketDataSink sink) {
+        DeltaQuote delta = DeltaQuote.parse(message);
+        if (!subMap.containsKey(delta.subId())) {
+            LOG.warnv("Keine SymbolKey für Subscription-ID {0} gefunden", delta.subId());
+            return false;
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debugv("Delta empfangen - SubID: {0}, Neuer Preis: {1}", delta.subId(), delta.value());
+        sink.delta(delta);
+        return true;
+    }
+}
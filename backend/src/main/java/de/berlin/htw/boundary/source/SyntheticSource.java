@@ -0,0 +1,169 @@
+package de.berlin.htw.boundary.source;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jboss.logging.Logger;
+
+import de.berlin.htw.trading.quote.dto.DeltaQuote;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * In-Process-Kursgenerator ohne Netzwerk: symbols feste Symbole (900000:99:last, 900001:99:last,
+ * ...) plus jedes abonnierte Symbol, je ratePerSec Ticks pro Sekunde (0 = so schnell wie
+ * möglich). Preise folgen einer geometrischen Brownschen Bewegung mit volatility pro
+ * Wurzel-Sekunde, bei "jump" zusätzlich mit Sprüngen (im Mittel jumpIntensity pro Sekunde,
+ * normalverteilte Log-Größe mit jumpStdDev). Ein fester seed macht Läufe reproduzierbar.
+ */
+public final class SyntheticSource implements MarketDataSource {
+
+    private static final Logger LOG = Logger.getLogger(SyntheticSource.class);
+
+    public static final String GBM = "gbm";
+    public static final String JUMP = "jump";
+
+    public record Config(int symbols, double ratePerSec, String process, double volatility, double jumpIntensity,
+            double jumpStdDev, long seed) {
+    }
+
+    public record Stats(int symbols, long emitted, long jumps, double ticksPerSec, boolean running) {
+    }
+
+    private static final class Path {
+        final SymbolKey key;
+        final int subId;
+        final boolean fixed;
+        double price;
+        long lastSec;
+
+        Path(SymbolKey key, int subId, boolean fixed, double price, long nowSec) {
+            this.key = key;
+            this.subId = subId;
+            this.fixed = fixed;
+            this.price = price;
+            this.lastSec = nowSec;
+        }
+    }
+
+    private final Config config;
+    private final SplittableRandom random;
+    private final boolean jumps;
+    // Zeitschritt eines Ticks in Sekunden; ungedrosselt wird eine Millisekunde angenommen
+    private final double dt;
+
+    // Copy-on-write: der Generator-Thread liest ohne Sperre
+    private volatile Path[] paths = new Path[0];
+    private int nextSubId = 1;
+    private MarketDataSink sink;
+
+    private final AtomicLong emitted = new AtomicLong();
+    private final AtomicLong jumpCount = new AtomicLong();
+    private volatile long startNanos;
+    private volatile boolean closed;
+    private volatile boolean running;
+
+    public SyntheticSource(Config config) {
+        this.config = config;
+        this.random = new SplittableRandom(config.seed());
+        this.jumps = JUMP.equals(config.process());
+        this.dt = config.ratePerSec() > 0 ? 1.0 / config.ratePerSec() : 0.001;
+    }
+
+    @Override
+    public void start(MarketDataSink sink) {
+        this.sink = sink;
+        for (int i = 0; i < config.symbols(); i++)
+            add(new SymbolKey(String.valueOf(900_000 + i), "99", "last"), true);
+        Thread t = new Thread(this::run, "synthetic-source");
+        t.setDaemon(true);
+        running = true;
+        startNanos = System.nanoTime();
+        t.start();
+        LOG.infov("Synthetische Kurse: {0} Symbole, {1} Ticks/s je Symbol, Prozess {2}", config.symbols(),
+                config.ratePerSec(), config.process());
+    }
+
+    private void run() {
+        long period = config.ratePerSec() > 0 ? (long) (1e9 / config.ratePerSec()) : 0;
+        long next = System.nanoTime();
+        try {
+            while (!closed) {
+                Path[] current = paths;
+                if (current.length == 0) {
+                    LockSupport.parkNanos(1_000_000);
+                    continue;
+                }
+                long nowSec = System.currentTimeMillis() / 1000;
+                for (Path p : current)
+                    sink.delta(step(p, nowSec));
+                if (period == 0)
+                    continue;
+                next += period;
+                long wait = next - System.nanoTime();
+                if (wait > 0)
+                    LockSupport.parkNanos(wait);
+                else if (wait < -1_000_000_000L)
+                    next = System.nanoTime(); // mehr als eine Sekunde im Rückstand: nicht nachholen
+            }
+        } catch (RuntimeException e) {
+            LOG.errorv(e, "Synthetische Kursquelle abgebrochen");
+        } finally {
+            running = false;
+        }
+    }
+
+    private DeltaQuote step(Path p, long nowSec) {
+        double sigma = config.volatility();
+        double logReturn = -0.5 * sigma * sigma * dt + sigma * Math.sqrt(dt) * random.nextGaussian();
+        if (jumps && random.nextDouble() < config.jumpIntensity() * dt) {
+            logReturn += config.jumpStdDev() * random.nextGaussian();
+            jumpCount.incrementAndGet();
+        }
+        p.price *= Math.exp(logReturn);
+        long sec = nowSec - p.lastSec;
+        p.lastSec = nowSec;
+        emitted.incrementAndGet();
+        return new DeltaQuote(p.subId, p.price, sec, 1L, null, null, null, null);
+    }
+
+    // Neues Symbol: initiales Quote vor dem ersten Delta, dann in den Umlauf aufnehmen
+    private synchronized void add(SymbolKey key, boolean fixed) {
+        for (Path p : paths)
+            if (p.key.equals(key))
+                return;
+        long nowSec = System.currentTimeMillis() / 1000;
+        double price = 100.0 + 100.0 * (key.hashCode() & 0xff) / 255.0;
+        Path p = new Path(key, nextSubId++, fixed, price, nowSec);
+        sink.initial(new Quote(key, nowSec, price, price, price, price, price, 0.0, 0.0, 0.01, true, 0L, p.subId,
+                2.0));
+        Path[] next = Arrays.copyOf(paths, paths.length + 1);
+        next[paths.length] = p;
+        paths = next;
+    }
+
+    @Override
+    public void subscribe(SymbolKey key) {
+        if (sink != null)
+            add(key, false);
+    }
+
+    @Override
+    public synchronized void unsubscribe(SymbolKey key) {
+        paths = Arrays.stream(paths).filter(p -> p.fixed || !p.key.equals(key)).toArray(Path[]::new);
+    }
+
+    @Override
+    public Stats stats() {
+        double secs = (System.nanoTime() - startNanos) / 1e9;
+        long n = emitted.get();
+        return new Stats(paths.length, n, jumpCount.get(), secs > 0 ? n / secs : 0, running);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
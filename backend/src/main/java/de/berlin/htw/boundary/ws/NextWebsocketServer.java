@@ -0,0 +1,109 @@
+package de.berlin.htw.boundary.ws;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import de.berlin.htw.boundary.ws.outbound.BinaryCodec;
+import de.berlin.htw.boundary.ws.outbound.OutboundFrame;
+import de.berlin.htw.boundary.ws.outbound.SessionOutbox;
+import io.quarkus.websockets.next.CloseReason;
+import io.quarkus.websockets.next.OnClose;
+import io.quarkus.websockets.next.OnOpen;
+import io.quarkus.websockets.next.OnTextMessage;
+import io.quarkus.websockets.next.WebSocket;
+import io.quarkus.websockets.next.WebSocketConnection;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.buffer.Buffer;
+import jakarta.inject.Inject;
+
+/**
+ * /quotes auf Quarkus WebSockets Next. Gleicher Nachrichtenvertrag wie {@link WebsocketServer};
+ * Schreibvorgänge laufen über die Vert.x-Verbindung auf ihrem Event-Loop, eingehende Nachrichten
+ * (Snapshots, History) auf virtuellen Threads. Aktiv nur mit ws.stack=next.
+ */
+@WebSocket(path = "/quotes-next")
+public class NextWebsocketServer {
+
+    /**
+     * WebSockets-Next-Verbindung als {@link WsConnection}
+     */
+    record NextConnection(WebSocketConnection connection) implements WsConnection {
+        @Override
+        public String id() {
+            return connection.id();
+        }
+
+        @Override
+        public boolean binary() {
+            return BinaryCodec.SUBPROTOCOL.equals(connection.subprotocol());
+        }
+
+        @Override
+        public boolean isOpen() {
+            return connection.isOpen();
+        }
+
+        @Override
+        public SessionOutbox.Sink sink() {
+            boolean binary = binary();
+            return new SessionOutbox.Sink() {
+                @Override
+                public void send(OutboundFrame frame, Consumer<Throwable> onDone) {
+                    if (connection.isClosed()) {
+                        onDone.accept(new IllegalStateException("Verbindung geschlossen"));
+                        return;
+                    }
+                    Uni<Void> write = (binary && frame.hasBinary())
+                            ? connection.sendBinary(toBuffer(frame.binary()))
+                            : connection.sendText(frame.text());
+                    write.subscribe().with(ok -> onDone.accept(null), onDone::accept);
+                }
+
+                @Override
+                public void close(String reason) {
+                    connection.close(new CloseReason(1013, reason)).subscribe().with(ok -> {
+                    }, err -> {
+                        // Verbindung ist bereits geschlossen
+                    });
+                }
+            };
+        }
+
+        private static Buffer toBuffer(ByteBuffer b) {
+            byte[] bytes = new byte[b.remaining()];
+            b.get(bytes);
+            return Buffer.buffer(bytes);
+        }
+    }
+
+    @Inject
+    QuoteSessionService service;
+
+    @ConfigProperty(name = "ws.stack", defaultValue = "jakarta")
+    String stack;
+
+    @OnOpen
+    public void onOpen(WebSocketConnection connection) {
+        if (!"next".equals(stack)) {
+            connection.closeAndAwait(new CloseReason(1003, "ws.stack=" + stack));
+            return;
+        }
+        service.open(new NextConnection(connection));
+    }
+
+    // Subscribe-Snapshots und History-Seiten werden hier zusammengebaut; virtuelle Threads
+    // halten dabei keinen Worker-Thread fest
+    @OnTextMessage
+    @RunOnVirtualThread
+    public void onMessage(String message, WebSocketConnection connection) {
+        service.onMessage(message, new NextConnection(connection));
+    }
+
+    @OnClose
+    public void onClose(WebSocketConnection connection) {
+        service.close(new NextConnection(connection));
+    }
+}
@@ -0,0 +1,743 @@
+package de.berlin.htw.boundary.ws;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import de.berlin.htw.boundary.cluster.ClusterNode;
+import de.berlin.htw.boundary.ws.client.QuoteController;
+import de.berlin.htw.boundary.ws.dto.SubEvent;
+import de.berlin.htw.boundary.ws.dto.Subscription;
+import de.berlin.htw.boundary.ws.dto.UnsubEvent;
+import de.berlin.htw.boundary.ws.dto.WsMsgs;
+import de.berlin.htw.boundary.ws.outbound.DeltaTracker;
+import de.berlin.htw.boundary.ws.outbound.FrameEncoder;
+import de.berlin.htw.boundary.ws.outbound.OutboundFrame;
+import de.berlin.htw.boundary.ws.outbound.SessionOutbox;
+import de.berlin.htw.boundary.ws.outbound.SnapshotCache;
+import de.berlin.htw.trading.alert.PriceAlertConsumer;
+import de.berlin.htw.trading.analytics.CorrelationConsumer;
+import de.berlin.htw.trading.alert.dto.Alert;
+import de.berlin.htw.trading.alert.dto.AlertTrigger;
+import de.berlin.htw.trading.candle.CandleQuoteConsumer;
+import de.berlin.htw.trading.candle.dto.Candle;
+import de.berlin.htw.trading.events.AlertEvent;
+import de.berlin.htw.trading.events.CandleEvent;
+import de.berlin.htw.trading.events.EventExecutors;
+import de.berlin.htw.trading.events.QuoteEvent;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.ChangeRecord;
+import de.berlin.htw.trading.quote.QuoteDownsampler;
+import de.berlin.htw.trading.quote.SimpleQuoteConsumer;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import de.berlin.htw.trading.retention.RetentionSweeper;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.ObservesAsync;
+import jakarta.inject.Inject;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+
+/**
+ * Nachrichtenvertrag von /quotes unabhängig vom WebSocket-Stack: Subscriptions, Snapshots,
+ * History, Resume und Fan-out. Die Endpunkte ({@link WebsocketServer} auf Jakarta WebSocket,
+ * {@link NextWebsocketServer} auf WebSockets Next) reichen nur Öffnen, Nachrichten und Schließen
+ * durch.
+ */
+@ApplicationScoped
+public class QuoteSessionService {
+
+    private static final int DEFAULT_PAGE_SIZE = 500;
+    private static final int MAX_PAGE_SIZE = 5_000;
+    private static final int MAX_PAGES_PER_REQUEST = 20;
+    private static final int MAX_FLUSH_MS = 1_000;
+    // Mehr verpasste Änderungen lohnen sich nicht mehr gegenüber einem Snapshot
+    private static final int MAX_RESUME_CHANGES = 50_000;
+
+    private final Map<String, WsConnection> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Subscription> subs = new ConcurrentHashMap<>();
+    private final Map<String, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+    // SymbolKey -> Sessions, die das Symbol abonniert haben (für den Fan-out)
+    private final SubscriptionIndex<WsConnection> index = new SubscriptionIndex<>();
+    // Zuletzt verteiltes Quote pro Symbol, Basis für die gemeinsamen Delta-Frames
+    private final Map<SymbolKey, Quote> lastBroadcast = new ConcurrentHashMap<>();
+    private final Jsonb jsonb = JsonbBuilder.create();
+    private final FrameEncoder encoder = new FrameEncoder(jsonb);
+    // Ein Timer-Thread für die Batch-Fenster aller Sessions und die Upstream-Nachlaufzeit;
+    // gesendet wird asynchron
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ws-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Inject
+    private CandleQuoteConsumer candleQuoteConsumer;
+
+    @Inject
+    private SimpleQuoteConsumer simpleQuoteConsumer;
+
+    @Inject
+    private PriceAlertConsumer alertConsumer;
+
+    @Inject
+    private CorrelationConsumer correlationConsumer;
+
+    @Inject
+    private IMarketDataBuffer buffer;
+
+    @Inject
+    private RetentionSweeper retention;
+
+    @Inject
+    private QuoteController quoteController;
+
+    @Inject
+    private ClusterNode cluster;
+
+    @Inject
+    private EventExecutors executors;
+
+    // Dieselbe Uhr wie Buffer und Consumer, sonst passen die Fenster nicht zusammen
+    @Inject
+    private Clock clock;
+
+    @Inject
+    private Event<SubEvent> subEvent;
+
+    @Inject
+    private Event<UnsubEvent> unsubEvent;
+
+    @Inject
+    Logger logger;
+
+    @ConfigProperty(name = "ws.outbox.capacity", defaultValue = "256")
+    int outboxCapacity;
+
+    @ConfigProperty(name = "ws.outbox.policy", defaultValue = "CONFLATE")
+    SessionOutbox.OverflowPolicy outboxPolicy;
+
+    @ConfigProperty(name = "ws.outbox.flush-ms", defaultValue = "0")
+    int flushMs;
+
+    @ConfigProperty(name = "ws.snapshot-cache.max-bytes", defaultValue = "67108864")
+    long snapshotCacheBytes;
+
+    @ConfigProperty(name = "ws.upstream.linger-ms", defaultValue = "30000")
+    long upstreamLingerMs;
+
+    @ConfigProperty(name = "analytics.publish-ms", defaultValue = "1000")
+    long analyticsPublishMs;
+
+    @ConfigProperty(name = "consumers.idle-drop-ms", defaultValue = "600000")
+    long idleDropMs;
+
+    // Sessions, die das Topic "correlation" abonniert haben, und die zuletzt verteilte Version
+    private final Set<String> correlationSubscribers = ConcurrentHashMap.newKeySet();
+    private volatile long correlationVersion = -1;
+
+    private SnapshotCache snapshotCache;
+    // Referenzzähler pro Symbol; Stock3 wird nur beim ersten Abonnenten bzw. nach der
+    // Nachlaufzeit des letzten Abonnenten angesprochen
+    private UpstreamSubscriptions upstream;
+
+    @PostConstruct
+    void init() {
+        snapshotCache = new SnapshotCache(encoder, snapshotCacheBytes);
+        upstream = new UpstreamSubscriptions(
+                key -> subEvent.fire(new SubEvent(key)),
+                this::onUpstreamUnsubscribe,
+                timer, upstreamLingerMs);
+        // Beim Kürzen über dem Speicherbudget kommen abonnierte Symbole zuletzt dran
+        buffer.setSubscribed(key -> upstream.refCount(key) > 0);
+        timer.scheduleAtFixedRate(this::publishCorrelation, analyticsPublishMs, analyticsPublishMs,
+                TimeUnit.MILLISECONDS);
+        long sweepMs = Math.max(1_000, idleDropMs / 10);
+        timer.scheduleAtFixedRate(this::dropIdleSymbols, sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+    }
+
+    // METHODE 1: Wird aufgerufen, wenn ein Client sich verbindet
+    public void open(WsConnection session) {
+        logger.infov("WebSocket-Verbindung geöffnet: {0}", session.id());
+        sessions.put(session.id(), session);
+        // Jede Session bekommt eine eigene begrenzte Ausgangswarteschlange
+        SessionOutbox outbox = new SessionOutbox(session.sink(), outboxCapacity, outboxPolicy);
+        if (flushMs > 0)
+            outbox.setBatchWindow(flushMs, timer);
+        outboxes.put(session.id(), outbox);
+        // Erstelle eine leere Subscription-Map für diese Session
+        subs.put(session.id(), new Subscription());
+    }
+
+    // METHODE 2: Wird aufgerufen, wenn ein Client eine Nachricht sendet
+    public void onMessage(String message, WsConnection session) {
+        logger.infov("Nachricht empfangen von {0}: {1}", session.id(), message);
+
+        try {
+            // Versuche die Nachricht als Ping zu parsen
+            var pingMsg = jsonb.fromJson(message, Map.class);
+            if ("ping".equals(pingMsg.get("type"))) {
+                // Sende Pong zurück
+                sendJson(session, new WsMsgs.Pong());
+                return;
+            }
+        } catch (Exception e) {
+            // Kein Ping, weiter mit normaler Verarbeitung
+        }
+
+        try {
+            // Parse die Nachricht als Subscribe/Unsubscribe
+            WsMsgs.Sub sub = jsonb.fromJson(message, WsMsgs.Sub.class);
+
+            if ("subscribe".equals(sub.action)) {
+                logger.infov("Subscribe-Anfrage: {0}:{1}:{2}",
+                        sub.symbolId, sub.venueId, sub.channel);
+                subscribe(sub, session);
+            } else if ("unsubscribe".equals(sub.action)) {
+                logger.infov("Unsubscribe-Anfrage: {0}:{1}:{2}",
+                        sub.symbolId, sub.venueId, sub.channel);
+                unsubscribe(sub, session);
+            } else if ("history".equals(sub.action)) {
+                WsMsgs.History req = jsonb.fromJson(message, WsMsgs.History.class);
+                logger.infov("History-Anfrage: {0}:{1}:{2} {3} [{4}, {5}]",
+                        req.symbolId, req.venueId, req.channel, req.frame, req.from, req.to);
+                history(req, session);
+            } else if ("alert".equals(sub.action) || "cancelAlert".equals(sub.action)
+                    || "alerts".equals(sub.action)) {
+                alert(jsonb.fromJson(message, WsMsgs.AlertReq.class), session);
+            } else if ("subscribeTopic".equals(sub.action) || "unsubscribeTopic".equals(sub.action)) {
+                topic(jsonb.fromJson(message, WsMsgs.Topic.class), session);
+            } else if ("stats".equals(sub.action)) {
+                stats(jsonb.fromJson(message, WsMsgs.Stats.class), session);
+            } else if ("resume".equals(sub.action)) {
+                resume(jsonb.fromJson(message, WsMsgs.Resume.class), session);
+            } else if ("configure".equals(sub.action)) {
+                configure(jsonb.fromJson(message, WsMsgs.Configure.class), session);
+            } else if ("metrics".equals(sub.action)) {
+                sendJson(session, metrics(session));
+            }
+        } catch (Exception e) {
+            logger.errorv(e, "Fehler beim Verarbeiten der Nachricht");
+            sendJson(session, Map.of("type", "error",
+                    "message", "Ungültige Nachricht: " + e.getMessage()));
+        }
+    }
+
+    // METHODE 3: Wird aufgerufen, wenn ein Client die Verbindung trennt
+    public void close(WsConnection session) {
+        logger.infov("WebSocket-Verbindung geschlossen: {0}", session.id());
+
+        // Entferne alle Subscriptions dieser Session
+        Subscription subscription = subs.remove(session.id());
+        if (subscription != null) {
+            index.removeAll(subscription.windows.keySet(), session);
+            for (SymbolKey key : subscription.windows.keySet()) {
+                upstream.release(key);
+            }
+        }
+
+        correlationSubscribers.remove(session.id());
+
+        // Offene Alarme verfallen mit der Session
+        for (Alert a : alertConsumer.cancelAll(session.id()))
+            upstream.release(a.key());
+
+        sessions.remove(session.id());
+        SessionOutbox outbox = outboxes.remove(session.id());
+        if (outbox != null)
+            outbox.close();
+    }
+
+    // Die restlichen Methoden sind bereits vorhanden...
+    void unsubscribe(WsMsgs.Sub sub, WsConnection session) {
+        SymbolKey key = toKey(sub);
+        if (key == null)
+            return;
+        index.remove(key, session);
+        // Nur freigeben, wenn diese Session das Symbol tatsächlich abonniert hatte
+        if (subs.get(session.id()).windows.remove(key) != null)
+            upstream.release(key);
+    }
+
+    void subscribe(WsMsgs.Sub sub, WsConnection session) {
+        SymbolKey key = toKey(sub);
+        if (key == null)
+            return;
+        checkMaxPoints(sub.maxPoints);
+        int windowSecs = register(sub, key, session);
+        index.add(key, session);
+
+        // Sequenz vor den Daten lesen: der Snapshot ist mindestens so aktuell wie seq
+        long seq = simpleQuoteConsumer.getSeq(key);
+        long nowSec = clock.millis() / 1000;
+        long fromSec = nowSec - windowSecs;
+
+        // Fertig kodierte Snapshots kommen aus dem Cache; gleichzeitige Subscriber derselben
+        // Version teilen sich einen Aufbau
+        OutboundFrame candles = snapshotCache.segmented("candles", key, seq, fromSec, nowSec,
+                (f, t) -> candleQuoteConsumer.getCandles(key, f, t, Integer.MAX_VALUE));
+        if (candles == null) {
+            var lastKnownCandle = candleQuoteConsumer.getLastKnownCandle(key);
+            candles = encoder.encode("candles", key, seq,
+                    lastKnownCandle != null ? List.of(lastKnownCandle) : List.of());
+        }
+        sendFrame(session, candles);
+
+        OutboundFrame quotes;
+        if (sub.maxPoints != null) {
+            int maxPoints = sub.maxPoints;
+            quotes = snapshotCache.whole("quotes", key, seq, maxPoints, fromSec,
+                    () -> QuoteDownsampler.lttb(simpleQuoteConsumer.getQuotes(key, fromSec, Long.MAX_VALUE), maxPoints));
+        } else {
+            quotes = snapshotCache.segmented("quotes", key, seq, fromSec, nowSec,
+                    (f, t) -> simpleQuoteConsumer.getQuotes(key, f, t));
+        }
+        if (quotes == null) {
+            var lastKnownQuote = simpleQuoteConsumer.getLastKnown(key);
+            quotes = encoder.encode("quotes", key, seq,
+                    lastKnownQuote != null ? List.of(lastKnownQuote) : List.of());
+        }
+        sendFrame(session, quotes);
+    }
+
+    // Trägt das Abo ein (noch ohne Fan-out-Index) und liefert das Zeitfenster in Sekunden
+    private int register(WsMsgs.Sub sub, SymbolKey key, WsConnection session) {
+        int windowSecs = (sub.window != null && sub.window > 0) ? sub.window : 3600;
+
+        // Binär-Clients erfahren das Handle des Symbols, bevor der erste Binär-Frame kommt
+        if (session.binary())
+            sendFrame(session, encoder.handle(key));
+
+        // Erneutes Subscribe (z.B. anderes Fenster) zählt nicht doppelt
+        if (subs.get(session.id()).windows.put(key, windowSecs) == null)
+            upstream.acquire(key);
+        // Consumer führen das Symbol ab jetzt mit (baut bei Bedarf aus dem Buffer auf)
+        simpleQuoteConsumer.watch(key);
+        candleQuoteConsumer.watch(key);
+        return windowSecs;
+    }
+
+    // Fortsetzen nach einem Reconnect: Statt der kompletten Fenster gehen nur die Änderungen
+    // nach der jeweils zuletzt gesehenen Sequenz aus dem Change-Log raus. Ist eine Sequenz
+    // nicht mehr im Log (oder stammt aus einer anderen Buffer-Epoche), gibt es Snapshots.
+    void resume(WsMsgs.Resume req, WsConnection session) {
+        if (req.subs == null || req.subs.isEmpty())
+            return;
+        var resumed = new WsMsgs.Resumed();
+
+        Map<SymbolKey, Long> seen = new HashMap<>();
+        long minSeq = Long.MAX_VALUE;
+        boolean resumable = req.epoch != null && req.epoch == buffer.epoch();
+        for (WsMsgs.Sub sub : req.subs) {
+            SymbolKey key = toKey(sub);
+            if (key == null)
+                continue;
+            if (sub.seq == null || sub.seq > buffer.currentSeq())
+                resumable = false;
+            else {
+                seen.put(key, sub.seq);
+                minSeq = Math.min(minSeq, sub.seq);
+            }
+        }
+
+        List<ChangeRecord> changes = null;
+        if (resumable && !seen.isEmpty() && minSeq + 1 >= buffer.firstSeq()) {
+            changes = buffer.pollSince(minSeq, MAX_RESUME_CHANGES + 1);
+            // Während des Lesens kann das Log weitergewandert sein
+            if (changes.size() > MAX_RESUME_CHANGES || minSeq + 1 < buffer.firstSeq())
+                changes = null;
+        }
+
+        if (changes == null) {
+            resumed.full = true;
+            for (WsMsgs.Sub sub : req.subs)
+                subscribe(sub, session);
+            sendJson(session, resumed);
+            return;
+        }
+
+        for (WsMsgs.Sub sub : req.subs) {
+            SymbolKey key = toKey(sub);
+            if (key != null)
+                register(sub, key, session);
+        }
+        long cursor = replay(changes, seen, session, minSeq);
+        resumed.replayed = changes.size();
+
+        // Ab jetzt kommen Live-Updates; was zwischen erstem Lesen und Index-Eintrag
+        // angefallen ist, holt ein zweites Lesen nach
+        for (SymbolKey key : seen.keySet())
+            index.add(key, session);
+        var rest = buffer.pollSince(cursor, MAX_RESUME_CHANGES);
+        replay(rest, seen, session, cursor);
+        resumed.replayed += rest.size();
+        sendJson(session, resumed);
+    }
+
+    // Sendet die verpassten Quotes pro Symbol als "quotes" und die betroffenen Candles
+    // als "candles"; liefert die höchste verarbeitete Sequenz
+    private long replay(List<ChangeRecord> changes, Map<SymbolKey, Long> seen, WsConnection session, long cursor) {
+        Map<SymbolKey, List<Quote>> missed = new HashMap<>();
+        Map<SymbolKey, Long> missedSeq = new HashMap<>();
+        for (ChangeRecord cr : changes) {
+            cursor = Math.max(cursor, cr.seq());
+            Long after = seen.get(cr.key());
+            if (after == null || cr.seq() <= after || !(cr instanceof IMarketDataBuffer.QuoteChange qc))
+                continue;
+            missed.computeIfAbsent(cr.key(), k -> new ArrayList<>()).add(qc.quote());
+            missedSeq.put(cr.key(), cr.seq());
+        }
+        for (var e : missed.entrySet()) {
+            SymbolKey key = e.getKey();
+            long seq = missedSeq.get(key);
+            seen.put(key, seq);
+            List<Quote> quotes = e.getValue();
+            long fromSec = Math.floorDiv(quotes.get(0).tsUnixSec(), CandleQuoteConsumer.FRAME_SEC)
+                    * CandleQuoteConsumer.FRAME_SEC;
+            sendFrame(session, encoder.encode("candles", key, seq,
+                    candleQuoteConsumer.getCandles(key, fromSec, Long.MAX_VALUE, Integer.MAX_VALUE)));
+            sendFrame(session, encoder.encode("quotes", key, seq, quotes));
+        }
+        return cursor;
+    }
+
+    // Sitzungsoptionen; delta=true schaltet für JSON-Clients auf "qd"-Deltas mit periodischen
+    // Keyframes um. Binär-Clients haben bereits ein kompaktes festes Format. flushMs bündelt
+    // alle Updates eines Zeitfensters zu einem "batch"-Frame (0 = sofort senden). Die Antwort
+    // enthält die Epoche des Buffers, die der Client für "resume" braucht.
+    void configure(WsMsgs.Configure cfg, WsConnection session) {
+        SessionOutbox outbox = outboxes.get(session.id());
+        if (outbox == null)
+            return;
+        if (cfg.delta != null) {
+            boolean delta = cfg.delta && !session.binary();
+            outbox.setTransform(delta ? new DeltaTracker(encoder)::select : null);
+        }
+        var reply = new WsMsgs.Configured();
+        reply.epoch = buffer.epoch();
+        reply.delta = Boolean.TRUE.equals(cfg.delta) && !session.binary();
+        if (cfg.flushMs != null) {
+            reply.flushMs = Math.max(0, Math.min(cfg.flushMs, MAX_FLUSH_MS));
+            outbox.setBatchWindow(reply.flushMs, timer);
+        }
+        sendJson(session, reply);
+    }
+
+    // lttb() gibt bei maxPoints < 1 den ganzen Bereich zurück; das wäre ein ungedeckelter
+    // Snapshot statt eines kleinen
+    private static void checkMaxPoints(Integer maxPoints) {
+        if (maxPoints != null && maxPoints < 1)
+            throw new IllegalArgumentException("maxPoints muss mindestens 1 sein: " + maxPoints);
+    }
+
+    // Beantwortet eine History-Anfrage mit mehreren Seiten in zeitlicher Reihenfolge.
+    // Ist der Bereich nach MAX_PAGES_PER_REQUEST Seiten nicht erschöpft, trägt die letzte
+    // Seite ein Fortsetzungstoken ("next"), das der Client als "cursor" zurückschickt.
+    void history(WsMsgs.History req, WsConnection session) {
+        SymbolKey key = toKey(req.symbolId, req.venueId, req.channel);
+        if (key == null)
+            return;
+        checkMaxPoints(req.maxPoints);
+        boolean quotes = "quotes".equals(req.frame);
+        if (quotes)
+            simpleQuoteConsumer.touch(key);
+        else
+            candleQuoteConsumer.touch(key);
+
+        long to = req.to != null ? req.to : clock.millis() / 1000;
+        long from = req.from != null ? req.from : to - 3600;
+        int pageSize = req.pageSize != null ? Math.max(1, Math.min(req.pageSize, MAX_PAGE_SIZE))
+                : DEFAULT_PAGE_SIZE;
+
+        long cursorFrom = from;
+        int skip = 0;
+        if (req.cursor != null && !req.cursor.isEmpty()) {
+            String[] parts = req.cursor.split(":");
+            if (parts.length != 2)
+                throw new IllegalArgumentException("Ungültiger Cursor: " + req.cursor);
+            cursorFrom = Long.parseLong(parts[0]);
+            skip = Integer.parseInt(parts[1]);
+        }
+
+        if (quotes && req.maxPoints != null) {
+            // Downsampling braucht den ganzen Bereich; das Ergebnis ist durch maxPoints
+            // begrenzt und wird ohne Fortsetzungstoken in Seiten zerlegt
+            var sampled = QuoteDownsampler.lttb(
+                    simpleQuoteConsumer.getQuotes(key, cursorFrom, to, skip, Integer.MAX_VALUE), req.maxPoints);
+            int pages = Math.max(1, (sampled.size() + pageSize - 1) / pageSize);
+            for (int page = 0; page < pages; page++) {
+                var msg = new WsMsgs.HistoryPage();
+                msg.requestId = req.requestId;
+                msg.key = key;
+                msg.frame = "quotes";
+                msg.page = page;
+                msg.data = sampled.subList(page * pageSize, Math.min(sampled.size(), (page + 1) * pageSize));
+                msg.done = page == pages - 1;
+                sendJson(session, msg);
+            }
+            return;
+        }
+
+        for (int page = 0;; page++) {
+            List<?> data;
+            if (quotes) {
+                var list = simpleQuoteConsumer.getQuotes(key, cursorFrom, to, skip, pageSize);
+                if (!list.isEmpty()) {
+                    // Quotes können sich einen Zeitstempel teilen: Position innerhalb der
+                    // letzten Sekunde über skip merken
+                    long lastTs = list.get(list.size() - 1).tsUnixSec();
+                    int sameTs = 0;
+                    for (int i = list.size() - 1; i >= 0 && list.get(i).tsUnixSec() == lastTs; i--)
+                        sameTs++;
+                    skip = (lastTs == cursorFrom) ? skip + sameTs : sameTs;
+                    cursorFrom = lastTs;
+                }
+                data = list;
+            } else {
+                var list = candleQuoteConsumer.getCandles(key, cursorFrom, to, pageSize);
+                if (!list.isEmpty()) {
+                    cursorFrom = list.get(list.size() - 1).bucketStartSec() + 1;
+                    skip = 0;
+                }
+                data = list;
+            }
+
+            boolean done = data.size() < pageSize;
+            boolean budgetExhausted = page + 1 >= MAX_PAGES_PER_REQUEST;
+
+            var msg = new WsMsgs.HistoryPage();
+            msg.requestId = req.requestId;
+            msg.key = key;
+            msg.frame = quotes ? "quotes" : "candles";
+            msg.page = page;
+            msg.data = data;
+            msg.done = done;
+            msg.next = (!done && budgetExhausted) ? cursorFrom + ":" + skip : null;
+            sendJson(session, msg);
+
+            if (done || budgetExhausted)
+                break;
+        }
+    }
+
+    // Kennzahlen (min/max/Summe/Durchschnitt/VWAP) über [from, to] aus dem Aggregat-Index,
+    // damit Ticker-Widgets dafür keine Rohdaten laden müssen. Ohne from/to: letzte Stunde.
+    void stats(WsMsgs.Stats req, WsConnection session) {
+        SymbolKey key = toKey(req.symbolId, req.venueId, req.channel);
+        if (key == null)
+            return;
+        long to = req.to != null ? req.to : clock.millis() / 1000;
+        long from = req.from != null ? req.from : to - 3600;
+
+        simpleQuoteConsumer.touch(key);
+        var reply = new WsMsgs.StatsReply();
+        reply.requestId = req.requestId;
+        reply.key = key;
+        reply.data = simpleQuoteConsumer.getStats(key, from, to);
+        sendJson(session, reply);
+    }
+
+    // Kursalarme der Session anlegen, entfernen oder auflisten; die Antwort ("alerts") enthält
+    // die betroffenen Alarme. Jeder offene Alarm hält das Symbol bei Stock3 abonniert.
+    void alert(WsMsgs.AlertReq req, WsConnection session) {
+        var reply = new WsMsgs.Alerts();
+        reply.requestId = req.requestId;
+        if ("alert".equals(req.action)) {
+            SymbolKey key = toKey(req.symbolId, req.venueId, req.channel);
+            if (key == null || req.threshold == null || req.direction == null)
+                throw new IllegalArgumentException("alert braucht symbolId, venueId, direction und threshold");
+            var direction = Alert.Direction.valueOf(req.direction.toUpperCase(Locale.ROOT));
+            upstream.acquire(key);
+            try {
+                reply.data = List.of(alertConsumer.register(session.id(), key, direction, req.threshold));
+            } catch (RuntimeException e) {
+                upstream.release(key);
+                throw e;
+            }
+        } else if ("cancelAlert".equals(req.action)) {
+            Alert removed = req.id == null ? null : alertConsumer.cancel(session.id(), req.id);
+            if (removed != null)
+                upstream.release(removed.key());
+            reply.data = removed == null ? List.of() : List.of(removed);
+        } else {
+            reply.data = alertConsumer.getAlerts(session.id());
+        }
+        sendJson(session, reply);
+    }
+
+    // Topics ohne Symbolbezug; derzeit nur "correlation". Beim Abonnieren kommt sofort der
+    // aktuelle Stand, danach höchstens alle analytics.publish-ms ein neuer, falls geändert.
+    void topic(WsMsgs.Topic req, WsConnection session) {
+        if (!"correlation".equals(req.topic))
+            throw new IllegalArgumentException("Unbekanntes Topic: " + req.topic);
+        if ("unsubscribeTopic".equals(req.action)) {
+            correlationSubscribers.remove(session.id());
+            return;
+        }
+        correlationSubscribers.add(session.id());
+        sendJson(session, topicUpdate("correlation", correlationConsumer.snapshot()));
+    }
+
+    private void publishCorrelation() {
+        try {
+            long v = correlationConsumer.version();
+            if (correlationSubscribers.isEmpty() || v == correlationVersion)
+                return;
+            correlationVersion = v;
+            // Einmal kodieren, an alle Abonnenten dieselbe Nachricht senden
+            OutboundFrame frame = encoder.encode(topicUpdate("correlation", correlationConsumer.snapshot()));
+            for (String id : correlationSubscribers) {
+                WsConnection session = sessions.get(id);
+                if (session != null)
+                    sendFrame(session, frame);
+            }
+        } catch (Exception e) {
+            logger.errorv(e, "Fehler beim Verteilen der Korrelationsmatrix");
+        }
+    }
+
+    // Das Upstream-Abo endet erst nach der Nachlaufzeit; kam inzwischen ein neuer Abonnent,
+    // bleibt das Symbol in den Consumern beobachtet
+    private void onUpstreamUnsubscribe(SymbolKey key) {
+        if (upstream.refCount(key) == 0) {
+            simpleQuoteConsumer.unwatch(key);
+            candleQuoteConsumer.unwatch(key);
+        }
+        unsubEvent.fire(new UnsubEvent(key));
+    }
+
+    private void dropIdleSymbols() {
+        try {
+            int quotes = simpleQuoteConsumer.dropIdle(idleDropMs);
+            int candles = candleQuoteConsumer.dropIdle(idleDropMs);
+            if (quotes + candles > 0)
+                logger.infov("Zustand ohne Abonnenten verworfen: {0} Zeitreihen, {1} Candle-Reihen", quotes, candles);
+        } catch (Exception e) {
+            logger.errorv(e, "Fehler beim Verwerfen ungenutzter Symbole");
+        }
+    }
+
+    private static WsMsgs.TopicUpdate topicUpdate(String topic, Object data) {
+        var msg = new WsMsgs.TopicUpdate();
+        msg.topic = topic;
+        msg.data = data;
+        return msg;
+    }
+
+    // Ausgelöste Alarme gehen an die Session, die sie angelegt hat
+    void onAlertEvent(@ObservesAsync AlertEvent ev) {
+        for (AlertTrigger t : ev.triggers())
+            upstream.release(t.alert().key());
+        WsConnection session = sessions.get(ev.owner());
+        if (session == null)
+            return;
+        // Alarme feuern nur einmal; die Outbox verwirft sie nie, sie gehen höchstens mit der
+        // Session verloren, wenn der Client zu langsam ist
+        var msg = new WsMsgs.AlertTriggered();
+        msg.data = ev.triggers();
+        sendJson(session, msg);
+    }
+
+    void onCandleEvent(@ObservesAsync CandleEvent ev) {
+        SymbolKey key = ev.symbolKey();
+
+        Candle c = candleQuoteConsumer.getLatestCandle(key);
+        if (c == null)
+            c = candleQuoteConsumer.getLastKnownCandle(key);
+        if (c == null)
+            return;
+
+        // Einmal kodieren, an alle Abonnenten dieselbe Nachricht senden
+        OutboundFrame frame = encoder.candle(key, c);
+
+        for (WsConnection session : index.subscribers(key)) {
+            sendFrame(session, frame);
+        }
+    }
+
+    void onQuoteEvent(@ObservesAsync QuoteEvent ev) {
+        SymbolKey key = ev.key();
+
+        long seq = simpleQuoteConsumer.getSeq(key);
+        var q = simpleQuoteConsumer.getLast(key);
+        if (q == null)
+            q = simpleQuoteConsumer.getLastKnown(key);
+        if (q == null)
+            return;
+
+        Quote base = lastBroadcast.put(key, q);
+        OutboundFrame frame = encoder.quote(key, q, base, seq);
+
+        for (WsConnection session : index.subscribers(key)) {
+            sendFrame(session, frame);
+        }
+    }
+
+    // Warteschlangentiefe und Zähler aller Sessions sowie der anfragenden Session
+    WsMsgs.Metrics metrics(WsConnection session) {
+        var m = new WsMsgs.Metrics();
+        for (SessionOutbox outbox : outboxes.values()) {
+            var st = outbox.stats();
+            m.sessions++;
+            m.queued += st.depth();
+            m.sent += st.sent();
+            m.messages += st.messages();
+            m.conflated += st.conflated();
+            m.dropped += st.dropped();
+        }
+        SessionOutbox own = outboxes.get(session.id());
+        m.own = own == null ? null : own.stats();
+        m.snapshotCache = snapshotCache.stats();
+        m.upstream = upstream.stats();
+        m.cluster = cluster.stats();
+        m.events = executors.stats();
+        m.alerts = alertConsumer.stats();
+        m.consumers = Map.of("quotes", simpleQuoteConsumer.materialized(),
+                "candles", candleQuoteConsumer.materialized());
+        m.memory = Map.of("buffer", buffer.memory(), "quotes", simpleQuoteConsumer.memory());
+        m.retention = retention.stats();
+        m.source = quoteController.stats();
+        return m;
+    }
+
+    private static SymbolKey toKey(WsMsgs.Sub sub) {
+        return toKey(sub.symbolId, sub.venueId, sub.channel);
+    }
+
+    private static SymbolKey toKey(String symbolId, String venueId, String channel) {
+        if (venueId == null || symbolId == null)
+            return null;
+        return new SymbolKey(symbolId, venueId, channel == null ? "last" : channel);
+    }
+
+    private void sendJson(WsConnection s, Object obj) {
+        try {
+            sendFrame(s, encoder.encode(obj));
+        } catch (Exception e) {
+            logger.errorv(e, "Fehler beim Kodieren der JSON-Nachricht");
+        }
+    }
+
+    private void sendFrame(WsConnection s, OutboundFrame frame) {
+        SessionOutbox outbox = outboxes.get(s.id());
+        if (outbox == null || !s.isOpen())
+            return;
+        if (logger.isDebugEnabled())
+            logger.debugv("Sende {0}-Nachricht über WebSocket an {1}", frame.type(), s.id());
+        outbox.offer(frame);
+    }
+}
\ No newline at end of file
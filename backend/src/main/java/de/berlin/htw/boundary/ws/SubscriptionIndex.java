@@ -0,0 +1,49 @@
+package de.berlin.htw.boundary.ws;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Invertierter Index SymbolKey -> abonnierende Sessions. Fan-out berührt damit nur die
+ * Sessions, die das Symbol tatsächlich abonniert haben.
+ */
+public final class SubscriptionIndex<S> {
+
+    private final Map<SymbolKey, Set<S>> index = new ConcurrentHashMap<>();
+
+    public void add(SymbolKey key, S subscriber) {
+        index.compute(key, (k, set) -> {
+            if (set == null)
+                set = ConcurrentHashMap.newKeySet();
+            set.add(subscriber);
+            return set;
+        });
+    }
+
+    public void remove(SymbolKey key, S subscriber) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    public void removeAll(Iterable<SymbolKey> keys, S subscriber) {
+        for (SymbolKey key : keys)
+            remove(key, subscriber);
+    }
+
+    /**
+     * Live-Sicht auf die Abonnenten eines Symbols (leer, wenn niemand abonniert hat).
+     */
+    public Set<S> subscribers(SymbolKey key) {
+        Set<S> set = index.get(key);
+        return set == null ? Set.of() : set;
+    }
+
+    public boolean hasSubscribers(SymbolKey key) {
+        return index.containsKey(key);
+    }
+}
@@ -0,0 +1,101 @@
+package de.berlin.htw.boundary.ws;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Referenzzähler zwischen Client-Sessions und dem Upstream-Abo bei Stock3. Das erste acquire()
+ * eines Symbols abonniert upstream, das letzte release() beendet das Abo erst nach der
+ * Nachlaufzeit (linger). Kommt in der Zwischenzeit wieder ein Abonnent (Reload, Tab-Wechsel),
+ * bleibt das Upstream-Abo einfach bestehen.
+ */
+public final class UpstreamSubscriptions {
+
+    public record Stats(int active, int lingering, long subscribes, long unsubscribes) {
+    }
+
+    private final Consumer<SymbolKey> subscribe;
+    private final Consumer<SymbolKey> unsubscribe;
+    private final ScheduledExecutorService scheduler;
+    private final long lingerMs;
+
+    // guarded by this
+    private final Map<SymbolKey, Integer> refs = new HashMap<>();
+    private final Map<SymbolKey, ScheduledFuture<?>> lingering = new HashMap<>();
+
+    private final AtomicLong subscribes = new AtomicLong();
+    private final AtomicLong unsubscribes = new AtomicLong();
+
+    public UpstreamSubscriptions(Consumer<SymbolKey> subscribe, Consumer<SymbolKey> unsubscribe,
+            ScheduledExecutorService scheduler, long lingerMs) {
+        this.subscribe = subscribe;
+        this.unsubscribe = unsubscribe;
+        this.scheduler = scheduler;
+        this.lingerMs = Math.max(0, lingerMs);
+    }
+
+    public void acquire(SymbolKey key) {
+        boolean first;
+        synchronized (this) {
+            first = refs.merge(key, 1, Integer::sum) == 1;
+            if (first) {
+                ScheduledFuture<?> pending = lingering.remove(key);
+                // Abo läuft upstream noch, nur das geplante Beenden abbrechen. Auch wenn cancel()
+                // zu spät kommt, weil expire() schon auf den Monitor wartet: expire() findet den
+                // Schlüssel dann wieder in refs und bestellt nicht ab
+                if (pending != null) {
+                    pending.cancel(false);
+                    first = false;
+                }
+            }
+        }
+        if (first) {
+            subscribes.incrementAndGet();
+            subscribe.accept(key);
+        }
+    }
+
+    public void release(SymbolKey key) {
+        synchronized (this) {
+            Integer n = refs.get(key);
+            if (n == null)
+                return;
+            if (n > 1) {
+                refs.put(key, n - 1);
+                return;
+            }
+            refs.remove(key);
+            if (lingerMs > 0) {
+                lingering.put(key, scheduler.schedule(() -> expire(key), lingerMs, TimeUnit.MILLISECONDS));
+                return;
+            }
+        }
+        unsubscribes.incrementAndGet();
+        unsubscribe.accept(key);
+    }
+
+    public synchronized int refCount(SymbolKey key) {
+        return refs.getOrDefault(key, 0);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(refs.size(), lingering.size(), subscribes.get(), unsubscribes.get());
+    }
+
+    private void expire(SymbolKey key) {
+        synchronized (this) {
+            // Zwischenzeitlich wieder abonniert oder bereits abgebrochen
+            if (refs.containsKey(key) || lingering.remove(key) == null)
+                return;
+        }
+        unsubscribes.incrementAndGet();
+        unsubscribe.accept(key);
+    }
+}
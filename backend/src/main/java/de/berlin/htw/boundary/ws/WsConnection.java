@@ -0,0 +1,20 @@
+package de.berlin.htw.boundary.ws;
+
+import de.berlin.htw.boundary.ws.outbound.SessionOutbox;
+
+/**
+ * Eine Client-Verbindung, unabhängig vom WebSocket-Stack. Implementierungen müssen equals/hashCode
+ * über die zugrunde liegende Verbindung definieren, da sie als Schlüssel im Fan-out-Index dienen.
+ */
+public interface WsConnection {
+
+    String id();
+
+    /** true, wenn der Client das Binär-Subprotokoll ausgehandelt hat */
+    boolean binary();
+
+    boolean isOpen();
+
+    /** Schreibende Seite für die {@link SessionOutbox} dieser Verbindung */
+    SessionOutbox.Sink sink();
+}
@@ -1,29 +1,94 @@
 package de.berlin.htw.boundary.ws.client;
 
 import java.net.URI;
-import java.util.Set;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
+import de.berlin.htw.boundary.cluster.ClusterNode;
+import de.berlin.htw.boundary.source.MarketDataSink;
+import de.berlin.htw.boundary.source.MarketDataSource;
+import de.berlin.htw.boundary.source.ReplaySource;
+import de.berlin.htw.boundary.source.SyntheticSource;
 import de.berlin.htw.boundary.ws.dto.SubEvent;
 import de.berlin.htw.boundary.ws.dto.UnsubEvent;
+import de.berlin.htw.trading.events.EventExecutors;
+import de.berlin.htw.trading.events.InitialQuoteEvent;
+import de.berlin.htw.trading.events.QuoteDeltaEvent;
+import de.berlin.htw.trading.quote.dto.DeltaQuote;
+import de.berlin.htw.trading.quote.dto.Quote;
 import de.berlin.htw.trading.quote.dto.SymbolKey;
 import io.quarkus.runtime.Startup;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
-import jakarta.websocket.ContainerProvider;
-import jakarta.websocket.Session;
-import jakarta.websocket.WebSocketContainer;
 
+/**
+ * Startet die Kursquelle (marketdata.source, siehe {@link MarketDataSource}) und reicht ihre
+ * Quotes als Events an den Buffer weiter. Abos der Clients werden pro Symbol gezählt und nur
+ * beim ersten bzw. letzten Abonnenten an die Quelle gemeldet.
+ */
 @Startup  // Diese Annotation sorgt dafür, dass die Bean beim Start initialisiert wird
 @ApplicationScoped
 public class QuoteController {
 
-    private Session session;
-    private Set<SymbolKey> subscriptions = ConcurrentHashMap.newKeySet();
+    public static final String STOCK3 = "stock3";
+    public static final String SYNTHETIC = "synthetic";
+    public static final String REPLAY = "replay";
+
+    private MarketDataSource source;
+    // Anzahl der Abonnenten pro Aktie (lokale Sessions und, auf dem Ingest-Knoten, Gateways)
+    private Map<SymbolKey, Integer> subscriptions = new ConcurrentHashMap<>();
+
+    @ConfigProperty(name = "cluster.role", defaultValue = ClusterNode.STANDALONE)
+    String role;
+
+    @ConfigProperty(name = "marketdata.source", defaultValue = STOCK3)
+    String sourceName;
+
+    @ConfigProperty(name = "marketdata.stock3.uri", defaultValue = "wss://quotepush.stock3.com/delta")
+    String stock3Uri;
+
+    // Leer: keine Aufzeichnung der Stock3-Frames
+    @ConfigProperty(name = "marketdata.capture-file")
+    Optional<String> captureFile;
+
+    @ConfigProperty(name = "marketdata.replay.file", defaultValue = "capture.log")
+    String replayFile;
+
+    @ConfigProperty(name = "marketdata.replay.speed", defaultValue = "1.0")
+    double replaySpeed;
+
+    @ConfigProperty(name = "marketdata.replay.loop", defaultValue = "false")
+    boolean replayLoop;
+
+    @ConfigProperty(name = "marketdata.synthetic.symbols", defaultValue = "10")
+    int syntheticSymbols;
+
+    @ConfigProperty(name = "marketdata.synthetic.rate", defaultValue = "10")
+    double syntheticRate;
+
+    @ConfigProperty(name = "marketdata.synthetic.process", defaultValue = SyntheticSource.GBM)
+    String syntheticProcess;
+
+    @ConfigProperty(name = "marketdata.synthetic.volatility", defaultValue = "0.0005")
+    double syntheticVolatility;
+
+    @ConfigProperty(name = "marketdata.synthetic.jump-intensity", defaultValue = "0.01")
+    double syntheticJumpIntensity;
+
+    @ConfigProperty(name = "marketdata.synthetic.jump-std-dev", defaultValue = "0.02")
+    double syntheticJumpStdDev;
+
+    @ConfigProperty(name = "marketdata.synthetic.seed", defaultValue = "42")
+    long syntheticSeed;
 
     @Inject
     Logger logger;
@@ -31,63 +96,100 @@ public class QuoteController {
     @Inject
     QuoteClient quoteClient;  // Injiziere den QuoteClient
 
-    @PostConstruct
-    public void start() {
-        logger.info("QuoteController wird gestartet...");
+    @Inject
+    Event<InitialQuoteEvent> quoteEvent;
 
-        try {
-            // WICHTIG: Erstelle den WebSocketContainer
-            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+    @Inject
+    Event<QuoteDeltaEvent> quoteDeltaEvent;
+
+    // Ingest-Spuren nach Subscription-ID: Kurse eines Symbols bleiben in Reihenfolge
+    @Inject
+    EventExecutors executors;
+
+    // Quotes jeder Quelle laufen als Events über die Ingest-Spuren in den Buffer
+    private final MarketDataSink sink = new MarketDataSink() {
+        @Override
+        public void initial(Quote quote) {
+            quoteEvent.fireAsync(new InitialQuoteEvent(quote), executors.of(InitialQuoteEvent.class, quote.subId()));
+        }
 
-            // Verbinde dich mit dem Stock3-Server
-            URI uri = URI.create("wss://quotepush.stock3.com/delta");
-            logger.infov("Verbinde mit Stock3-Server: {0}", uri);
+        @Override
+        public void delta(DeltaQuote delta) {
+            quoteDeltaEvent.fireAsync(new QuoteDeltaEvent(delta), executors.of(QuoteDeltaEvent.class, delta.subId()));
+        }
+    };
 
-            // Erstelle die Session mit dem QuoteClient
-            this.session = container.connectToServer(quoteClient, uri);
+    @PostConstruct
+    public void start() {
+        // Gateway-Knoten bekommen ihre Kurse vom Ingest-Knoten
+        if (ClusterNode.GATEWAY.equals(role)) {
+            logger.info("Gateway-Knoten: keine eigene Kursquelle");
+            return;
+        }
 
-            logger.info("Erfolgreich mit Stock3-Server verbunden!");
+        logger.infov("QuoteController wird gestartet, Kursquelle: {0}", sourceName);
 
+        try {
+            MarketDataSource s = switch (sourceName) {
+                case SYNTHETIC -> new SyntheticSource(new SyntheticSource.Config(syntheticSymbols, syntheticRate,
+                        syntheticProcess, syntheticVolatility, syntheticJumpIntensity, syntheticJumpStdDev,
+                        syntheticSeed));
+                case REPLAY -> new ReplaySource(Path.of(replayFile), replaySpeed, replayLoop);
+                case STOCK3 -> new Stock3Source(quoteClient, URI.create(stock3Uri),
+                        captureFile.filter(f -> !f.isBlank()).map(Path::of).orElse(null));
+                default -> throw new IllegalArgumentException("Unbekannte Kursquelle: " + sourceName);
+            };
+            s.start(sink);
+            this.source = s;
         } catch (Exception e) {
-            logger.error("Fehler beim Verbinden mit Stock3-Server", e);
-            // Beende die Anwendung, wenn die Verbindung fehlschlägt
+            logger.error("Fehler beim Starten der Kursquelle " + sourceName, e);
+            // Beende die Anwendung, wenn die Quelle nicht startet
             System.exit(1);
         }
 
         logger.info("QuoteController erfolgreich gestartet.");
     }
 
+    /**
+     * Kennzahlen der Kursquelle für "metrics"; null auf Gateway-Knoten.
+     */
+    public Object stats() {
+        return source == null ? null : source.stats();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (source != null)
+            source.close();
+    }
+
     // Diese Methode wird aufgerufen, wenn ein Frontend-Client eine Aktie abonniert
-    protected void subscribe(@Observes SubEvent ev) {
+    protected synchronized void subscribe(@Observes SubEvent ev) {
+        if (this.source == null)
+            return; // Gateway-Knoten
         // Prüfe, ob wir diese Aktie schon abonniert haben
-        if (this.subscriptions.add(ev.key())) {
+        if (this.subscriptions.merge(ev.key(), 1, Integer::sum) == 1) {
             logger.infov("Abonniere Kurse für {0}", ev.key());
-
-            // Sende die Subscribe-Nachricht an Stock3
-            // Format: "a" + symbolId + ":" + venueId + ":" + channel
-            // Beispiel: a133962:22:last
-            String message = ev.toMessage();
-            logger.infov("Sende an Stock3: {0}", message);
-
-            this.session.getAsyncRemote().sendText(message);
+            this.source.subscribe(ev.key());
         } else {
             logger.infov("Bereits abonniert: {0}", ev.key());
         }
     }
 
     // Diese Methode wird aufgerufen, wenn ein Frontend-Client ein Abo beendet
-    protected void unsubscribe(@Observes UnsubEvent ev) {
+    protected synchronized void unsubscribe(@Observes UnsubEvent ev) {
+        if (this.source == null)
+            return; // Gateway-Knoten
+        // Weitere Abonnenten vorhanden: Abo bei Stock3 bleibt bestehen
+        Integer count = this.subscriptions.get(ev.key());
+        if (count != null && count > 1) {
+            this.subscriptions.put(ev.key(), count - 1);
+            return;
+        }
         // Prüfe, ob wir diese Aktie abonniert haben
-        if (this.subscriptions.remove(ev.key())) {
+        if (this.subscriptions.remove(ev.key()) != null) {
             logger.infov("Beende Abo für {0}", ev.key());
-
-            // Sende die Unsubscribe-Nachricht an Stock3
-            // Format: "r" + symbolId + ":" + venueId + ":" + channel
-            // Beispiel: r133962:22:last
-            String message = ev.toMessage();
-            logger.infov("Sende an Stock3: {0}", message);
-
-            this.session.getAsyncRemote().sendText(message);
+            this.source.unsubscribe(ev.key());
         } else {
             logger.infov("Nicht abonniert: {0}", ev.key());
         }
@@ -0,0 +1,93 @@
+package de.berlin.htw.boundary.ws.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+
+import org.jboss.logging.Logger;
+
+import de.berlin.htw.boundary.source.CaptureWriter;
+import de.berlin.htw.boundary.source.MarketDataSink;
+import de.berlin.htw.boundary.source.MarketDataSource;
+import de.berlin.htw.boundary.ws.dto.SubEvent;
+import de.berlin.htw.boundary.ws.dto.UnsubEvent;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.Session;
+import jakarta.websocket.WebSocketContainer;
+
+/**
+ * Live-Kurse von Stock3 über den {@link QuoteClient}-Endpunkt. Optional werden alle
+ * empfangenen Frames für {@link de.berlin.htw.boundary.source.ReplaySource} aufgezeichnet.
+ */
+public final class Stock3Source implements MarketDataSource {
+
+    private static final Logger LOG = Logger.getLogger(Stock3Source.class);
+
+    public record Stats(String uri, boolean open, long frames, String captureFile) {
+    }
+
+    private final QuoteClient client;
+    private final URI uri;
+    private final Path captureFile;
+    private CaptureWriter capture;
+    private Session session;
+
+    public Stock3Source(QuoteClient client, URI uri, Path captureFile) {
+        this.client = client;
+        this.uri = uri;
+        this.captureFile = captureFile;
+    }
+
+    @Override
+    public void start(MarketDataSink sink) throws Exception {
+        if (captureFile != null) {
+            capture = new CaptureWriter(captureFile);
+            LOG.infov("Zeichne Stock3-Frames auf in {0}", captureFile);
+        }
+        client.attach(sink, capture);
+
+        // WICHTIG: Erstelle den WebSocketContainer
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        LOG.infov("Verbinde mit Stock3-Server: {0}", uri);
+        this.session = container.connectToServer(client, uri);
+        LOG.info("Erfolgreich mit Stock3-Server verbunden!");
+    }
+
+    // Format: "a" + symbolId + ":" + venueId + ":" + channel, Beispiel: a133962:22:last
+    @Override
+    public void subscribe(SymbolKey key) {
+        send(new SubEvent(key).toMessage());
+    }
+
+    // Format: "r" + symbolId + ":" + venueId + ":" + channel, Beispiel: r133962:22:last
+    @Override
+    public void unsubscribe(SymbolKey key) {
+        send(new UnsubEvent(key).toMessage());
+    }
+
+    private void send(String message) {
+        if (session == null)
+            return;
+        LOG.infov("Sende an Stock3: {0}", message);
+        session.getAsyncRemote().sendText(message);
+    }
+
+    @Override
+    public Stats stats() {
+        return new Stats(uri.toString(), session != null && session.isOpen(), client.frames(),
+                captureFile == null ? null : captureFile.toString());
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (session != null)
+                session.close();
+        } catch (IOException e) {
+            LOG.debugv(e, "Stock3-Verbindung nicht sauber geschlossen");
+        }
+        if (capture != null)
+            capture.close();
+    }
+}
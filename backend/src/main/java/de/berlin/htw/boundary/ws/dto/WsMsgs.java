@@ -1,5 +1,10 @@
 package de.berlin.htw.boundary.ws.dto;
 
+import java.util.List;
+
+import de.berlin.htw.trading.quote.dto.RangeStats;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
 public final class WsMsgs {
     public static final class Sub {
         public String action;
@@ -7,9 +12,140 @@ public final class WsMsgs {
         public String venueId;
         public String channel;
         public Integer window;
+        public Integer maxPoints;
+        // nur bei "resume": letzte vom Client gesehene Buffer-Sequenz dieses Symbols
+        public Long seq;
+    }
+
+    public static final class Resume {
+        public String action;
+        public Long epoch;
+        public List<Sub> subs;
+    }
+
+    public static final class Configure {
+        public String action;
+        public Boolean delta;
+        public Integer flushMs;
+    }
+
+    public static final class History {
+        public String action;
+        public String requestId;
+        public String symbolId;
+        public String venueId;
+        public String channel;
+        public String frame;
+        public Long from;
+        public Long to;
+        public Integer pageSize;
+        public Integer maxPoints;
+        public String cursor;
+    }
+
+    public static final class HistoryPage {
+        public String type = "history";
+        public String requestId;
+        public SymbolKey key;
+        public String frame;
+        public int page;
+        public List<?> data;
+        public String next;
+        public boolean done;
+    }
+
+    public static final class Stats {
+        public String action;
+        public String requestId;
+        public String symbolId;
+        public String venueId;
+        public String channel;
+        public Long from;
+        public Long to;
+    }
+
+    public static final class StatsReply {
+        public String type = "stats";
+        public String requestId;
+        public SymbolKey key;
+        public RangeStats data;
+    }
+
+    // "alert" legt einen Kursalarm an (direction "above" | "below"), "cancelAlert" entfernt
+    // ihn per id, "alerts" listet die offenen Alarme der Session
+    public static final class AlertReq {
+        public String action;
+        public String requestId;
+        public String symbolId;
+        public String venueId;
+        public String channel;
+        public String direction;
+        public Double threshold;
+        public Long id;
+    }
+
+    public static final class Alerts {
+        public String type = "alerts";
+        public String requestId;
+        public List<?> data;
+    }
+
+    public static final class AlertTriggered {
+        public String type = "alert";
+        public List<?> data;
+    }
+
+    // "subscribeTopic" / "unsubscribeTopic" für abgeleitete Daten ohne Symbolbezug,
+    // z.B. topic "correlation"
+    public static final class Topic {
+        public String action;
+        public String topic;
+    }
+
+    public static final class TopicUpdate {
+        public String type = "topic";
+        public String topic;
+        public Object data;
+    }
+
+    public static final class Metrics {
+        public String type = "metrics";
+        public int sessions;
+        public long queued;
+        public long sent;
+        public long messages;
+        public long conflated;
+        public long dropped;
+        public Object own;
+        public Object snapshotCache;
+        public Object upstream;
+        public Object cluster;
+        public Object events;
+        public Object alerts;
+        // Anzahl der Symbole mit aufgebautem Zustand pro Consumer
+        public Object consumers;
+        // Belegung der Speicherbudgets (Buffer, Quote-Consumer)
+        public Object memory;
+        // Hintergrund-Retention: Läufe, abgelaufene Symbole, eingeplante Fristen pro Komponente
+        public Object retention;
+        // Kennzahlen der Kursquelle (marketdata.source); null auf Gateway-Knoten
+        public Object source;
+    }
+
+    public static final class Configured {
+        public String type = "configured";
+        public long epoch;
+        public boolean delta;
+        public int flushMs;
+    }
+
+    public static final class Resumed {
+        public String type = "resumed";
+        public boolean full;
+        public int replayed;
     }
 
     public static final class Pong {
         public String type = "pong";
     }
-}
\ No newline at end of file
+}
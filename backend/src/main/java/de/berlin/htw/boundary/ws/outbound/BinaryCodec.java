@@ -0,0 +1,132 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import de.berlin.htw.trading.candle.dto.Candle;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Binäres Subprotokoll "quotes.bin.v1": Frames mit fester Länge, little-endian.
+ *
+ * <pre>
+ * Quote (type 1, 96 Bytes)              Candle (type 2, 64 Bytes)
+ *  0 u8  type                             0 u8  type
+ *  1 u8  flags (bit0 active)              1 u8  flags (0)
+ *  2 u16 presence                         2 u16 presence (bit0 precision)
+ *  4 i32 handle                           4 i32 handle
+ *  8 i64 tsUnixSec                        8 i64 bucketStartSec
+ * 16 i64 tick                            16 f64 open
+ * 24 f64 price                           24 f64 high
+ * 32 f64 high       (presence bit0)      32 f64 low
+ * 40 f64 low        (presence bit1)      40 f64 close
+ * 48 f64 open       (presence bit2)      48 i64 ticks
+ * 56 f64 prevClose  (presence bit3)      56 f64 precision
+ * 64 f64 abs
+ * 72 f64 rel
+ * 80 f64 tickSize
+ * 88 f64 precision  (presence bit4)
+ * </pre>
+ *
+ * Nicht gesetzte optionale Felder werden als 0 geschrieben und über die presence-Maske
+ * als null markiert.
+ */
+public final class BinaryCodec {
+
+    public static final String SUBPROTOCOL = "quotes.bin.v1";
+    public static final String JSON_SUBPROTOCOL = "quotes.json.v1";
+
+    public static final byte TYPE_QUOTE = 1;
+    public static final byte TYPE_CANDLE = 2;
+
+    public static final int QUOTE_SIZE = 96;
+    public static final int CANDLE_SIZE = 64;
+
+    private BinaryCodec() {
+    }
+
+    public static ByteBuffer encodeQuote(int handle, Quote q) {
+        ByteBuffer b = ByteBuffer.allocate(QUOTE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        writeQuote(b, handle, q);
+        return b.flip();
+    }
+
+    public static void writeQuote(ByteBuffer b, int handle, Quote q) {
+        int presence = 0;
+        if (q.high() != null)
+            presence |= 1;
+        if (q.low() != null)
+            presence |= 1 << 1;
+        if (q.open() != null)
+            presence |= 1 << 2;
+        if (q.prevClose() != null)
+            presence |= 1 << 3;
+        if (q.precision() != null)
+            presence |= 1 << 4;
+
+        b.put(TYPE_QUOTE)
+                .put((byte) (q.active() ? 1 : 0))
+                .putShort((short) presence)
+                .putInt(handle)
+                .putLong(q.tsUnixSec())
+                .putLong(q.tick())
+                .putDouble(q.price())
+                .putDouble(orZero(q.high()))
+                .putDouble(orZero(q.low()))
+                .putDouble(orZero(q.open()))
+                .putDouble(orZero(q.prevClose()))
+                .putDouble(q.abs())
+                .putDouble(q.rel())
+                .putDouble(q.tickSize())
+                .putDouble(orZero(q.precision()));
+    }
+
+    public static ByteBuffer encodeCandle(int handle, Candle c) {
+        ByteBuffer b = ByteBuffer.allocate(CANDLE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(TYPE_CANDLE)
+                .put((byte) 0)
+                .putShort((short) (c.precision() != null ? 1 : 0))
+                .putInt(handle)
+                .putLong(c.bucketStartSec())
+                .putDouble(c.open())
+                .putDouble(c.high())
+                .putDouble(c.low())
+                .putDouble(c.close())
+                .putLong(c.ticks())
+                .putDouble(orZero(c.precision()));
+        return b.flip();
+    }
+
+    /**
+     * Liest einen Quote-Frame ab der aktuellen Position (Gegenstück zu {@link #writeQuote}).
+     */
+    public static Quote readQuote(ByteBuffer b, SymbolKey key) {
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        b.get(); // type
+        boolean active = (b.get() & 1) != 0;
+        int presence = b.getShort() & 0xFFFF;
+        b.getInt(); // handle
+        long ts = b.getLong();
+        long tick = b.getLong();
+        double price = b.getDouble();
+        Double high = opt(b.getDouble(), presence, 0);
+        Double low = opt(b.getDouble(), presence, 1);
+        Double open = opt(b.getDouble(), presence, 2);
+        Double prevClose = opt(b.getDouble(), presence, 3);
+        double abs = b.getDouble();
+        double rel = b.getDouble();
+        double tickSize = b.getDouble();
+        Double precision = opt(b.getDouble(), presence, 4);
+        return new Quote(key, ts, price, high, low, open, prevClose, abs, rel, tickSize, active, tick, null,
+                precision);
+    }
+
+    private static double orZero(Double d) {
+        return d == null ? 0.0 : d;
+    }
+
+    private static Double opt(double v, int presence, int bit) {
+        return (presence & (1 << bit)) != 0 ? v : null;
+    }
+}
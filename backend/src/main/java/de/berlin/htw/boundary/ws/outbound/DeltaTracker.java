@@ -0,0 +1,54 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Merkt sich pro Session und Symbol das zuletzt gesendete Quote und ersetzt volle quote-Frames
+ * durch "qd"-Deltas mit den geänderten Feldern. Alle {@link #KEYFRAME_INTERVAL} Quotes eines
+ * Symbols geht wieder ein volles Quote (Keyframe) raus.
+ *
+ * Wird vom {@link SessionOutbox} beim Entnehmen aufgerufen, also nach der Konflation und nie
+ * nebenläufig für dieselbe Session.
+ */
+public final class DeltaTracker {
+
+    public static final int KEYFRAME_INTERVAL = 50;
+
+    private static final class State {
+        Quote lastSent;
+        int sinceKeyframe;
+    }
+
+    private final FrameEncoder encoder;
+    private final Map<SymbolKey, State> states = new HashMap<>();
+
+    public DeltaTracker(FrameEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    public OutboundFrame select(OutboundFrame frame) {
+        if (!(frame instanceof QuoteFrame qf))
+            return frame;
+
+        State st = states.computeIfAbsent(qf.key(), k -> new State());
+        Quote last = st.lastSent;
+        st.lastSent = qf.quote();
+
+        if (last == null || ++st.sinceKeyframe >= KEYFRAME_INTERVAL) {
+            st.sinceKeyframe = 0;
+            return frame;
+        }
+
+        // Normalfall: Session hat genau das zuvor verteilte Quote -> gemeinsamer Delta-Frame
+        OutboundFrame delta = (last == qf.base()) ? qf.delta() : encoder.quoteDelta(qf.key(), last, qf.quote(), qf.seq());
+        if (delta == null) {
+            st.sinceKeyframe = 0;
+            return frame;
+        }
+        return delta;
+    }
+}
@@ -0,0 +1,164 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.berlin.htw.trading.candle.dto.Candle;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import jakarta.json.bind.Jsonb;
+
+/**
+ * Kodiert {"type":…,"key":…,"data":…}-Nachrichten genau einmal pro Event. Das JSON-Fragment
+ * des Schlüssels wird pro SymbolKey zwischengespeichert. Quotes und Candles bekommen zusätzlich
+ * eine Binärform für das Subprotokoll {@link BinaryCodec#SUBPROTOCOL}.
+ */
+public final class FrameEncoder {
+
+    private final Jsonb jsonb;
+    private final Map<SymbolKey, String> keyFragments = new ConcurrentHashMap<>();
+    private final SymbolHandles handles = new SymbolHandles();
+
+    public FrameEncoder(Jsonb jsonb) {
+        this.jsonb = jsonb;
+    }
+
+    public OutboundFrame encode(String type, SymbolKey key, Object data) {
+        return encode(type, key, 0, data);
+    }
+
+    /**
+     * Wie {@link #encode(String, SymbolKey, Object)}, zusätzlich mit der Buffer-Sequenz (seq > 0),
+     * bis zu der die Daten den Stand des Symbols abbilden. Clients nutzen sie für "resume".
+     */
+    public OutboundFrame encode(String type, SymbolKey key, long seq, Object data) {
+        return new OutboundFrame(type, key, envelope(type, key, seq, data));
+    }
+
+    public OutboundFrame quote(SymbolKey key, Quote q) {
+        return quote(key, q, null, 0);
+    }
+
+    public QuoteFrame quote(SymbolKey key, Quote q, Quote base) {
+        return quote(key, q, base, 0);
+    }
+
+    /**
+     * Quote-Frame mit dem zuvor verteilten Quote als Basis für den gemeinsamen Delta-Frame.
+     */
+    public QuoteFrame quote(SymbolKey key, Quote q, Quote base, long seq) {
+        return new QuoteFrame(key, q, base, seq,
+                () -> envelope("quote", key, seq, q),
+                () -> BinaryCodec.encodeQuote(handles.handleFor(key), q),
+                () -> quoteDelta(key, base, q, seq));
+    }
+
+    /**
+     * "qd"-Nachricht mit den gegenüber prev geänderten Feldern: p (Preis), t (Sekunden seit prev),
+     * k (Tick-Delta), h/l (neues Hoch/Tief), a/r (abs/rel). Liefert null, wenn sich ein Feld
+     * geändert hat, das im Delta nicht vorkommt; dann muss ein volles Quote gesendet werden.
+     */
+    public OutboundFrame quoteDelta(SymbolKey key, Quote prev, Quote q, long seq) {
+        if (prev == null
+                || !Objects.equals(prev.open(), q.open())
+                || !Objects.equals(prev.prevClose(), q.prevClose())
+                || !Objects.equals(prev.precision(), q.precision())
+                || !Objects.equals(prev.subId(), q.subId())
+                || prev.tickSize() != q.tickSize()
+                || prev.active() != q.active()
+                || (q.high() == null && prev.high() != null)
+                || (q.low() == null && prev.low() != null))
+            return null;
+
+        var data = new StringBuilder(96);
+        if (Double.compare(prev.price(), q.price()) != 0 && !appendNum(data, "p", q.price()))
+            return null;
+        if (q.tsUnixSec() != prev.tsUnixSec())
+            data.append(",\"t\":").append(q.tsUnixSec() - prev.tsUnixSec());
+        if (q.tick() != prev.tick())
+            data.append(",\"k\":").append(q.tick() - prev.tick());
+        if (q.high() != null && !q.high().equals(prev.high()) && !appendNum(data, "h", q.high()))
+            return null;
+        if (q.low() != null && !q.low().equals(prev.low()) && !appendNum(data, "l", q.low()))
+            return null;
+        if (Double.compare(prev.abs(), q.abs()) != 0 && !appendNum(data, "a", q.abs()))
+            return null;
+        if (Double.compare(prev.rel(), q.rel()) != 0 && !appendNum(data, "r", q.rel()))
+            return null;
+
+        String body = data.length() == 0 ? "{}" : "{" + data.substring(1) + "}";
+        String text = "{\"type\":\"qd\",\"key\":" + keyFragment(key)
+                + (seq > 0 ? ",\"seq\":" + seq : "") + ",\"data\":" + body + "}";
+        return new OutboundFrame("qd", key, text);
+    }
+
+    private static boolean appendNum(StringBuilder sb, String name, double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v))
+            return false;
+        sb.append(",\"").append(name).append("\":").append(v);
+        return true;
+    }
+
+    public OutboundFrame candle(SymbolKey key, Candle c) {
+        return new OutboundFrame("candle", key,
+                () -> envelope("candle", key, c),
+                () -> BinaryCodec.encodeCandle(handles.handleFor(key), c));
+    }
+
+    /**
+     * Teilt einer Binär-Session das Handle eines Symbols mit.
+     */
+    public OutboundFrame handle(SymbolKey key) {
+        String text = "{\"type\":\"handle\",\"key\":" + keyFragment(key)
+                + ",\"handle\":" + handles.handleFor(key) + "}";
+        return new OutboundFrame("handle", key, text);
+    }
+
+    public OutboundFrame encode(Object msg) {
+        return new OutboundFrame(null, null, jsonb.toJson(msg));
+    }
+
+    /**
+     * Frame mit bereits kodierten Elementen eines JSON-Arrays (ohne Klammern) als data.
+     */
+    public OutboundFrame encodeElements(String type, SymbolKey key, long seq, CharSequence elements) {
+        var sb = header(type, key, seq, 32 + elements.length());
+        return new OutboundFrame(type, key, sb.append(",\"data\":[").append(elements).append("]}").toString());
+    }
+
+    /**
+     * Kodiert die Elemente einer Liste als kommagetrennte JSON-Werte ohne umschließende Klammern.
+     */
+    public String elements(List<?> list) {
+        if (list.isEmpty())
+            return "";
+        String json = jsonb.toJson(list);
+        return json.substring(1, json.length() - 1);
+    }
+
+    private String envelope(String type, SymbolKey key, Object data) {
+        return envelope(type, key, 0, data);
+    }
+
+    private String envelope(String type, SymbolKey key, long seq, Object data) {
+        return header(type, key, seq, 256)
+                .append(",\"data\":").append(jsonb.toJson(data))
+                .append('}')
+                .toString();
+    }
+
+    private StringBuilder header(String type, SymbolKey key, long seq, int capacity) {
+        var sb = new StringBuilder(capacity)
+                .append("{\"type\":\"").append(type)
+                .append("\",\"key\":").append(keyFragment(key));
+        if (seq > 0)
+            sb.append(",\"seq\":").append(seq);
+        return sb;
+    }
+
+    public String keyFragment(SymbolKey key) {
+        return keyFragments.computeIfAbsent(key, jsonb::toJson);
+    }
+}
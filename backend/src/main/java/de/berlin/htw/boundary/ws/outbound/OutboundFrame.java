@@ -0,0 +1,112 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Supplier;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Fertig kodierte, unveränderliche Nachricht. Dieselbe Instanz wird an alle Empfänger
+ * eines Events verteilt. JSON- und Binärform werden erst bei Bedarf und dann genau einmal
+ * erzeugt; Frames ohne Binärform gehen auch an Binär-Sessions als Text.
+ */
+public class OutboundFrame {
+
+    private final String type;
+    private final SymbolKey key;
+    private Supplier<String> textEncoder;
+    private Supplier<ByteBuffer> binaryEncoder;
+    private volatile String text;
+    private volatile ByteBuffer binary;
+
+    public OutboundFrame(String type, SymbolKey key, String text) {
+        this.type = type;
+        this.key = key;
+        this.text = text;
+    }
+
+    public OutboundFrame(String type, SymbolKey key, Supplier<String> textEncoder,
+            Supplier<ByteBuffer> binaryEncoder) {
+        this.type = type;
+        this.key = key;
+        this.textEncoder = textEncoder;
+        this.binaryEncoder = binaryEncoder;
+    }
+
+    /**
+     * Fasst mehrere Frames zu {"type":"batch","data":[...]} zusammen. Haben alle Frames eine
+     * Binärform, ist die Binärform die Aneinanderreihung der einzelnen Binär-Frames.
+     */
+    public static OutboundFrame batch(List<OutboundFrame> frames) {
+        if (frames.size() == 1)
+            return frames.get(0);
+        boolean allBinary = frames.stream().allMatch(OutboundFrame::hasBinary);
+        return new OutboundFrame("batch", null,
+                () -> {
+                    var sb = new StringBuilder(64 * frames.size()).append("{\"type\":\"batch\",\"data\":[");
+                    for (int i = 0; i < frames.size(); i++) {
+                        if (i > 0)
+                            sb.append(',');
+                        sb.append(frames.get(i).text());
+                    }
+                    return sb.append("]}").toString();
+                },
+                allBinary ? () -> {
+                    int size = 0;
+                    for (OutboundFrame f : frames)
+                        size += f.binary().remaining();
+                    ByteBuffer out = ByteBuffer.allocate(size);
+                    for (OutboundFrame f : frames)
+                        out.put(f.binary());
+                    return out.flip();
+                } : null);
+    }
+
+    public String type() {
+        return type;
+    }
+
+    public SymbolKey key() {
+        return key;
+    }
+
+    public String text() {
+        String t = text;
+        if (t == null) {
+            synchronized (this) {
+                t = text;
+                if (t == null) {
+                    t = textEncoder.get();
+                    text = t;
+                    textEncoder = null;
+                }
+            }
+        }
+        return t;
+    }
+
+    public boolean hasBinary() {
+        return binary != null || binaryEncoder != null;
+    }
+
+    /**
+     * Eigene Sicht (Position/Limit) auf die gemeinsamen Bytes, oder null ohne Binärform.
+     */
+    public ByteBuffer binary() {
+        ByteBuffer b = binary;
+        if (b == null) {
+            synchronized (this) {
+                b = binary;
+                if (b == null) {
+                    if (binaryEncoder == null)
+                        return null;
+                    b = binaryEncoder.get().asReadOnlyBuffer();
+                    binary = b;
+                    binaryEncoder = null;
+                }
+            }
+        }
+        return b.duplicate();
+    }
+}
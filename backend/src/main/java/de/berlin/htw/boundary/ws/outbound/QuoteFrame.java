@@ -0,0 +1,64 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Quote-Frame, der zusätzlich das zuvor verteilte Quote (base) kennt. Sessions, deren zuletzt
+ * gesendetes Quote genau base ist, bekommen den gemeinsamen, einmal kodierten Delta-Frame.
+ */
+public final class QuoteFrame extends OutboundFrame {
+
+    private final Quote quote;
+    private final Quote base;
+    private final long seq;
+    private Supplier<OutboundFrame> deltaEncoder;
+    private volatile OutboundFrame delta;
+
+    public QuoteFrame(SymbolKey key, Quote quote, Quote base, long seq, Supplier<String> textEncoder,
+            Supplier<ByteBuffer> binaryEncoder, Supplier<OutboundFrame> deltaEncoder) {
+        super("quote", key, textEncoder, binaryEncoder);
+        this.quote = quote;
+        this.base = base;
+        this.seq = seq;
+        this.deltaEncoder = deltaEncoder;
+    }
+
+    public Quote quote() {
+        return quote;
+    }
+
+    public Quote base() {
+        return base;
+    }
+
+    /**
+     * Buffer-Sequenz des Quotes, 0 wenn unbekannt
+     */
+    public long seq() {
+        return seq;
+    }
+
+    /**
+     * Gemeinsamer Delta-Frame gegenüber base, oder null wenn kein Delta möglich ist.
+     */
+    public OutboundFrame delta() {
+        if (base == null)
+            return null;
+        OutboundFrame d = delta;
+        if (d == null) {
+            synchronized (this) {
+                d = delta;
+                if (d == null && deltaEncoder != null) {
+                    d = deltaEncoder.get();
+                    delta = d;
+                    deltaEncoder = null;
+                }
+            }
+        }
+        return d;
+    }
+}
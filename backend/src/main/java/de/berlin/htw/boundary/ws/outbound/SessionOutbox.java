@@ -0,0 +1,227 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Begrenzte Ausgangswarteschlange einer Session. Pro Session ist höchstens ein Schreibvorgang
+ * unterwegs; was währenddessen ankommt, wird gepuffert. Noch nicht gesendete quote-/candle-Frames
+ * werden durch neuere Frames desselben Symbols ersetzt (Konflation). Ist die Warteschlange voll,
+ * entscheidet die {@link OverflowPolicy}. Verworfen werden dabei nur quote-/candle-Updates;
+ * Snapshots, History-Seiten, Antworten und Alarme werden zusätzlich eingereiht, bis die
+ * Warteschlange die doppelte Kapazität erreicht, danach wird die Session geschlossen. Eine
+ * optionale Transformation (z.B. Delta-Kodierung) wird erst beim Entnehmen angewendet, also auf
+ * den Frame, der tatsächlich gesendet wird.
+ *
+ * Mit einem Batch-Fenster wird nicht sofort gesendet: Der erste Frame startet das Fenster, an
+ * dessen Ende alle bis dahin gepufferten (und konflatierten) Frames als ein "batch"-Frame rausgehen.
+ */
+public final class SessionOutbox {
+
+    public enum OverflowPolicy {
+        /** Neueste quote/candle pro Symbol behalten, sonst das neue Update verwerfen */
+        CONFLATE,
+        /** Neue quote/candle-Updates bei voller Warteschlange verwerfen */
+        DROP,
+        /** Session bei voller Warteschlange schließen */
+        DISCONNECT
+    }
+
+    /**
+     * Schreibende Seite einer Session. onDone wird mit null (Erfolg) oder dem Fehler aufgerufen.
+     */
+    public interface Sink {
+        void send(OutboundFrame frame, Consumer<Throwable> onDone);
+
+        void close(String reason);
+    }
+
+    /**
+     * sent zählt WebSocket-Frames, messages die darin enthaltenen Nachrichten
+     */
+    public record Stats(int depth, long sent, long messages, long conflated, long dropped) {
+    }
+
+    private record ConflationKey(String type, SymbolKey key) {
+    }
+
+    private static final class Slot {
+        OutboundFrame frame;
+        ConflationKey conflationKey;
+
+        Slot(OutboundFrame frame, ConflationKey conflationKey) {
+            this.frame = frame;
+            this.conflationKey = conflationKey;
+        }
+    }
+
+    private final Sink sink;
+    private final int capacity;
+    private final OverflowPolicy policy;
+
+    // guarded by this
+    private final ArrayDeque<Slot> queue = new ArrayDeque<>();
+    private final Map<ConflationKey, Slot> pending = new HashMap<>();
+    private boolean inFlight = false;
+    private boolean closed = false;
+    private volatile UnaryOperator<OutboundFrame> transform = UnaryOperator.identity();
+    private long batchWindowMs = 0;
+    private ScheduledExecutorService scheduler;
+    private boolean flushScheduled = false;
+    private boolean flushDue = false;
+    private int inFlightMessages = 0;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public SessionOutbox(Sink sink, int capacity, OverflowPolicy policy) {
+        this.sink = Objects.requireNonNull(sink);
+        this.capacity = Math.max(1, capacity);
+        this.policy = Objects.requireNonNull(policy);
+    }
+
+    /**
+     * Reiht einen Frame ein und stößt ggf. den nächsten Schreibvorgang an. Blockiert nie.
+     */
+    public void offer(OutboundFrame frame) {
+        boolean disconnect = false;
+        synchronized (this) {
+            if (closed)
+                return;
+            ConflationKey ck = conflationKey(frame);
+            if (ck != null && policy != OverflowPolicy.DROP) {
+                Slot slot = pending.get(ck);
+                if (slot != null) {
+                    slot.frame = frame;
+                    conflated.incrementAndGet();
+                    return;
+                }
+            }
+            boolean full = queue.size() >= capacity;
+            if (full && (policy == OverflowPolicy.DISCONNECT || ck == null && queue.size() >= 2 * capacity)) {
+                closed = true;
+                disconnect = true;
+                clear();
+            } else if (full && ck != null) {
+                dropped.incrementAndGet();
+                return;
+            } else {
+                Slot slot = new Slot(frame, ck);
+                queue.addLast(slot);
+                if (ck != null)
+                    pending.put(ck, slot);
+            }
+        }
+        if (disconnect) {
+            sink.close("Client zu langsam");
+            return;
+        }
+        pump();
+    }
+
+    /**
+     * Setzt die Transformation, die jeder Frame direkt vor dem Senden durchläuft. Sie wird nie
+     * nebenläufig aufgerufen, da pro Session höchstens ein Schreibvorgang unterwegs ist.
+     */
+    public void setTransform(UnaryOperator<OutboundFrame> transform) {
+        this.transform = transform == null ? UnaryOperator.identity() : transform;
+    }
+
+    /**
+     * Aktiviert (windowMs > 0) oder deaktiviert das zeitfensterbasierte Bündeln.
+     */
+    public void setBatchWindow(long windowMs, ScheduledExecutorService scheduler) {
+        synchronized (this) {
+            this.batchWindowMs = windowMs > 0 ? windowMs : 0;
+            this.scheduler = batchWindowMs > 0 ? Objects.requireNonNull(scheduler) : null;
+        }
+        pump();
+    }
+
+    public synchronized void close() {
+        closed = true;
+        clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(queue.size(), sent.get(), messages.get(), conflated.get(), dropped.get());
+    }
+
+    private void pump() {
+        List<OutboundFrame> batch;
+        synchronized (this) {
+            if (inFlight || closed || queue.isEmpty())
+                return;
+            if (batchWindowMs > 0 && !flushDue) {
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    scheduler.schedule(this::flush, batchWindowMs, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+            int n = batchWindowMs > 0 ? queue.size() : 1;
+            batch = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                Slot slot = queue.pollFirst();
+                if (slot.conflationKey != null)
+                    pending.remove(slot.conflationKey);
+                batch.add(slot.frame);
+            }
+            if (batchWindowMs > 0)
+                flushDue = false;
+            inFlight = true;
+            inFlightMessages = n;
+        }
+        for (int i = 0; i < batch.size(); i++)
+            batch.set(i, transform.apply(batch.get(i)));
+        sink.send(OutboundFrame.batch(batch), this::onSent);
+    }
+
+    private void flush() {
+        synchronized (this) {
+            flushScheduled = false;
+            flushDue = !queue.isEmpty();
+        }
+        pump();
+    }
+
+    private void onSent(Throwable error) {
+        synchronized (this) {
+            inFlight = false;
+            if (error == null) {
+                sent.incrementAndGet();
+                messages.addAndGet(inFlightMessages);
+            } else {
+                dropped.addAndGet(inFlightMessages);
+            }
+        }
+        pump();
+    }
+
+    private void clear() {
+        dropped.addAndGet(queue.size());
+        queue.clear();
+        pending.clear();
+    }
+
+    private static ConflationKey conflationKey(OutboundFrame frame) {
+        if (frame.key() == null)
+            return null;
+        if ("quote".equals(frame.type()) || "candle".equals(frame.type()))
+            return new ConflationKey(frame.type(), frame.key());
+        return null;
+    }
+}
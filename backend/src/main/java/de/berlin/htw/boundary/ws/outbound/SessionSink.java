@@ -0,0 +1,53 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import java.util.function.Consumer;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Session;
+
+/**
+ * {@link SessionOutbox.Sink} auf Basis des asynchronen Remote-Endpunkts einer WebSocket-Session.
+ * Hat der Client das Binär-Subprotokoll ausgehandelt, gehen Frames mit Binärform als Binary-Message.
+ */
+public final class SessionSink implements SessionOutbox.Sink {
+
+    private final Session session;
+    private final boolean binary;
+
+    public SessionSink(Session session) {
+        this.session = session;
+        this.binary = isBinary(session);
+    }
+
+    public static boolean isBinary(Session session) {
+        return BinaryCodec.SUBPROTOCOL.equals(session.getNegotiatedSubprotocol());
+    }
+
+    @Override
+    public void send(OutboundFrame frame, Consumer<Throwable> onDone) {
+        if (!session.isOpen()) {
+            onDone.accept(new IllegalStateException("Session geschlossen"));
+            return;
+        }
+        try {
+            if (binary && frame.hasBinary()) {
+                session.getAsyncRemote().sendBinary(frame.binary(),
+                        result -> onDone.accept(result.isOK() ? null : result.getException()));
+            } else {
+                session.getAsyncRemote().sendText(frame.text(),
+                        result -> onDone.accept(result.isOK() ? null : result.getException()));
+            }
+        } catch (RuntimeException e) {
+            onDone.accept(e);
+        }
+    }
+
+    @Override
+    public void close(String reason) {
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, reason));
+        } catch (Exception e) {
+            // Session ist bereits geschlossen
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Cache für fertig kodierte Subscribe-Snapshots ("candles"/"quotes").
+ *
+ * Ein Snapshot ist über (Typ, Symbol, Fensterbeginn, Variante) adressiert und mit der
+ * Buffer-Sequenz versioniert; gleichzeitige Anfragen für dieselbe Version teilen sich einen
+ * einzigen Aufbau. Fensterbasierte Snapshots werden aus Minuten-Segmenten zusammengesetzt:
+ * abgeschlossene Minuten werden einmal kodiert und danach wiederverwendet, nur der Anfang
+ * (angeschnittene Minute) und das Ende (laufende Minuten) werden jeweils neu kodiert.
+ *
+ * Snapshots und Segmente teilen sich ein LRU, das nach Bytes begrenzt ist.
+ */
+public final class SnapshotCache {
+
+    public static final long SEGMENT_SEC = 60;
+
+    /**
+     * Liefert die Elemente mit fromSec <= ts <= toSec in zeitlicher Reihenfolge.
+     */
+    @FunctionalInterface
+    public interface RangeSource {
+        List<?> range(long fromSec, long toSec);
+    }
+
+    public record Stats(long bytes, int entries, long hits, long misses, long segmentHits, long segmentMisses) {
+    }
+
+    private record FrameKey(String type, SymbolKey key, long fromSec, int variant) {
+    }
+
+    private record SegmentKey(String type, SymbolKey key, long startSec) {
+    }
+
+    private record Versioned(FrameKey key, long seq) {
+    }
+
+    private record Entry(long seq, OutboundFrame frame, String segment, long bytes) {
+    }
+
+    private final FrameEncoder encoder;
+    private final long maxBytes;
+
+    // guarded by this
+    private final LinkedHashMap<Object, Entry> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes = 0;
+
+    private final Map<Versioned, CompletableFuture<OutboundFrame>> building = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong segmentHits = new AtomicLong();
+    private final AtomicLong segmentMisses = new AtomicLong();
+
+    public SnapshotCache(FrameEncoder encoder, long maxBytes) {
+        this.encoder = encoder;
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * Snapshot aller Elemente ab fromSec, zusammengesetzt aus Minuten-Segmenten. Segmente, die
+     * vor der vorletzten Minute relativ zu nowSec enden, gelten als abgeschlossen. Liefert null,
+     * wenn der Bereich leer ist.
+     */
+    public OutboundFrame segmented(String type, SymbolKey key, long seq, long fromSec, long nowSec,
+            RangeSource source) {
+        return cached(new FrameKey(type, key, fromSec, 0), seq, () -> {
+            long firstFull = ceil(fromSec);
+            long sealedEnd = floor(nowSec) - SEGMENT_SEC;
+            var body = new StringBuilder(4096);
+
+            // angeschnittene erste Minute
+            long headEnd = Math.min(firstFull, Math.max(fromSec, sealedEnd)) - 1;
+            if (headEnd >= fromSec)
+                appendElements(body, encoder.elements(source.range(fromSec, headEnd)));
+            long cursor = Math.max(fromSec, headEnd + 1);
+
+            // abgeschlossene Minuten aus dem Segment-Cache
+            for (; cursor + SEGMENT_SEC <= sealedEnd; cursor += SEGMENT_SEC)
+                appendElements(body, segment(type, key, cursor, source));
+
+            // laufender Rest
+            appendElements(body, encoder.elements(source.range(cursor, Long.MAX_VALUE)));
+            return body.length() == 0 ? null : encoder.encodeElements(type, key, seq, body);
+        });
+    }
+
+    /**
+     * Snapshot, der als Ganzes gebaut wird (z.B. ausgedünnte Quotes). variant unterscheidet
+     * verschiedene Aufbereitungen desselben Bereichs. Liefert null, wenn die Liste leer ist.
+     */
+    public OutboundFrame whole(String type, SymbolKey key, long seq, int variant, long fromSec,
+            Supplier<List<?>> source) {
+        return cached(new FrameKey(type, key, fromSec, variant), seq, () -> {
+            List<?> list = source.get();
+            return list == null || list.isEmpty() ? null : encoder.encodeElements(type, key, seq, encoder.elements(list));
+        });
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(bytes, lru.size(), hits.get(), misses.get(), segmentHits.get(), segmentMisses.get());
+    }
+
+    private OutboundFrame cached(FrameKey fk, long seq, Supplier<OutboundFrame> build) {
+        synchronized (this) {
+            Entry e = lru.get(fk);
+            if (e != null && e.seq() == seq) {
+                hits.incrementAndGet();
+                return e.frame();
+            }
+        }
+
+        // Gleichzeitige Anfragen für dieselbe Version warten auf einen gemeinsamen Aufbau
+        var versioned = new Versioned(fk, seq);
+        var mine = new CompletableFuture<OutboundFrame>();
+        var running = building.putIfAbsent(versioned, mine);
+        if (running != null) {
+            hits.incrementAndGet();
+            return running.join();
+        }
+
+        misses.incrementAndGet();
+        try {
+            OutboundFrame frame = build.get();
+            long size = frame == null ? 64 : frame.text().length() + 64L;
+            put(fk, new Entry(seq, frame, null, size));
+            mine.complete(frame);
+            return frame;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            building.remove(versioned);
+        }
+    }
+
+    private String segment(String type, SymbolKey key, long startSec, RangeSource source) {
+        var sk = new SegmentKey(type, key, startSec);
+        synchronized (this) {
+            Entry e = lru.get(sk);
+            if (e != null) {
+                segmentHits.incrementAndGet();
+                return e.segment();
+            }
+        }
+        segmentMisses.incrementAndGet();
+        String seg = encoder.elements(source.range(startSec, startSec + SEGMENT_SEC - 1));
+        put(sk, new Entry(0, null, seg, seg.length() + 64L));
+        return seg;
+    }
+
+    private synchronized void put(Object key, Entry entry) {
+        Entry old = lru.put(key, entry);
+        if (old != null)
+            bytes -= old.bytes();
+        bytes += entry.bytes();
+
+        Iterator<Entry> it = lru.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().bytes();
+            it.remove();
+        }
+    }
+
+    private static void appendElements(StringBuilder body, String elements) {
+        if (elements.isEmpty())
+            return;
+        if (body.length() > 0)
+            body.append(',');
+        body.append(elements);
+    }
+
+    private static long floor(long sec) {
+        return Math.floorDiv(sec, SEGMENT_SEC) * SEGMENT_SEC;
+    }
+
+    private static long ceil(long sec) {
+        return -Math.floorDiv(-sec, SEGMENT_SEC) * SEGMENT_SEC;
+    }
+}
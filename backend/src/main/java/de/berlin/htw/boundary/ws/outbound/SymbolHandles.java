@@ -0,0 +1,21 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Serverweit eindeutige int-Handles für SymbolKeys. Binäre Frames tragen nur das Handle;
+ * die Zuordnung wird jedem Client einmal pro Abo als "handle"-Nachricht mitgeteilt.
+ */
+public final class SymbolHandles {
+
+    private final Map<SymbolKey, Integer> handles = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger(1);
+
+    public int handleFor(SymbolKey key) {
+        return handles.computeIfAbsent(key, k -> next.getAndIncrement());
+    }
+}
@@ -0,0 +1,84 @@
+package de.berlin.htw.trading.alert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import de.berlin.htw.trading.alert.dto.Alert;
+
+/**
+ * Alarme eines Symbols, nach Schwelle sortiert getrennt nach Richtung. Da ein aktiver
+ * ABOVE-Alarm immer über dem letzten Kurs liegt (sonst hätte er schon ausgelöst), sind bei
+ * einem neuen Kurs genau die Schwellen bis einschließlich des Kurses betroffen; für BELOW
+ * spiegelbildlich. Ein Tick kostet so O(log n + k) statt eines Durchlaufs über alle Alarme.
+ */
+final class AlertBook {
+
+    private final TreeMap<Double, List<Alert>> above = new TreeMap<>();
+    private final TreeMap<Double, List<Alert>> below = new TreeMap<>();
+    private double lastPrice = Double.NaN;
+    private long lastTs;
+    private int size = 0;
+
+    /**
+     * Trägt den Alarm ein. Ist die Bedingung beim letzten Kurs bereits erfüllt, wird nichts
+     * eingetragen und false geliefert; der Aufrufer löst dann sofort aus.
+     */
+    synchronized boolean add(Alert a) {
+        if (!Double.isNaN(lastPrice) && a.isHit(lastPrice))
+            return false;
+        side(a).computeIfAbsent(a.threshold(), t -> new ArrayList<>(1)).add(a);
+        size++;
+        return true;
+    }
+
+    synchronized boolean remove(Alert a) {
+        TreeMap<Double, List<Alert>> side = side(a);
+        List<Alert> list = side.get(a.threshold());
+        if (list == null || !list.remove(a))
+            return false;
+        if (list.isEmpty())
+            side.remove(a.threshold());
+        size--;
+        return true;
+    }
+
+    /**
+     * Übernimmt einen neuen Kurs und hängt alle dadurch ausgelösten Alarme an out an; diese
+     * sind danach entfernt.
+     */
+    synchronized void evaluate(double price, long ts, List<Alert> out) {
+        if (Double.isNaN(price))
+            return;
+        lastPrice = price;
+        lastTs = ts;
+        Map.Entry<Double, List<Alert>> e;
+        while ((e = above.firstEntry()) != null && e.getKey() <= price) {
+            above.pollFirstEntry();
+            out.addAll(e.getValue());
+            size -= e.getValue().size();
+        }
+        while ((e = below.lastEntry()) != null && e.getKey() >= price) {
+            below.pollLastEntry();
+            out.addAll(e.getValue());
+            size -= e.getValue().size();
+        }
+    }
+
+    synchronized double lastPrice() {
+        return lastPrice;
+    }
+
+    synchronized long lastTs() {
+        return lastTs;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private TreeMap<Double, List<Alert>> side(Alert a) {
+        return a.direction() == Alert.Direction.ABOVE ? above : below;
+    }
+}
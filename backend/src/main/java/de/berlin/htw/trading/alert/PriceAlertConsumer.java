@@ -0,0 +1,193 @@
+package de.berlin.htw.trading.alert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import de.berlin.htw.trading.alert.dto.Alert;
+import de.berlin.htw.trading.alert.dto.AlertTrigger;
+import de.berlin.htw.trading.consumer.AbstractReplayingConsumer;
+import de.berlin.htw.trading.events.AlertEvent;
+import de.berlin.htw.trading.events.EventExecutors;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.ChangeRecord;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.Snapshot;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.SymbolSnapshot;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+
+/**
+ * Kursalarme: prüft jeden Tick gegen das {@link AlertBook} des Symbols und meldet ausgelöste
+ * Alarme gebündelt pro Session als {@link AlertEvent}. Alarme leben nur im Speicher und
+ * gehören der Session, die sie angelegt hat.
+ */
+@ApplicationScoped
+public class PriceAlertConsumer extends AbstractReplayingConsumer {
+
+    public record Stats(int active, int symbols, long triggered) {
+    }
+
+    @ConfigProperty(name = "alerts.max-per-session", defaultValue = "1000")
+    int maxPerSession;
+
+    private final Map<SymbolKey, AlertBook> books = new ConcurrentHashMap<>();
+    private final Map<Long, Alert> byId = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> byOwner = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong triggered = new AtomicLong();
+
+    @Inject
+    Logger logger;
+
+    @Inject
+    private Event<AlertEvent> alertEvent;
+
+    @Inject
+    private EventExecutors executors;
+
+    @Override
+    protected Duration initialSnapshotWindow() {
+        // Nur für den letzten Kurs je Symbol; Alarme selbst werden nicht wiederhergestellt
+        return Duration.ofMinutes(5);
+    }
+
+    @Override
+    protected void rebuildFromSnapshot(Snapshot snap) {
+        List<Alert> fired = new ArrayList<>();
+        List<AlertTrigger> triggers = new ArrayList<>();
+        for (var e : snap.windowPerSymbol().entrySet()) {
+            List<Quote> quotes = e.getValue();
+            if (!quotes.isEmpty())
+                evaluate(e.getKey(), quotes.get(quotes.size() - 1), fired, triggers);
+        }
+        publish(triggers);
+    }
+
+    @Override
+    protected void materializeSymbol(SymbolKey key, SymbolSnapshot snap) {
+        // Nicht lazy: jeder Tick wird direkt gegen die Alarme des Symbols geprüft
+    }
+
+    @Override
+    protected void applyChanges(List<ChangeRecord> changes) {
+        List<Alert> fired = new ArrayList<>();
+        List<AlertTrigger> triggers = new ArrayList<>();
+        for (ChangeRecord cr : changes) {
+            var qc = (IMarketDataBuffer.QuoteChange) cr;
+            evaluate(qc.key(), qc.quote(), fired, triggers);
+        }
+        publish(triggers);
+    }
+
+    // Auch Symbole ohne Alarme bekommen ein Buch, damit der letzte Kurs beim Anlegen bekannt ist
+    private void evaluate(SymbolKey key, Quote q, List<Alert> fired, List<AlertTrigger> triggers) {
+        AlertBook book = books.get(key);
+        if (book == null)
+            book = books.computeIfAbsent(key, k -> new AlertBook());
+        book.evaluate(q.price(), q.tsUnixSec(), fired);
+        for (Alert a : fired)
+            triggers.add(new AlertTrigger(a, q.price(), q.tsUnixSec()));
+        fired.clear();
+    }
+
+    /**
+     * Legt einen Alarm an. Ist die Bedingung beim letzten bekannten Kurs schon erfüllt, wird
+     * er sofort ausgelöst.
+     */
+    public Alert register(String owner, SymbolKey key, Alert.Direction direction, double threshold) {
+        if (Double.isNaN(threshold) || Double.isInfinite(threshold))
+            throw new IllegalArgumentException("Ungültige Schwelle: " + threshold);
+        Set<Long> own = byOwner.computeIfAbsent(owner, o -> ConcurrentHashMap.newKeySet());
+        if (own.size() >= maxPerSession)
+            throw new IllegalArgumentException("Maximal " + maxPerSession + " Alarme pro Session");
+
+        Alert a = new Alert(ids.incrementAndGet(), owner, key, direction, threshold);
+        byId.put(a.id(), a);
+        own.add(a.id());
+        AlertBook book = books.computeIfAbsent(key, k -> new AlertBook());
+        if (!book.add(a))
+            publish(List.of(new AlertTrigger(a, book.lastPrice(), book.lastTs())));
+        return a;
+    }
+
+    /**
+     * Entfernt einen noch nicht ausgelösten Alarm der Session; liefert ihn oder null.
+     */
+    public Alert cancel(String owner, long id) {
+        Alert a = byId.get(id);
+        if (a == null || !a.owner().equals(owner))
+            return null;
+        AlertBook book = books.get(a.key());
+        if (book == null || !book.remove(a))
+            return null;
+        forget(a);
+        return a;
+    }
+
+    /**
+     * Entfernt alle offenen Alarme der Session (z.B. beim Schließen) und liefert sie.
+     */
+    public List<Alert> cancelAll(String owner) {
+        Set<Long> own = byOwner.get(owner);
+        List<Alert> removed = new ArrayList<>();
+        if (own == null)
+            return removed;
+        for (Long id : List.copyOf(own)) {
+            Alert a = cancel(owner, id);
+            if (a != null)
+                removed.add(a);
+        }
+        byOwner.remove(owner);
+        return removed;
+    }
+
+    public List<Alert> getAlerts(String owner) {
+        Set<Long> own = byOwner.get(owner);
+        List<Alert> out = new ArrayList<>();
+        if (own != null)
+            for (Long id : own) {
+                Alert a = byId.get(id);
+                if (a != null)
+                    out.add(a);
+            }
+        return out;
+    }
+
+    public Stats stats() {
+        return new Stats(byId.size(), books.size(), triggered.get());
+    }
+
+    private void forget(Alert a) {
+        byId.remove(a.id());
+        Set<Long> own = byOwner.get(a.owner());
+        if (own != null)
+            own.remove(a.id());
+    }
+
+    private void publish(List<AlertTrigger> triggers) {
+        if (triggers.isEmpty())
+            return;
+        Map<String, List<AlertTrigger>> perOwner = new HashMap<>();
+        for (AlertTrigger t : triggers) {
+            forget(t.alert());
+            perOwner.computeIfAbsent(t.alert().owner(), o -> new ArrayList<>()).add(t);
+        }
+        triggered.addAndGet(triggers.size());
+        for (var e : perOwner.entrySet()) {
+            logger.debugv("{0} Alarme für Session {1} ausgelöst", e.getValue().size(), e.getKey());
+            alertEvent.fireAsync(new AlertEvent(e.getKey(), e.getValue()),
+                    executors.of(AlertEvent.class, e.getKey()));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package de.berlin.htw.trading.alert.dto;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Einmaliger Kursalarm: ABOVE löst beim ersten Kurs >= threshold aus, BELOW beim ersten
+ * Kurs <= threshold. owner ist die Session, die den Alarm angelegt hat.
+ */
+public record Alert(long id, String owner, SymbolKey key, Direction direction, double threshold) {
+
+    public enum Direction {
+        ABOVE, BELOW
+    }
+
+    public boolean isHit(double price) {
+        return direction == Direction.ABOVE ? price >= threshold : price <= threshold;
+    }
+}
@@ -0,0 +1,7 @@
+package de.berlin.htw.trading.alert.dto;
+
+/**
+ * Ausgelöster Alarm mit dem auslösenden Kurs und dessen Zeitstempel.
+ */
+public record AlertTrigger(Alert alert, double price, long tsUnixSec) {
+}
@@ -0,0 +1,206 @@
+package de.berlin.htw.trading.analytics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import de.berlin.htw.trading.analytics.dto.CorrelationMatrix;
+import de.berlin.htw.trading.candle.CandleClock;
+import de.berlin.htw.trading.candle.CandleQuoteConsumer;
+import de.berlin.htw.trading.consumer.AbstractReplayingConsumer;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.ChangeRecord;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.Snapshot;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.SymbolSnapshot;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Rollierende Volatilität, Renditen und Korrelationsmatrix aller Symbole über ausgerichtete
+ * Candle-Schlusskurse (Minuten-Raster wie {@link CandleQuoteConsumer}). Schließt eine Minute,
+ * in der mindestens ein Symbol gehandelt wurde, wird eine Zeile mit den Log-Renditen aller
+ * Symbole aufgenommen; Symbole ohne Tick in dieser Minute haben Rendite 0 (letzter Kurs gilt
+ * weiter). Neue Symbole starten mit Rendite 0 in allen bisherigen Zeilen, Symbole ohne Tick
+ * über ein ganzes Fenster fallen heraus.
+ */
+@ApplicationScoped
+public class CorrelationConsumer extends AbstractReplayingConsumer {
+
+    private static final long FRAME_SEC = CandleQuoteConsumer.FRAME_SEC;
+
+    @ConfigProperty(name = "analytics.window", defaultValue = "60")
+    int window = 60;
+
+    @Inject
+    Logger logger;
+
+    private final Object lock = new Object();
+    private RollingCovariance stats;
+    private final List<SymbolKey> symbols = new ArrayList<>();
+    private final Map<SymbolKey, Integer> columns = new HashMap<>();
+    private double[] lastPrice = new double[0];
+    private double[] prevClose = new double[0];
+    private long[] lastSeenBucket = new long[0];
+    private long openBucket = Long.MIN_VALUE;
+    private long lastClosedBucket = Long.MIN_VALUE;
+    private volatile long version = 0;
+
+    @Override
+    protected Duration initialSnapshotWindow() {
+        return Duration.ofSeconds((window + 1) * FRAME_SEC);
+    }
+
+    @Override
+    protected void rebuildFromSnapshot(Snapshot snap) {
+        List<Quote> all = new ArrayList<>();
+        for (List<Quote> quotes : snap.windowPerSymbol().values())
+            all.addAll(quotes);
+        all.sort(Comparator.comparingLong(Quote::tsUnixSec));
+        synchronized (lock) {
+            reset();
+            for (Quote q : all)
+                accept(q.s(), q.tsUnixSec(), q.price());
+        }
+        logger.infov("CorrelationConsumer: {0} Symbole, {1} Candles im Fenster", symbols.size(), stats.count());
+    }
+
+    @Override
+    protected void materializeSymbol(SymbolKey key, SymbolSnapshot snap) {
+        // Nicht lazy: die Matrix braucht die Renditen aller Symbole gleichzeitig
+    }
+
+    @Override
+    protected void applyChanges(List<ChangeRecord> changes) {
+        synchronized (lock) {
+            for (ChangeRecord cr : changes) {
+                var qc = (IMarketDataBuffer.QuoteChange) cr;
+                accept(qc.key(), qc.quote().tsUnixSec(), qc.quote().price());
+            }
+        }
+    }
+
+    /**
+     * Zähler, der sich bei jeder Änderung der Kennzahlen erhöht (für gedrosseltes Verteilen).
+     */
+    public long version() {
+        return version;
+    }
+
+    public CorrelationMatrix snapshot() {
+        synchronized (lock) {
+            int n = symbols.size();
+            Double[] close = new Double[n];
+            Double[] mean = new Double[n];
+            Double[] vol = new Double[n];
+            Double[][] cov = new Double[n][n];
+            Double[][] corr = new Double[n][n];
+            boolean defined = stats.count() >= 2;
+            for (int i = 0; i < n; i++) {
+                close[i] = prevClose[i];
+                mean[i] = stats.count() == 0 ? null : stats.mean(i);
+                vol[i] = defined ? Math.sqrt(Math.max(0, stats.covariance(i, i))) : null;
+                for (int j = 0; j < n; j++) {
+                    cov[i][j] = defined ? stats.covariance(i, j) : null;
+                    double c = stats.correlation(i, j);
+                    corr[i][j] = Double.isNaN(c) ? null : c;
+                }
+            }
+            return new CorrelationMatrix(lastClosedBucket == Long.MIN_VALUE ? 0 : lastClosedBucket, FRAME_SEC,
+                    stats.window(), stats.count(), List.copyOf(symbols), close, mean, vol, cov, corr);
+        }
+    }
+
+    void reset() {
+        stats = new RollingCovariance(window);
+        symbols.clear();
+        columns.clear();
+        lastPrice = new double[0];
+        prevClose = new double[0];
+        lastSeenBucket = new long[0];
+        openBucket = Long.MIN_VALUE;
+        lastClosedBucket = Long.MIN_VALUE;
+        version++;
+    }
+
+    // Nachzügler aus bereits geschlossenen Minuten bleiben unberücksichtigt
+    void accept(SymbolKey key, long ts, double price) {
+        if (Double.isNaN(price) || price <= 0)
+            return;
+        long bucket = CandleClock.timeBucketStartSec(ts, FRAME_SEC);
+        if (openBucket == Long.MIN_VALUE)
+            openBucket = bucket;
+        if (bucket < openBucket)
+            return;
+        if (bucket > openBucket) {
+            closeBucket();
+            dropStale(bucket);
+            openBucket = bucket;
+        }
+        Integer c = columns.get(key);
+        if (c == null)
+            c = addSymbol(key, price);
+        lastPrice[c] = price;
+        lastSeenBucket[c] = bucket;
+    }
+
+    private void closeBucket() {
+        int n = symbols.size();
+        if (n == 0)
+            return;
+        double[] row = new double[n];
+        for (int i = 0; i < n; i++) {
+            row[i] = Math.log(lastPrice[i] / prevClose[i]);
+            prevClose[i] = lastPrice[i];
+        }
+        stats.add(row);
+        lastClosedBucket = openBucket;
+        version++;
+    }
+
+    private void dropStale(long bucket) {
+        long minBucket = bucket - (long) window * FRAME_SEC;
+        for (int c = symbols.size() - 1; c >= 0; c--) {
+            if (lastSeenBucket[c] >= minBucket)
+                continue;
+            stats.removeColumn(c);
+            columns.remove(symbols.remove(c));
+            lastPrice = without(lastPrice, c);
+            prevClose = without(prevClose, c);
+            long[] seen = new long[lastSeenBucket.length - 1];
+            System.arraycopy(lastSeenBucket, 0, seen, 0, c);
+            System.arraycopy(lastSeenBucket, c + 1, seen, c, seen.length - c);
+            lastSeenBucket = seen;
+            for (int i = c; i < symbols.size(); i++)
+                columns.put(symbols.get(i), i);
+            version++;
+        }
+    }
+
+    private int addSymbol(SymbolKey key, double price) {
+        int c = stats.addColumn();
+        symbols.add(key);
+        columns.put(key, c);
+        lastPrice = Arrays.copyOf(lastPrice, c + 1);
+        prevClose = Arrays.copyOf(prevClose, c + 1);
+        lastSeenBucket = Arrays.copyOf(lastSeenBucket, c + 1);
+        prevClose[c] = price;
+        version++;
+        return c;
+    }
+
+    private static double[] without(double[] a, int c) {
+        double[] out = new double[a.length - 1];
+        System.arraycopy(a, 0, out, 0, c);
+        System.arraycopy(a, c + 1, out, c, out.length - c);
+        return out;
+    }
+}
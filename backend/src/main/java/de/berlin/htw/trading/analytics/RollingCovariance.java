@@ -0,0 +1,174 @@
+package de.berlin.htw.trading.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Gleitende Mittelwerte und Kovarianzen über die letzten window Zeilen (eine Zeile = ein Wert
+ * je Spalte, z.B. die Renditen aller Symbole einer Minute). Hinzufügen und Entfernen einer
+ * Zeile aktualisieren Mittelwert und Ko-Momente nach Welford in O(Spalten²), also O(Spalten)
+ * je Symbol. Um Rundungsfehler nicht beliebig aufzusummieren, wird nach jeweils 16 Fenstern
+ * einmal exakt aus dem Ring neu berechnet.
+ */
+public final class RollingCovariance {
+
+    private final int window;
+    private int cols = 0;
+    private double[][] rows;
+    private int head = 0;
+    private int n = 0;
+    private double[] mean = new double[0];
+    // Summe der Produkte der Abweichungen (Ko-Momente), Kovarianz = m2 / (n - 1)
+    private double[][] m2 = new double[0][0];
+    private long sinceRecompute = 0;
+
+    public RollingCovariance(int window) {
+        this.window = Math.max(2, window);
+        this.rows = new double[this.window][0];
+    }
+
+    public int window() {
+        return window;
+    }
+
+    public int columns() {
+        return cols;
+    }
+
+    public int count() {
+        return n;
+    }
+
+    /**
+     * Nimmt eine Zeile auf und verdrängt bei vollem Fenster die älteste.
+     */
+    public void add(double[] x) {
+        if (x.length != cols)
+            throw new IllegalArgumentException("Zeile hat " + x.length + " statt " + cols + " Spalten");
+        if (n == window) {
+            remove(rows[head]);
+            head = (head + 1) % window;
+        }
+        double[] slot = rows[(head + n) % window];
+        if (slot.length != cols)
+            slot = rows[(head + n) % window] = new double[cols];
+        System.arraycopy(x, 0, slot, 0, cols);
+
+        n++;
+        double[] dx = new double[cols];
+        for (int i = 0; i < cols; i++) {
+            dx[i] = x[i] - mean[i];
+            mean[i] += dx[i] / n;
+        }
+        for (int i = 0; i < cols; i++)
+            for (int j = 0; j < cols; j++)
+                m2[i][j] += dx[i] * (x[j] - mean[j]);
+
+        if (++sinceRecompute >= 16L * window)
+            recompute();
+    }
+
+    // Umkehrung von add: mean' = mean - (x - mean) / (n - 1), m2' = m2 - (x - mean') (x - mean)^T
+    private void remove(double[] x) {
+        n--;
+        if (n == 0) {
+            Arrays.fill(mean, 0);
+            for (double[] row : m2)
+                Arrays.fill(row, 0);
+            return;
+        }
+        double[] dx = new double[cols];
+        for (int i = 0; i < cols; i++) {
+            dx[i] = x[i] - mean[i];
+            mean[i] -= dx[i] / n;
+        }
+        for (int i = 0; i < cols; i++)
+            for (int j = 0; j < cols; j++)
+                m2[i][j] -= (x[i] - mean[i]) * dx[j];
+    }
+
+    /**
+     * Hängt eine Spalte an, die in allen bisherigen Zeilen 0 ist. Mittelwert und Ko-Momente
+     * einer solchen Spalte sind 0, daher genügt es, die Matrizen zu vergrößern.
+     */
+    public int addColumn() {
+        int c = cols++;
+        mean = Arrays.copyOf(mean, cols);
+        double[][] next = new double[cols][cols];
+        for (int i = 0; i < c; i++)
+            System.arraycopy(m2[i], 0, next[i], 0, c);
+        m2 = next;
+        for (int k = 0; k < n; k++) {
+            int r = (head + k) % window;
+            rows[r] = Arrays.copyOf(rows[r], cols);
+        }
+        return c;
+    }
+
+    /**
+     * Entfernt eine Spalte; die Statistiken der übrigen Spalten hängen nicht von ihr ab.
+     */
+    public void removeColumn(int c) {
+        mean = without(mean, c);
+        double[][] next = new double[cols - 1][];
+        for (int i = 0, k = 0; i < cols; i++)
+            if (i != c)
+                next[k++] = without(m2[i], c);
+        m2 = next;
+        for (int k = 0; k < n; k++) {
+            int r = (head + k) % window;
+            rows[r] = without(rows[r], c);
+        }
+        cols--;
+    }
+
+    public double mean(int i) {
+        return mean[i];
+    }
+
+    /**
+     * Stichproben-Kovarianz der Spalten i und j; NaN bei weniger als zwei Zeilen.
+     */
+    public double covariance(int i, int j) {
+        return n < 2 ? Double.NaN : m2[i][j] / (n - 1);
+    }
+
+    /**
+     * Korrelation der Spalten i und j; NaN, wenn eine der Spalten keine Streuung hat.
+     */
+    public double correlation(int i, int j) {
+        double d = Math.sqrt(m2[i][i] * m2[j][j]);
+        return n < 2 || d <= 0 ? Double.NaN : Math.max(-1, Math.min(1, m2[i][j] / d));
+    }
+
+    /**
+     * Exakte Neuberechnung aus dem Ring (zwei Durchläufe).
+     */
+    public void recompute() {
+        sinceRecompute = 0;
+        Arrays.fill(mean, 0);
+        for (double[] row : m2)
+            Arrays.fill(row, 0);
+        if (n == 0)
+            return;
+        for (int k = 0; k < n; k++) {
+            double[] x = rows[(head + k) % window];
+            for (int i = 0; i < cols; i++)
+                mean[i] += x[i];
+        }
+        for (int i = 0; i < cols; i++)
+            mean[i] /= n;
+        for (int k = 0; k < n; k++) {
+            double[] x = rows[(head + k) % window];
+            for (int i = 0; i < cols; i++)
+                for (int j = 0; j < cols; j++)
+                    m2[i][j] += (x[i] - mean[i]) * (x[j] - mean[j]);
+        }
+    }
+
+    private static double[] without(double[] a, int c) {
+        double[] out = new double[a.length - 1];
+        System.arraycopy(a, 0, out, 0, c);
+        System.arraycopy(a, c + 1, out, c, a.length - c - 1);
+        return out;
+    }
+}
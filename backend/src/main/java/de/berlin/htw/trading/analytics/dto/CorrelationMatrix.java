@@ -0,0 +1,23 @@
+package de.berlin.htw.trading.analytics.dto;
+
+import java.util.List;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Gleitende Kennzahlen der Log-Renditen je Candle über die letzten samples geschlossenen
+ * Candles (höchstens window). Indizes der Listen und Matrizen entsprechen symbols; nicht
+ * definierte Werte (zu wenige Candles, keine Streuung) sind null.
+ */
+public record CorrelationMatrix(
+        long bucketStartSec,
+        long frameSec,
+        int window,
+        int samples,
+        List<SymbolKey> symbols,
+        Double[] lastClose,
+        Double[] meanReturn,
+        Double[] volatility,
+        Double[][] covariance,
+        Double[][] correlation) {
+}
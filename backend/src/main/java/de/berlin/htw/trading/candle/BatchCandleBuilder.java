@@ -0,0 +1,63 @@
+package de.berlin.htw.trading.candle;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import de.berlin.htw.trading.candle.dto.Candle;
+import de.berlin.htw.trading.consumer.PerSymbolTasks;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Baut Candles offline aus aufgezeichneten Ticks, z.B. zum Nachfüllen von Historie. Jedes Symbol
+ * ist eine eigene Fork-Join-Aufgabe mit eigenem {@link TimeCandleAggregator}; Symbole teilen
+ * keinen Zustand, das Ergebnis ist daher unabhängig von der Parallelität.
+ */
+public final class BatchCandleBuilder {
+
+    private final long frameSec;
+    private final int parallelism;
+
+    public BatchCandleBuilder(long frameSec, int parallelism) {
+        this.frameSec = frameSec;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Liefert die Candles pro Symbol; ticks muss pro Symbol zeitlich geordnet sein.
+     */
+    public Map<SymbolKey, List<Candle>> build(Map<SymbolKey, List<Quote>> ticks) {
+        return PerSymbolTasks.run(parallelism, ticks, (key, quotes) -> {
+            TimeCandleAggregator agg = new TimeCandleAggregator(frameSec);
+            for (Quote q : quotes)
+                agg.acceptQuote(q);
+            return new ArrayList<>(agg.view().values());
+        });
+    }
+
+    /**
+     * Schreibt eine CSV-Datei pro Symbol nach dir ("symbolId_venueId_channel.csv").
+     */
+    public static void write(Map<SymbolKey, List<Candle>> candles, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        for (var e : candles.entrySet()) {
+            SymbolKey k = e.getKey();
+            Path file = dir.resolve(k.symbolId + "_" + k.venueId + "_" + k.channel + ".csv");
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                out.write("bucketStartSec,open,high,low,close,ticks");
+                out.newLine();
+                for (Candle c : e.getValue()) {
+                    out.write(c.bucketStartSec() + "," + c.open() + "," + c.high() + "," + c.low() + ","
+                            + c.close() + "," + c.ticks());
+                    out.newLine();
+                }
+            }
+        }
+    }
+}
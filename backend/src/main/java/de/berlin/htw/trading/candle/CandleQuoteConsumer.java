@@ -10,27 +10,34 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import de.berlin.htw.trading.candle.dto.Candle;
 import de.berlin.htw.trading.consumer.AbstractReplayingConsumer;
 import de.berlin.htw.trading.events.CandleEvent;
+import de.berlin.htw.trading.events.EventExecutors;
 import de.berlin.htw.trading.marketdata.IMarketDataBuffer;
 import de.berlin.htw.trading.marketdata.IMarketDataBuffer.ChangeRecord;
 import de.berlin.htw.trading.marketdata.IMarketDataBuffer.Snapshot;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.SymbolSnapshot;
 import de.berlin.htw.trading.quote.dto.Quote;
 import de.berlin.htw.trading.quote.dto.SymbolKey;
+import de.berlin.htw.trading.retention.Retained;
+import de.berlin.htw.trading.retention.TimerWheel;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 
 @ApplicationScoped
-public class CandleQuoteConsumer extends AbstractReplayingConsumer {
+public class CandleQuoteConsumer extends AbstractReplayingConsumer implements Retained {
 
-    private static final long FRAME_SEC = 60;
+    public static final long FRAME_SEC = 60;
     private final Duration retention = Duration.ofHours(1);
 
     private final Map<SymbolKey, TimeCandleAggregator> aggs = new ConcurrentHashMap<>();
+    // Ablauf der ältesten Candle pro Symbol; verdrängt wird in sweep()
+    private final TimerWheel<SymbolKey> expiries = new TimerWheel<>(this::nowMs);
 
     @Inject
     Logger logger;
@@ -38,52 +45,138 @@ public class CandleQuoteConsumer extends AbstractReplayingConsumer {
     @Inject
     private Event<CandleEvent> candleEvent;
 
+    @Inject
+    private EventExecutors executors;
+
+    @ConfigProperty(name = "consumers.lazy", defaultValue = "true")
+    boolean lazy = true;
+
     @Override
     protected Duration initialSnapshotWindow() {
         return Duration.ofMinutes(30);
     }
 
+    @Override
+    protected boolean lazy() {
+        return lazy;
+    }
+
+    @Override
+    protected Duration materializeWindow() {
+        return retention;
+    }
+
+    @Override
+    protected void materializeSymbol(SymbolKey key, SymbolSnapshot snap) {
+        var agg = new TimeCandleAggregator(FRAME_SEC);
+        for (Quote q : snap.window())
+            agg.acceptQuote(q);
+        // Ohne Quotes im Fenster liefert wenigstens das letzte bekannte eine Candle
+        if (snap.window().isEmpty() && snap.last() != null)
+            agg.acceptQuote(snap.last());
+        aggs.put(key, agg);
+        scheduleExpiry(key, agg);
+    }
+
+    @Override
+    protected void dropSymbol(SymbolKey key) {
+        expiries.cancel(key);
+        aggs.remove(key);
+    }
+
     @Override
     protected void rebuildFromSnapshot(Snapshot snap) {
         aggs.clear();
-        for (var e : snap.windowPerSymbol().entrySet()) {
-            var key = e.getKey();
-            var agg = aggs.computeIfAbsent(key, k -> new TimeCandleAggregator(FRAME_SEC));
-            for (Quote q : e.getValue()) {
+        expiries.clear();
+        // Aggregatoren sind pro Symbol unabhängig: parallel aufbauen, danach eintragen
+        var built = perSymbol(snap.windowPerSymbol(), (key, quotes) -> {
+            var agg = new TimeCandleAggregator(FRAME_SEC);
+            for (Quote q : quotes)
                 agg.acceptQuote(q);
-            }
-            candleEvent.fireAsync(new CandleEvent(key));
+            return agg;
+        });
+        for (var e : built.entrySet()) {
+            aggs.put(e.getKey(), e.getValue());
+            scheduleExpiry(e.getKey(), e.getValue());
         }
+        // Erst wenn alle Symbole stehen, sehen Abnehmer einen vollständigen Zustand
+        for (var key : built.keySet())
+            candleEvent.fireAsync(new CandleEvent(key), executors.of(CandleEvent.class, key));
     }
 
     @Override
     protected void applyChanges(List<ChangeRecord> changes) {
         Set<SymbolKey> updatedKeys = new HashSet<>();
-        long minStart = (System.currentTimeMillis() / 1000) - retention.getSeconds();
         for (var cr : changes) {
             var qc = (IMarketDataBuffer.QuoteChange) cr;
-            var agg = aggs.computeIfAbsent(qc.key(), k -> new TimeCandleAggregator(FRAME_SEC));
-            agg.acceptQuote(qc.quote());
-            agg.evictOlderThan(minStart);
+            if (!wants(qc))
+                continue;
+            var agg = aggs.get(qc.key());
+            if (agg == null) {
+                // Neue Symbole bekommen ihre Ablauffrist; verdrängt wird im Hintergrund (sweep)
+                agg = new TimeCandleAggregator(FRAME_SEC);
+                aggs.put(qc.key(), agg);
+                agg.acceptQuote(qc.quote());
+                scheduleExpiry(qc.key(), agg);
+            } else {
+                agg.acceptQuote(qc.quote());
+            }
             updatedKeys.add(qc.key());
         }
 
         for (var key : updatedKeys) {
-            candleEvent.fireAsync(new CandleEvent(key));
+            candleEvent.fireAsync(new CandleEvent(key), executors.of(CandleEvent.class, key));
         }
 
     }
 
+    @Override
+    public int sweep(long nowMs) {
+        long minStart = nowMs / 1000 - retention.getSeconds();
+        return locked(() -> {
+            var due = expiries.expire(nowMs);
+            for (SymbolKey key : due) {
+                var agg = aggs.get(key);
+                if (agg == null)
+                    continue;
+                agg.evictOlderThan(minStart);
+                if (agg.view().isEmpty())
+                    aggs.remove(key);
+                else
+                    scheduleExpiry(key, agg);
+            }
+            return due.size();
+        });
+    }
+
+    @Override
+    public int tracked() {
+        return expiries.size();
+    }
+
+    // Die älteste Candle fällt heraus, sobald ihr Start älter als die Retention ist
+    private void scheduleExpiry(SymbolKey key, TimeCandleAggregator agg) {
+        var first = agg.view().firstEntry();
+        if (first != null)
+            expiries.schedule(key, (first.getKey() + retention.getSeconds() + 1) * 1000);
+    }
+
     public List<Candle> getCandles(SymbolKey key, Duration window) {
+        long min = (nowMs() / 1000) - window.getSeconds();
+        return getCandles(key, min, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    public List<Candle> getCandles(SymbolKey key, long fromSec, long toSec, int limit) {
         var agg = aggs.get(key);
-        if (agg == null)
+        if (agg == null || fromSec > toSec)
             return List.of();
-        NavigableMap<Long, Candle> m = agg.view();
-        long min = (System.currentTimeMillis() / 1000) - window.getSeconds();
+        NavigableMap<Long, Candle> m = agg.view().subMap(fromSec, true, toSec, true);
         var out = new ArrayList<Candle>();
-        for (Candle c : m.values())
-            if (c.bucketStartSec() >= min)
-                out.add(c);
+        for (Candle c : m.values()) {
+            if (out.size() >= limit)
+                break;
+            out.add(c);
+        }
         return out;
     }
 
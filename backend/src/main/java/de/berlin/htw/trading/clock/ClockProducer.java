@@ -0,0 +1,22 @@
+package de.berlin.htw.trading.clock;
+
+import java.time.Clock;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+
+/**
+ * Zeitquelle für Buffer, Consumer und Retention: im Betrieb die Systemuhr. Tests und
+ * Batch-Läufe setzen stattdessen eine {@link VirtualClock} ein, damit aufgezeichnete Ticks
+ * schneller als in Echtzeit durch dieselbe Logik laufen können.
+ */
+@ApplicationScoped
+public class ClockProducer {
+
+    @Produces
+    @Singleton
+    Clock clock() {
+        return Clock.systemUTC();
+    }
+}
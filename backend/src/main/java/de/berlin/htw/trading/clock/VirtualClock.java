@@ -0,0 +1,54 @@
+package de.berlin.htw.trading.clock;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Von außen gestellte Uhr (UTC), z.B. auf den Zeitstempel des gerade verarbeiteten Ticks. Sie
+ * läuft nur vorwärts: ein älterer Zeitpunkt lässt sie stehen.
+ */
+public final class VirtualClock extends Clock {
+
+    private final AtomicLong millis;
+
+    public VirtualClock(long startMs) {
+        this.millis = new AtomicLong(startMs);
+    }
+
+    /**
+     * Stellt die Uhr auf ms, falls das später als die aktuelle Zeit ist.
+     */
+    public void advanceTo(long ms) {
+        millis.accumulateAndGet(ms, Math::max);
+    }
+
+    public void advance(long deltaMs) {
+        millis.addAndGet(Math.max(0, deltaMs));
+    }
+
+    @Override
+    public long millis() {
+        return millis.get();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis.get());
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    // trading rechnet nur mit Epochen-Zeit; eine andere Zone wäre eine zweite, getrennte Uhr
+    @Override
+    public Clock withZone(ZoneId zone) {
+        if (!ZoneOffset.UTC.equals(zone))
+            throw new UnsupportedOperationException("VirtualClock läuft nur in UTC");
+        return this;
+    }
+}
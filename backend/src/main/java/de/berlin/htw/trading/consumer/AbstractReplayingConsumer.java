@@ -1,36 +1,108 @@
 package de.berlin.htw.trading.consumer;
 
+import java.time.Clock;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.IntSupplier;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import de.berlin.htw.trading.marketdata.BufferAdvancedEvent;
 import de.berlin.htw.trading.marketdata.IMarketDataBuffer;
 import de.berlin.htw.trading.marketdata.IMarketDataBuffer.ChangeRecord;
 import de.berlin.htw.trading.marketdata.IMarketDataBuffer.Snapshot;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.SymbolSnapshot;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.event.Observes;
 import jakarta.enterprise.event.ObservesAsync;
 import jakarta.inject.Inject;
 
+/**
+ * Basis der Consumer, die den Buffer über Snapshot plus Change-Log nachbilden.
+ *
+ * Mit {@link #lazy()} hält ein Consumer nur Zustand für Symbole, die jemand angefragt hat:
+ * {@link #watch(SymbolKey)} bzw. {@link #touch(SymbolKey)} spielen das Fenster des Symbols
+ * aus dem Buffer nach, Änderungen anderer Symbole werden in applyChanges über
+ * {@link #wants(ChangeRecord)} übersprungen. Zustand ohne Abonnenten verwirft
+ * {@link #dropIdle(long)} nach der Leerlaufzeit.
+ */
 public abstract class AbstractReplayingConsumer {
 
     protected abstract Duration initialSnapshotWindow();
 
+    /**
+     * Fenster, das beim Aufbau eines einzelnen Symbols nachgespielt wird (nur bei lazy()).
+     */
+    protected Duration materializeWindow() {
+        return initialSnapshotWindow();
+    }
+
     protected int maxBatch() {
         return 10_000;
     }
 
+    /**
+     * true: Zustand pro Symbol erst bei Bedarf aufbauen (siehe {@link #materializeSymbol}).
+     */
+    protected boolean lazy() {
+        return false;
+    }
+
     @Inject
     protected IMarketDataBuffer buffer;
 
+    // Vorbelegt, damit per new erzeugte Consumer (Tests, Batch) ohne CDI laufen
+    @Inject
+    protected Clock clock = Clock.systemUTC();
+
+    // Threads für den Aufbau aus dem Snapshot beim Start; 0 = alle Kerne
+    @ConfigProperty(name = "consumers.rebuild-parallelism", defaultValue = "0")
+    protected int rebuildParallelism = 0;
+
     protected volatile long lastAppliedSeq = 0L;
 
+    // Signale kommen von mehreren Ingest-Spuren gleichzeitig; angewendet wird nacheinander
+    private final Object applyLock = new Object();
+
+    // Nur bei lazy(): aufgebaute Symbole mit der Sequenz ihres Nachspielens
+    private final Map<SymbolKey, Demand> demand = new ConcurrentHashMap<>();
+
+    private static final class Demand {
+        final long seq;
+        volatile boolean watched;
+        volatile long idleSinceMs;
+
+        Demand(long seq) {
+            this.seq = seq;
+        }
+    }
+
     @PostConstruct
     protected void postConstructInit() {
         initialize();
     }
 
     public final void initialize() {
+        if (lazy()) {
+            synchronized (applyLock) {
+                long seq = buffer.currentSeq();
+                rebuildFromSnapshot(new Snapshot(seq, Map.of(), Map.of(), Map.of(), Map.of()));
+                this.lastAppliedSeq = seq;
+                // Bereits angefragte Symbole (z.B. nach erneutem Initialisieren) neu aufbauen
+                for (var e : demand.entrySet()) {
+                    Demand d = replay(e.getKey());
+                    d.watched = e.getValue().watched;
+                    d.idleSinceMs = e.getValue().idleSinceMs;
+                    e.setValue(d);
+                }
+            }
+            return;
+        }
         var snap = buffer.snapshot(initialSnapshotWindow());
         rebuildFromSnapshot(snap);
         this.lastAppliedSeq = snap.seq();
@@ -49,18 +121,157 @@ public abstract class AbstractReplayingConsumer {
     }
 
     protected void pullAndApplyUntil(long targetSeq) {
-        long cursor = this.lastAppliedSeq;
-        while (cursor < targetSeq) {
-            List<ChangeRecord> batch = buffer.pollSince(cursor, maxBatch());
-            if (batch.isEmpty())
-                break;
-            applyChanges(batch);
-            cursor = batch.get(batch.size() - 1).seq();
-            this.lastAppliedSeq = cursor;
+        if (this.lastAppliedSeq >= targetSeq)
+            return;
+        synchronized (applyLock) {
+            long cursor = this.lastAppliedSeq;
+            while (cursor < targetSeq) {
+                List<ChangeRecord> batch = buffer.pollSince(cursor, maxBatch());
+                if (batch.isEmpty())
+                    break;
+                applyChanges(batch);
+                cursor = batch.get(batch.size() - 1).seq();
+                this.lastAppliedSeq = cursor;
+            }
         }
     }
 
+    /**
+     * Ein Abonnent interessiert sich für das Symbol: Zustand aufbauen, falls noch nicht
+     * vorhanden, und bis {@link #unwatch(SymbolKey)} nicht verwerfen.
+     */
+    public final void watch(SymbolKey key) {
+        if (!lazy())
+            return;
+        materialize(key, true);
+    }
+
+    /**
+     * Der letzte Abonnent ist weg; ab jetzt läuft die Leerlaufzeit.
+     */
+    public final void unwatch(SymbolKey key) {
+        Demand d = demand.get(key);
+        if (d == null)
+            return;
+        d.watched = false;
+        d.idleSinceMs = nowMs();
+    }
+
+    /**
+     * Einmalige Anfrage ohne Abo (History, Kennzahlen): Zustand aufbauen, falls nötig. Ohne
+     * Abonnenten beginnt die Leerlaufzeit neu.
+     */
+    public final void touch(SymbolKey key) {
+        if (!lazy())
+            return;
+        Demand d = demand.get(key);
+        if (d != null && d.watched)
+            return;
+        materialize(key, false);
+    }
+
+    /**
+     * Verwirft den Zustand aller Symbole, die seit mindestens idleMs keinen Abonnenten haben,
+     * und liefert deren Anzahl.
+     */
+    public final int dropIdle(long idleMs) {
+        if (demand.isEmpty())
+            return 0;
+        long limit = nowMs() - idleMs;
+        List<SymbolKey> dropped = new ArrayList<>();
+        synchronized (applyLock) {
+            for (var e : demand.entrySet()) {
+                Demand d = e.getValue();
+                if (!d.watched && d.idleSinceMs <= limit)
+                    dropped.add(e.getKey());
+            }
+            for (SymbolKey key : dropped) {
+                demand.remove(key);
+                dropSymbol(key);
+            }
+        }
+        return dropped.size();
+    }
+
+    /**
+     * Anzahl der Symbole mit aufgebautem Zustand (nur bei lazy()).
+     */
+    public final int materialized() {
+        return demand.size();
+    }
+
+    /**
+     * Ob applyChanges die Änderung anwenden soll: immer ohne lazy(), sonst nur für aufgebaute
+     * Symbole und nur, was nicht schon im nachgespielten Fenster steckt.
+     */
+    protected final boolean wants(ChangeRecord cr) {
+        if (!lazy())
+            return true;
+        Demand d = demand.get(cr.key());
+        return d != null && cr.seq() > d.seq;
+    }
+
+    /**
+     * Führt action wie applyChanges unter der Sperre des Consumers aus (z.B. Verdrängung im
+     * Hintergrund).
+     */
+    protected final int locked(IntSupplier action) {
+        synchronized (applyLock) {
+            return action.getAsInt();
+        }
+    }
+
+    /**
+     * Für rebuildFromSnapshot: baut den Zustand jedes Symbols parallel (siehe
+     * {@link PerSymbolTasks}). Eintragen und Events danach im aufrufenden Thread.
+     */
+    protected final <V, R> Map<SymbolKey, R> perSymbol(Map<SymbolKey, V> input, BiFunction<SymbolKey, V, R> work) {
+        return PerSymbolTasks.run(rebuildParallelism, input, work);
+    }
+
+    protected final long nowMs() {
+        return clock.millis();
+    }
+
+    /**
+     * Ob das Symbol gerade Abonnenten hat (nur bei lazy(), sonst immer false).
+     */
+    protected final boolean isWatched(SymbolKey key) {
+        Demand d = demand.get(key);
+        return d != null && d.watched;
+    }
+
+    // Unter applyLock, damit dropIdle() nicht zwischen Aufbau und Markierung verwirft
+    private void materialize(SymbolKey key, boolean watch) {
+        synchronized (applyLock) {
+            Demand d = demand.computeIfAbsent(key, this::replay);
+            if (watch)
+                d.watched = true;
+            else if (!d.watched)
+                d.idleSinceMs = nowMs();
+        }
+    }
+
+    // Unter applyLock: das Fenster reicht mindestens bis lastAppliedSeq, spätere Änderungen
+    // des Symbols bis zur Sequenz des Fensters filtert wants()
+    private Demand replay(SymbolKey key) {
+        SymbolSnapshot snap = buffer.snapshot(key, materializeWindow());
+        materializeSymbol(key, snap);
+        return new Demand(snap.seq());
+    }
+
+    /**
+     * Baut den Zustand eines Symbols aus seinem Fenster auf (nur bei lazy()).
+     */
+    protected abstract void materializeSymbol(SymbolKey key, SymbolSnapshot snap);
+
+    /**
+     * Verwirft den Zustand eines Symbols (nur bei lazy()).
+     */
+    protected void dropSymbol(SymbolKey key) {
+    }
+
     protected abstract void rebuildFromSnapshot(Snapshot snap);
 
     protected abstract void applyChanges(List<ChangeRecord> changes);
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+package de.berlin.htw.trading.consumer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Führt eine Berechnung pro Symbol auf einem eigenen, begrenzten Fork-Join-Pool aus (eine
+ * Aufgabe je Symbol, freie Worker stehlen sich die übrigen). work darf nur Zustand des eigenen
+ * Symbols anfassen; das Ergebnis kommt in der Reihenfolge von input zurück und ist nach dem
+ * Aufruf für den aufrufenden Thread sichtbar.
+ */
+public final class PerSymbolTasks {
+
+    private PerSymbolTasks() {
+    }
+
+    private static final class SymbolTask<V, R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final SymbolKey key;
+        private final V value;
+        private final BiFunction<SymbolKey, V, R> work;
+
+        SymbolTask(SymbolKey key, V value, BiFunction<SymbolKey, V, R> work) {
+            this.key = key;
+            this.value = value;
+            this.work = work;
+        }
+
+        @Override
+        protected R compute() {
+            return work.apply(key, value);
+        }
+    }
+
+    /**
+     * parallelism <= 0 nimmt alle Kerne; bei einem Thread oder höchstens einem Symbol läuft alles
+     * im aufrufenden Thread ohne Pool.
+     */
+    public static <V, R> Map<SymbolKey, R> run(int parallelism, Map<SymbolKey, V> input,
+            BiFunction<SymbolKey, V, R> work) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        threads = Math.min(threads, input.size());
+        Map<SymbolKey, R> out = new LinkedHashMap<>();
+        if (threads <= 1) {
+            for (var e : input.entrySet())
+                out.put(e.getKey(), work.apply(e.getKey(), e.getValue()));
+            return out;
+        }
+
+        List<SymbolTask<V, R>> tasks = new ArrayList<>(input.size());
+        for (var e : input.entrySet())
+            tasks.add(new SymbolTask<>(e.getKey(), e.getValue(), work));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        } finally {
+            pool.shutdown();
+        }
+        for (SymbolTask<V, R> t : tasks)
+            out.put(t.key, t.join());
+        return out;
+    }
+}
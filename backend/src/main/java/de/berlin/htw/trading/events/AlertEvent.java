@@ -0,0 +1,8 @@
+package de.berlin.htw.trading.events;
+
+import java.util.List;
+
+import de.berlin.htw.trading.alert.dto.AlertTrigger;
+
+public record AlertEvent(String owner, List<AlertTrigger> triggers) {
+}
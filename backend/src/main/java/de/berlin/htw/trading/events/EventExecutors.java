@@ -0,0 +1,111 @@
+package de.berlin.htw.trading.events;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.virtual.threads.VirtualThreads;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.NotificationOptions;
+import jakarta.inject.Inject;
+
+/**
+ * Executor-Auswahl für fireAsync pro Event-Typ (events.executor.*):
+ * <ul>
+ * <li>ingest: {@link StripedExecutor} mit begrenzten Spuren; Events desselben Symbols bleiben
+ * in Reihenfolge</li>
+ * <li>fanout: virtuelle Threads (auf JDKs ohne virtuelle Threads der Quarkus-Fallback)</li>
+ * <li>default: asynchroner Standard-Executor des CDI-Containers</li>
+ * </ul>
+ * So kann ein Rückstau im Fan-out die Übernahme neuer Kurse nicht mehr aufhalten.
+ */
+@ApplicationScoped
+public class EventExecutors {
+
+    public static final String INGEST = "ingest";
+    public static final String FANOUT = "fanout";
+    public static final String DEFAULT = "default";
+
+    public record Stats(StripedExecutor.Stats ingest, long fanoutInFlight, long fanoutCompleted) {
+    }
+
+    @ConfigProperty(name = "events.ingest.lanes", defaultValue = "4")
+    int ingestLanes;
+
+    @ConfigProperty(name = "events.ingest.queue-capacity", defaultValue = "10000")
+    int ingestCapacity;
+
+    @ConfigProperty(name = "events.executor.initial-quote", defaultValue = INGEST)
+    String initialQuote;
+
+    @ConfigProperty(name = "events.executor.quote-delta", defaultValue = INGEST)
+    String quoteDelta;
+
+    @ConfigProperty(name = "events.executor.quote", defaultValue = FANOUT)
+    String quote;
+
+    @ConfigProperty(name = "events.executor.candle", defaultValue = FANOUT)
+    String candle;
+
+    @ConfigProperty(name = "events.executor.alert", defaultValue = FANOUT)
+    String alert;
+
+    @Inject
+    @VirtualThreads
+    ExecutorService virtualThreads;
+
+    private StripedExecutor ingest;
+    private Map<Class<?>, String> kinds;
+    private final AtomicLong fanoutInFlight = new AtomicLong();
+    private final AtomicLong fanoutCompleted = new AtomicLong();
+    private final NotificationOptions fanout = NotificationOptions.ofExecutor(this::fanout);
+    private final NotificationOptions containerDefault = NotificationOptions.builder().build();
+
+    @PostConstruct
+    void init() {
+        ingest = new StripedExecutor("ingest", ingestLanes, ingestCapacity);
+        kinds = Map.of(
+                InitialQuoteEvent.class, initialQuote,
+                QuoteDeltaEvent.class, quoteDelta,
+                QuoteEvent.class, quote,
+                CandleEvent.class, candle,
+                AlertEvent.class, alert);
+    }
+
+    /**
+     * Zustelloptionen für ein Event; orderingKey bestimmt bei "ingest" die Spur
+     * (z.B. Subscription-ID oder Symbol).
+     */
+    public NotificationOptions of(Class<?> eventType, Object orderingKey) {
+        return switch (kinds.getOrDefault(eventType, DEFAULT)) {
+            case INGEST -> NotificationOptions.ofExecutor(ingest.lane(orderingKey));
+            case FANOUT -> fanout;
+            default -> containerDefault;
+        };
+    }
+
+    public Stats stats() {
+        return new Stats(ingest.stats(), fanoutInFlight.get(), fanoutCompleted.get());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ingest.shutdown();
+    }
+
+    private void fanout(Runnable task) {
+        fanoutInFlight.incrementAndGet();
+        virtualThreads.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                fanoutInFlight.decrementAndGet();
+                fanoutCompleted.incrementAndGet();
+            }
+        });
+    }
+}
@@ -0,0 +1,76 @@
+package de.berlin.htw.trading.events;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feste Anzahl an Spuren mit je einem Thread und einer begrenzten Warteschlange. Aufgaben mit
+ * demselben Schlüssel landen immer auf derselben Spur und werden dadurch in Einreichungsreihenfolge
+ * ausgeführt. Ist eine Spur voll, blockiert der Einreicher, bis wieder Platz ist (Gegendruck
+ * statt unbegrenztem Wachstum).
+ */
+public final class StripedExecutor {
+
+    public record Stats(int lanes, int queued, int maxLaneDepth, long completed, long blocked) {
+    }
+
+    private final ThreadPoolExecutor[] lanes;
+    private final Executor[] views;
+    private final AtomicLong blocked = new AtomicLong();
+
+    public StripedExecutor(String name, int laneCount, int capacity) {
+        lanes = new ThreadPoolExecutor[Math.max(1, laneCount)];
+        views = new Executor[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            String threadName = name + "-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, capacity)),
+                    r -> {
+                        Thread t = new Thread(r, threadName);
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    (r, executor) -> {
+                        if (executor.isShutdown())
+                            throw new RejectedExecutionException(threadName + " ist beendet");
+                        blocked.incrementAndGet();
+                        try {
+                            executor.getQueue().put(r);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException(e);
+                        }
+                    });
+            views[i] = lanes[i];
+        }
+    }
+
+    /**
+     * Spur für den Schlüssel; null landet auf Spur 0.
+     */
+    public Executor lane(Object key) {
+        return views[key == null ? 0 : Math.floorMod(key.hashCode(), views.length)];
+    }
+
+    public Stats stats() {
+        int queued = 0;
+        int max = 0;
+        long completed = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            int depth = lane.getQueue().size();
+            queued += depth;
+            max = Math.max(max, depth);
+            completed += lane.getCompletedTaskCount();
+        }
+        return new Stats(lanes.length, queued, max, completed, blocked.get());
+    }
+
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes)
+            lane.shutdown();
+    }
+}
@@ -3,7 +3,9 @@ package de.berlin.htw.trading.marketdata;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
+import de.berlin.htw.trading.quote.SeriesBudget;
 import de.berlin.htw.trading.quote.dto.DeltaQuote;
 import de.berlin.htw.trading.quote.dto.Quote;
 import de.berlin.htw.trading.quote.dto.SymbolKey;
@@ -11,16 +13,43 @@ import de.berlin.htw.trading.quote.dto.SymbolKey;
 public interface IMarketDataBuffer {
     long currentSeq();
 
+    /**
+     * Kleinste noch im Change-Log vorhandene Sequenz; currentSeq() + 1, wenn das Log leer ist.
+     * Änderungen vor firstSeq() sind nur noch über einen Snapshot erreichbar.
+     */
+    long firstSeq();
+
+    /**
+     * Kennung dieser Buffer-Instanz. Sequenzen sind nur innerhalb derselben Epoche vergleichbar.
+     */
+    long epoch();
+
     long appendFull(Quote q);
 
     long appendDelta(DeltaQuote dq);
 
     Snapshot snapshot(Duration window);
 
+    /**
+     * Fenster eines einzelnen Symbols; seq ist genau die Sequenz, bis zu der window und last
+     * reichen. Änderungen mit größerer Sequenz kommen danach über pollSince().
+     */
+    SymbolSnapshot snapshot(SymbolKey key, Duration window);
+
     List<ChangeRecord> pollSince(long afterSeq, int maxRecords);
 
     SymbolKey symbolForSubId(int subId);
 
+    /**
+     * Belegung des Speicherbudgets insgesamt und pro Symbol.
+     */
+    SeriesBudget.Stats memory();
+
+    /**
+     * Symbole mit Abonnenten werden beim Kürzen wegen des Speicherbudgets zuletzt angefasst.
+     */
+    void setSubscribed(Predicate<SymbolKey> subscribed);
+
     String quoteTypeForSubId(int subId);
 
     record Snapshot(
@@ -31,6 +60,9 @@ public interface IMarketDataBuffer {
             Map<SymbolKey, java.util.List<Quote>> windowPerSymbol) {
     }
 
+    record SymbolSnapshot(long seq, Quote last, List<Quote> window) {
+    }
+
     sealed interface ChangeRecord permits QuoteChange {
         long seq();
 
@@ -1,5 +1,6 @@
 package de.berlin.htw.trading.marketdata;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Deque;
@@ -9,41 +10,78 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import de.berlin.htw.trading.quote.QuoteSeries;
+import de.berlin.htw.trading.quote.SeriesBudget;
 import de.berlin.htw.trading.quote.dto.DeltaQuote;
 import de.berlin.htw.trading.quote.dto.Quote;
 import de.berlin.htw.trading.quote.dto.SymbolKey;
+import de.berlin.htw.trading.retention.Retained;
+import de.berlin.htw.trading.retention.TimerWheel;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 
 @ApplicationScoped
-public class InMemoryMarketDataBuffer extends AbstractMarketDataBuffer {
+public class InMemoryMarketDataBuffer extends AbstractMarketDataBuffer implements Retained {
 
-    private final Duration retention = Duration.ofHours(1);
+    private final Duration retention = Duration.ofHours(24);
     private final int logMaxRecords = 200_000;
 
+    // Obergrenze für die Zeitreihen aller Symbole zusammen; das Change-Log ist über
+    // logMaxRecords begrenzt
+    @ConfigProperty(name = "buffer.max-bytes", defaultValue = "268435456")
+    long maxBytes = 268_435_456L;
+
+    // Zeit für Fenster und Ablauf; epoch bleibt die Systemzeit des Prozessstarts
+    @Inject
+    Clock clock = Clock.systemUTC();
+
     private final Map<Integer, SymbolKey> idToKey = new ConcurrentHashMap<>();
     private final Map<Integer, String> idToType = new ConcurrentHashMap<>();
-    private final Map<SymbolKey, Deque<Quote>> series = new ConcurrentHashMap<>();
+    private final Map<SymbolKey, QuoteSeries> series = new ConcurrentHashMap<>();
     private final Map<SymbolKey, Quote> lastPerSymbol = new ConcurrentHashMap<>();
 
     private final Deque<ChangeRecord> log = new ConcurrentLinkedDeque<>();
+    // size() der Deque zählt alle Knoten ab; geändert wird das Log nur unter this
+    private int logSize = 0;
     private final AtomicLong seq = new AtomicLong(0);
+    private final long epoch = System.currentTimeMillis();
+    private final SeriesBudget budget = new SeriesBudget(maxBytes);
+    // Ablauf des ältesten Quotes pro Symbol; verdrängt wird in sweep()
+    private final TimerWheel<SymbolKey> expiries = new TimerWheel<>(() -> clock.millis());
+
+    @PostConstruct
+    void init() {
+        budget.setMaxBytes(maxBytes);
+    }
 
     @Override
     public long currentSeq() {
         return seq.get();
     }
 
+    @Override
+    public long firstSeq() {
+        ChangeRecord first = log.peekFirst();
+        return first != null ? first.seq() : seq.get() + 1;
+    }
+
+    @Override
+    public long epoch() {
+        return epoch;
+    }
+
     @Override
     public Snapshot snapshot(Duration window) {
-        long nowSec = System.currentTimeMillis() / 1000;
+        long nowSec = clock.millis() / 1000;
         long minTs = nowSec - window.getSeconds();
         Map<SymbolKey, List<Quote>> byKey = new HashMap<>();
         for (var e : series.entrySet()) {
-            var out = new ArrayList<Quote>();
-            for (Quote q : e.getValue())
-                if (q.tsUnixSec() >= minTs)
-                    out.add(q);
+            var out = e.getValue().range(minTs, Long.MAX_VALUE);
             if (!out.isEmpty())
                 byKey.put(e.getKey(), out);
         }
@@ -55,6 +93,15 @@ public class InMemoryMarketDataBuffer extends AbstractMarketDataBuffer {
                 Map.copyOf(byKey));
     }
 
+    // Synchronisiert mit den Appends, damit Fenster und Sequenz zusammenpassen
+    @Override
+    public synchronized SymbolSnapshot snapshot(SymbolKey key, Duration window) {
+        long minTs = clock.millis() / 1000 - window.getSeconds();
+        QuoteSeries qs = series.get(key);
+        return new SymbolSnapshot(seq.get(), lastPerSymbol.get(key),
+                qs == null ? List.of() : qs.range(minTs, Long.MAX_VALUE));
+    }
+
     @Override
     public List<ChangeRecord> pollSince(long afterSeq, int maxRecords) {
         var out = new ArrayList<ChangeRecord>(Math.min(maxRecords, 4096));
@@ -78,6 +125,16 @@ public class InMemoryMarketDataBuffer extends AbstractMarketDataBuffer {
         return idToType.get(subId);
     }
 
+    @Override
+    public SeriesBudget.Stats memory() {
+        return budget.stats(series);
+    }
+
+    @Override
+    public void setSubscribed(Predicate<SymbolKey> subscribed) {
+        budget.setSubscribed(subscribed);
+    }
+
     @Override
     protected synchronized long doAppendFull(Quote q) {
         if (q == null || q.s() == null)
@@ -88,8 +145,7 @@ public class InMemoryMarketDataBuffer extends AbstractMarketDataBuffer {
             idToType.putIfAbsent(q.subId(), q.s().channel);
 
         lastPerSymbol.put(q.s(), q);
-        series.computeIfAbsent(q.s(), k -> new ConcurrentLinkedDeque<>()).addLast(q);
-        evictOld(q.s(), q.tsUnixSec());
+        store(q.s(), q);
 
         long s = seq.incrementAndGet();
         logAdd(new QuoteChange(s, q.tsUnixSec(), q.subId(), q.s(), q));
@@ -105,35 +161,69 @@ public class InMemoryMarketDataBuffer extends AbstractMarketDataBuffer {
             return 0L;
 
         Quote prev = lastPerSymbol.get(key);
-        Quote updated = Quote.applyDelta(key, prev, dq, idToType.get(dq.subId()));
+        Quote updated = Quote.applyDelta(key, prev, dq, idToType.get(dq.subId()), clock.millis() / 1000);
         if (updated == null)
             return 0L;
 
         lastPerSymbol.put(key, updated);
-        series.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>()).addLast(updated);
-        evictOld(key, updated.tsUnixSec());
+        store(key, updated);
 
         long s = seq.incrementAndGet();
         logAdd(new QuoteChange(s, updated.tsUnixSec(), dq.subId(), key, updated));
         return s;
     }
 
-    private void evictOld(SymbolKey key, long newestTsSec) {
-        long minTs = newestTsSec - retention.getSeconds();
-        Deque<Quote> dq = series.get(key);
-        if (dq != null) {
-            while (!dq.isEmpty() && dq.peekFirst().tsUnixSec() < minTs)
-                dq.pollFirst();
-            if (dq.isEmpty())
+    // Anhängen und das Speicherbudget nachführen; verdrängt und gekürzt wird nur in sweep()
+    private void store(SymbolKey key, Quote q) {
+        QuoteSeries qs = series.get(key);
+        if (qs == null) {
+            qs = new QuoteSeries();
+            series.put(key, qs);
+            expiries.schedule(key, expiryMs(q.tsUnixSec()));
+        }
+        long before = qs.footprintBytes();
+        qs.append(q);
+        budget.add(qs.footprintBytes() - before);
+    }
+
+    // Verdrängt wird, was älter als jetzt minus Retention ist, also eine Sekunde danach
+    private long expiryMs(long oldestTsSec) {
+        return (oldestTsSec + retention.getSeconds() + 1) * 1000;
+    }
+
+    @Override
+    public synchronized int sweep(long nowMs) {
+        long minTs = nowMs / 1000 - retention.getSeconds();
+        var due = expiries.expire(nowMs);
+        for (SymbolKey key : due) {
+            QuoteSeries qs = series.get(key);
+            if (qs == null)
+                continue;
+            long before = qs.footprintBytes();
+            qs.evictOlderThan(minTs);
+            budget.add(qs.footprintBytes() - before);
+            if (qs.isEmpty())
                 series.remove(key);
+            else
+                expiries.schedule(key, expiryMs(qs.first().tsUnixSec()));
         }
-        while (log.size() > logMaxRecords)
-            log.pollFirst();
+        // Überschreitungen seit dem letzten Lauf abbauen; bis dahin darf die Belegung um die
+        // Quotes eines Takts über dem Budget liegen
+        if (budget.exceeded())
+            budget.enforce(series);
+        return due.size();
+    }
+
+    @Override
+    public int tracked() {
+        return expiries.size();
     }
 
     private void logAdd(ChangeRecord cr) {
         log.addLast(cr);
-        while (log.size() > logMaxRecords)
+        if (++logSize > logMaxRecords) {
             log.pollFirst();
+            logSize--;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,387 @@
+package de.berlin.htw.trading.quote;
+
+import java.util.Arrays;
+
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Versiegelter, komprimierter Block aufeinanderfolgender Quotes eines Symbols (Gorilla-Verfahren):
+ * <ul>
+ * <li>Zeitstempel als Delta-of-Delta mit Präfixcodes (0 | 10+7 | 110+9 | 1110+12 | 1111+64 Bit)</li>
+ * <li>Double-Felder XOR gegen den Vorgänger; unverändert kostet ein Bit, sonst Wiederverwendung
+ * des letzten Bitfensters oder neues Fenster (6 Bit führende Nullen, 6 Bit Länge)</li>
+ * <li>Tick als ZigZag-Varint der Differenz in 4-Bit-Gruppen</li>
+ * <li>active als ein Bit, subId nur bei Änderung</li>
+ * </ul>
+ * Verlustfrei: Double-Werte werden bitgenau (inkl. NaN und null) wiederhergestellt. Vorne
+ * verdrängte Quotes werden nur über {@link #offset} ausgeblendet, der Block selbst bleibt
+ * unverändert.
+ */
+final class QuoteBlock {
+
+    final SymbolKey key;
+    final int count;
+    final long lastTs;
+    final Quote last;
+    private final long[] words;
+
+    // Anzahl vorne bereits verdrängter Quotes und erstes noch gültiges Quote
+    int offset;
+    Quote first;
+
+    private QuoteBlock(SymbolKey key, long[] words, int count, Quote first, Quote last) {
+        this.key = key;
+        this.words = words;
+        this.count = count;
+        this.first = first;
+        this.last = last;
+        this.lastTs = last.tsUnixSec();
+    }
+
+    // Arbeitspuffer zum Kodieren; versiegelt wird unter der Sperre der Serie auf dem
+    // aufrufenden Thread, übernommen wird nur der belegte Teil
+    private static final ThreadLocal<BitWriter> SCRATCH = ThreadLocal.withInitial(() -> new BitWriter(512));
+
+    static QuoteBlock seal(Quote[] quotes, int from, int n) {
+        BitWriter w = SCRATCH.get();
+        w.reset();
+        Encoder enc = new Encoder(w);
+        for (int i = from; i < from + n; i++)
+            enc.write(quotes[i]);
+        return new QuoteBlock(quotes[from].s(), w.toArray(), n, quotes[from], quotes[from + n - 1]);
+    }
+
+    int live() {
+        return count - offset;
+    }
+
+    long firstTs() {
+        return first.tsUnixSec();
+    }
+
+    /**
+     * Dekodiert den ganzen Block (inkl. verdrängter Quotes, Index = Position im Block).
+     */
+    Quote[] decode() {
+        Quote[] out = new Quote[count];
+        Decoder dec = new Decoder(new BitReader(words), key);
+        for (int i = 0; i < count; i++)
+            out[i] = dec.read();
+        return out;
+    }
+
+    long encodedBytes() {
+        return 8L * words.length;
+    }
+
+    private static final class Encoder {
+        final BitWriter w;
+        long prevTs;
+        long prevDelta;
+        long prevTick;
+        Integer prevSubId;
+        boolean started;
+        final DoubleColumn[] columns = new DoubleColumn[9];
+
+        Encoder(BitWriter w) {
+            this.w = w;
+            for (int i = 0; i < columns.length; i++)
+                columns[i] = new DoubleColumn();
+        }
+
+        void write(Quote q) {
+            long ts = q.tsUnixSec();
+            if (!started) {
+                w.write(ts, 64);
+                w.write(q.tick(), 64);
+                prevTick = q.tick();
+                started = true;
+            } else {
+                long delta = ts - prevTs;
+                writeDod(delta - prevDelta);
+                prevDelta = delta;
+                long d = q.tick() - prevTick;
+                writeVarint((d << 1) ^ (d >> 63));
+                prevTick = q.tick();
+            }
+            prevTs = ts;
+
+            columns[0].write(w, false, q.price());
+            writeNullable(columns[1], q.high());
+            writeNullable(columns[2], q.low());
+            writeNullable(columns[3], q.open());
+            writeNullable(columns[4], q.prevClose());
+            columns[5].write(w, false, q.abs());
+            columns[6].write(w, false, q.rel());
+            columns[7].write(w, false, q.tickSize());
+            writeNullable(columns[8], q.precision());
+
+            w.bit(q.active());
+            if (q.subId() == null ? prevSubId == null : q.subId().equals(prevSubId)) {
+                w.bit(false);
+            } else {
+                w.bit(true);
+                w.bit(q.subId() == null);
+                if (q.subId() != null)
+                    w.write(q.subId(), 32);
+                prevSubId = q.subId();
+            }
+        }
+
+        private void writeNullable(DoubleColumn c, Double value) {
+            c.write(w, value == null, value == null ? 0 : value);
+        }
+
+        private void writeDod(long dod) {
+            if (dod == 0) {
+                w.bit(false);
+            } else if (fits(dod, 7)) {
+                w.write(0b10, 2);
+                w.write(dod, 7);
+            } else if (fits(dod, 9)) {
+                w.write(0b110, 3);
+                w.write(dod, 9);
+            } else if (fits(dod, 12)) {
+                w.write(0b1110, 4);
+                w.write(dod, 12);
+            } else {
+                w.write(0b1111, 4);
+                w.write(dod, 64);
+            }
+        }
+
+        private void writeVarint(long v) {
+            while ((v & ~0x7L) != 0) {
+                w.write(0x8 | (v & 0x7), 4);
+                v >>>= 3;
+            }
+            w.write(v, 4);
+        }
+
+        private static boolean fits(long v, int bits) {
+            long min = -(1L << (bits - 1));
+            return v >= min && v <= -min - 1;
+        }
+    }
+
+    private static final class Decoder {
+        final BitReader r;
+        final SymbolKey key;
+        long prevTs;
+        long prevDelta;
+        long prevTick;
+        Integer prevSubId;
+        boolean started;
+        final DoubleColumn[] columns = new DoubleColumn[9];
+
+        Decoder(BitReader r, SymbolKey key) {
+            this.r = r;
+            this.key = key;
+            for (int i = 0; i < columns.length; i++)
+                columns[i] = new DoubleColumn();
+        }
+
+        Quote read() {
+            long ts;
+            long tick;
+            if (!started) {
+                ts = r.read(64);
+                tick = r.read(64);
+                started = true;
+            } else {
+                long delta = prevDelta + readDod();
+                ts = prevTs + delta;
+                prevDelta = delta;
+                long z = readVarint();
+                tick = prevTick + ((z >>> 1) ^ -(z & 1));
+            }
+            prevTs = ts;
+            prevTick = tick;
+
+            Double price = columns[0].read(r);
+            Double high = columns[1].read(r);
+            Double low = columns[2].read(r);
+            Double open = columns[3].read(r);
+            Double prevClose = columns[4].read(r);
+            Double abs = columns[5].read(r);
+            Double rel = columns[6].read(r);
+            Double tickSize = columns[7].read(r);
+            Double precision = columns[8].read(r);
+
+            boolean active = r.bit();
+            if (r.bit())
+                prevSubId = r.bit() ? null : (int) r.read(32);
+
+            return new Quote(key, ts, price, high, low, open, prevClose, abs, rel, tickSize, active, tick, prevSubId,
+                    precision);
+        }
+
+        private long readDod() {
+            if (!r.bit())
+                return 0;
+            if (!r.bit())
+                return signed(r.read(7), 7);
+            if (!r.bit())
+                return signed(r.read(9), 9);
+            if (!r.bit())
+                return signed(r.read(12), 12);
+            return r.read(64);
+        }
+
+        private long readVarint() {
+            long v = 0;
+            int shift = 0;
+            while (true) {
+                long group = r.read(4);
+                v |= (group & 0x7) << shift;
+                if ((group & 0x8) == 0)
+                    return v;
+                shift += 3;
+            }
+        }
+
+        private static long signed(long v, int bits) {
+            return (v << (64 - bits)) >> (64 - bits);
+        }
+    }
+
+    /**
+     * XOR-Kodierung einer Double-Spalte mit null-Unterstützung:
+     * 0 = wie Vorgänger | 11 = null | 100 = Bits wie Vorgänger |
+     * 1010 + Bits im alten Fenster | 1011 + 6 Bit führende Nullen + 6 Bit (Länge-1) + Bits
+     */
+    private static final class DoubleColumn {
+        long prevBits;
+        boolean prevNull = true;
+        int leading = -1;
+        int trailing;
+
+        void write(BitWriter w, boolean isNull, double value) {
+            long bits = isNull ? 0 : Double.doubleToRawLongBits(value);
+            if (isNull == prevNull && bits == prevBits) {
+                w.bit(false);
+                return;
+            }
+            w.bit(true);
+            w.bit(isNull);
+            prevNull = isNull;
+            if (isNull)
+                return;
+
+            long x = bits ^ prevBits;
+            prevBits = bits;
+            if (x == 0) {
+                w.bit(false);
+                return;
+            }
+            w.bit(true);
+            int lead = Math.min(63, Long.numberOfLeadingZeros(x));
+            int trail = Long.numberOfTrailingZeros(x);
+            if (leading >= 0 && lead >= leading && trail >= trailing) {
+                w.bit(false);
+                w.write(x >>> trailing, 64 - leading - trailing);
+            } else {
+                w.bit(true);
+                int len = 64 - lead - trail;
+                w.write(lead, 6);
+                w.write(len - 1, 6);
+                w.write(x >>> trail, len);
+                leading = lead;
+                trailing = trail;
+            }
+        }
+
+        Double read(BitReader r) {
+            if (r.bit()) {
+                if (r.bit()) {
+                    prevNull = true;
+                    return null;
+                }
+                prevNull = false;
+                if (r.bit()) {
+                    long x;
+                    if (!r.bit()) {
+                        x = r.read(64 - leading - trailing) << trailing;
+                    } else {
+                        leading = (int) r.read(6);
+                        int len = (int) r.read(6) + 1;
+                        trailing = 64 - leading - len;
+                        x = r.read(len) << trailing;
+                    }
+                    prevBits ^= x;
+                }
+            }
+            return prevNull ? null : Double.longBitsToDouble(prevBits);
+        }
+    }
+
+    private static final class BitWriter {
+        private long[] words;
+        private int bits;
+
+        BitWriter(int initialWords) {
+            words = new long[Math.max(4, initialWords)];
+        }
+
+        void reset() {
+            Arrays.fill(words, 0, Math.min(words.length, (bits + 63) >>> 6), 0L);
+            bits = 0;
+        }
+
+        void bit(boolean b) {
+            write(b ? 1 : 0, 1);
+        }
+
+        void write(long value, int n) {
+            if (n == 0)
+                return;
+            if (bits + n > 64L * words.length)
+                words = Arrays.copyOf(words, words.length * 2);
+            long v = n == 64 ? value : value & ((1L << n) - 1);
+            int idx = bits >>> 6;
+            int free = 64 - (bits & 63);
+            if (n <= free) {
+                words[idx] |= v << (free - n);
+            } else {
+                int rest = n - free;
+                words[idx] |= v >>> rest;
+                words[idx + 1] |= v << (64 - rest);
+            }
+            bits += n;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(words, (bits + 63) >>> 6);
+        }
+    }
+
+    private static final class BitReader {
+        private final long[] words;
+        private int pos;
+
+        BitReader(long[] words) {
+            this.words = words;
+        }
+
+        boolean bit() {
+            return read(1) != 0;
+        }
+
+        long read(int n) {
+            if (n == 0)
+                return 0;
+            int idx = pos >>> 6;
+            int free = 64 - (pos & 63);
+            long v;
+            if (n <= free) {
+                v = words[idx] >>> (free - n);
+            } else {
+                int rest = n - free;
+                v = (words[idx] << rest) | (words[idx + 1] >>> (64 - rest));
+            }
+            pos += n;
+            return n == 64 ? v : v & ((1L << n) - 1);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package de.berlin.htw.trading.quote;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.berlin.htw.trading.quote.dto.Quote;
+
+/**
+ * Reduziert Quote-Reihen für Line-Charts per Largest-Triangle-Three-Buckets (LTTB).
+ * Erster und letzter Punkt bleiben erhalten, dazwischen wird pro Bucket der Punkt
+ * gewählt, der mit dem vorherigen Treffer und dem Mittel des nächsten Buckets das
+ * größte Dreieck aufspannt.
+ */
+public final class QuoteDownsampler {
+
+    private QuoteDownsampler() {
+    }
+
+    public static List<Quote> lttb(List<Quote> data, int maxPoints) {
+        int n = data.size();
+        if (maxPoints <= 0 || n <= maxPoints)
+            return data;
+        if (maxPoints < 3)
+            return maxPoints == 1 ? List.of(data.get(n - 1)) : List.of(data.get(0), data.get(n - 1));
+
+        var out = new ArrayList<Quote>(maxPoints);
+        double every = (double) (n - 2) / (maxPoints - 2);
+
+        int a = 0;
+        out.add(data.get(0));
+
+        for (int i = 0; i < maxPoints - 2; i++) {
+            // Mittelwert des folgenden Buckets
+            int avgStart = (int) Math.floor((i + 1) * every) + 1;
+            int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, n);
+            double avgX = 0, avgY = 0;
+            for (int j = avgStart; j < avgEnd; j++) {
+                Quote q = data.get(j);
+                avgX += q.tsUnixSec();
+                avgY += q.price();
+            }
+            int avgLen = avgEnd - avgStart;
+            if (avgLen > 0) {
+                avgX /= avgLen;
+                avgY /= avgLen;
+            } else {
+                Quote q = data.get(n - 1);
+                avgX = q.tsUnixSec();
+                avgY = q.price();
+            }
+
+            // Punkt im aktuellen Bucket mit dem größten Dreieck
+            int from = (int) Math.floor(i * every) + 1;
+            int to = (int) Math.floor((i + 1) * every) + 1;
+            Quote pa = data.get(a);
+            double ax = pa.tsUnixSec(), ay = pa.price();
+            double maxArea = -1;
+            int next = from;
+            for (int j = from; j < to; j++) {
+                Quote q = data.get(j);
+                double area = Math.abs((ax - avgX) * (q.price() - ay) - (ax - q.tsUnixSec()) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            out.add(data.get(next));
+            a = next;
+        }
+
+        out.add(data.get(n - 1));
+        return out;
+    }
+}
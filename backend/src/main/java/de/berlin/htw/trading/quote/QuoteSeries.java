@@ -0,0 +1,323 @@
+package de.berlin.htw.trading.quote;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.berlin.htw.trading.quote.dto.Quote;
+
+/**
+ * Zeitlich sortierte Quote-Reihe eines Symbols. Ältere Quotes liegen in versiegelten,
+ * komprimierten {@link QuoteBlock}s, die jüngsten in einem unkomprimierten Puffer, der nach
+ * blockSize Quotes versiegelt wird. Bereichsabfragen suchen die Blöcke per binärer Suche über
+ * den Zeitstempel und dekodieren nur die tatsächlich überlappenden Blöcke.
+ */
+public final class QuoteSeries {
+
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    private final int blockSize;
+    private final ArrayList<QuoteBlock> blocks = new ArrayList<>();
+    private final Quote[] tail;
+    private int tailSize = 0;
+    private int size = 0;
+    // Summe von blockBytes() über alle Blöcke, damit footprintBytes() nicht zählen muss
+    private long sealedBytes = 0;
+
+    public QuoteSeries() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    public QuoteSeries(int blockSize) {
+        this.blockSize = Math.max(2, blockSize);
+        this.tail = new Quote[this.blockSize];
+    }
+
+    public synchronized void append(Quote q) {
+        long ts = q.tsUnixSec();
+        // Quotes kommen praktisch immer in Zeitreihenfolge; Nachzügler werden einsortiert
+        if (!blocks.isEmpty() && lastBlock().lastTs > ts && (tailSize == 0 || tail[0].tsUnixSec() > ts)) {
+            insertIntoBlock(q);
+        } else {
+            int pos = tailSize;
+            if (tailSize > 0 && tail[tailSize - 1].tsUnixSec() > ts) {
+                pos = upperBound(tail, 0, tailSize, ts);
+                System.arraycopy(tail, pos, tail, pos + 1, tailSize - pos);
+            }
+            tail[pos] = q;
+            tailSize++;
+            if (tailSize == blockSize)
+                sealTail();
+        }
+        size++;
+    }
+
+    /**
+     * Entfernt alle Quotes mit tsUnixSec kleiner als minTs und liefert deren Anzahl. Ganze Blöcke
+     * werden verworfen, ein teilweise betroffener Block wird nur einmal dekodiert.
+     */
+    public synchronized int evictOlderThan(long minTs) {
+        int n = 0;
+        while (!blocks.isEmpty()) {
+            QuoteBlock b = blocks.get(0);
+            if (b.lastTs < minTs) {
+                n += b.live();
+                blocks.remove(0);
+                sealedBytes -= blockBytes(b);
+                continue;
+            }
+            if (b.firstTs() < minTs) {
+                Quote[] all = b.decode();
+                int k = lowerBound(all, b.offset, b.count, minTs);
+                n += k - b.offset;
+                b.offset = k;
+                b.first = all[k];
+            }
+            break;
+        }
+        if (blocks.isEmpty() && tailSize > 0) {
+            int k = lowerBound(tail, 0, tailSize, minTs);
+            if (k > 0) {
+                System.arraycopy(tail, k, tail, 0, tailSize - k);
+                Arrays.fill(tail, tailSize - k, tailSize, null);
+                tailSize -= k;
+                n += k;
+            }
+        }
+        size -= n;
+        return n;
+    }
+
+    /**
+     * Verwirft die ältesten Quotes, um Speicher freizugeben: den ältesten Block bzw. ohne Blöcke
+     * die ältere Hälfte des Puffers. Das jüngste Quote bleibt immer erhalten. Liefert die Anzahl
+     * entfernter Quotes (0, wenn nichts mehr zu kürzen ist).
+     */
+    public synchronized int trimOldest() {
+        // Direkt nach dem Versiegeln steckt das jüngste Quote im einzigen Block
+        if (blocks.size() == 1 && tailSize == 0)
+            return 0;
+        if (!blocks.isEmpty()) {
+            QuoteBlock b = blocks.remove(0);
+            sealedBytes -= blockBytes(b);
+            size -= b.live();
+            return b.live();
+        }
+        int k = tailSize / 2;
+        if (k == 0)
+            return 0;
+        System.arraycopy(tail, k, tail, 0, tailSize - k);
+        Arrays.fill(tail, tailSize - k, tailSize, null);
+        tailSize -= k;
+        size -= k;
+        return k;
+    }
+
+    /**
+     * Quotes pro Sekunde über die gehaltene Zeitspanne (mindestens eine Sekunde).
+     */
+    public synchronized double ratePerSec() {
+        if (size == 0)
+            return 0;
+        long span = last().tsUnixSec() - first().tsUnixSec() + 1;
+        return (double) size / Math.max(1, span);
+    }
+
+    /**
+     * Alle Quotes mit fromSec <= tsUnixSec <= toSec.
+     */
+    public List<Quote> range(long fromSec, long toSec) {
+        return page(fromSec, toSec, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Wie {@link #range(long, long)}, überspringt aber die ersten skip Treffer und
+     * liefert höchstens limit Quotes.
+     */
+    public synchronized List<Quote> page(long fromSec, long toSec, int skip, int limit) {
+        var out = new ArrayList<Quote>();
+        if (limit <= 0 || fromSec > toSec)
+            return out;
+        int toSkip = Math.max(0, skip);
+
+        for (int i = firstBlockEndingAtOrAfter(fromSec); i < blocks.size() && out.size() < limit; i++) {
+            QuoteBlock b = blocks.get(i);
+            if (b.firstTs() > toSec)
+                return out;
+            // vollständig enthaltene Blöcke werden beim Überspringen nicht dekodiert
+            if (toSkip >= b.live() && b.firstTs() >= fromSec && b.lastTs <= toSec) {
+                toSkip -= b.live();
+                continue;
+            }
+            Quote[] all = b.decode();
+            int lo = lowerBound(all, b.offset, b.count, fromSec);
+            int hi = upperBound(all, b.offset, b.count, toSec);
+            toSkip = collect(all, lo, hi, toSkip, limit, out);
+        }
+
+        int lo = lowerBound(tail, 0, tailSize, fromSec);
+        int hi = upperBound(tail, 0, tailSize, toSec);
+        collect(tail, lo, hi, toSkip, limit, out);
+        return out;
+    }
+
+    /**
+     * Anzahl der Quotes mit fromSec <= tsUnixSec <= toSec. Dekodiert höchstens die beiden
+     * Randblöcke.
+     */
+    public synchronized int count(long fromSec, long toSec) {
+        if (fromSec > toSec)
+            return 0;
+        int n = 0;
+        for (int i = firstBlockEndingAtOrAfter(fromSec); i < blocks.size(); i++) {
+            QuoteBlock b = blocks.get(i);
+            if (b.firstTs() > toSec)
+                return n;
+            if (b.firstTs() >= fromSec && b.lastTs <= toSec) {
+                n += b.live();
+            } else {
+                Quote[] all = b.decode();
+                n += Math.max(0, upperBound(all, b.offset, b.count, toSec) - lowerBound(all, b.offset, b.count, fromSec));
+            }
+        }
+        return n + Math.max(0, upperBound(tail, 0, tailSize, toSec) - lowerBound(tail, 0, tailSize, fromSec));
+    }
+
+    /**
+     * Das letzte Quote mit tsUnixSec < ts (oder null). Dekodiert höchstens einen Block.
+     */
+    public synchronized Quote lastBefore(long ts) {
+        int k = lowerBound(tail, 0, tailSize, ts);
+        if (k > 0)
+            return tail[k - 1];
+        int i = firstBlockEndingAtOrAfter(ts);
+        if (i < blocks.size() && blocks.get(i).firstTs() < ts) {
+            QuoteBlock b = blocks.get(i);
+            Quote[] all = b.decode();
+            return all[lowerBound(all, b.offset, b.count, ts) - 1];
+        }
+        return i > 0 ? blocks.get(i - 1).last : null;
+    }
+
+    public synchronized Quote first() {
+        if (!blocks.isEmpty())
+            return blocks.get(0).first;
+        return tailSize == 0 ? null : tail[0];
+    }
+
+    public synchronized Quote last() {
+        if (tailSize > 0)
+            return tail[tailSize - 1];
+        return blocks.isEmpty() ? null : lastBlock().last;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Ungefährer Speicherbedarf in Bytes: kodierte Blöcke plus 120 Bytes je unkomprimiertem
+     * Quote im Puffer (Record mit geboxten Feldern).
+     */
+    public synchronized long footprintBytes() {
+        return sealedBytes + 120L * tailSize;
+    }
+
+    private static long blockBytes(QuoteBlock b) {
+        return b.encodedBytes() + 64;
+    }
+
+    private QuoteBlock lastBlock() {
+        return blocks.get(blocks.size() - 1);
+    }
+
+    private void sealTail() {
+        QuoteBlock b = QuoteBlock.seal(tail, 0, tailSize);
+        blocks.add(b);
+        sealedBytes += blockBytes(b);
+        Arrays.fill(tail, 0, tailSize, null);
+        tailSize = 0;
+    }
+
+    // Nachzügler hinter den Puffer: betroffenen Block dekodieren, einsortieren, neu versiegeln
+    private void insertIntoBlock(Quote q) {
+        long ts = q.tsUnixSec();
+        int i = firstBlockEndingAfter(ts);
+        QuoteBlock b = blocks.get(i);
+        Quote[] all = b.decode();
+        int live = b.live();
+        Quote[] merged = new Quote[live + 1];
+        int pos = upperBound(all, b.offset, b.count, ts) - b.offset;
+        System.arraycopy(all, b.offset, merged, 0, pos);
+        merged[pos] = q;
+        System.arraycopy(all, b.offset + pos, merged, pos + 1, live - pos);
+        QuoteBlock sealed = QuoteBlock.seal(merged, 0, merged.length);
+        blocks.set(i, sealed);
+        sealedBytes += blockBytes(sealed) - blockBytes(b);
+    }
+
+    // erster Block mit lastTs >= ts
+    private int firstBlockEndingAtOrAfter(long ts) {
+        int lo = 0, hi = blocks.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blocks.get(mid).lastTs < ts)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // erster Block mit lastTs > ts
+    private int firstBlockEndingAfter(long ts) {
+        int lo = 0, hi = blocks.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blocks.get(mid).lastTs <= ts)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private static int collect(Quote[] src, int lo, int hi, int skip, int limit, List<Quote> out) {
+        int available = Math.max(0, hi - lo);
+        if (skip >= available)
+            return skip - available;
+        for (int j = lo + skip; j < hi && out.size() < limit; j++)
+            out.add(src[j]);
+        return 0;
+    }
+
+    // erster Index mit tsUnixSec >= ts
+    private static int lowerBound(Quote[] a, int from, int to, long ts) {
+        int lo = from, hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid].tsUnixSec() < ts)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // erster Index mit tsUnixSec > ts
+    private static int upperBound(Quote[] a, int from, int to, long ts) {
+        int lo = from, hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid].tsUnixSec() <= ts)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+}
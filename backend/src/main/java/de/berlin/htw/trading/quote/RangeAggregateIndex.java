@@ -0,0 +1,294 @@
+package de.berlin.htw.trading.quote;
+
+import java.util.Arrays;
+
+import de.berlin.htw.trading.quote.dto.RangeStats;
+
+/**
+ * Aggregat-Index eines Symbols für Bereichsabfragen (min, max, Summe, Anzahl, VWAP) in
+ * O(log n). Quotes werden pro Minute zu einem Bucket zusammengefasst; die Buckets liegen
+ * zeitlich sortiert in einem Ringpuffer, über dem ein Segmentbaum (bottom-up, Blätter ab
+ * Index cap) die Teilaggregate hält. Vollständig im Bereich liegende Minuten kommen aus dem
+ * Baum, die höchstens zwei angeschnittenen Randminuten liefert der Aufrufer über
+ * {@link EdgeSource} (z.B. aus der Zeitreihe), so dass jede Abfrage exakt bleibt. 24 Stunden
+ * kosten so rund 200 KB statt rund 12 MB mit einem Bucket pro Sekunde.
+ */
+public final class RangeAggregateIndex {
+
+    public static final long BUCKET_SEC = 60;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Liefert die Quotes mit fromSec <= tsUnixSec <= toSec, die nicht ganze Buckets füllen.
+     */
+    @FunctionalInterface
+    public interface EdgeSource {
+        void collect(long fromSec, long toSec, Acc acc);
+    }
+
+    public static final class Acc {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum;
+        double pv;
+        long vol;
+        long count;
+
+        public void add(double price, long weight) {
+            min = Math.min(min, price);
+            max = Math.max(max, price);
+            sum += price;
+            pv += price * weight;
+            vol += weight;
+            count++;
+        }
+    }
+
+    private int cap;
+    private long[] sec;
+    private double[] min;
+    private double[] max;
+    private double[] sum;
+    private double[] pv;
+    private long[] vol;
+    private int[] cnt;
+    private int head = 0;
+    private int size = 0;
+    // Alles davor ist verdrängt; der Bucket, in den diese Grenze fällt, gilt als angeschnitten
+    private long floorTs = Long.MIN_VALUE;
+
+    public RangeAggregateIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Nimmt ein Quote auf; weight ist die Anzahl der Ticks, die es repräsentiert (für den VWAP).
+     */
+    public synchronized void add(long ts, double price, long weight) {
+        ts = Math.floorDiv(ts, BUCKET_SEC) * BUCKET_SEC;
+        int pos;
+        if (size > 0 && sec[phys(size - 1)] == ts) {
+            pos = phys(size - 1);
+        } else if (size == 0 || sec[phys(size - 1)] < ts) {
+            if (size == cap)
+                resize(cap << 1, -1);
+            pos = phys(size);
+            sec[pos] = ts;
+            clearLeaf(pos);
+            size++;
+        } else {
+            // Nachzügler: vorhandene Sekunde aktualisieren oder neuen Bucket einsortieren
+            int i = lowerBound(ts);
+            if (i >= size || sec[phys(i)] != ts) {
+                resize(size == cap ? cap << 1 : cap, i);
+                sec[i] = ts;
+                size++;
+                clearLeaf(i);
+            }
+            pos = phys(i);
+        }
+
+        int leaf = cap + pos;
+        min[leaf] = Math.min(min[leaf], price);
+        max[leaf] = Math.max(max[leaf], price);
+        sum[leaf] += price;
+        pv[leaf] += price * weight;
+        vol[leaf] += weight;
+        cnt[leaf]++;
+        for (int i = leaf >>> 1; i >= 1; i >>>= 1)
+            pull(i);
+    }
+
+    /**
+     * Verwirft alle Buckets, die vollständig vor minTs liegen. Die Baumknoten bleiben stehen, da
+     * Abfragen nur lebende Ringpositionen zusammenfassen.
+     */
+    public synchronized void evictOlderThan(long minTs) {
+        floorTs = Math.max(floorTs, minTs);
+        // Der Bucket, in den minTs fällt, bleibt; alle davor enden spätestens bei minTs
+        int n = minTs < Long.MIN_VALUE + BUCKET_SEC ? 0
+                : lowerBound(Math.floorDiv(minTs, BUCKET_SEC) * BUCKET_SEC);
+        head = phys(n);
+        size -= n;
+        if (size == 0)
+            head = 0;
+        // Nach starkem Kürzen (z.B. wegen des Speicherbudgets) den Ring wieder verkleinern
+        if (cap > INITIAL_CAPACITY && size <= cap >>> 2)
+            resize(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size)) << 1), -1);
+    }
+
+    /**
+     * Kennzahlen aller Quotes mit fromSec <= tsUnixSec <= toSec; edges liefert die Quotes der
+     * angeschnittenen Randminuten.
+     */
+    public synchronized RangeStats query(long fromSec, long toSec, EdgeSource edges) {
+        Acc acc = new Acc();
+        // Jedes Quote liegt in einem Bucket: auf die gehaltenen Buckets begrenzen
+        long from = size == 0 ? 0 : Math.max(Math.max(fromSec, floorTs), sec[phys(0)]);
+        long to = size == 0 ? -1 : Math.min(toSec, sec[phys(size - 1)] + BUCKET_SEC - 1);
+        if (from <= to) {
+            // Ganze Buckets [firstFull, lastFull] (Bucket-Nummern), davor und danach Ränder
+            long firstFull = Math.floorDiv(from + BUCKET_SEC - 1, BUCKET_SEC);
+            long lastFull = Math.floorDiv(to + 1, BUCKET_SEC) - 1;
+            if (firstFull > lastFull) {
+                edges.collect(from, to, acc);
+            } else {
+                if (from < firstFull * BUCKET_SEC)
+                    edges.collect(from, firstFull * BUCKET_SEC - 1, acc);
+                collectBuckets(firstFull * BUCKET_SEC, lastFull * BUCKET_SEC, acc);
+                if ((lastFull + 1) * BUCKET_SEC <= to)
+                    edges.collect((lastFull + 1) * BUCKET_SEC, to, acc);
+            }
+        }
+        if (acc.count == 0)
+            return new RangeStats(fromSec, toSec, 0, null, null, null, null, null);
+        return new RangeStats(fromSec, toSec, acc.count, acc.min, acc.max, acc.sum, acc.sum / acc.count,
+                acc.vol == 0 ? null : acc.pv / acc.vol);
+    }
+
+    // Buckets mit firstStart <= Start <= lastStart aus dem Baum
+    private void collectBuckets(long firstStart, long lastStart, Acc acc) {
+        int lo = lowerBound(firstStart);
+        int hi = upperBound(lastStart);
+        if (lo < hi) {
+            int a = phys(lo);
+            int b = phys(hi - 1);
+            if (a <= b) {
+                collect(a, b + 1, acc);
+            } else {
+                collect(a, cap, acc);
+                collect(0, b + 1, acc);
+            }
+        }
+    }
+
+    /**
+     * Ungefährer Speicherbedarf der Arrays in Bytes.
+     */
+    public synchronized long footprintBytes() {
+        // sec (8) plus Baum mit 2 * cap Knoten aus min, max, sum, pv, vol (je 8) und cnt (4)
+        return 8L * cap + 2L * cap * 44;
+    }
+
+    public synchronized int buckets() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Fasst die Blätter [l, r) zusammen
+    private void collect(int l, int r, Acc acc) {
+        for (l += cap, r += cap; l < r; l >>>= 1, r >>>= 1) {
+            if ((l & 1) == 1)
+                take(l++, acc);
+            if ((r & 1) == 1)
+                take(--r, acc);
+        }
+    }
+
+    private void take(int node, Acc acc) {
+        acc.min = Math.min(acc.min, min[node]);
+        acc.max = Math.max(acc.max, max[node]);
+        acc.sum += sum[node];
+        acc.pv += pv[node];
+        acc.vol += vol[node];
+        acc.count += cnt[node];
+    }
+
+    private void pull(int i) {
+        int l = i << 1, r = l | 1;
+        min[i] = Math.min(min[l], min[r]);
+        max[i] = Math.max(max[l], max[r]);
+        sum[i] = sum[l] + sum[r];
+        pv[i] = pv[l] + pv[r];
+        vol[i] = vol[l] + vol[r];
+        cnt[i] = cnt[l] + cnt[r];
+    }
+
+    private void clearLeaf(int pos) {
+        int leaf = cap + pos;
+        min[leaf] = Double.POSITIVE_INFINITY;
+        max[leaf] = Double.NEGATIVE_INFINITY;
+        sum[leaf] = 0;
+        pv[leaf] = 0;
+        vol[leaf] = 0;
+        cnt[leaf] = 0;
+    }
+
+    /**
+     * Legt die Buckets linear ab Position 0 in einem Ring der Größe newCap neu ab und baut den
+     * Baum neu auf (O(n)). Mit gap >= 0 bleibt an dieser logischen Position eine Lücke frei.
+     */
+    private void resize(int newCap, int gap) {
+        long[] oldSec = sec;
+        double[] oldMin = min, oldMax = max, oldSum = sum, oldPv = pv;
+        long[] oldVol = vol;
+        int[] oldCnt = cnt;
+        int oldCap = cap;
+        int oldHead = head;
+
+        allocate(newCap);
+        for (int i = 0, j = 0; i < size; i++, j++) {
+            if (j == gap)
+                j++;
+            int from = (oldHead + i) & (oldCap - 1);
+            sec[j] = oldSec[from];
+            int src = oldCap + from, dst = cap + j;
+            min[dst] = oldMin[src];
+            max[dst] = oldMax[src];
+            sum[dst] = oldSum[src];
+            pv[dst] = oldPv[src];
+            vol[dst] = oldVol[src];
+            cnt[dst] = oldCnt[src];
+        }
+        head = 0;
+        for (int i = cap - 1; i >= 1; i--)
+            pull(i);
+    }
+
+    private void allocate(int newCap) {
+        cap = newCap;
+        sec = new long[cap];
+        min = new double[2 * cap];
+        max = new double[2 * cap];
+        sum = new double[2 * cap];
+        pv = new double[2 * cap];
+        vol = new long[2 * cap];
+        cnt = new int[2 * cap];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    }
+
+    private int phys(int i) {
+        return (head + i) & (cap - 1);
+    }
+
+    // erster logischer Index mit sec >= ts
+    private int lowerBound(long ts) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sec[phys(mid)] < ts)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // erster logischer Index mit sec > ts
+    private int upperBound(long ts) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sec[phys(mid)] <= ts)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,159 @@
+package de.berlin.htw.trading.quote;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+/**
+ * Gemeinsames Speicherbudget für die Zeitreihen eines Besitzers (Buffer oder Consumer). Der
+ * Besitzer meldet nach jeder Änderung einer Reihe die Differenz ihres
+ * {@link QuoteSeries#footprintBytes()} über {@link #add(long)}. Ist das Budget überschritten,
+ * kürzt {@link #enforce} bis auf 90 %, jeweils um den ältesten Block einer Reihe: zuerst Symbole
+ * ohne Abonnenten, dann Reihen über ihrem gleichen Anteil am Budget, zuletzt alle. Innerhalb
+ * eines Durchgangs kommt die höchste Tick-Rate zuerst. So kann ein einzelnes sehr aktives Symbol
+ * die ruhigen abonnierten nicht verdrängen.
+ */
+public final class SeriesBudget {
+
+    private static final double LOW_WATER = 0.9;
+
+    public record Stats(long maxBytes, long usedBytes, long trimmedQuotes, long trimRuns,
+            Map<String, Long> perSymbol) {
+    }
+
+    private volatile long maxBytes;
+    private volatile Predicate<SymbolKey> subscribed = key -> false;
+    private volatile ToLongFunction<SymbolKey> extraBytes = key -> 0;
+
+    // guarded by this
+    private long usedBytes = 0;
+    private long trimmedQuotes = 0;
+    private long trimRuns = 0;
+
+    public SeriesBudget(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Symbole, für die dieses Prädikat gilt, werden erst gekürzt, wenn alle anderen nichts
+     * mehr hergeben.
+     */
+    public void setSubscribed(Predicate<SymbolKey> subscribed) {
+        this.subscribed = subscribed;
+    }
+
+    /**
+     * Zusätzlicher Bedarf pro Symbol neben der Zeitreihe (z.B. ein Aggregat-Index), für den
+     * Anteil am Budget und die Anzeige pro Symbol. Änderungen daran meldet der Besitzer
+     * ebenfalls über {@link #add(long)}.
+     */
+    public void setExtraBytes(ToLongFunction<SymbolKey> extraBytes) {
+        this.extraBytes = extraBytes;
+    }
+
+    public synchronized void add(long deltaBytes) {
+        usedBytes += deltaBytes;
+    }
+
+    public synchronized void reset() {
+        usedBytes = 0;
+    }
+
+    public synchronized boolean exceeded() {
+        return usedBytes > maxBytes;
+    }
+
+    /**
+     * Kürzt die Reihen, bis höchstens 90 % des Budgets belegt sind, und liefert die Anzahl
+     * entfernter Quotes. onTrim wird nach jedem Kürzen mit Symbol und Reihe aufgerufen (z.B. um
+     * abgeleitete Strukturen nachzuziehen). Der Aufrufer sorgt dafür, dass series währenddessen
+     * nicht verändert wird.
+     */
+    public int enforce(Map<SymbolKey, QuoteSeries> series) {
+        return enforce(series, (key, qs) -> {
+        });
+    }
+
+    public int enforce(Map<SymbolKey, QuoteSeries> series, BiConsumer<SymbolKey, QuoteSeries> onTrim) {
+        if (!exceeded())
+            return 0;
+        long target = (long) (maxBytes * LOW_WATER);
+        long fairShare = target / Math.max(1, series.size());
+        int removed = trim(series, onTrim, target, 0, true);
+        if (usedBytes() > target)
+            removed += trim(series, onTrim, target, fairShare, false);
+        if (usedBytes() > target)
+            removed += trim(series, onTrim, target, 0, false);
+        synchronized (this) {
+            trimmedQuotes += removed;
+            trimRuns++;
+        }
+        return removed;
+    }
+
+    private record Victim(SymbolKey key, QuoteSeries qs, double rate) {
+    }
+
+    // Ein Durchgang: kürzt Reihen oberhalb von floorBytes (optional nur solche ohne
+    // Abonnenten), bis target erreicht ist
+    private int trim(Map<SymbolKey, QuoteSeries> series, BiConsumer<SymbolKey, QuoteSeries> onTrim, long target,
+            long floorBytes, boolean unsubscribedOnly) {
+        PriorityQueue<Victim> queue = new PriorityQueue<>(
+                Comparator.comparingDouble(Victim::rate).reversed());
+        Predicate<SymbolKey> sub = subscribed;
+        for (var e : series.entrySet())
+            if (bytes(e.getKey(), e.getValue()) > floorBytes && !(unsubscribedOnly && sub.test(e.getKey())))
+                queue.add(new Victim(e.getKey(), e.getValue(), e.getValue().ratePerSec()));
+
+        int removed = 0;
+        while (!queue.isEmpty() && usedBytes() > target) {
+            Victim v = queue.poll();
+            long before = v.qs().footprintBytes();
+            int n = v.qs().trimOldest();
+            if (n == 0)
+                continue;
+            add(v.qs().footprintBytes() - before);
+            removed += n;
+            onTrim.accept(v.key(), v.qs());
+            if (bytes(v.key(), v.qs()) > floorBytes)
+                queue.add(new Victim(v.key(), v.qs(), v.qs().ratePerSec()));
+        }
+        return removed;
+    }
+
+    private long bytes(SymbolKey key, QuoteSeries qs) {
+        return qs.footprintBytes() + extraBytes.applyAsLong(key);
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Belegung insgesamt und pro Symbol (absteigend nach Größe).
+     */
+    public Stats stats(Map<SymbolKey, QuoteSeries> series) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (var e : series.entrySet())
+            entries.add(Map.entry(e.getKey().toString(), bytes(e.getKey(), e.getValue())));
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        Map<String, Long> perSymbol = new LinkedHashMap<>();
+        for (var e : entries)
+            perSymbol.put(e.getKey(), e.getValue());
+        synchronized (this) {
+            return new Stats(maxBytes, usedBytes, trimmedQuotes, trimRuns, perSymbol);
+        }
+    }
+}
@@ -2,52 +2,111 @@ package de.berlin.htw.trading.quote;
 
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import de.berlin.htw.trading.consumer.AbstractReplayingConsumer;
+import de.berlin.htw.trading.events.EventExecutors;
 import de.berlin.htw.trading.events.QuoteEvent;
 import de.berlin.htw.trading.marketdata.IMarketDataBuffer;
 import de.berlin.htw.trading.marketdata.IMarketDataBuffer.ChangeRecord;
 import de.berlin.htw.trading.marketdata.IMarketDataBuffer.Snapshot;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.SymbolSnapshot;
 import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.RangeStats;
 import de.berlin.htw.trading.quote.dto.SymbolKey;
+import de.berlin.htw.trading.retention.Retained;
+import de.berlin.htw.trading.retention.TimerWheel;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 
 @ApplicationScoped
-public class SimpleQuoteConsumer extends AbstractReplayingConsumer {
+public class SimpleQuoteConsumer extends AbstractReplayingConsumer implements Retained {
 
-    private final Duration retention = Duration.ofHours(1);
+    private final Duration retention = Duration.ofHours(24);
 
-    // Map: SymbolKey -> Deque von Quotes (Zeitreihe)
-    // Deque (Double-ended queue) ermöglicht effizientes Hinzufügen/Entfernen an beiden Enden
-    private final Map<SymbolKey, Deque<Quote>> series = new ConcurrentHashMap<>();
+    // Map: SymbolKey -> Zeitreihe der Quotes
+    // QuoteSeries ist nach Zeitstempel sortiert und erlaubt Bereichsabfragen per binärer Suche
+    private final Map<SymbolKey, QuoteSeries> series = new ConcurrentHashMap<>();
+
+    // Map: SymbolKey -> Aggregat-Index (min/max/Summe/VWAP) über dieselben Quotes wie die Serie
+    private final Map<SymbolKey, RangeAggregateIndex> aggregates = new ConcurrentHashMap<>();
 
     // Map: SymbolKey -> letztes bekanntes Quote
     // Wird verwendet, wenn wir ein Quote brauchen, aber die Serie leer ist
     private final Map<SymbolKey, Quote> last = new ConcurrentHashMap<>();
 
+    // Map: SymbolKey -> Buffer-Sequenz der letzten angewendeten Änderung
+    // Wird an ausgehende Nachrichten gehängt, damit Clients nach einem Reconnect fortsetzen können
+    private final Map<SymbolKey, Long> lastSeq = new ConcurrentHashMap<>();
+
     @Inject
     private Logger logger;
 
     @Inject
     private Event<QuoteEvent> quoteEvent;
 
+    @Inject
+    private EventExecutors executors;
+
+    // true: Zeitreihen nur für angefragte Symbole führen (siehe AbstractReplayingConsumer)
+    @ConfigProperty(name = "consumers.lazy", defaultValue = "true")
+    boolean lazy = true;
+
+    // Obergrenze für Zeitreihen und Aggregat-Indizes zusammen (siehe SeriesBudget)
+    @ConfigProperty(name = "consumers.max-bytes", defaultValue = "268435456")
+    long maxBytes = 268_435_456L;
+
+    private final SeriesBudget budget = new SeriesBudget(maxBytes);
+
+    // Ablauf des ältesten Quotes pro Symbol; verdrängt wird in sweep()
+    private final TimerWheel<SymbolKey> expiries = new TimerWheel<>(this::nowMs);
+
     @Override
     protected Duration initialSnapshotWindow() {
         // Beim Start laden wir die letzten 30 Minuten
         return Duration.ofMinutes(30);
     }
 
+    @Override
+    protected boolean lazy() {
+        return lazy;
+    }
+
+    @Override
+    protected Duration materializeWindow() {
+        // Ein angefragtes Symbol bekommt die volle Retention aus dem Buffer
+        return retention;
+    }
+
+    @Override
+    protected void materializeSymbol(SymbolKey key, SymbolSnapshot snap) {
+        Loaded loaded = load(snap.window());
+        if (!loaded.qs().isEmpty())
+            install(key, loaded);
+        if (snap.last() != null)
+            last.put(key, snap.last());
+        lastSeq.put(key, snap.seq());
+        logger.debugv("Materialized {0} quotes for {1}", snap.window().size(), key);
+    }
+
+    @Override
+    protected void dropSymbol(SymbolKey key) {
+        budget.add(-footprint(key));
+        expiries.cancel(key);
+        series.remove(key);
+        aggregates.remove(key);
+        last.remove(key);
+        lastSeq.remove(key);
+        logger.debugv("Dropped idle symbol {0}", key);
+    }
+
     @Override
     protected void rebuildFromSnapshot(Snapshot snap) {
         // Diese Methode wird beim Start aufgerufen
@@ -57,29 +116,37 @@ public class SimpleQuoteConsumer extends AbstractReplayingConsumer {
 
         // Lösche alle bestehenden Daten
         series.clear();
+        aggregates.clear();
         last.clear();
-
-        // Verarbeite alle Quotes aus dem Snapshot
-        for (var entry : snap.windowPerSymbol().entrySet()) {
+        lastSeq.clear();
+        budget.setMaxBytes(maxBytes);
+        budget.setSubscribed(this::isWatched);
+        budget.setExtraBytes(this::aggregateBytes);
+        budget.reset();
+        expiries.clear();
+
+        // Zeitreihen und Indizes sind pro Symbol unabhängig: parallel aufbauen (der teure Teil),
+        // danach in diesem Thread eintragen
+        long t0 = System.nanoTime();
+        Map<SymbolKey, Loaded> loaded = perSymbol(snap.windowPerSymbol(), (key, quotes) -> load(quotes));
+        long quotes = 0;
+        for (var entry : loaded.entrySet()) {
             SymbolKey key = entry.getKey();
-            List<Quote> quotes = entry.getValue();
-
-            logger.infov("Lade {0} Quotes für {1}", quotes.size(), key);
-
-            // Erstelle eine neue Deque und füge alle Quotes hinzu
-            Deque<Quote> deque = new ConcurrentLinkedDeque<>(quotes);
-            series.put(key, deque);
-
+            install(key, entry.getValue());
             // Speichere das letzte Quote
-            if (!quotes.isEmpty()) {
-                last.put(key, quotes.get(quotes.size() - 1));
-            }
-
-            // Feuere ein Event, damit andere Komponenten wissen, dass Daten verfügbar sind
-            quoteEvent.fireAsync(new QuoteEvent(key));
+            Quote newest = entry.getValue().qs().last();
+            if (newest != null)
+                last.put(key, newest);
+            lastSeq.put(key, snap.seq());
+            quotes += entry.getValue().qs().size();
         }
 
-        logger.infov("SimpleQuoteConsumer rebuilt with {0} symbols", series.size());
+        // Erst jetzt Events feuern, damit andere Komponenten einen vollständigen Zustand sehen
+        for (SymbolKey key : loaded.keySet())
+            quoteEvent.fireAsync(new QuoteEvent(key), executors.of(QuoteEvent.class, key));
+
+        logger.infov("SimpleQuoteConsumer rebuilt with {0} symbols, {1} quotes in {2} ms", series.size(), quotes,
+                (System.nanoTime() - t0) / 1_000_000);
     }
 
     @Override
@@ -92,31 +159,45 @@ public class SimpleQuoteConsumer extends AbstractReplayingConsumer {
         // Set zum Sammeln aller geänderten SymbolKeys
         Set<SymbolKey> updatedKeys = ConcurrentHashMap.newKeySet();
 
-        // Berechne die minimale Zeitstempel-Grenze für die Retention-Policy
-        long minTs = (System.currentTimeMillis() / 1000) - retention.getSeconds();
-
         // Verarbeite jede Änderung
         for (ChangeRecord cr : changes) {
             // Caste den ChangeRecord zu QuoteChange (das ist der einzige Typ, den wir haben)
             IMarketDataBuffer.QuoteChange qc = (IMarketDataBuffer.QuoteChange) cr;
 
+            // Symbole ohne Nachfrage kosten pro Tick nur diese Abfrage
+            if (!wants(qc))
+                continue;
+
             SymbolKey key = qc.key();
             Quote quote = qc.quote();
 
-            logger.debugv("Processing quote change for {0}: price={1}, ts={2}",
-                    key, quote.price(), quote.tsUnixSec());
+            // Ohne Abfrage würden Preis und Zeitstempel bei jedem Tick geboxt
+            if (logger.isDebugEnabled())
+                logger.debugv("Processing quote change for {0}: price={1}, ts={2}",
+                        key, quote.price(), quote.tsUnixSec());
 
-            // Hole oder erstelle die Deque für diesen SymbolKey
-            Deque<Quote> deque = series.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>());
+            long before = footprint(key);
+
+            // Hole oder erstelle die Zeitreihe für diesen SymbolKey; eine neue Reihe bekommt
+            // ihre Ablauffrist, verdrängt wird im Hintergrund (sweep)
+            QuoteSeries qs = series.get(key);
+            if (qs == null) {
+                qs = new QuoteSeries();
+                series.put(key, qs);
+                expiries.schedule(key, expiryMs(quote.tsUnixSec()));
+            }
 
             // Füge das neue Quote am Ende hinzu
-            deque.addLast(quote);
+            qs.append(quote);
+            aggregates.computeIfAbsent(key, k -> new RangeAggregateIndex())
+                    .add(quote.tsUnixSec(), quote.price(), weight(last.get(key), quote));
 
             // Speichere als letztes bekanntes Quote
             last.put(key, quote);
+            lastSeq.put(key, qc.seq());
 
-            // Entferne alte Quotes, die außerhalb der Retention-Period liegen
-            evictOld(key, minTs);
+            // Nur nachführen; gekürzt wird in sweep()
+            budget.add(footprint(key) - before);
 
             // Merke, dass dieser SymbolKey aktualisiert wurde
             updatedKeys.add(key);
@@ -125,35 +206,118 @@ public class SimpleQuoteConsumer extends AbstractReplayingConsumer {
         // Feuere Events für alle aktualisierten SymbolKeys
         for (SymbolKey key : updatedKeys) {
             logger.debugv("Firing QuoteEvent for {0}", key);
-            quoteEvent.fireAsync(new QuoteEvent(key));
+            quoteEvent.fireAsync(new QuoteEvent(key), executors.of(QuoteEvent.class, key));
         }
 
         logger.debugv("Applied changes for {0} symbols", updatedKeys.size());
     }
 
-    /**
-     * Entfernt alte Quotes, die älter als minTs sind
-     */
-    private void evictOld(SymbolKey key, long minTs) {
-        Deque<Quote> deque = series.get(key);
-        if (deque == null) return;
-
-        // Entferne Quotes vom Anfang der Deque, solange sie zu alt sind
-        while (!deque.isEmpty()) {
-            Quote first = deque.peekFirst();
-            if (first != null && first.tsUnixSec() < minTs) {
-                deque.pollFirst();
-                logger.debugv("Evicted old quote for {0}: ts={1}", key, first.tsUnixSec());
-            } else {
-                break;
+    @Override
+    public int sweep(long nowMs) {
+        long minTs = nowMs / 1000 - retention.getSeconds();
+        return locked(() -> {
+            var due = expiries.expire(nowMs);
+            for (SymbolKey key : due)
+                evictOld(key, minTs);
+            // Über dem Budget: älteste Blöcke der größten Verbraucher kürzen, der Index zieht nach
+            if (budget.exceeded()) {
+                int trimmed = budget.enforce(series, this::afterTrim);
+                logger.debugv("Trimmed {0} quotes to stay within the memory budget", trimmed);
             }
+            return due.size();
+        });
+    }
+
+    @Override
+    public int tracked() {
+        return expiries.size();
+    }
+
+    private record Loaded(QuoteSeries qs, RangeAggregateIndex agg) {
+    }
+
+    // Ohne Zugriff auf Felder des Consumers, damit es parallel pro Symbol laufen kann
+    private static Loaded load(List<Quote> quotes) {
+        QuoteSeries qs = new QuoteSeries();
+        RangeAggregateIndex agg = new RangeAggregateIndex();
+        Quote prev = null;
+        for (Quote q : quotes) {
+            qs.append(q);
+            agg.add(q.tsUnixSec(), q.price(), weight(prev, q));
+            prev = q;
         }
+        return new Loaded(qs, agg);
+    }
+
+    private void install(SymbolKey key, Loaded loaded) {
+        QuoteSeries qs = loaded.qs();
+        series.put(key, qs);
+        aggregates.put(key, loaded.agg());
+        budget.add(qs.footprintBytes() + loaded.agg().footprintBytes());
+        if (!qs.isEmpty())
+            expiries.schedule(key, expiryMs(qs.first().tsUnixSec()));
+    }
 
-        // Wenn die Deque leer ist, entferne sie aus der Map
-        if (deque.isEmpty()) {
+    // Verdrängt wird, was älter als jetzt minus Retention ist, also eine Sekunde danach
+    private long expiryMs(long oldestTsSec) {
+        return (oldestTsSec + retention.getSeconds() + 1) * 1000;
+    }
+
+    /**
+     * Entfernt alte Quotes, die älter als minTs sind, und plant den nächsten Ablauf ein
+     */
+    private void evictOld(SymbolKey key, long minTs) {
+        QuoteSeries qs = series.get(key);
+        if (qs == null) return;
+        long before = footprint(key);
+
+        // Entferne Quotes vom Anfang der Zeitreihe, solange sie zu alt sind
+        int evicted = qs.evictOlderThan(minTs);
+        if (evicted > 0)
+            logger.debugv("Evicted {0} old quotes for {1}", evicted, key);
+        RangeAggregateIndex agg = aggregates.get(key);
+        if (agg != null)
+            agg.evictOlderThan(minTs);
+
+        // Wenn die Zeitreihe leer ist, entferne sie aus der Map
+        if (qs.isEmpty()) {
             series.remove(key);
+            aggregates.remove(key);
             logger.debugv("Removed empty series for {0}", key);
+        } else {
+            expiries.schedule(key, expiryMs(qs.first().tsUnixSec()));
         }
+        budget.add(footprint(key) - before);
+    }
+
+    private void afterTrim(SymbolKey key, QuoteSeries qs) {
+        RangeAggregateIndex agg = aggregates.get(key);
+        if (agg == null)
+            return;
+        Quote first = qs.first();
+        if (first == null)
+            return;
+        long before = agg.footprintBytes();
+        agg.evictOlderThan(first.tsUnixSec());
+        budget.add(agg.footprintBytes() - before);
+    }
+
+    // Speicherbedarf von Zeitreihe und Aggregat-Index eines Symbols
+    private long footprint(SymbolKey key) {
+        QuoteSeries qs = series.get(key);
+        return (qs == null ? 0 : qs.footprintBytes()) + aggregateBytes(key);
+    }
+
+    private long aggregateBytes(SymbolKey key) {
+        RangeAggregateIndex agg = aggregates.get(key);
+        return agg == null ? 0 : agg.footprintBytes();
+    }
+
+    /**
+     * Belegung des Speicherbudgets insgesamt und pro Symbol
+     */
+    public SeriesBudget.Stats memory() {
+        return budget.stats(series);
     }
 
     /**
@@ -162,37 +326,70 @@ public class SimpleQuoteConsumer extends AbstractReplayingConsumer {
     public List<Quote> getQuotes(SymbolKey key, Duration window) {
         logger.debugv("Getting quotes for {0} with window {1}", key, window);
 
-        Deque<Quote> deque = series.get(key);
-        if (deque == null || deque.isEmpty()) {
+        // Berechne die minimale Zeitstempel-Grenze
+        long nowSec = nowMs() / 1000;
+        return getQuotes(key, nowSec - window.getSeconds(), Long.MAX_VALUE);
+    }
+
+    /**
+     * Gibt alle Quotes mit fromSec <= tsUnixSec <= toSec zurück
+     */
+    public List<Quote> getQuotes(SymbolKey key, long fromSec, long toSec) {
+        return getQuotes(key, fromSec, toSec, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Seitenweise Bereichsabfrage: überspringt die ersten skip Treffer ab fromSec
+     * und liefert höchstens limit Quotes
+     */
+    public List<Quote> getQuotes(SymbolKey key, long fromSec, long toSec, int skip, int limit) {
+        QuoteSeries qs = series.get(key);
+        if (qs == null) {
             logger.debugv("No quotes found for {0}", key);
             return new ArrayList<>();
         }
+        List<Quote> result = qs.page(fromSec, toSec, skip, limit);
+        logger.debugv("Returning {0} quotes for {1}", result.size(), key);
+        return result;
+    }
 
-        // Berechne die minimale Zeitstempel-Grenze
-        long nowSec = System.currentTimeMillis() / 1000;
-        long minTs = nowSec - window.getSeconds();
-
-        // Erstelle eine neue Liste mit allen Quotes innerhalb des Zeitfensters
-        List<Quote> result = new ArrayList<>();
-        for (Quote q : deque) {
-            if (q.tsUnixSec() >= minTs) {
-                result.add(q);
+    /**
+     * Gibt min/max/Summe/Durchschnitt/VWAP aller Quotes mit fromSec <= tsUnixSec <= toSec
+     * zurück; aus der Serie werden nur die beiden angeschnittenen Randminuten gelesen
+     */
+    public RangeStats getStats(SymbolKey key, long fromSec, long toSec) {
+        RangeAggregateIndex agg = aggregates.get(key);
+        QuoteSeries qs = series.get(key);
+        if (agg == null || qs == null)
+            return new RangeStats(fromSec, toSec, 0, null, null, null, null, null);
+        return agg.query(fromSec, toSec, (from, to, acc) -> {
+            // Gewichte wie beim Aufbau: Ticks seit dem vorherigen Quote der Serie
+            Quote prev = qs.lastBefore(from);
+            for (Quote q : qs.range(from, to)) {
+                acc.add(q.price(), weight(prev, q));
+                prev = q;
             }
-        }
+        });
+    }
 
-        logger.debugv("Returning {0} quotes for {1}", result.size(), key);
-        return result;
+    // Gewicht für den VWAP: Anzahl der Ticks seit dem vorherigen Quote, mindestens 1
+    private static long weight(Quote prev, Quote q) {
+        return prev == null ? 1 : Math.max(1, q.tick() - prev.tick());
     }
 
     /**
      * Gibt das aktuellste Quote aus der Serie zurück (oder null)
      */
     public Quote getLast(SymbolKey key) {
-        Deque<Quote> dq = series.get(key);
-        if (dq == null || dq.isEmpty()) {
-            return null;
-        }
-        return dq.peekLast();
+        QuoteSeries qs = series.get(key);
+        return qs == null ? null : qs.last();
+    }
+
+    /**
+     * Gibt die Buffer-Sequenz zurück, bis zu der der Zustand des Symbols aktuell ist
+     */
+    public long getSeq(SymbolKey key) {
+        return lastSeq.getOrDefault(key, lastAppliedSeq);
     }
 
     /**
@@ -16,13 +16,16 @@ public record Quote(
         Integer subId,
         Double precision) {
 
-    public static Quote applyDelta(SymbolKey key, Quote prev, DeltaQuote dq, String quoteType) {
+    /**
+     * nowSec ist die Basiszeit, falls es noch kein vorheriges Quote gibt.
+     */
+    public static Quote applyDelta(SymbolKey key, Quote prev, DeltaQuote dq, String quoteType, long nowSec) {
         if (prev == null && dq.value() == null)
             return null;
 
         double price = (dq.value() != null) ? dq.value() : (prev != null ? prev.price() : 0.0);
 
-        long baseTs = (prev != null) ? prev.tsUnixSec() : (System.currentTimeMillis() / 1000);
+        long baseTs = (prev != null) ? prev.tsUnixSec() : nowSec;
         long ts = (dq.secSinceLastMessage() != null) ? baseTs + dq.secSinceLastMessage() : baseTs;
 
         long baseTick = (prev != null) ? prev.tick() : 0;
@@ -0,0 +1,16 @@
+package de.berlin.htw.trading.quote.dto;
+
+/**
+ * Kennzahlen über alle Quotes eines Zeitbereichs. Bei count == 0 sind alle Werte null.
+ * vwap ist mit der Anzahl der Ticks je Quote gewichtet (der Feed liefert keine Volumina).
+ */
+public record RangeStats(
+        long fromSec,
+        long toSec,
+        long count,
+        Double min,
+        Double max,
+        Double sum,
+        Double avg,
+        Double vwap) {
+}
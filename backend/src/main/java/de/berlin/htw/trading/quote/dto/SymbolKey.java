@@ -7,10 +7,15 @@ public final class SymbolKey {
     public final String venueId;
     public final String channel;
 
+    // Schlüssel jeder Map im Tick-Pfad: einmal berechnen statt bei jedem Zugriff ein
+    // Varargs-Array für Objects.hash anzulegen
+    private final int hash;
+
     public SymbolKey(String symbolId, String venueId, String channel) {
         this.symbolId = symbolId;
         this.venueId = venueId;
         this.channel = channel;
+        this.hash = Objects.hash(symbolId, venueId, channel);
     }
 
     public static SymbolKey fromSub(String sub) {
@@ -31,7 +36,7 @@ public final class SymbolKey {
 
     @Override
     public int hashCode() {
-        return Objects.hash(symbolId, venueId, channel);
+        return hash;
     }
 
     @Override
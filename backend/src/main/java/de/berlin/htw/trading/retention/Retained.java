@@ -0,0 +1,21 @@
+package de.berlin.htw.trading.retention;
+
+/**
+ * Komponente mit zeitlich begrenzter Historie pro Symbol. Verdrängt wird nicht beim Anhängen,
+ * sondern vom {@link RetentionSweeper} im Hintergrund: die Komponente plant pro Symbol den
+ * Ablauf des ältesten Eintrags in einem {@link TimerWheel} ein und arbeitet in
+ * {@link #sweep(long)} nur die fälligen Symbole ab.
+ */
+public interface Retained {
+
+    /**
+     * Verwirft alles, was zum Zeitpunkt nowMs außerhalb der Retention liegt, und liefert die
+     * Anzahl der abgearbeiteten Symbole.
+     */
+    int sweep(long nowMs);
+
+    /**
+     * Anzahl der Symbole mit eingeplanter Frist.
+     */
+    int tracked();
+}
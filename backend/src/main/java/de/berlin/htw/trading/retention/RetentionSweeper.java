@@ -0,0 +1,84 @@
+package de.berlin.htw.trading.retention;
+
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+
+/**
+ * Gemeinsamer Hintergrund-Takt für die Retention von Buffer und Consumern: ruft alle
+ * {@link Retained}-Komponenten im Abstand von retention.tick-ms auf. Symbole, die nicht mehr
+ * ticken, laufen so ebenfalls ab.
+ */
+@Startup
+@ApplicationScoped
+public class RetentionSweeper {
+
+    public record Stats(long tickMs, long sweeps, long expired, Map<String, Integer> tracked) {
+    }
+
+    @ConfigProperty(name = "retention.tick-ms", defaultValue = "1000")
+    long tickMs;
+
+    @Inject
+    @Any
+    Instance<Retained> components;
+
+    @Inject
+    Clock clock;
+
+    @Inject
+    Logger logger;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "retention");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicLong sweeps = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        timer.scheduleAtFixedRate(this::sweep, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    void sweep() {
+        long now = clock.millis();
+        for (var handle : components.handles()) {
+            try {
+                expired.addAndGet(handle.get().sweep(now));
+            } catch (RuntimeException e) {
+                // Ein Fehler darf den Takt für die übrigen Komponenten nicht beenden
+                logger.warnv(e, "Retention-Lauf für {0} fehlgeschlagen", handle.getBean().getBeanClass().getSimpleName());
+            }
+        }
+        sweeps.incrementAndGet();
+    }
+
+    public Stats stats() {
+        Map<String, Integer> tracked = new LinkedHashMap<>();
+        for (var handle : components.handles())
+            tracked.put(handle.getBean().getBeanClass().getSimpleName(), handle.get().tracked());
+        return new Stats(tickMs, sweeps.get(), expired.get(), tracked);
+    }
+
+    @PreDestroy
+    void stop() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,169 @@
+package de.berlin.htw.trading.retention;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchisches Zeitrad für Ablauffristen pro Schlüssel. Vier Ebenen zu je 64 Fächern: Ebene 0
+ * löst in tickMs auf, jede weitere Ebene 64-mal gröber (bei 1 s rund 194 Tage insgesamt).
+ * Einplanen und Verschieben kosten O(1); beim Weiterdrehen wird ein Fach der höheren Ebene erst
+ * dann auf die feineren verteilt, wenn die Ebene darunter einmal herum ist. Pro Schlüssel gibt
+ * es höchstens eine Frist, erneutes Einplanen verschiebt sie. Ein leeres Rad richtet sich beim
+ * nächsten Einplanen neu nach nowMs aus, so dass auch eine virtuelle Uhr springen darf.
+ */
+public final class TimerWheel<K> {
+
+    public static final long DEFAULT_TICK_MS = 1_000;
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private static final class Node<K> {
+        final K key;
+        long tick;
+        Node<K> prev;
+        Node<K> next;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+
+    private final long tickMs;
+    private final LongSupplier nowMs;
+    // Ringlisten mit Wächterknoten je Ebene und Fach
+    private final Node<K>[][] slots;
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+    // Nächster noch nicht abgearbeiteter Tick
+    private long currentTick;
+
+    public TimerWheel(LongSupplier nowMs) {
+        this(DEFAULT_TICK_MS, nowMs);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public TimerWheel(long tickMs, LongSupplier nowMs) {
+        this.tickMs = Math.max(1, tickMs);
+        this.nowMs = nowMs;
+        slots = new Node[LEVELS][SLOTS];
+        for (Node<K>[] level : slots)
+            for (int i = 0; i < SLOTS; i++) {
+                Node<K> head = new Node<>(null);
+                head.prev = head;
+                head.next = head;
+                level[i] = head;
+            }
+    }
+
+    /**
+     * Plant key zum Zeitpunkt deadlineMs ein bzw. verschiebt eine bestehende Frist. Liegt
+     * deadlineMs in der Vergangenheit, läuft die Frist beim nächsten {@link #expire(long)} ab.
+     */
+    public synchronized void schedule(K key, long deadlineMs) {
+        if (nodes.isEmpty())
+            currentTick = nowMs.getAsLong() / tickMs;
+        Node<K> n = nodes.get(key);
+        if (n == null) {
+            n = new Node<>(key);
+            nodes.put(key, n);
+        } else {
+            unlink(n);
+        }
+        n.tick = Math.max(ceilDiv(deadlineMs, tickMs), currentTick);
+        insert(n);
+    }
+
+    public synchronized void cancel(K key) {
+        Node<K> n = nodes.remove(key);
+        if (n != null)
+            unlink(n);
+    }
+
+    public synchronized void clear() {
+        for (Node<K> n : nodes.values())
+            unlink(n);
+        nodes.clear();
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Dreht das Rad bis nowMs weiter und liefert alle Schlüssel, deren Frist abgelaufen ist. Sie
+     * sind danach nicht mehr eingeplant.
+     */
+    public synchronized List<K> expire(long nowMs) {
+        List<K> due = new ArrayList<>();
+        long target = nowMs / tickMs;
+        if (nodes.isEmpty()) {
+            currentTick = target + 1;
+            return due;
+        }
+        while (currentTick <= target) {
+            // Ebene l-1 ist einmal herum: nächstes Fach der Ebene l verteilen, von oben nach
+            // unten, damit herabgestufte Fristen noch im selben Schritt weiterwandern
+            int top = 0;
+            while (top < LEVELS - 1 && (currentTick & ((1L << (BITS * (top + 1))) - 1)) == 0)
+                top++;
+            for (int l = top; l >= 1; l--)
+                cascade(l, (int) (currentTick >>> (BITS * l)) & MASK);
+            Node<K> head = slots[0][(int) currentTick & MASK];
+            for (Node<K> n = head.next; n != head;) {
+                Node<K> next = n.next;
+                if (n.tick <= currentTick) {
+                    unlink(n);
+                    nodes.remove(n.key);
+                    due.add(n.key);
+                }
+                n = next;
+            }
+            currentTick++;
+        }
+        return due;
+    }
+
+    private void cascade(int level, int slot) {
+        Node<K> head = slots[level][slot];
+        Node<K> n = head.next;
+        head.next = head;
+        head.prev = head;
+        while (n != head) {
+            Node<K> next = n.next;
+            insert(n);
+            n = next;
+        }
+    }
+
+    private void insert(Node<K> n) {
+        long delta = n.tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1)))
+            level++;
+        // Weiter als die oberste Ebene reicht: im letzten Fach parken, beim Verteilen neu einordnen
+        long tick = level == LEVELS - 1 && delta >= 1L << (BITS * LEVELS)
+                ? currentTick + (1L << (BITS * LEVELS)) - 1
+                : n.tick;
+        Node<K> head = slots[level][(int) (tick >>> (BITS * level)) & MASK];
+        n.prev = head.prev;
+        n.next = head;
+        head.prev.next = n;
+        head.prev = n;
+    }
+
+    private static <K> void unlink(Node<K> n) {
+        n.prev.next = n.next;
+        n.next.prev = n.prev;
+        n.prev = n;
+        n.next = n;
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+}
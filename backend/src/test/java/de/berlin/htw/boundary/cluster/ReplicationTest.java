@@ -0,0 +1,130 @@
+package de.berlin.htw.boundary.cluster;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.marketdata.InMemoryMarketDataBuffer;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+public class ReplicationTest {
+
+    private static final SymbolKey DAX = new SymbolKey("133962", "22", "last");
+    private static final SymbolKey DOW = new SymbolKey("133965", "22", "last");
+
+    private InMemoryMarketDataBuffer ingest;
+    private InMemoryMarketDataBuffer gateway;
+    private ReplicationPublisher publisher;
+    private ReplicationSubscriber subscriber;
+    private final List<String> upstreamMessages = new CopyOnWriteArrayList<>();
+    private long ts = System.currentTimeMillis() / 1000 - 600;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        ingest = new InMemoryMarketDataBuffer();
+        gateway = new InMemoryMarketDataBuffer();
+        publisher = new ReplicationPublisher(ingest, Duration.ofHours(1),
+                key -> upstreamMessages.add("a" + key),
+                key -> upstreamMessages.add("r" + key),
+                50);
+        int port = publisher.start(new InetSocketAddress("localhost", 0));
+        subscriber = new ReplicationSubscriber(new InetSocketAddress("localhost", port), gateway::appendFull, 50);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        subscriber.close();
+        publisher.close();
+    }
+
+    private void append(SymbolKey key, int n) {
+        for (int i = 0; i < n; i++) {
+            ts++;
+            ingest.appendFull(new Quote(key, ts, 16000.0 + i, 16100.0, 15900.0, 15950.0, 15900.0, 100.0, 0.0063,
+                    0.5, true, ts, key == DAX ? 1 : 2, 2.0));
+        }
+        publisher.signal();
+    }
+
+    /**
+     * TEST 1: Gateway übernimmt den Bestand per Snapshot und danach alle Änderungen
+     */
+    @Test
+    public void testSnapshotThenChanges() throws Exception {
+        append(DAX, 100);
+        append(DOW, 50);
+        subscriber.start();
+        awaitTrue(() -> gateway.snapshot(Duration.ofHours(1)).windowPerSymbol().size() == 2, "Snapshot sollte ankommen");
+
+        append(DAX, 500);
+        awaitTrue(() -> subscriber.stats().lastSeq() == ingest.currentSeq(), "Gateway sollte aufholen");
+
+        var expected = ingest.snapshot(Duration.ofHours(1));
+        var actual = gateway.snapshot(Duration.ofHours(1));
+        assertEquals(expected.lastPerSymbol(), actual.lastPerSymbol(), "Letzter Kurs pro Symbol sollte übereinstimmen");
+        assertEquals(expected.windowPerSymbol(), actual.windowPerSymbol(), "Kursverlauf sollte übereinstimmen");
+        assertEquals(1, subscriber.stats().resyncs(), "Nur der erste Verbindungsaufbau braucht einen Snapshot");
+    }
+
+    /**
+     * TEST 2: Nach einem Verbindungsabbruch wird ab der letzten Sequenz fortgesetzt,
+     * ohne Lücken oder doppelte Einträge
+     */
+    @Test
+    public void testResumeFromSeq() throws Exception {
+        append(DAX, 100);
+        subscriber.start();
+        awaitTrue(() -> subscriber.stats().lastSeq() == ingest.currentSeq(), "Gateway sollte aufholen");
+
+        for (int round = 0; round < 5; round++) {
+            publisher.dropLinks();
+            append(DAX, 200);
+            append(DOW, 100);
+        }
+        awaitTrue(() -> subscriber.stats().lastSeq() == ingest.currentSeq(), "Gateway sollte nach Abbrüchen aufholen");
+
+        assertEquals(ingest.currentSeq(), gateway.currentSeq(), "Jede Änderung sollte genau einmal ankommen");
+        assertEquals(ingest.snapshot(Duration.ofHours(1)).windowPerSymbol(),
+                gateway.snapshot(Duration.ofHours(1)).windowPerSymbol(), "Kursverlauf sollte übereinstimmen");
+        assertEquals(1, subscriber.stats().resyncs(), "Fortsetzen sollte ohne erneuten Snapshot gelingen");
+        assertTrue(publisher.stats().resumes() >= 1, "Ingest-Knoten sollte mindestens einmal fortgesetzt haben");
+    }
+
+    /**
+     * TEST 3: Abos des Gateways erreichen den Ingest-Knoten und werden beim Abbruch
+     * freigegeben bzw. beim Wiederverbinden erneut gemeldet
+     */
+    @Test
+    public void testSubscriptionsForwarded() throws Exception {
+        subscriber.subscribe(DAX);
+        subscriber.start();
+        awaitTrue(() -> upstreamMessages.equals(List.of("a" + DAX)), "Abo vor dem Verbinden sollte nachgemeldet werden");
+
+        subscriber.subscribe(DOW);
+        subscriber.unsubscribe(DAX);
+        awaitTrue(() -> upstreamMessages.equals(List.of("a" + DAX, "a" + DOW, "r" + DAX)), "Abo-Änderungen sollten ankommen");
+
+        upstreamMessages.clear();
+        publisher.dropLinks();
+        awaitTrue(() -> upstreamMessages.equals(List.of("r" + DOW, "a" + DOW)),
+                "Abbruch gibt das Abo frei, Wiederverbinden meldet es erneut");
+    }
+
+    private static void awaitTrue(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline)
+                fail(message);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package de.berlin.htw.boundary.ws;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+public class SubscriptionIndexTest {
+
+    private static final int SESSIONS = 5_000;
+    private static final int SYMBOLS = 20;
+    private static final int SUBS_PER_SESSION = 3;
+    private static final int TICKS = 2_000;
+
+    /**
+     * TEST 1: Abonnenten werden hinzugefügt und wieder entfernt
+     */
+    @Test
+    public void testAddRemove() {
+        SubscriptionIndex<String> index = new SubscriptionIndex<>();
+        SymbolKey dax = new SymbolKey("133962", "22", "last");
+
+        index.add(dax, "s1");
+        index.add(dax, "s2");
+        assertEquals(2, index.subscribers(dax).size(), "Zwei Sessions sollten abonniert haben");
+
+        index.remove(dax, "s1");
+        index.removeAll(List.of(dax), "s2");
+        assertTrue(index.subscribers(dax).isEmpty(), "Keine Session sollte mehr abonniert haben");
+        assertFalse(index.hasSubscribers(dax), "Leere Einträge sollten entfernt werden");
+    }
+
+    /**
+     * TEST 2: Fan-out über den Index trifft dieselben Sessions wie der Scan über alle Sessions,
+     * 5k Sessions x 20 Symbole
+     */
+    @Test
+    public void testFanOutAgainstFullScan() {
+        Random rnd = new Random(42);
+        List<SymbolKey> keys = new ArrayList<>();
+        for (int i = 0; i < SYMBOLS; i++)
+            keys.add(new SymbolKey(String.valueOf(133_000 + i), "22", "last"));
+
+        Map<String, Map<SymbolKey, Integer>> subs = new ConcurrentHashMap<>();
+        SubscriptionIndex<String> index = new SubscriptionIndex<>();
+        for (int s = 0; s < SESSIONS; s++) {
+            String sid = "s" + s;
+            Map<SymbolKey, Integer> windows = new ConcurrentHashMap<>();
+            for (int j = 0; j < SUBS_PER_SESSION; j++) {
+                SymbolKey key = keys.get(rnd.nextInt(SYMBOLS));
+                windows.put(key, 3600);
+                index.add(key, sid);
+            }
+            subs.put(sid, windows);
+        }
+
+        long scanHits = 0, indexHits = 0;
+        long t0 = System.nanoTime();
+        for (int t = 0; t < TICKS; t++) {
+            SymbolKey key = keys.get(t % SYMBOLS);
+            for (var e : subs.entrySet())
+                if (e.getValue().keySet().stream().anyMatch(key::equals))
+                    scanHits++;
+        }
+        long t1 = System.nanoTime();
+        for (int t = 0; t < TICKS; t++) {
+            SymbolKey key = keys.get(t % SYMBOLS);
+            for (String sid : index.subscribers(key))
+                if (sid != null)
+                    indexHits++;
+        }
+        long t2 = System.nanoTime();
+
+        System.out.printf("Fan-out %,d Ticks: Scan %.1f ms, Index %.1f ms%n",
+                TICKS, (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+        assertEquals(scanHits, indexHits, "Index und Scan sollten dieselben Empfänger liefern");
+    }
+}
@@ -0,0 +1,132 @@
+package de.berlin.htw.boundary.ws;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+public class UpstreamSubscriptionsTest {
+
+    private static final SymbolKey DAX = new SymbolKey("133962", "22", "last");
+
+    private ScheduledExecutorService scheduler;
+    private final List<String> upstreamMessages = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        upstreamMessages.clear();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        scheduler.shutdownNow();
+    }
+
+    private UpstreamSubscriptions manager(long lingerMs) {
+        return new UpstreamSubscriptions(
+                key -> upstreamMessages.add("a" + key.symbolId),
+                key -> upstreamMessages.add("r" + key.symbolId),
+                scheduler, lingerMs);
+    }
+
+    /**
+     * TEST 1: Schließt ein Client sein Abo, bleibt das Symbol für die anderen abonniert
+     */
+    @Test
+    public void testOneClientLeavingKeepsUpstream() {
+        UpstreamSubscriptions subs = manager(0);
+        subs.acquire(DAX);
+        subs.acquire(DAX);
+        subs.release(DAX);
+
+        assertEquals(List.of("a133962"), upstreamMessages, "Nur ein Upstream-Subscribe, kein Unsubscribe");
+        assertEquals(1, subs.refCount(DAX), "Ein Abonnent sollte übrig bleiben");
+
+        subs.release(DAX);
+        assertEquals(List.of("a133962", "r133962"), upstreamMessages, "Letzter Abonnent beendet das Abo");
+    }
+
+    /**
+     * TEST 2: Reload-Churn innerhalb der Nachlaufzeit erzeugt keinen Upstream-Verkehr
+     */
+    @Test
+    public void testChurnWithinLinger() {
+        UpstreamSubscriptions subs = manager(60_000);
+        subs.acquire(DAX);
+        for (int i = 0; i < 1_000; i++) {
+            subs.release(DAX);
+            subs.acquire(DAX);
+        }
+
+        assertEquals(List.of("a133962"), upstreamMessages, "Reloads sollten upstream unsichtbar bleiben");
+        assertEquals(0, subs.stats().lingering(), "Kein Symbol sollte auf das Abbestellen warten");
+    }
+
+    /**
+     * TEST 3: Nach Ablauf der Nachlaufzeit wird genau einmal abbestellt
+     */
+    @Test
+    public void testUnsubscribeAfterLinger() throws Exception {
+        UpstreamSubscriptions subs = manager(50);
+        subs.acquire(DAX);
+        subs.release(DAX);
+        assertEquals(1, subs.stats().lingering(), "Symbol sollte nachlaufen");
+
+        Thread.sleep(300);
+        assertEquals(List.of("a133962", "r133962"), upstreamMessages, "Abo sollte nach der Nachlaufzeit enden");
+
+        subs.acquire(DAX);
+        assertEquals(List.of("a133962", "r133962", "a133962"), upstreamMessages, "Neuer Abonnent abonniert erneut");
+    }
+
+    /**
+     * TEST 4: Kommt ein Abonnent zurück, während das Beenden schon läuft und auf die Sperre
+     * wartet, bleibt es bei einem Upstream-Abo, und das spätere Abbestellen kommt genau einmal
+     */
+    @Test
+    public void testAcquireRacingExpiry() throws Exception {
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            worker.set(t);
+            return t;
+        });
+        try {
+            UpstreamSubscriptions subs = new UpstreamSubscriptions(
+                    key -> upstreamMessages.add("a" + key.symbolId),
+                    key -> upstreamMessages.add("r" + key.symbolId),
+                    timer, 10);
+            subs.acquire(DAX);
+            subs.release(DAX);
+            synchronized (subs) {
+                // Nachlaufzeit ist um und expire() blockiert an der Sperre: cancel() greift nicht mehr
+                long deadline = System.nanoTime() + 5_000_000_000L;
+                while ((worker.get() == null || worker.get().getState() != Thread.State.BLOCKED)
+                        && System.nanoTime() < deadline)
+                    Thread.sleep(1);
+                assertEquals(Thread.State.BLOCKED, worker.get().getState(), "expire() sollte auf die Sperre warten");
+                subs.acquire(DAX);
+            }
+            timer.submit(() -> null).get(5, TimeUnit.SECONDS);
+            assertEquals(List.of("a133962"), upstreamMessages, "Es sollte beim ersten Upstream-Abo bleiben");
+            assertEquals(1, subs.refCount(DAX), "Abonnent sollte gezählt sein");
+
+            subs.release(DAX);
+            Thread.sleep(300);
+            assertEquals(List.of("a133962", "r133962"), upstreamMessages, "Abo sollte genau einmal enden");
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+}
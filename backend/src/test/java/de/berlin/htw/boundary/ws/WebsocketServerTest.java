@@ -203,4 +203,22 @@ public class WebsocketServerTest {
         assertNotNull(response, "Sollte Fehlerantwort erhalten");
         assertTrue(response.contains("error"), "Antwort sollte Fehler enthalten");
     }
-}
\ No newline at end of file
+
+    /**
+     * TEST 7: Resume mit unbekannter Epoche fällt auf einen vollständigen Snapshot zurück
+     */
+    @Test
+    public void testResumeWithUnknownEpochSendsSnapshot() throws Exception {
+        String resumeMessage = "{\"action\":\"resume\",\"epoch\":1,\"subs\":[{\"symbolId\":\"133979\","
+                + "\"venueId\":\"98\",\"channel\":\"bid\",\"window\":3600,\"seq\":5}]}";
+        clientSession.getAsyncRemote().sendText(resumeMessage);
+
+        Thread.sleep(2000);
+
+        // Assert: Snapshot und Bestätigung mit full=true
+        assertTrue(testClient.messages.stream().anyMatch(m -> m.contains("\"candles\"")),
+                "Sollte einen Candle-Snapshot erhalten");
+        assertTrue(testClient.messages.stream().anyMatch(m -> m.contains("\"resumed\"") && m.contains("\"full\":true")),
+                "Resume sollte als vollständiger Snapshot bestätigt werden");
+    }
+}
@@ -0,0 +1,106 @@
+package de.berlin.htw.boundary.ws;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Einfacher Lastgenerator für beide WebSocket-Stacks (kein Test, wird manuell gestartet):
+ *
+ * <pre>
+ * java ... de.berlin.htw.boundary.ws.WsLoadGenerator ws://localhost:8080/quotes 500 30
+ * java ... de.berlin.htw.boundary.ws.WsLoadGenerator ws://localhost:8080/quotes-next 500 30
+ * </pre>
+ *
+ * Öffnet N Verbindungen, abonniert auf jeder dieselben Symbole und misst Nachrichten/s sowie
+ * die Ping-Pong-Laufzeit unter Last (Mittel und p99).
+ */
+public class WsLoadGenerator {
+
+    private static final String[] SYMBOLS = {
+            "{\"action\":\"subscribe\",\"symbolId\":\"133962\",\"venueId\":\"22\",\"channel\":\"last\",\"window\":3600}",
+            "{\"action\":\"subscribe\",\"symbolId\":\"133979\",\"venueId\":\"98\",\"channel\":\"bid\",\"window\":3600}",
+            "{\"action\":\"subscribe\",\"symbolId\":\"133965\",\"venueId\":\"22\",\"channel\":\"last\",\"window\":3600}"
+    };
+
+    public static void main(String[] args) throws Exception {
+        URI uri = URI.create(args.length > 0 ? args[0] : "ws://localhost:8080/quotes");
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        HttpClient client = HttpClient.newHttpClient();
+        AtomicLong messages = new AtomicLong();
+        List<Long> rtts = Collections.synchronizedList(new ArrayList<>());
+        var pingSent = new ConcurrentHashMap<WebSocket, Long>();
+
+        List<WebSocket> sockets = new ArrayList<>();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            WebSocket ws = client.newWebSocketBuilder().buildAsync(uri, new WebSocket.Listener() {
+                private final StringBuilder partial = new StringBuilder();
+
+                @Override
+                public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+                    partial.append(data);
+                    if (last) {
+                        messages.incrementAndGet();
+                        if (partial.indexOf("\"pong\"") >= 0) {
+                            Long sent = pingSent.remove(ws);
+                            if (sent != null)
+                                rtts.add(System.nanoTime() - sent);
+                        }
+                        partial.setLength(0);
+                    }
+                    ws.request(1);
+                    return null;
+                }
+
+                @Override
+                public CompletionStage<?> onBinary(WebSocket ws, ByteBuffer data, boolean last) {
+                    if (last)
+                        messages.incrementAndGet();
+                    ws.request(1);
+                    return null;
+                }
+            }).get(10, TimeUnit.SECONDS);
+            for (String sub : SYMBOLS)
+                ws.sendText(sub, true).get();
+            sockets.add(ws);
+        }
+        System.out.printf("%d Verbindungen in %.1f s aufgebaut%n", connections, (System.nanoTime() - t0) / 1e9);
+
+        long start = System.nanoTime();
+        long startMessages = messages.get();
+        for (int s = 0; s < seconds; s++) {
+            for (WebSocket ws : sockets) {
+                if (pingSent.putIfAbsent(ws, System.nanoTime()) == null)
+                    ws.sendText("{\"type\":\"ping\"}", true);
+            }
+            TimeUnit.SECONDS.sleep(1);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        List<Long> sorted;
+        synchronized (rtts) {
+            sorted = new ArrayList<>(rtts);
+        }
+        Collections.sort(sorted);
+        double mean = sorted.stream().mapToLong(Long::longValue).average().orElse(0) / 1e6;
+        double p99 = sorted.isEmpty() ? 0 : sorted.get((int) Math.min(sorted.size() - 1, sorted.size() * 0.99)) / 1e6;
+        System.out.printf("%s: %,.0f Nachrichten/s, Ping-RTT Mittel %.2f ms, p99 %.2f ms (%d Messungen)%n",
+                uri, (messages.get() - startMessages) / elapsed, mean, p99, sorted.size());
+
+        CompletableFuture.allOf(sockets.stream()
+                .map(ws -> ws.sendClose(WebSocket.NORMAL_CLOSURE, "fertig"))
+                .toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+    }
+}
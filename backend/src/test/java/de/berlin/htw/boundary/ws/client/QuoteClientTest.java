@@ -102,7 +102,7 @@ public class QuoteClientTest {
         );
 
         // Wende das Delta an
-        Quote updated = Quote.applyDelta(key, initial, delta, "bid");
+        Quote updated = Quote.applyDelta(key, initial, delta, "bid", initial.tsUnixSec());
 
         // Assert: Das neue Quote wurde korrekt berechnet
         assertNotNull(updated, "Updated Quote sollte nicht null sein");
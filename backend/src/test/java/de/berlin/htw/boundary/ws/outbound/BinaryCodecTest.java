@@ -0,0 +1,60 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+
+public class BinaryCodecTest {
+
+    private static final SymbolKey KEY = new SymbolKey("133979", "98", "bid");
+
+    /**
+     * TEST 1: Quote übersteht Kodieren und Dekodieren, inklusive null-Feldern
+     */
+    @Test
+    public void testQuoteRoundTrip() {
+        Quote q = new Quote(KEY, 1_700_000_000L, 12050.25, 12200.0, null, 11950.0, 11800.0,
+                250.25, 0.0212, 0.01, true, 102L, null, 2.0);
+        ByteBuffer b = BinaryCodec.encodeQuote(7, q);
+
+        assertEquals(BinaryCodec.QUOTE_SIZE, b.remaining(), "Quote-Frame sollte feste Länge haben");
+        assertEquals(7, b.duplicate().order(java.nio.ByteOrder.LITTLE_ENDIAN).getInt(4), "Handle an Offset 4");
+        assertEquals(q, BinaryCodec.readQuote(b, KEY), "Dekodiertes Quote sollte dem Original entsprechen");
+    }
+
+    /**
+     * TEST 2: Bytes und CPU pro Tick im Vergleich zum JSON-Pfad
+     */
+    @Test
+    public void testBytesAndCpuPerTick() throws Exception {
+        int ticks = 200_000;
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            FrameEncoder encoder = new FrameEncoder(jsonb);
+            long jsonBytes = 0, binBytes = 0;
+
+            long t0 = System.nanoTime();
+            for (int i = 0; i < ticks; i++)
+                jsonBytes += encoder.quote(KEY, quote(i)).text().length();
+            long t1 = System.nanoTime();
+            for (int i = 0; i < ticks; i++)
+                binBytes += encoder.quote(KEY, quote(i)).binary().remaining();
+            long t2 = System.nanoTime();
+
+            System.out.printf("JSON: %d Bytes/Tick, %.0f ns/Tick; Binär: %d Bytes/Tick, %.0f ns/Tick%n",
+                    jsonBytes / ticks, (t1 - t0) / (double) ticks, binBytes / ticks, (t2 - t1) / (double) ticks);
+            assertTrue(binBytes < jsonBytes / 2, "Binärformat sollte deutlich kleiner sein");
+        }
+    }
+
+    private static Quote quote(int i) {
+        return new Quote(KEY, 1_700_000_000L + i, 12000.0 + (i % 100) * 0.25, 12200.0, 11800.0, 11950.0,
+                11800.0, 200.0, 0.0169, 0.01, true, 100L + i, 1, 2.0);
+    }
+}
@@ -0,0 +1,112 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+
+public class DeltaTrackerTest {
+
+    private static final SymbolKey KEY = new SymbolKey("133979", "98", "bid");
+    private static final int TICKS = 20_000;
+
+    /**
+     * TEST 1: Aus Keyframes und Deltas lässt sich jedes Quote exakt rekonstruieren, auch wenn
+     * Quotes durch Konflation übersprungen werden; die Delta-Variante spart deutlich Bytes
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReconstructionAndBytes() throws Exception {
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            FrameEncoder encoder = new FrameEncoder(jsonb);
+            DeltaTracker tracker = new DeltaTracker(encoder);
+            Random rnd = new Random(7);
+
+            Quote base = null, q = null, client = null;
+            long fullBytes = 0, deltaBytes = 0;
+            int keyframes = 0;
+            for (int i = 0; i < TICKS; i++) {
+                q = next(q, rnd);
+                OutboundFrame frame = encoder.quote(KEY, q, base);
+                base = q;
+                // Jedes fünfte Quote wird beim langsamen Client wegkonfliert
+                if (i % 5 == 3)
+                    continue;
+
+                OutboundFrame sent = tracker.select(frame);
+                fullBytes += frame.text().length();
+                deltaBytes += sent.text().length();
+
+                Map<String, Object> msg = jsonb.fromJson(sent.text(), Map.class);
+                if ("quote".equals(msg.get("type"))) {
+                    keyframes++;
+                    client = q;
+                } else {
+                    assertEquals("qd", msg.get("type"));
+                    client = apply(client, (Map<String, Object>) msg.get("data"));
+                }
+                assertEquals(q, client, "Rekonstruiertes Quote sollte dem Original entsprechen (Tick " + i + ")");
+            }
+
+            System.out.printf("Voll: %d Bytes/Quote, Delta: %d Bytes/Quote, %d Keyframes%n",
+                    fullBytes / TICKS, deltaBytes / TICKS, keyframes);
+            assertTrue(keyframes > 1, "Es sollten periodisch Keyframes gesendet werden");
+            assertTrue(deltaBytes < fullBytes / 2, "Deltas sollten deutlich kleiner sein");
+        }
+    }
+
+    /**
+     * TEST 2: Ändert sich ein Feld, das kein Delta kennt, geht ein volles Quote raus
+     */
+    @Test
+    public void testUnsupportedChangeSendsKeyframe() throws Exception {
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            FrameEncoder encoder = new FrameEncoder(jsonb);
+            DeltaTracker tracker = new DeltaTracker(encoder);
+            Quote a = next(null, new Random(1));
+            Quote b = new Quote(KEY, a.tsUnixSec() + 1, a.price(), a.high(), a.low(), a.open(), a.prevClose(),
+                    a.abs(), a.rel(), a.tickSize(), false, a.tick() + 1, a.subId(), a.precision());
+
+            tracker.select(encoder.quote(KEY, a, null));
+            assertEquals("quote", tracker.select(encoder.quote(KEY, b, a)).type(),
+                    "Geänderter active-Status sollte ein volles Quote erzwingen");
+        }
+    }
+
+    private static Quote next(Quote prev, Random rnd) {
+        if (prev == null)
+            return new Quote(KEY, 1_700_000_000L, 12000.0, 12000.0, 12000.0, 11950.0, 11800.0,
+                    200.0, 0.0169, 0.01, true, 100L, 1, 2.0);
+        double price = Math.round((prev.price() + (rnd.nextInt(9) - 4) * 0.25) * 100) / 100.0;
+        return new Quote(KEY, prev.tsUnixSec() + rnd.nextInt(2), price, Math.max(prev.high(), price),
+                Math.min(prev.low(), price), prev.open(), prev.prevClose(), price - prev.prevClose(),
+                (price - prev.prevClose()) / prev.prevClose(), prev.tickSize(), true, prev.tick() + 1,
+                prev.subId(), prev.precision());
+    }
+
+    private static Quote apply(Quote prev, Map<String, Object> d) {
+        return new Quote(KEY,
+                prev.tsUnixSec() + num(d, "t", 0).longValue(),
+                num(d, "p", prev.price()).doubleValue(),
+                num(d, "h", prev.high()).doubleValue(),
+                num(d, "l", prev.low()).doubleValue(),
+                prev.open(), prev.prevClose(),
+                num(d, "a", prev.abs()).doubleValue(),
+                num(d, "r", prev.rel()).doubleValue(),
+                prev.tickSize(), prev.active(),
+                prev.tick() + num(d, "k", 0).longValue(),
+                prev.subId(), prev.precision());
+    }
+
+    private static Number num(Map<String, Object> d, String name, Number fallback) {
+        Object v = d.get(name);
+        return v == null ? fallback : (Number) v;
+    }
+}
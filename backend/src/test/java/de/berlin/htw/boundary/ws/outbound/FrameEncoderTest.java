@@ -0,0 +1,63 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+
+public class FrameEncoderTest {
+
+    private static final SymbolKey KEY = new SymbolKey("133979", "98", "bid");
+    private static final Quote QUOTE = new Quote(KEY, 1_700_000_000L, 12050.0, 12200.0, 11800.0, 11950.0,
+            11800.0, 250.0, 0.0211, 0.01, true, 102L, 1, 2.0);
+
+    /**
+     * TEST 1: Der vorkodierte Frame entspricht der bisherigen Map-Serialisierung
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFrameMatchesMapPayload() throws Exception {
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            FrameEncoder encoder = new FrameEncoder(jsonb);
+            OutboundFrame frame = encoder.encode("quote", KEY, QUOTE);
+
+            Map<String, Object> parsed = jsonb.fromJson(frame.text(), Map.class);
+            Map<String, Object> expected = jsonb.fromJson(
+                    jsonb.toJson(Map.of("type", "quote", "key", KEY, "data", QUOTE)), Map.class);
+            assertEquals(expected, parsed, "Frame sollte dieselbe Nachricht enthalten");
+            assertSame(encoder.keyFragment(KEY), encoder.keyFragment(KEY), "Key-Fragment sollte gecacht sein");
+        }
+    }
+
+    /**
+     * TEST 2: Serialisierungsaufwand pro Event für 1 bis 10k Empfänger
+     */
+    @Test
+    public void testSweepSubscribers() throws Exception {
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            FrameEncoder encoder = new FrameEncoder(jsonb);
+            for (int subscribers : new int[] { 1, 10, 100, 1_000, 10_000 }) {
+                long t0 = System.nanoTime();
+                long perRecipient = 0;
+                for (int i = 0; i < subscribers; i++)
+                    perRecipient += jsonb.toJson(Map.of("type", "quote", "key", KEY, "data", QUOTE)).length();
+                long t1 = System.nanoTime();
+                OutboundFrame frame = encoder.encode("quote", KEY, QUOTE);
+                long shared = 0;
+                for (int i = 0; i < subscribers; i++)
+                    shared += frame.text().length();
+                long t2 = System.nanoTime();
+
+                System.out.printf("%,6d Empfänger: pro Empfänger %.2f ms, einmal kodiert %.2f ms%n",
+                        subscribers, (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+                assertEquals(perRecipient, shared, "Beide Wege sollten gleich viele Bytes liefern");
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.boundary.ws.dto.WsMsgs;
+import de.berlin.htw.boundary.ws.outbound.SessionOutbox.OverflowPolicy;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+
+public class SessionOutboxTest {
+
+    private static final int CAPACITY = 64;
+    private static final int SYMBOLS = 5;
+    private static final int TICKS = 20_000;
+
+    /**
+     * Sink, der sofort bestätigt (schneller Client)
+     */
+    static final class FastSink implements SessionOutbox.Sink {
+        final List<OutboundFrame> received = new ArrayList<>();
+
+        @Override
+        public void send(OutboundFrame frame, Consumer<Throwable> onDone) {
+            synchronized (this) {
+                received.add(frame);
+            }
+            onDone.accept(null);
+        }
+
+        @Override
+        public void close(String reason) {
+        }
+    }
+
+    /**
+     * Sink, der erst nach release() bestätigt (langsamer Client)
+     */
+    static final class SlowSink implements SessionOutbox.Sink {
+        final List<OutboundFrame> received = new ArrayList<>();
+        Consumer<Throwable> pendingDone;
+        boolean closed;
+
+        @Override
+        public void send(OutboundFrame frame, Consumer<Throwable> onDone) {
+            received.add(frame);
+            pendingDone = onDone;
+        }
+
+        void releaseAll() {
+            while (pendingDone != null) {
+                var done = pendingDone;
+                pendingDone = null;
+                done.accept(null);
+            }
+        }
+
+        @Override
+        public void close(String reason) {
+            closed = true;
+        }
+    }
+
+    private static SymbolKey key(int i) {
+        return new SymbolKey(String.valueOf(133_000 + i), "22", "last");
+    }
+
+    private static OutboundFrame quote(int i, int tick) {
+        return new OutboundFrame("quote", key(i), "{\"type\":\"quote\",\"tick\":" + tick + "}");
+    }
+
+    /**
+     * TEST 1: Ein langsamer Client bremst einen schnellen Client nicht aus, seine Warteschlange
+     * bleibt begrenzt und enthält nach dem Aufholen nur die neuesten Werte pro Symbol
+     */
+    @Test
+    public void testSlowClientIsConflatedFastClientUnaffected() {
+        FastSink fastSink = new FastSink();
+        SlowSink slowSink = new SlowSink();
+        SessionOutbox fast = new SessionOutbox(fastSink, CAPACITY, OverflowPolicy.CONFLATE);
+        SessionOutbox slow = new SessionOutbox(slowSink, CAPACITY, OverflowPolicy.CONFLATE);
+
+        long worstFastOfferNs = 0;
+        for (int t = 0; t < TICKS; t++) {
+            OutboundFrame frame = quote(t % SYMBOLS, t);
+            slow.offer(frame);
+            long t0 = System.nanoTime();
+            fast.offer(frame);
+            worstFastOfferNs = Math.max(worstFastOfferNs, System.nanoTime() - t0);
+        }
+
+        assertEquals(TICKS, fastSink.received.size(), "Schneller Client sollte alle Ticks erhalten");
+        assertTrue(slow.stats().depth() <= SYMBOLS, "Langsamer Client sollte nur ein Frame pro Symbol puffern");
+        assertEquals(1, slowSink.received.size(), "Es sollte nur ein Schreibvorgang unterwegs sein");
+        System.out.printf("Schlechteste offer()-Latenz des schnellen Clients: %.3f ms%n", worstFastOfferNs / 1e6);
+
+        slowSink.releaseAll();
+        List<OutboundFrame> tail = slowSink.received.subList(1, slowSink.received.size());
+        assertEquals(SYMBOLS, tail.size(), "Nach dem Aufholen sollte pro Symbol ein Frame kommen");
+        for (int i = 0; i < SYMBOLS; i++) {
+            String expected = quote(i, TICKS - SYMBOLS + i).text();
+            assertTrue(tail.stream().anyMatch(f -> f.text().equals(expected)),
+                    "Nur der neueste Tick pro Symbol sollte gesendet werden");
+        }
+    }
+
+    /**
+     * TEST 2: Bei DROP werden neue Frames verworfen, sobald die Warteschlange voll ist
+     */
+    @Test
+    public void testDropPolicy() {
+        SlowSink sink = new SlowSink();
+        SessionOutbox outbox = new SessionOutbox(sink, CAPACITY, OverflowPolicy.DROP);
+        for (int t = 0; t < 1_000; t++)
+            outbox.offer(quote(0, t));
+
+        var st = outbox.stats();
+        assertEquals(CAPACITY, st.depth(), "Warteschlange sollte voll sein");
+        assertEquals(1_000 - CAPACITY - 1, st.dropped(), "Überzählige Frames sollten verworfen werden");
+    }
+
+    /**
+     * TEST 3: Bei DISCONNECT wird die Session bei voller Warteschlange geschlossen
+     */
+    @Test
+    public void testDisconnectPolicy() {
+        SlowSink sink = new SlowSink();
+        SessionOutbox outbox = new SessionOutbox(sink, CAPACITY, OverflowPolicy.DISCONNECT);
+        for (int t = 0; t < 1_000; t++)
+            outbox.offer(new OutboundFrame("pong", null, "{\"type\":\"pong\"}"));
+
+        assertTrue(sink.closed, "Session sollte geschlossen werden");
+        assertEquals(0, outbox.stats().depth(), "Warteschlange sollte geleert sein");
+    }
+
+    /**
+     * TEST 4: Im Batch-Fenster wird pro Symbol nur der letzte Wert in einem Frame gesendet
+     */
+    @Test
+    public void testBatchWindowCoalesces() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            FastSink sink = new FastSink();
+            SessionOutbox outbox = new SessionOutbox(sink, CAPACITY, OverflowPolicy.CONFLATE);
+            outbox.setBatchWindow(200, scheduler);
+            for (int t = 0; t < 1_000; t++)
+                outbox.offer(quote(t % SYMBOLS, t));
+            synchronized (sink) {
+                assertTrue(sink.received.isEmpty(), "Vor Ablauf des Fensters sollte nichts gesendet werden");
+            }
+
+            Thread.sleep(500);
+            synchronized (sink) {
+                assertEquals(1, sink.received.size(), "Das Fenster sollte genau einen Frame ergeben");
+                OutboundFrame batch = sink.received.get(0);
+                assertEquals("batch", batch.type());
+                for (int i = 0; i < SYMBOLS; i++)
+                    assertTrue(batch.text().contains(quote(i, 1_000 - SYMBOLS + i).text()),
+                            "Nur der letzte Wert pro Symbol sollte enthalten sein");
+            }
+            assertEquals(SYMBOLS, outbox.stats().messages(), "Pro Symbol sollte eine Nachricht gezählt werden");
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * TEST 5: Frames/s und Latenz bei verschiedenen Batch-Fenstern, 11 Symbole mit je einem
+     * Update pro Millisekunde
+     */
+    @Test
+    public void testFlushIntervalSweep() throws Exception {
+        Pattern offeredAt = Pattern.compile("\"t\":(\\d+)");
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            for (int windowMs : new int[] { 0, 16, 33, 50 }) {
+                long[] frames = new long[1];
+                long[] latency = new long[2];
+                SessionOutbox.Sink sink = new SessionOutbox.Sink() {
+                    @Override
+                    public void send(OutboundFrame frame, Consumer<Throwable> onDone) {
+                        long now = System.nanoTime();
+                        synchronized (latency) {
+                            frames[0]++;
+                            Matcher m = offeredAt.matcher(frame.text());
+                            while (m.find()) {
+                                latency[0] += now - Long.parseLong(m.group(1));
+                                latency[1]++;
+                            }
+                        }
+                        onDone.accept(null);
+                    }
+
+                    @Override
+                    public void close(String reason) {
+                    }
+                };
+                SessionOutbox outbox = new SessionOutbox(sink, CAPACITY, OverflowPolicy.CONFLATE);
+                outbox.setBatchWindow(windowMs, scheduler);
+
+                long start = System.nanoTime();
+                long end = start + TimeUnit.MILLISECONDS.toNanos(400);
+                while (System.nanoTime() < end) {
+                    for (int i = 0; i < 11; i++)
+                        outbox.offer(new OutboundFrame("quote", key(i),
+                                "{\"type\":\"quote\",\"t\":" + System.nanoTime() + "}"));
+                    TimeUnit.MILLISECONDS.sleep(1);
+                }
+                Thread.sleep(windowMs + 50);
+
+                synchronized (latency) {
+                    double secs = (System.nanoTime() - start) / 1e9;
+                    System.out.printf("Fenster %2d ms: %,8.0f Frames/s, %,6d Nachrichten, mittlere Latenz %.2f ms%n",
+                            windowMs, frames[0] / secs, latency[1], latency[0] / (double) latency[1] / 1e6);
+                    // Latenz = Alter des zugestellten (jeweils neuesten) Werts beim Senden
+                    if (windowMs > 0)
+                        assertTrue(frames[0] / secs <= 1_000.0 / windowMs * 1.5,
+                                "Höchstens etwa ein Frame pro Fenster");
+                }
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * TEST 6: Bei voller Warteschlange gehen nur quote-/candle-Updates verloren; History-Seiten
+     * und andere Antworten werden weiter eingereiht, erst bei doppelter Kapazität wird geschlossen
+     */
+    @Test
+    public void testOnlyUpdatesAreDropped() {
+        for (OverflowPolicy policy : new OverflowPolicy[] { OverflowPolicy.CONFLATE, OverflowPolicy.DROP }) {
+            SlowSink sink = new SlowSink();
+            SessionOutbox outbox = new SessionOutbox(sink, CAPACITY, policy);
+            for (int i = 0; i <= CAPACITY; i++)
+                outbox.offer(quote(i, i));
+            assertEquals(CAPACITY, outbox.stats().depth(), "Warteschlange sollte voll sein: " + policy);
+
+            outbox.offer(quote(CAPACITY + 1, 0));
+            assertEquals(1, outbox.stats().dropped(), "Neues Update sollte verworfen werden: " + policy);
+            for (int i = 0; i < CAPACITY; i++)
+                outbox.offer(new OutboundFrame("history", null, "{\"type\":\"history\",\"page\":" + i + "}"));
+            assertEquals(2 * CAPACITY, outbox.stats().depth(), "History-Seiten sollten eingereiht werden: " + policy);
+            assertEquals(1, outbox.stats().dropped(), "History-Seiten sollten nicht verworfen werden: " + policy);
+            assertFalse(sink.closed, "Session sollte noch offen sein: " + policy);
+
+            outbox.offer(new OutboundFrame("history", null, "{\"type\":\"history\",\"done\":true}"));
+            assertTrue(sink.closed, "Über der doppelten Kapazität sollte die Session schließen: " + policy);
+        }
+    }
+
+    /**
+     * TEST 7: Ein ausgelöster Alarm ist einmalig und wird auch bei voller Warteschlange
+     * zugestellt
+     */
+    @Test
+    public void testAlertSurvivesFullOutbox() throws Exception {
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            var msg = new WsMsgs.AlertTriggered();
+            msg.data = List.of("a-1");
+            OutboundFrame alert = new FrameEncoder(jsonb).encode(msg);
+
+            for (OverflowPolicy policy : new OverflowPolicy[] { OverflowPolicy.CONFLATE, OverflowPolicy.DROP }) {
+                SlowSink sink = new SlowSink();
+                SessionOutbox outbox = new SessionOutbox(sink, CAPACITY, policy);
+                for (int i = 0; i <= CAPACITY; i++)
+                    outbox.offer(quote(i, i));
+                outbox.offer(alert);
+                sink.releaseAll();
+
+                assertEquals(0, outbox.stats().dropped(), "Nichts sollte verworfen werden: " + policy);
+                assertSame(alert, sink.received.get(sink.received.size() - 1),
+                        "Alarm sollte als letzter Frame ankommen: " + policy);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package de.berlin.htw.boundary.ws.outbound;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.quote.QuoteSeries;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+
+public class SnapshotCacheTest {
+
+    private static final SymbolKey KEY = new SymbolKey("133962", "22", "last");
+    private static final long NOW = 1_700_003_600L;
+    private static final int WINDOW = 3_600;
+    private static final int SUBSCRIBERS = 200;
+
+    private static QuoteSeries series() {
+        QuoteSeries qs = new QuoteSeries();
+        for (long ts = NOW - 2 * WINDOW; ts <= NOW; ts++)
+            qs.append(new Quote(KEY, ts, 16000.0 + (ts % 97) * 0.5, 16100.0, 15900.0, 15950.0,
+                    15900.0, 100.0, 0.0063, 0.5, true, ts, 1, 2.0));
+        return qs;
+    }
+
+    /**
+     * TEST 1: Aus Segmenten zusammengesetzter Snapshot entspricht der direkten Kodierung,
+     * auch bei nicht minutengenauem Fensterbeginn
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSegmentedMatchesDirectEncoding() throws Exception {
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            FrameEncoder encoder = new FrameEncoder(jsonb);
+            SnapshotCache cache = new SnapshotCache(encoder, 64L << 20);
+            QuoteSeries qs = series();
+
+            for (long from : new long[] { NOW - WINDOW, NOW - WINDOW + 17, NOW - 30 }) {
+                OutboundFrame frame = cache.segmented("quotes", KEY, 1, from, NOW, qs::range);
+                Map<String, Object> parsed = jsonb.fromJson(frame.text(), Map.class);
+                Map<String, Object> expected = jsonb.fromJson(
+                        encoder.encode("quotes", KEY, 1, qs.range(from, Long.MAX_VALUE)).text(), Map.class);
+                assertEquals(expected, parsed, "Snapshot ab " + from + " sollte der direkten Kodierung entsprechen");
+            }
+            assertTrue(cache.stats().segmentHits() > 0, "Abgeschlossene Minuten sollten wiederverwendet werden");
+            assertNull(cache.segmented("quotes", KEY, 1, NOW + 10, NOW + 10, qs::range), "Leerer Bereich liefert null");
+        }
+    }
+
+    /**
+     * TEST 2: Viele gleichzeitige Subscriber derselben Version lösen genau einen Aufbau aus;
+     * Latenz im Vergleich zum Aufbau pro Subscriber
+     */
+    @Test
+    public void testThunderingHerd() throws Exception {
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            FrameEncoder encoder = new FrameEncoder(jsonb);
+            SnapshotCache cache = new SnapshotCache(encoder, 64L << 20);
+            QuoteSeries qs = series();
+            AtomicInteger builds = new AtomicInteger();
+            SnapshotCache.RangeSource source = (f, t) -> {
+                builds.incrementAndGet();
+                return qs.range(f, t);
+            };
+
+            ExecutorService pool = Executors.newFixedThreadPool(16);
+            try {
+                long uncached = herd(pool, () -> encoder.encode("quotes", KEY, 1, qs.range(NOW - WINDOW, Long.MAX_VALUE)));
+                long cached = herd(pool, () -> cache.segmented("quotes", KEY, 1, NOW - WINDOW, NOW, source));
+
+                System.out.printf("%d Subscriber: ohne Cache %.1f ms, mit Cache %.1f ms, %d Bereichsabfragen%n",
+                        SUBSCRIBERS, uncached / 1e6, cached / 1e6, builds.get());
+                assertEquals(1, cache.stats().misses(), "Es sollte genau ein Snapshot gebaut werden");
+                assertEquals(SUBSCRIBERS - 1, cache.stats().hits(), "Alle anderen sollten den Snapshot teilen");
+                assertTrue(builds.get() <= WINDOW / SnapshotCache.SEGMENT_SEC + 2,
+                        "Quelle sollte nur einmal pro Segment abgefragt werden");
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * TEST 3: Der Cache bleibt unter seiner Byte-Grenze und verdrängt die ältesten Einträge
+     */
+    @Test
+    public void testLruBoundedByBytes() throws Exception {
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            FrameEncoder encoder = new FrameEncoder(jsonb);
+            long limit = 256 * 1024;
+            SnapshotCache cache = new SnapshotCache(encoder, limit);
+            QuoteSeries qs = series();
+
+            for (int seq = 1; seq <= 50; seq++)
+                cache.segmented("quotes", KEY, seq, NOW - 600 + seq, NOW, qs::range);
+            assertTrue(cache.stats().bytes() <= limit, "Cache sollte seine Byte-Grenze einhalten");
+
+            long misses = cache.stats().misses();
+            cache.segmented("quotes", KEY, 50, NOW - 550, NOW, qs::range);
+            assertEquals(misses, cache.stats().misses(), "Jüngster Snapshot sollte noch im Cache sein");
+        }
+    }
+
+    private static long herd(ExecutorService pool, java.util.concurrent.Callable<OutboundFrame> subscribe)
+            throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<OutboundFrame>> futures = new ArrayList<>();
+        for (int i = 0; i < SUBSCRIBERS; i++)
+            futures.add(pool.submit(() -> {
+                start.await();
+                return subscribe.call();
+            }));
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Future<OutboundFrame> f : futures)
+            assertNotNull(f.get().text());
+        return System.nanoTime() - t0;
+    }
+}
@@ -0,0 +1,154 @@
+package de.berlin.htw.trading.alert;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.alert.dto.Alert;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+public class AlertBookTest {
+
+    private static final int SYMBOLS = 20;
+    private static final int ALERTS = 100_000;
+    private static final int TICKS = 200_000;
+
+    private static Alert alert(long id, SymbolKey key, double price, Random rnd) {
+        // Schwellen bis 5 % ober- bzw. unterhalb des aktuellen Kurses
+        boolean above = rnd.nextBoolean();
+        double distance = price * 0.05 * rnd.nextDouble();
+        return new Alert(id, "s" + (id % 50), key,
+                above ? Alert.Direction.ABOVE : Alert.Direction.BELOW, above ? price + distance : price - distance);
+    }
+
+    /**
+     * Kurs mit gelegentlichen Sprüngen (Burst): meist kleine Schritte, ab und zu bis 2 %.
+     */
+    private static double nextPrice(double price, Random rnd) {
+        if (rnd.nextInt(200) == 0)
+            return price * (1 + (rnd.nextDouble() - 0.5) * 0.04);
+        return price + (rnd.nextInt(9) - 4) * 0.25;
+    }
+
+    /**
+     * TEST 1: Es lösen genau die Alarme aus, die auch ein vollständiger Durchlauf findet,
+     * jeweils beim ersten passenden Kurs und nur einmal
+     */
+    @Test
+    public void testMatchesLinearScan() {
+        Random rnd = new Random(1);
+        SymbolKey key = new SymbolKey("133962", "22", "last");
+        AlertBook book = new AlertBook();
+        List<Alert> open = new ArrayList<>();
+        double price = 16000;
+        book.evaluate(price, 0, new ArrayList<>());
+
+        long id = 0;
+        for (int tick = 1; tick <= 20_000; tick++) {
+            if (tick % 3 == 0) {
+                Alert a = alert(++id, key, price, rnd);
+                assertTrue(book.add(a), "Alarm jenseits des Kurses sollte eingetragen werden");
+                open.add(a);
+            }
+            if (tick % 97 == 0 && !open.isEmpty()) {
+                Alert a = open.remove(rnd.nextInt(open.size()));
+                assertTrue(book.remove(a), "Offener Alarm sollte entfernt werden können");
+                assertFalse(book.remove(a), "Zweites Entfernen sollte nichts tun");
+            }
+
+            price = nextPrice(price, rnd);
+            List<Alert> fired = new ArrayList<>();
+            book.evaluate(price, tick, fired);
+
+            Set<Alert> expected = new HashSet<>();
+            for (Alert a : open)
+                if (a.isHit(price))
+                    expected.add(a);
+            open.removeAll(expected);
+            assertEquals(expected, new HashSet<>(fired), "Ausgelöste Alarme bei Tick " + tick + " sollten stimmen");
+            assertEquals(open.size(), book.size(), "Anzahl offener Alarme sollte stimmen");
+        }
+
+        Alert hit = new Alert(++id, "s", key, Alert.Direction.BELOW, price + 1);
+        assertFalse(book.add(hit), "Bereits erfüllter Alarm sollte sofort auslösen statt eingetragen zu werden");
+    }
+
+    /**
+     * TEST 2: Benchmark: 100k aktive Alarme bei sprunghaftem Kursverlauf; ausgelöste Alarme
+     * werden sofort neu angelegt, damit der Bestand konstant bleibt. Die Zeiten werden nur
+     * ausgegeben; die Korrektheit prüft TEST 1.
+     */
+    @Test
+    public void testBenchmarkAgainstScan() {
+        SymbolKey[] keys = new SymbolKey[SYMBOLS];
+        for (int s = 0; s < SYMBOLS; s++)
+            keys[s] = new SymbolKey(String.valueOf(133_900 + s), "22", "last");
+
+        long indexedNs = run(keys, true);
+        long scanNs = run(keys, false);
+        System.out.printf("%,d Alarme, %,d Ticks: Index %.0f ns/Tick, Durchlauf %.0f ns/Tick%n",
+                ALERTS, TICKS, (double) indexedNs / TICKS, (double) scanNs / TICKS);
+    }
+
+    private static long run(SymbolKey[] keys, boolean indexed) {
+        Random rnd = new Random(2);
+        double[] prices = new double[SYMBOLS];
+        AlertBook[] books = new AlertBook[SYMBOLS];
+        List<List<Alert>> scan = new ArrayList<>();
+        for (int s = 0; s < SYMBOLS; s++) {
+            prices[s] = 1000 + 1000 * s;
+            books[s] = new AlertBook();
+            books[s].evaluate(prices[s], 0, new ArrayList<>());
+            scan.add(new ArrayList<>());
+        }
+        long id = 0;
+        for (int i = 0; i < ALERTS; i++) {
+            int s = i % SYMBOLS;
+            Alert a = alert(++id, keys[s], prices[s], rnd);
+            if (indexed)
+                books[s].add(a);
+            else
+                scan.get(s).add(a);
+        }
+
+        List<Alert> fired = new ArrayList<>();
+        long triggered = 0;
+        long t0 = System.nanoTime();
+        for (int tick = 0; tick < TICKS; tick++) {
+            // Bursts: mehrere Ticks desselben Symbols hintereinander
+            int s = (tick / 8) % SYMBOLS;
+            prices[s] = nextPrice(prices[s], rnd);
+            fired.clear();
+            if (indexed) {
+                books[s].evaluate(prices[s], tick, fired);
+            } else {
+                List<Alert> list = scan.get(s);
+                for (int i = list.size() - 1; i >= 0; i--) {
+                    Alert a = list.get(i);
+                    if (a.isHit(prices[s])) {
+                        fired.add(a);
+                        list.set(i, list.get(list.size() - 1));
+                        list.remove(list.size() - 1);
+                    }
+                }
+            }
+            triggered += fired.size();
+            for (int i = 0; i < fired.size(); i++) {
+                Alert a = alert(++id, keys[s], prices[s], rnd);
+                if (indexed)
+                    books[s].add(a);
+                else
+                    scan.get(s).add(a);
+            }
+        }
+        long ns = System.nanoTime() - t0;
+        assertTrue(triggered > 0, "Es sollten Alarme auslösen");
+        return ns;
+    }
+}
@@ -0,0 +1,173 @@
+package de.berlin.htw.trading.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.analytics.dto.CorrelationMatrix;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+public class RollingCovarianceTest {
+
+    private static final double EPS = 1e-12;
+
+    /**
+     * Referenz: Mittelwerte und Stichproben-Kovarianzen in zwei Durchläufen über alle Zeilen.
+     */
+    private static double[][] batchCovariance(List<double[]> rows, int cols) {
+        int n = rows.size();
+        double[] mean = new double[cols];
+        for (double[] r : rows)
+            for (int i = 0; i < cols; i++)
+                mean[i] += r[i] / n;
+        double[][] cov = new double[cols][cols];
+        for (double[] r : rows)
+            for (int i = 0; i < cols; i++)
+                for (int j = 0; j < cols; j++)
+                    cov[i][j] += (r[i] - mean[i]) * (r[j] - mean[j]) / (n - 1);
+        return cov;
+    }
+
+    private static double batchMean(List<double[]> rows, int col) {
+        double m = 0;
+        for (double[] r : rows)
+            m += r[col];
+        return m / rows.size();
+    }
+
+    private static void assertMatchesBatch(RollingCovariance rc, List<double[]> window, int cols, String when) {
+        assertEquals(window.size(), rc.count(), "Anzahl Zeilen " + when);
+        double[][] cov = batchCovariance(window, cols);
+        for (int i = 0; i < cols; i++) {
+            assertEquals(batchMean(window, i), rc.mean(i), EPS, "Mittelwert " + i + " " + when);
+            for (int j = 0; j < cols; j++) {
+                assertEquals(cov[i][j], rc.covariance(i, j), EPS, "Kovarianz " + i + "/" + j + " " + when);
+                double corr = cov[i][j] / Math.sqrt(cov[i][i] * cov[j][j]);
+                assertEquals(corr, rc.correlation(i, j), 1e-9, "Korrelation " + i + "/" + j + " " + when);
+            }
+        }
+    }
+
+    /**
+     * TEST 1: Inkrementelle Werte stimmen nach jeder Zeile mit der Neuberechnung über das
+     * aktuelle Fenster überein, auch über viele Fensterdurchläufe hinweg
+     */
+    @Test
+    public void testRollingMatchesBatch() {
+        Random rnd = new Random(1);
+        int cols = 6;
+        int window = 30;
+        RollingCovariance rc = new RollingCovariance(window);
+        for (int i = 0; i < cols; i++)
+            rc.addColumn();
+        List<double[]> all = new ArrayList<>();
+        for (int t = 0; t < 2_000; t++) {
+            // korrelierte Renditen: gemeinsamer Marktfaktor plus Einzelrauschen
+            double market = rnd.nextGaussian() * 1e-3;
+            double[] row = new double[cols];
+            for (int i = 0; i < cols; i++)
+                row[i] = market * (i + 1) * 0.5 + rnd.nextGaussian() * 1e-3 + 5e-4;
+            rc.add(row);
+            all.add(row);
+            if (t >= 1)
+                assertMatchesBatch(rc, all.subList(Math.max(0, all.size() - window), all.size()), cols,
+                        "nach Zeile " + t);
+        }
+    }
+
+    /**
+     * TEST 2: Spalten hinzufügen (mit 0 in allen bisherigen Zeilen) und entfernen ergibt
+     * dasselbe wie eine Neuberechnung
+     */
+    @Test
+    public void testAddAndRemoveColumns() {
+        Random rnd = new Random(2);
+        int window = 20;
+        RollingCovariance rc = new RollingCovariance(window);
+        rc.addColumn();
+        rc.addColumn();
+        List<double[]> all = new ArrayList<>();
+        for (int t = 0; t < 200; t++) {
+            if (t == 50 || t == 120) {
+                rc.addColumn();
+                for (int k = 0; k < all.size(); k++)
+                    all.set(k, Arrays.copyOf(all.get(k), rc.columns()));
+            }
+            if (t == 90) {
+                rc.removeColumn(0);
+                for (int k = 0; k < all.size(); k++)
+                    all.set(k, Arrays.copyOfRange(all.get(k), 1, all.get(k).length));
+            }
+            double[] row = new double[rc.columns()];
+            for (int i = 0; i < row.length; i++)
+                row[i] = rnd.nextGaussian();
+            rc.add(row);
+            all.add(row);
+            if (t >= 1) {
+                List<double[]> win = all.subList(Math.max(0, all.size() - window), all.size());
+                double[][] cov = batchCovariance(win, rc.columns());
+                for (int i = 0; i < rc.columns(); i++)
+                    for (int j = 0; j < rc.columns(); j++)
+                        assertEquals(cov[i][j], rc.covariance(i, j), 1e-9, "Kovarianz " + i + "/" + j + " bei " + t);
+            }
+        }
+    }
+
+    /**
+     * TEST 3: Der Consumer richtet Kurse mehrerer Symbole auf Minuten aus und liefert die
+     * Kennzahlen der Log-Renditen der Schlusskurse
+     */
+    @Test
+    public void testConsumerAlignsCandleCloses() {
+        CorrelationConsumer consumer = new CorrelationConsumer();
+        consumer.window = 10;
+        consumer.reset();
+        SymbolKey dax = new SymbolKey("133962", "22", "last");
+        SymbolKey gold = new SymbolKey("133979", "98", "bid");
+
+        Random rnd = new Random(3);
+        double pDax = 24000, pGold = 2400;
+        long t0 = 1_700_000_040L - 1_700_000_040L % 60;
+        List<double[]> closes = new ArrayList<>();
+        closes.add(new double[] { pDax, pGold });
+        for (int minute = 0; minute < 25; minute++) {
+            for (int s = 0; s < 60; s += 5) {
+                pDax *= 1 + rnd.nextGaussian() * 1e-4;
+                consumer.accept(dax, t0 + minute * 60L + s, pDax);
+                // Gold handelt nur in geraden Minuten
+                if (minute % 2 == 0) {
+                    pGold *= 1 + rnd.nextGaussian() * 1e-4;
+                    consumer.accept(gold, t0 + minute * 60L + s + 1, pGold);
+                }
+            }
+            closes.add(new double[] { pDax, pGold });
+        }
+        // erst der nächste Tick schließt die letzte Minute
+        consumer.accept(dax, t0 + 25 * 60L, pDax);
+
+        List<double[]> returns = new ArrayList<>();
+        for (int k = 1; k < closes.size(); k++)
+            returns.add(new double[] { Math.log(closes.get(k)[0] / closes.get(k - 1)[0]),
+                    Math.log(closes.get(k)[1] / closes.get(k - 1)[1]) });
+        // Der Consumer kennt die Kurse erst ab dem ersten Tick, nicht den Startwert
+        List<double[]> window = returns.subList(returns.size() - 10, returns.size());
+        double[][] cov = batchCovariance(window, 2);
+
+        CorrelationMatrix m = consumer.snapshot();
+        assertEquals(List.of(dax, gold), m.symbols(), "Symbolreihenfolge sollte der Ankunft entsprechen");
+        assertEquals(10, m.samples(), "Fenster sollte voll sein");
+        assertEquals(t0 + 24 * 60L, m.bucketStartSec(), "Letzte geschlossene Minute sollte stimmen");
+        for (int i = 0; i < 2; i++) {
+            assertEquals(Math.sqrt(cov[i][i]), m.volatility()[i], EPS, "Volatilität " + i);
+            for (int j = 0; j < 2; j++)
+                assertEquals(cov[i][j], m.covariance()[i][j], EPS, "Kovarianz " + i + "/" + j);
+        }
+        assertEquals(cov[0][1] / Math.sqrt(cov[0][0] * cov[1][1]), m.correlation()[0][1], 1e-9,
+                "Korrelation sollte stimmen");
+    }
+}
@@ -0,0 +1,108 @@
+package de.berlin.htw.trading.candle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.boundary.source.CandleBackfill;
+import de.berlin.htw.boundary.source.CaptureWriter;
+import de.berlin.htw.trading.candle.dto.Candle;
+import de.berlin.htw.trading.clock.VirtualClock;
+import de.berlin.htw.trading.marketdata.InMemoryMarketDataBuffer;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+public class BatchCandleBuilderTest {
+
+    private static Map<SymbolKey, List<Quote>> randomTicks(int symbols, int perSymbol) {
+        SplittableRandom rnd = new SplittableRandom(11);
+        Map<SymbolKey, List<Quote>> out = new LinkedHashMap<>();
+        for (int s = 0; s < symbols; s++) {
+            SymbolKey key = new SymbolKey(String.valueOf(133_000 + s), "22", "last");
+            List<Quote> ticks = new ArrayList<>(perSymbol);
+            long ts = 1_700_000_000L;
+            long tick = 0;
+            double price = 100.0;
+            for (int i = 0; i < perSymbol; i++) {
+                ts += rnd.nextInt(5);
+                tick += 1 + rnd.nextInt(3);
+                price += rnd.nextDouble() - 0.5;
+                ticks.add(new Quote(key, ts, price, null, null, null, null, 0.0, 0.0, 0.01, true, tick, s, 2.0));
+            }
+            out.put(key, ticks);
+        }
+        return out;
+    }
+
+    /**
+     * TEST 1: Parallel gebaute Candles sind identisch mit dem sequentiellen Lauf und mit dem,
+     * was ein einzelner Aggregator im Live-Betrieb liefert
+     */
+    @Test
+    public void testParallelMatchesSequential() {
+        Map<SymbolKey, List<Quote>> ticks = randomTicks(64, 20_000);
+
+        Map<SymbolKey, List<Candle>> sequential = new BatchCandleBuilder(60, 1).build(ticks);
+        Map<SymbolKey, List<Candle>> parallel = new BatchCandleBuilder(60, 4).build(ticks);
+
+        assertEquals(sequential, parallel, "Parallelität sollte das Ergebnis nicht ändern");
+        var first = ticks.entrySet().iterator().next();
+        TimeCandleAggregator live = new TimeCandleAggregator(60);
+        first.getValue().forEach(live::acceptQuote);
+        assertEquals(new ArrayList<>(live.view().values()), parallel.get(first.getKey()),
+                "Batch sollte dieselben Candles wie der Live-Aggregator liefern");
+    }
+
+    /**
+     * TEST 2: Der Backfill rechnet Deltas gegen die Empfangszeit der Aufzeichnung statt gegen
+     * die Systemzeit, und ein Buffer mit virtueller Uhr verdrängt nach virtueller Zeit
+     */
+    @Test
+    public void testBackfillUsesCaptureTime() throws Exception {
+        long ms = 1_600_000_000_000L;
+        Path file = Files.createTempFile("capture", ".log");
+        try (var capture = new CaptureWriter(file)) {
+            capture.write(ms, "{\"q\":100.0,\"pc\":99.0,\"h\":100.0,\"l\":100.0,\"o\":100.0,\"ts\":1600000000,"
+                    + "\"t\":1,\"abs\":0,\"rel\":0,\"tickSize\":0.01,\"active\":true,\"i\":3,"
+                    + "\"s\":\"133962:22:last\",\"precision\":2}");
+            for (int i = 1; i <= 180; i++)
+                capture.write(ms + i * 1000L, "3:" + (100.0 + i * 0.1) + ":1:1::::");
+        }
+
+        Map<SymbolKey, List<Quote>> ticks = CandleBackfill.readCapture(file);
+        SymbolKey key = new SymbolKey("133962", "22", "last");
+        assertEquals(181, ticks.get(key).size(), "Alle Kurs-Frames sollten gelesen sein");
+        assertEquals(1_600_000_180L, ticks.get(key).get(180).tsUnixSec(),
+                "Zeitstempel sollte aus der Sitzung kommen, nicht von der Systemuhr");
+
+        Path dir = Files.createTempDirectory("candles");
+        BatchCandleBuilder.write(new BatchCandleBuilder(60, 2).build(ticks), dir);
+        List<String> lines = Files.readAllLines(dir.resolve("133962_22_last.csv"));
+        assertEquals("bucketStartSec,open,high,low,close,ticks", lines.get(0), "Kopfzeile erwartet");
+        // Beginn 40 s nach einer vollen Minute: 181 s verteilen sich auf vier Minuten-Candles
+        assertEquals(5, lines.size(), "Vier Minuten-Candles erwartet");
+
+        var clock = new VirtualClock(ms);
+        var buffer = new InMemoryMarketDataBuffer();
+        var field = InMemoryMarketDataBuffer.class.getDeclaredField("clock");
+        field.setAccessible(true);
+        field.set(buffer, clock);
+        for (Quote q : ticks.get(key))
+            buffer.appendFull(q);
+        assertEquals(181, buffer.snapshot(key, Duration.ofHours(1)).window().size(),
+                "Fenster sollte an der virtuellen Uhr hängen");
+        clock.advance(Duration.ofHours(25).toMillis());
+        buffer.sweep(clock.millis());
+        assertTrue(buffer.snapshot(key, Duration.ofDays(30)).window().isEmpty(),
+                "Nach virtuell abgelaufener Retention sollte das Symbol verdrängt sein");
+    }
+}
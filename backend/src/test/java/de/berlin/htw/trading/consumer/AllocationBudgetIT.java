@@ -0,0 +1,188 @@
+package de.berlin.htw.trading.consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.boundary.ws.outbound.DeltaTracker;
+import de.berlin.htw.boundary.ws.outbound.FrameEncoder;
+import de.berlin.htw.boundary.ws.outbound.OutboundFrame;
+import de.berlin.htw.boundary.ws.outbound.SessionOutbox;
+import de.berlin.htw.trading.candle.CandleQuoteConsumer;
+import de.berlin.htw.trading.events.EventExecutors;
+import de.berlin.htw.trading.marketdata.InMemoryMarketDataBuffer;
+import de.berlin.htw.trading.quote.SimpleQuoteConsumer;
+import de.berlin.htw.trading.quote.dto.DeltaQuote;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+
+/**
+ * Allokations-Budgets im eingeschwungenen Zustand: treibt Ticks durch Parsen, Buffer, beide
+ * Consumer und die Fan-out-Kodierung und misst pro Stufe die allokierten Bytes je Tick über
+ * {@code ThreadMXBean.getThreadAllocatedBytes}. Überschreitet eine Stufe ihr Budget, schlägt
+ * der Test fehl.
+ *
+ * Läuft nicht mit {@code mvn test}, sondern mit {@code mvn verify -Palloc}.
+ */
+public class AllocationBudgetIT {
+
+    // Bytes pro Tick: gemessener Stand plus ca. 25 % Spielraum. Sinkt eine Stufe durch eine
+    // Optimierung deutlich, das Budget mit absenken, damit es nicht wieder unbemerkt steigt.
+    private static final Map<String, Long> BUDGETS = new LinkedHashMap<>();
+    static {
+        BUDGETS.put("parse", 600L);            // gemessen 471: split-Array, Teil-Strings, Boxing
+        BUDGETS.put("append", 220L);           // gemessen 174: Quote, QuoteChange, Log-Knoten, Blöcke
+        BUDGETS.put("quote-consumer", 70L);    // gemessen 54
+        BUDGETS.put("candle-consumer", 260L);  // gemessen 205
+        BUDGETS.put("fan-out", 1_060L);        // gemessen 850 bei 2 Sessions mit Delta-Frames
+    }
+
+    private static final int SYMBOLS = 16;
+    // Pro Symbol 1100 Ticks zum Aufwärmen, 800 gemessen: die Ringpuffer wachsen dabei nicht mehr
+    private static final int WARMUP_TICKS = SYMBOLS * 1_100;
+    private static final int MEASURED_TICKS = SYMBOLS * 800;
+    private static final int CHUNK = 1_000;
+    private static final int SESSIONS = 2;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final long threadId = Thread.currentThread().getId();
+
+    private final long[] allocated = new long[BUDGETS.size()];
+
+    /**
+     * TEST 1: Keine Stufe überschreitet ihr Allokations-Budget pro Tick
+     */
+    @Test
+    public void testSteadyStateAllocationBudgets() throws Exception {
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            Pipeline p = new Pipeline(jsonb);
+            p.run(WARMUP_TICKS, false);
+            p.run(MEASURED_TICKS, true);
+
+            List<String> exceeded = new ArrayList<>();
+            int i = 0;
+            for (var e : BUDGETS.entrySet()) {
+                long perTick = allocated[i++] / MEASURED_TICKS;
+                System.out.printf("%-16s %6d B/Tick (Budget %d)%n", e.getKey(), perTick, e.getValue());
+                if (perTick > e.getValue())
+                    exceeded.add(e.getKey() + ": " + perTick + " > " + e.getValue());
+            }
+            assertTrue(exceeded.isEmpty(), "Allokations-Budget überschritten: " + exceeded);
+        }
+    }
+
+    private long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(threadId);
+    }
+
+    private final class Pipeline {
+        final InMemoryMarketDataBuffer buffer = new InMemoryMarketDataBuffer();
+        final SimpleQuoteConsumer quotes;
+        final CandleQuoteConsumer candles;
+        final FrameEncoder encoder;
+        final List<SessionOutbox> outboxes = new ArrayList<>();
+        final SymbolKey[] keys = new SymbolKey[SYMBOLS];
+        final Quote[] lastBroadcast = new Quote[SYMBOLS];
+        final String[] frames = new String[CHUNK];
+        final DeltaQuote[] parsed = new DeltaQuote[CHUNK];
+        double price = 16000.0;
+
+        Pipeline(Jsonb jsonb) throws Exception {
+            encoder = new FrameEncoder(jsonb);
+            EventExecutors executors = ConsumerFixture.executors();
+            quotes = ConsumerFixture.quoteConsumer(buffer, executors);
+            candles = ConsumerFixture.candleConsumer(buffer, executors);
+
+            long ts = System.currentTimeMillis() / 1000 - 3_600;
+            for (int s = 0; s < SYMBOLS; s++) {
+                keys[s] = new SymbolKey(String.valueOf(133_900 + s), "22", "last");
+                buffer.appendFull(new Quote(keys[s], ts, price, price, price, price, price, 0.0, 0.0, 0.5, true, 1,
+                        s, 2.0));
+            }
+            quotes.initialize();
+            candles.initialize();
+            // Gemessen wird der Pfad beobachteter Symbole
+            for (SymbolKey key : keys) {
+                quotes.watch(key);
+                candles.watch(key);
+            }
+
+            for (int i = 0; i < SESSIONS; i++) {
+                DeltaTracker tracker = new DeltaTracker(encoder);
+                SessionOutbox outbox = new SessionOutbox(new NoopSink(), 256, SessionOutbox.OverflowPolicy.CONFLATE);
+                outbox.setTransform(tracker::select);
+                outboxes.add(outbox);
+            }
+        }
+
+        void run(int ticks, boolean measure) {
+            for (int done = 0; done < ticks; done += CHUNK) {
+                for (int i = 0; i < CHUNK; i++) {
+                    price += (i % 7 - 3) * 0.25;
+                    frames[i] = (i % SYMBOLS) + ":" + price + ":1:1:::::";
+                }
+
+                long t0 = allocatedBytes();
+                for (int i = 0; i < CHUNK; i++)
+                    parsed[i] = DeltaQuote.parse(frames[i]);
+                long t1 = allocatedBytes();
+                for (int i = 0; i < CHUNK; i++)
+                    buffer.appendDelta(parsed[i]);
+                long t2 = allocatedBytes();
+                quotes.pullAndApplyUntil(buffer.currentSeq());
+                long t3 = allocatedBytes();
+                candles.pullAndApplyUntil(buffer.currentSeq());
+                long t4 = allocatedBytes();
+                for (int i = 0; i < CHUNK; i++)
+                    fanOut(i % SYMBOLS);
+                long t5 = allocatedBytes();
+
+                if (measure) {
+                    allocated[0] += t1 - t0;
+                    allocated[1] += t2 - t1;
+                    allocated[2] += t3 - t2;
+                    allocated[3] += t4 - t3;
+                    allocated[4] += t5 - t4;
+                }
+            }
+        }
+
+        /**
+         * Entspricht QuoteSessionService.onQuoteEvent für alle Sessions eines Symbols.
+         */
+        void fanOut(int s) {
+            SymbolKey key = keys[s];
+            Quote q = quotes.getLast(key);
+            Quote base = lastBroadcast[s];
+            lastBroadcast[s] = q;
+            OutboundFrame frame = encoder.quote(key, q, base, quotes.getSeq(key));
+            for (SessionOutbox outbox : outboxes)
+                outbox.offer(frame);
+        }
+    }
+
+    /**
+     * Sink, der jeden Frame sofort bestätigt und die JSON-Form wie ein Text-Client anfordert.
+     */
+    private static final class NoopSink implements SessionOutbox.Sink {
+        @Override
+        public void send(OutboundFrame frame, Consumer<Throwable> onDone) {
+            frame.text();
+            onDone.accept(null);
+        }
+
+        @Override
+        public void close(String reason) {
+        }
+    }
+}
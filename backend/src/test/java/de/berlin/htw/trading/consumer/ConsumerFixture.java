@@ -0,0 +1,107 @@
+package de.berlin.htw.trading.consumer;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+
+import org.jboss.logging.Logger;
+
+import de.berlin.htw.trading.candle.CandleQuoteConsumer;
+import de.berlin.htw.trading.events.EventExecutors;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer;
+import de.berlin.htw.trading.quote.SimpleQuoteConsumer;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.NotificationOptions;
+import jakarta.enterprise.util.TypeLiteral;
+
+/**
+ * Verdrahtet Executors und Consumer ohne CDI für Tests im Prozess. Events gehen an einen
+ * {@link NoopEvent}; wer sie prüfen will, setzt das Feld danach per {@link #set} neu.
+ */
+final class ConsumerFixture {
+
+    private ConsumerFixture() {
+    }
+
+    // Eine Ingest-Lane; Quote-, Candle- und Alarm-Events wie im Betrieb auf dem Fan-out
+    static EventExecutors executors() throws Exception {
+        EventExecutors executors = new EventExecutors();
+        set(executors, "ingestLanes", 1);
+        set(executors, "ingestCapacity", 16);
+        set(executors, "initialQuote", EventExecutors.INGEST);
+        set(executors, "quoteDelta", EventExecutors.INGEST);
+        set(executors, "quote", EventExecutors.FANOUT);
+        set(executors, "candle", EventExecutors.FANOUT);
+        set(executors, "alert", EventExecutors.FANOUT);
+        invoke(executors, "init");
+        return executors;
+    }
+
+    // buffer darf null sein, wenn der Test nur rebuildFromSnapshot aufruft
+    static SimpleQuoteConsumer quoteConsumer(IMarketDataBuffer buffer, EventExecutors executors) throws Exception {
+        var c = new SimpleQuoteConsumer();
+        c.buffer = buffer;
+        set(c, "logger", Logger.getLogger(SimpleQuoteConsumer.class));
+        set(c, "quoteEvent", new NoopEvent<>());
+        set(c, "executors", executors);
+        return c;
+    }
+
+    static CandleQuoteConsumer candleConsumer(IMarketDataBuffer buffer, EventExecutors executors) throws Exception {
+        var c = new CandleQuoteConsumer();
+        c.buffer = buffer;
+        set(c, "logger", Logger.getLogger(CandleQuoteConsumer.class));
+        set(c, "candleEvent", new NoopEvent<>());
+        set(c, "executors", executors);
+        return c;
+    }
+
+    /**
+     * Event ohne Beobachter; Unterklassen überschreiben fireAsync(U, NotificationOptions).
+     */
+    static class NoopEvent<T> implements Event<T> {
+        @Override
+        public void fire(T event) {
+        }
+
+        @Override
+        public <U extends T> CompletionStage<U> fireAsync(U event) {
+            return fireAsync(event, null);
+        }
+
+        @Override
+        public <U extends T> CompletionStage<U> fireAsync(U event, NotificationOptions options) {
+            return null;
+        }
+
+        @Override
+        public Event<T> select(Annotation... qualifiers) {
+            return this;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <U extends T> Event<U> select(Class<U> subtype, Annotation... qualifiers) {
+            return (Event<U>) this;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <U extends T> Event<U> select(TypeLiteral<U> subtype, Annotation... qualifiers) {
+            return (Event<U>) this;
+        }
+    }
+
+    static void set(Object target, String name, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(name);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+
+    static void invoke(Object target, String name) throws Exception {
+        Method m = target.getClass().getDeclaredMethod(name);
+        m.setAccessible(true);
+        m.invoke(target);
+    }
+}
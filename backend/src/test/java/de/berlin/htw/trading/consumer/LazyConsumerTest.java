@@ -0,0 +1,124 @@
+package de.berlin.htw.trading.consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.candle.CandleQuoteConsumer;
+import de.berlin.htw.trading.events.EventExecutors;
+import de.berlin.htw.trading.marketdata.InMemoryMarketDataBuffer;
+import de.berlin.htw.trading.quote.SimpleQuoteConsumer;
+import de.berlin.htw.trading.quote.dto.DeltaQuote;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+public class LazyConsumerTest {
+
+    private static final int SYMBOLS = 3;
+
+    private final InMemoryMarketDataBuffer buffer = new InMemoryMarketDataBuffer();
+    private final SymbolKey[] keys = new SymbolKey[SYMBOLS];
+    private final EventExecutors executors;
+    private double price = 16000.0;
+
+    public LazyConsumerTest() throws Exception {
+        executors = ConsumerFixture.executors();
+
+        long ts = System.currentTimeMillis() / 1000 - 600;
+        for (int s = 0; s < SYMBOLS; s++) {
+            keys[s] = new SymbolKey(String.valueOf(133_900 + s), "22", "last");
+            buffer.appendFull(new Quote(keys[s], ts, price, price, price, price, price, 0.0, 0.0, 0.5, true, 1, s, 2.0));
+        }
+    }
+
+    private void ticks(int n) {
+        for (int i = 0; i < n; i++) {
+            price += (i % 7 - 3) * 0.25;
+            buffer.appendDelta(DeltaQuote.parse((i % SYMBOLS) + ":" + price + ":1:1:::::"));
+        }
+    }
+
+    private SimpleQuoteConsumer quoteConsumer(boolean lazy) throws Exception {
+        var c = ConsumerFixture.quoteConsumer(buffer, executors);
+        ConsumerFixture.set(c, "lazy", lazy);
+        c.initialize();
+        return c;
+    }
+
+    private CandleQuoteConsumer candleConsumer(boolean lazy) throws Exception {
+        var c = ConsumerFixture.candleConsumer(buffer, executors);
+        ConsumerFixture.set(c, "lazy", lazy);
+        c.initialize();
+        return c;
+    }
+
+    /**
+     * TEST 1: Ein beobachtetes Symbol hat denselben Zustand wie bei vollständiger Verarbeitung,
+     * auch wenn es angefragt wird, während der Consumer dem Buffer hinterherhängt; andere
+     * Symbole werden nicht aufgebaut
+     */
+    @Test
+    public void testWatchedSymbolMatchesEager() throws Exception {
+        SimpleQuoteConsumer eager = quoteConsumer(false);
+        SimpleQuoteConsumer lazy = quoteConsumer(true);
+        CandleQuoteConsumer eagerCandles = candleConsumer(false);
+        CandleQuoteConsumer lazyCandles = candleConsumer(true);
+
+        ticks(60);
+        lazy.pullAndApplyUntil(buffer.currentSeq());
+        lazyCandles.pullAndApplyUntil(buffer.currentSeq());
+        assertEquals(0, lazy.materialized(), "Ohne Anfrage sollte kein Symbol aufgebaut sein");
+        assertNull(lazy.getLast(keys[0]), "Unbeobachtetes Symbol sollte keine Zeitreihe haben");
+
+        // Buffer läuft weiter, bevor der Consumer nachzieht: Änderungen bis zum Nachspielen
+        // dürfen nicht doppelt ankommen
+        ticks(45);
+        lazy.watch(keys[0]);
+        lazyCandles.watch(keys[0]);
+        ticks(90);
+
+        for (AbstractReplayingConsumer c : new AbstractReplayingConsumer[] { eager, lazy, eagerCandles, lazyCandles })
+            c.pullAndApplyUntil(buffer.currentSeq());
+
+        assertEquals(1, lazy.materialized(), "Nur das angefragte Symbol sollte aufgebaut sein");
+        assertEquals(eager.getQuotes(keys[0], 0, Long.MAX_VALUE), lazy.getQuotes(keys[0], 0, Long.MAX_VALUE),
+                "Zeitreihe sollte der vollständigen Verarbeitung entsprechen");
+        assertEquals(eager.getSeq(keys[0]), lazy.getSeq(keys[0]), "Sequenz sollte übereinstimmen");
+        assertEquals(eager.getStats(keys[0], 0, Long.MAX_VALUE), lazy.getStats(keys[0], 0, Long.MAX_VALUE),
+                "Kennzahlen sollten übereinstimmen");
+        assertEquals(eagerCandles.view(keys[0]), lazyCandles.view(keys[0]), "Candles sollten übereinstimmen");
+        assertNull(lazy.getLast(keys[1]), "Unbeobachtetes Symbol sollte keine Zeitreihe haben");
+        assertTrue(lazyCandles.view(keys[1]).isEmpty(), "Unbeobachtetes Symbol sollte keine Candles haben");
+    }
+
+    /**
+     * TEST 2: Ohne Abonnenten wird der Zustand erst nach der Leerlaufzeit verworfen;
+     * eine erneute Anfrage baut ihn wieder auf
+     */
+    @Test
+    public void testIdleSymbolsAreDropped() throws Exception {
+        SimpleQuoteConsumer lazy = quoteConsumer(true);
+        ticks(30);
+        lazy.watch(keys[0]);
+        lazy.watch(keys[1]);
+        lazy.pullAndApplyUntil(buffer.currentSeq());
+
+        assertEquals(0, lazy.dropIdle(0), "Beobachtete Symbole sollten bleiben");
+        lazy.unwatch(keys[0]);
+        assertEquals(0, lazy.dropIdle(60_000), "Vor Ablauf der Leerlaufzeit sollte nichts verworfen werden");
+        assertEquals(1, lazy.dropIdle(0), "Nach der Leerlaufzeit sollte das Symbol verworfen werden");
+        assertNull(lazy.getLast(keys[0]), "Verworfenes Symbol sollte keine Zeitreihe mehr haben");
+        assertNotNull(lazy.getLast(keys[1]), "Beobachtetes Symbol sollte erhalten bleiben");
+
+        ticks(30);
+        lazy.pullAndApplyUntil(buffer.currentSeq());
+        assertNull(lazy.getLast(keys[0]), "Verworfenes Symbol sollte nicht weiter mitlaufen");
+
+        lazy.touch(keys[0]);
+        assertEquals(buffer.snapshot(keys[0], Duration.ofHours(24)).window(),
+                lazy.getQuotes(keys[0], 0, Long.MAX_VALUE), "Erneute Anfrage sollte das Fenster nachspielen");
+        assertEquals(1, lazy.dropIdle(0), "Einmalige Anfrage ohne Abo sollte wieder verfallen");
+    }
+}
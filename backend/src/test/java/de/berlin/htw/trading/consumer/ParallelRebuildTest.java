@@ -0,0 +1,125 @@
+package de.berlin.htw.trading.consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.candle.CandleQuoteConsumer;
+import de.berlin.htw.trading.events.EventExecutors;
+import de.berlin.htw.trading.marketdata.IMarketDataBuffer.Snapshot;
+import de.berlin.htw.trading.quote.SimpleQuoteConsumer;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import jakarta.enterprise.event.NotificationOptions;
+
+public class ParallelRebuildTest {
+
+    private static final int SYMBOLS = 400;
+    private static final int QUOTES = 1800;
+
+    private final EventExecutors executors;
+    private final Snapshot snapshot;
+    private final SymbolKey lastKey;
+
+    public ParallelRebuildTest() throws Exception {
+        executors = ConsumerFixture.executors();
+
+        // 30 Minuten mit einem Quote pro Sekunde, wie initialSnapshotWindow() es beim Start lädt
+        SplittableRandom rnd = new SplittableRandom(5);
+        long start = System.currentTimeMillis() / 1000 - QUOTES;
+        Map<SymbolKey, List<Quote>> window = new LinkedHashMap<>();
+        Map<SymbolKey, Quote> last = new LinkedHashMap<>();
+        SymbolKey key = null;
+        for (int s = 0; s < SYMBOLS; s++) {
+            key = new SymbolKey(String.valueOf(140_000 + s), "22", "last");
+            List<Quote> quotes = new ArrayList<>(QUOTES);
+            double price = 100.0;
+            for (int i = 0; i < QUOTES; i++) {
+                price += rnd.nextDouble() - 0.5;
+                quotes.add(new Quote(key, start + i, price, null, null, null, null, 0.0, 0.0, 0.01, true, i, s, 2.0));
+            }
+            window.put(key, quotes);
+            last.put(key, quotes.get(QUOTES - 1));
+        }
+        lastKey = key;
+        snapshot = new Snapshot(1, Map.of(), Map.of(), last, window);
+    }
+
+    /**
+     * TEST 1: Der parallele Aufbau beim Start liefert denselben Zustand wie der sequentielle,
+     * und Events gehen erst raus, wenn alle Symbole aufgebaut sind. Gemessen mit 1, 4 und 16
+     * Threads (auf Maschinen mit weniger Kernen bringen mehr Threads entsprechend nichts).
+     */
+    @Test
+    public void testParallelRebuildMatchesSequential() throws Exception {
+        Map<Integer, SimpleQuoteConsumer> quotes = new LinkedHashMap<>();
+        Map<Integer, CandleQuoteConsumer> candles = new LinkedHashMap<>();
+        StringBuilder timings = new StringBuilder();
+        // Erster Durchlauf nur zum Aufwärmen des JIT, sonst misst der sequentielle Lauf ihn mit
+        for (int threads : new int[] { 0, 1, 4, 16 }) {
+            var q = ConsumerFixture.quoteConsumer(null, executors);
+            q.rebuildParallelism = threads;
+            ConsumerFixture.set(q, "quoteEvent", new CheckingEvent<>(k -> q.getLast(lastKey) != null));
+
+            var c = ConsumerFixture.candleConsumer(null, executors);
+            c.rebuildParallelism = threads;
+            ConsumerFixture.set(c, "candleEvent", new CheckingEvent<>(k -> !c.view(lastKey).isEmpty()));
+
+            long t0 = System.nanoTime();
+            rebuild(q);
+            long t1 = System.nanoTime();
+            rebuild(c);
+            long t2 = System.nanoTime();
+            if (threads == 0)
+                continue;
+            timings.append(String.format(", %d Threads: Quotes %.1f ms, Candles %.1f ms", threads, (t1 - t0) / 1e6,
+                    (t2 - t1) / 1e6));
+            quotes.put(threads, q);
+            candles.put(threads, c);
+        }
+        System.out.printf("Rebuild %,d Quotes in %d Symbolen (%d Kerne)%s%n", SYMBOLS * QUOTES, SYMBOLS,
+                Runtime.getRuntime().availableProcessors(), timings);
+
+        for (var key : snapshot.windowPerSymbol().keySet())
+            for (int threads : new int[] { 4, 16 }) {
+                assertEquals(quotes.get(1).getQuotes(key, 0, Long.MAX_VALUE),
+                        quotes.get(threads).getQuotes(key, 0, Long.MAX_VALUE),
+                        "Zeitreihe sollte übereinstimmen: " + key);
+                assertEquals(quotes.get(1).getStats(key, 0, Long.MAX_VALUE),
+                        quotes.get(threads).getStats(key, 0, Long.MAX_VALUE),
+                        "Kennzahlen sollten übereinstimmen: " + key);
+                assertEquals(candles.get(1).view(key), candles.get(threads).view(key),
+                        "Candles sollten übereinstimmen: " + key);
+            }
+        assertEquals(quotes.get(1).memory().usedBytes(), quotes.get(16).memory().usedBytes(),
+                "Speicherbudget sollte dieselbe Belegung zählen");
+        assertEquals(quotes.get(1).tracked(), quotes.get(16).tracked(), "Alle Symbole sollten eine Frist haben");
+    }
+
+    private void rebuild(AbstractReplayingConsumer c) {
+        c.rebuildFromSnapshot(snapshot);
+    }
+
+    // Prüft beim Feuern, dass der Aufbau schon vollständig ist
+    private static final class CheckingEvent<T> extends ConsumerFixture.NoopEvent<T> {
+        private final Predicate<T> complete;
+
+        CheckingEvent(Predicate<T> complete) {
+            this.complete = complete;
+        }
+
+        @Override
+        public <U extends T> CompletionStage<U> fireAsync(U event, NotificationOptions options) {
+            assertTrue(complete.test(event), "Event sollte erst nach vollständigem Aufbau gefeuert werden");
+            return null;
+        }
+    }
+}
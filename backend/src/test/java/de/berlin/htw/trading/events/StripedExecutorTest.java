@@ -0,0 +1,140 @@
+package de.berlin.htw.trading.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+public class StripedExecutorTest {
+
+    private static final int FANOUT_TASKS = 400;
+    private static final int INGEST_TASKS = 1_000;
+
+    /**
+     * TEST 1: Aufgaben mit demselben Schlüssel laufen in Einreichungsreihenfolge
+     */
+    @Test
+    public void testOrderPerKey() throws Exception {
+        StripedExecutor striped = new StripedExecutor("test", 4, 100);
+        int keys = 16;
+        int perKey = 2_000;
+        List<List<Integer>> seen = new ArrayList<>();
+        for (int k = 0; k < keys; k++)
+            seen.add(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(keys * perKey);
+
+        for (int i = 0; i < perKey; i++) {
+            for (int k = 0; k < keys; k++) {
+                int key = k;
+                int n = i;
+                striped.lane(key).execute(() -> {
+                    // pro Schlüssel immer derselbe Thread, daher ohne Synchronisation
+                    seen.get(key).add(n);
+                    done.countDown();
+                });
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS), "Alle Aufgaben sollten laufen");
+        for (int k = 0; k < keys; k++) {
+            List<Integer> list = seen.get(k);
+            for (int i = 0; i < perKey; i++)
+                assertEquals(i, list.get(i), "Reihenfolge für Schlüssel " + k + " verletzt");
+        }
+        striped.shutdown();
+    }
+
+    /**
+     * TEST 2: Volle Spuren bremsen den Einreicher, statt unbegrenzt zu wachsen
+     */
+    @Test
+    public void testBoundedQueue() throws Exception {
+        StripedExecutor striped = new StripedExecutor("test", 1, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        striped.lane("x").execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 10; i++)
+            striped.lane("x").execute(() -> {
+            });
+        assertEquals(10, striped.stats().queued(), "Spur sollte voll sein");
+
+        Thread producer = new Thread(() -> striped.lane("x").execute(() -> {
+        }));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive(), "Einreicher sollte bei voller Spur warten");
+        assertTrue(striped.stats().queued() <= 10, "Warteschlange darf nicht über die Grenze wachsen");
+
+        release.countDown();
+        producer.join(2_000);
+        assertFalse(producer.isAlive(), "Einreicher sollte nach dem Abarbeiten weiterlaufen");
+        assertEquals(1, striped.stats().blocked(), "Blockierte Einreichung sollte gezählt werden");
+        striped.shutdown();
+    }
+
+    /**
+     * TEST 3: Burst: ein Rückstau im Fan-out hält die Übernahme neuer Kurse nicht mehr auf.
+     * Die Fan-out-Aufgaben hängen, bis sie freigegeben werden; im gemeinsamen Pool wartet
+     * Ingest auf sie, mit getrennten Executoren ist Ingest fertig, bevor eine davon endet.
+     */
+    @Test
+    public void testFanoutBacklogDoesNotDelayIngest() throws Exception {
+        ExecutorService shared = Executors.newFixedThreadPool(4);
+        CountDownLatch sharedRelease = new CountDownLatch(1);
+        CountDownLatch sharedIngest = burst(shared, key -> shared, sharedRelease, new AtomicInteger());
+        assertFalse(sharedIngest.await(200, TimeUnit.MILLISECONDS),
+                "Im gemeinsamen Pool sollte Ingest hinter dem Fan-out warten");
+        assertEquals(INGEST_TASKS, sharedIngest.getCount(), "Keine Ingest-Aufgabe sollte gelaufen sein");
+        sharedRelease.countDown();
+        assertTrue(sharedIngest.await(30, TimeUnit.SECONDS), "Nach dem Fan-out sollte Ingest laufen");
+        shared.shutdownNow();
+
+        ExecutorService fanout = Executors.newFixedThreadPool(4);
+        StripedExecutor ingest = new StripedExecutor("ingest", 4, 10_000);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger fanoutDone = new AtomicInteger();
+        CountDownLatch separateIngest = burst(fanout, ingest::lane, release, fanoutDone);
+        assertTrue(separateIngest.await(30, TimeUnit.SECONDS),
+                "Getrennte Ingest-Spuren sollten trotz Rückstau fertig werden");
+        assertEquals(0, fanoutDone.get(), "Fan-out sollte dabei noch blockiert sein");
+        release.countDown();
+        fanout.shutdown();
+        assertTrue(fanout.awaitTermination(30, TimeUnit.SECONDS), "Fan-out sollte nach der Freigabe ablaufen");
+        assertEquals(FANOUT_TASKS, fanoutDone.get(), "Alle Fan-out-Aufgaben sollten gelaufen sein");
+        ingest.shutdown();
+    }
+
+    /**
+     * Reicht erst einen Fan-out-Burst ein, der bis release hängt, und dann die Ingest-Aufgaben;
+     * liefert den Latch, der nach allen Ingest-Aufgaben auf 0 steht.
+     */
+    private static CountDownLatch burst(Executor fanout, Function<Object, Executor> ingest, CountDownLatch release,
+            AtomicInteger fanoutDone) {
+        for (int i = 0; i < FANOUT_TASKS; i++)
+            fanout.execute(() -> {
+                try {
+                    release.await();
+                    fanoutDone.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        CountDownLatch done = new CountDownLatch(INGEST_TASKS);
+        for (int i = 0; i < INGEST_TASKS; i++)
+            ingest.apply(i % 8).execute(done::countDown);
+        return done;
+    }
+}
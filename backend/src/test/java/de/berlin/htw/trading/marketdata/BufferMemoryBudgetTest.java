@@ -0,0 +1,111 @@
+package de.berlin.htw.trading.marketdata;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.quote.SeriesBudget;
+import de.berlin.htw.trading.quote.dto.DeltaQuote;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+public class BufferMemoryBudgetTest {
+
+    private static final long MAX_BYTES = 1L << 20;
+    private static final int QUIET = 20;
+    // Ticks zwischen zwei Retention-Läufen
+    private static final int SWEEP_EVERY = 10_000;
+
+    private final InMemoryMarketDataBuffer buffer = new InMemoryMarketDataBuffer();
+    private double price = 16000.0;
+
+    public BufferMemoryBudgetTest() throws Exception {
+        Field f = InMemoryMarketDataBuffer.class.getDeclaredField("maxBytes");
+        f.setAccessible(true);
+        f.set(buffer, MAX_BYTES);
+        Method m = InMemoryMarketDataBuffer.class.getDeclaredMethod("init");
+        m.setAccessible(true);
+        m.invoke(buffer);
+    }
+
+    private SymbolKey add(int subId) {
+        SymbolKey key = new SymbolKey(String.valueOf(133_900 + subId), "22", "last");
+        long ts = System.currentTimeMillis() / 1000 - 3600;
+        buffer.appendFull(new Quote(key, ts, price, price, price, price, price, 0.0, 0.0, 0.5, true, 1, subId, 2.0));
+        return key;
+    }
+
+    // Sekundenabstand 0: viele Quotes in derselben Sekunde, also sehr hohe Tick-Rate
+    private void tick(int subId, int i, int secSince) {
+        price += (i % 7 - 3) * 0.25;
+        buffer.appendDelta(DeltaQuote.parse(subId + ":" + price + ":" + secSince + ":1::::"));
+        if (i % SWEEP_EVERY == 0)
+            buffer.sweep(System.currentTimeMillis());
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * TEST 1: Dauerlauf mit einem sehr aktiven Symbol: nach jedem Retention-Lauf liegt die
+     * Belegung wieder unter dem Budget, ruhige abonnierte Symbole behalten ihre Historie und der
+     * Heap wächst nicht weiter, sobald das Change-Log voll ist
+     */
+    @Test
+    public void testHotSymbolStaysWithinBudget() {
+        SymbolKey hot = add(0);
+        SymbolKey[] quiet = new SymbolKey[QUIET];
+        for (int s = 0; s < QUIET; s++)
+            quiet[s] = add(s + 1);
+        Set<SymbolKey> subscribed = Set.of(quiet);
+        buffer.setSubscribed(subscribed::contains);
+
+        long heapAtLogCap = 0;
+        for (int i = 1; i <= 2_000_000; i++) {
+            tick(0, i, 0);
+            if (i % 1000 == 0)
+                tick(1 + (i / 1000) % QUIET, i, 1);
+            if (i % 50_000 == 0)
+                assertTrue(buffer.memory().usedBytes() <= MAX_BYTES,
+                        "Belegung sollte das Budget nicht überschreiten: " + buffer.memory().usedBytes());
+            if (i == 500_000)
+                heapAtLogCap = usedHeap();
+        }
+        long growth = usedHeap() - heapAtLogCap;
+
+        SeriesBudget.Stats stats = buffer.memory();
+        assertTrue(stats.trimRuns() > 0, "Budget sollte gekürzt haben");
+        assertTrue(stats.perSymbol().get(hot.toString()) < MAX_BYTES, "Aktives Symbol sollte gekürzt sein");
+        for (SymbolKey key : quiet)
+            assertEquals(1 + 2_000_000 / 1000 / QUIET, buffer.snapshot(key, Duration.ofDays(1)).window().size(),
+                    "Ruhiges abonniertes Symbol sollte vollständig erhalten bleiben: " + key);
+        assertTrue(growth < 32L << 20, "Heap sollte nach vollem Change-Log nicht weiter wachsen: " + growth);
+    }
+
+    /**
+     * TEST 2: Bei zwei gleich aktiven Symbolen wird zuerst das ohne Abonnenten gekürzt
+     */
+    @Test
+    public void testUnsubscribedSymbolIsTrimmedFirst() {
+        SymbolKey watched = add(0);
+        SymbolKey other = add(1);
+        buffer.setSubscribed(watched::equals);
+
+        for (int i = 1; i <= 400_000; i++)
+            tick(i % 2, i, 0);
+
+        SeriesBudget.Stats stats = buffer.memory();
+        assertTrue(stats.trimRuns() > 0, "Budget sollte gekürzt haben");
+        assertTrue(stats.perSymbol().get(watched.toString()) > stats.perSymbol().get(other.toString()),
+                "Abonniertes Symbol sollte mehr Historie behalten: " + stats.perSymbol());
+    }
+}
@@ -0,0 +1,92 @@
+package de.berlin.htw.trading.quote;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+
+public class QuoteDownsamplerTest {
+
+    private static final SymbolKey KEY = new SymbolKey("133979", "98", "bid");
+
+    private static List<Quote> randomWalk(int n, long seed) {
+        Random rnd = new Random(seed);
+        List<Quote> out = new ArrayList<>(n);
+        double px = 12000.0;
+        long ts = 1_700_000_000L;
+        for (int i = 0; i < n; i++) {
+            px += (rnd.nextDouble() - 0.5) * 10;
+            if (rnd.nextInt(4) == 0)
+                ts++;
+            out.add(new Quote(KEY, ts, px, null, null, null, 11800.0, 0, 0, 0.01, true, i, 1, 2.0));
+        }
+        return out;
+    }
+
+    /**
+     * TEST 1: Kurze Reihen bleiben unverändert
+     */
+    @Test
+    public void testShortSeriesUnchanged() {
+        List<Quote> data = randomWalk(100, 1);
+        assertSame(data, QuoteDownsampler.lttb(data, 1500), "Reihe unter maxPoints sollte unverändert bleiben");
+    }
+
+    /**
+     * TEST 2: Ergebnis hat genau maxPoints Punkte, erster und letzter Punkt bleiben erhalten
+     */
+    @Test
+    public void testKeepsEndpointsAndOrder() {
+        List<Quote> data = randomWalk(50_000, 2);
+        List<Quote> sampled = QuoteDownsampler.lttb(data, 1500);
+
+        assertEquals(1500, sampled.size(), "Sollte auf maxPoints reduziert sein");
+        assertSame(data.get(0), sampled.get(0), "Erster Punkt sollte erhalten bleiben");
+        assertSame(data.get(data.size() - 1), sampled.get(sampled.size() - 1), "Letzter Punkt sollte erhalten bleiben");
+        for (int i = 1; i < sampled.size(); i++)
+            assertTrue(sampled.get(i).tick() > sampled.get(i - 1).tick(), "Reihenfolge sollte erhalten bleiben");
+    }
+
+    /**
+     * TEST 3: Extremwerte der Reihe überleben das Downsampling
+     */
+    @Test
+    public void testKeepsSpike() {
+        List<Quote> data = randomWalk(20_000, 3);
+        Quote spike = data.get(12_345);
+        data.set(12_345, new Quote(KEY, spike.tsUnixSec(), spike.price() + 5_000, null, null, null, 11800.0,
+                0, 0, 0.01, true, spike.tick(), 1, 2.0));
+        List<Quote> sampled = QuoteDownsampler.lttb(data, 500);
+        assertTrue(sampled.contains(data.get(12_345)), "Ausreißer sollte im Ergebnis enthalten sein");
+    }
+
+    /**
+     * TEST 4: Snapshot-Größe und Serialisierungszeit bei verschiedenen Fenstergrößen
+     */
+    @Test
+    public void testSnapshotSizeAtSeveralWindows() throws Exception {
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            for (int ticks : new int[] { 3_600, 36_000, 100_000 }) {
+                List<Quote> data = randomWalk(ticks, ticks);
+
+                long t0 = System.nanoTime();
+                int fullBytes = jsonb.toJson(data).length();
+                long t1 = System.nanoTime();
+                int sampledBytes = jsonb.toJson(QuoteDownsampler.lttb(data, 1500)).length();
+                long t2 = System.nanoTime();
+
+                System.out.printf("LTTB %,d Ticks: %,d -> %,d Bytes, %.1f ms -> %.1f ms%n",
+                        ticks, fullBytes, sampledBytes, (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+                assertTrue(sampledBytes * 2 < fullBytes, "Downsampling sollte den Snapshot deutlich verkleinern");
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package de.berlin.htw.trading.quote;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+public class QuoteSeriesTest {
+
+    private static final SymbolKey KEY = new SymbolKey("133962", "22", "last");
+
+    /**
+     * Kursverlauf ähnlich dem stock3-Feed: mehrere Ticks pro Sekunde, Preise auf tickSize
+     * gerundet, high/low ändern sich selten, subId und Stammdaten bleiben gleich.
+     */
+    private static List<Quote> feed(int n, long seed) {
+        Random rnd = new Random(seed);
+        List<Quote> out = new ArrayList<>(n);
+        double px = 16000.0;
+        double high = px;
+        double low = px;
+        long ts = 1_700_000_000L;
+        long tick = 1;
+        for (int i = 0; i < n; i++) {
+            px = Math.round((px + (rnd.nextInt(9) - 4) * 0.25) * 4) / 4.0;
+            high = Math.max(high, px);
+            low = Math.min(low, px);
+            if (rnd.nextInt(3) == 0)
+                ts += 1 + (rnd.nextInt(20) == 0 ? rnd.nextInt(30) : 0);
+            tick += 1 + rnd.nextInt(3);
+            out.add(new Quote(KEY, ts, px, high, low, 16000.0, 15950.0, px - 15950.0, (px - 15950.0) / 15950.0,
+                    0.25, true, tick, 7, 2.0));
+        }
+        return out;
+    }
+
+    private static QuoteSeries seriesOf(List<Quote> quotes, int blockSize) {
+        QuoteSeries qs = new QuoteSeries(blockSize);
+        for (Quote q : quotes)
+            qs.append(q);
+        return qs;
+    }
+
+    /**
+     * TEST 1: Dekodierte Quotes sind identisch zu den geschriebenen (inkl. null, NaN, Extremwerte)
+     */
+    @Test
+    public void testLosslessRoundTrip() {
+        List<Quote> data = new ArrayList<>(feed(1_000, 1));
+        long ts = data.get(data.size() - 1).tsUnixSec();
+        data.add(new Quote(KEY, ts, Double.NaN, null, null, null, null, -0.0, Double.MIN_VALUE, 0.25, false,
+                Long.MIN_VALUE / 4, null, null));
+        data.add(new Quote(KEY, ts + 1_000_000, Double.MAX_VALUE, Double.NEGATIVE_INFINITY, 1e-300, -1.0, 2.0,
+                Double.POSITIVE_INFINITY, 0.1, 0.01, true, Long.MAX_VALUE / 4, Integer.MIN_VALUE, 0.0));
+        data.add(new Quote(KEY, ts + 1_000_000, 1.0, 1.0, 1.0, 1.0, 1.0, 0, 0, 0.01, true, 0, 3, 2.0));
+
+        QuoteSeries qs = seriesOf(data, 64);
+        assertEquals(data.size(), qs.size(), "Größe sollte stimmen");
+        assertEquals(data, qs.range(Long.MIN_VALUE, Long.MAX_VALUE), "Dekodierte Reihe sollte identisch sein");
+        assertEquals(data.get(0), qs.first(), "first() sollte stimmen");
+        assertEquals(data.get(data.size() - 1), qs.last(), "last() sollte stimmen");
+    }
+
+    /**
+     * TEST 2: Bereichsabfragen, Paging, Zählen und Vorgänger stimmen mit einer sortierten Referenzliste
+     * überein, auch bei Nachzüglern und Verdrängung
+     */
+    @Test
+    public void testMatchesReference() {
+        Random rnd = new Random(2);
+        List<Quote> data = feed(5_000, 3);
+        QuoteSeries qs = new QuoteSeries(32);
+        List<Quote> reference = new ArrayList<>();
+
+        for (int i = 0; i < data.size(); i++) {
+            Quote q = data.get(i);
+            // jeder 50. Quote kommt verspätet mit älterem Zeitstempel
+            if (i % 50 == 49) {
+                long late = q.tsUnixSec() - rnd.nextInt(200);
+                q = new Quote(KEY, late, q.price(), q.high(), q.low(), q.open(), q.prevClose(), q.abs(), q.rel(),
+                        q.tickSize(), q.active(), q.tick(), q.subId(), q.precision());
+            }
+            qs.append(q);
+            insertSorted(reference, q);
+        }
+        assertEquals(reference, qs.range(Long.MIN_VALUE, Long.MAX_VALUE), "Reihe sollte sortiert vollständig sein");
+
+        long minTs = reference.get(1_234).tsUnixSec();
+        int expectedEvicted = (int) reference.stream().filter(q -> q.tsUnixSec() < minTs).count();
+        assertEquals(expectedEvicted, qs.evictOlderThan(minTs), "Anzahl verdrängter Quotes sollte stimmen");
+        reference.removeIf(q -> q.tsUnixSec() < minTs);
+        assertEquals(reference.size(), qs.size(), "Größe nach Verdrängung sollte stimmen");
+        assertEquals(reference.get(0), qs.first(), "first() nach Verdrängung sollte stimmen");
+
+        long lo = reference.get(0).tsUnixSec();
+        long hi = reference.get(reference.size() - 1).tsUnixSec();
+        for (int r = 0; r < 200; r++) {
+            long from = lo - 5 + rnd.nextInt((int) (hi - lo) + 10);
+            long to = from + rnd.nextInt(300);
+            int skip = rnd.nextInt(4) == 0 ? 0 : rnd.nextInt(400);
+            int limit = 1 + rnd.nextInt(500);
+            List<Quote> expected = reference.stream().filter(q -> q.tsUnixSec() >= from && q.tsUnixSec() <= to)
+                    .toList();
+            assertEquals(expected, qs.range(from, to), "range(" + from + ", " + to + ") sollte stimmen");
+            assertEquals(expected.size(), qs.count(from, to), "count(" + from + ", " + to + ") sollte stimmen");
+            List<Quote> page = expected.subList(Math.min(skip, expected.size()),
+                    Math.min(expected.size(), skip + limit));
+            assertEquals(page, qs.page(from, to, skip, limit), "page sollte stimmen");
+            Quote before = reference.stream().filter(q -> q.tsUnixSec() < from).reduce((a, b) -> b).orElse(null);
+            assertEquals(before, qs.lastBefore(from), "lastBefore(" + from + ") sollte stimmen");
+        }
+
+        assertEquals(reference.size(), qs.evictOlderThan(Long.MAX_VALUE), "Alles sollte verdrängt werden");
+        assertTrue(qs.isEmpty(), "Reihe sollte leer sein");
+        assertNull(qs.first(), "Leere Reihe hat kein erstes Quote");
+        assertNull(qs.last(), "Leere Reihe hat kein letztes Quote");
+    }
+
+    /**
+     * TEST 3: Benchmark: Kompressionsrate gegenüber unkomprimierten Quote-Objekten und
+     * Dekodier-Durchsatz für Fensterabfragen
+     */
+    @Test
+    public void testCompressionBenchmark() {
+        int n = 200_000;
+        List<Quote> data = feed(n, 4);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(tid);
+        List<Quote> copy = new ArrayList<>(n);
+        for (Quote q : data)
+            copy.add(new Quote(q.s(), q.tsUnixSec(), q.price(), Double.valueOf(q.high()), Double.valueOf(q.low()),
+                    Double.valueOf(q.open()), Double.valueOf(q.prevClose()), q.abs(), q.rel(), q.tickSize(),
+                    q.active(), q.tick(), Integer.valueOf(q.subId() + 1_000), Double.valueOf(q.precision())));
+        long rawBytes = threads.getThreadAllocatedBytes(tid) - before;
+
+        QuoteSeries qs = seriesOf(data, QuoteSeries.DEFAULT_BLOCK_SIZE);
+        long compressed = qs.footprintBytes();
+        double ratio = (double) rawBytes / compressed;
+
+        long first = data.get(0).tsUnixSec();
+        long last = data.get(n - 1).tsUnixSec();
+        long decoded = 0;
+        long t0 = System.nanoTime();
+        for (int r = 0; r < 20; r++)
+            decoded += qs.range(first, last).size();
+        double seconds = (System.nanoTime() - t0) / 1e9;
+
+        System.out.printf("QuoteSeries: %d Quotes, unkomprimiert %d B (%.1f B/Quote), komprimiert %d B "
+                + "(%.1f B/Quote), Rate %.1fx, Dekodierung %.1f Mio Quotes/s%n",
+                n, rawBytes, (double) rawBytes / n, compressed, (double) compressed / n, ratio,
+                decoded / seconds / 1e6);
+        assertEquals(20L * n, decoded, "Alle Quotes sollten dekodiert werden");
+        assertTrue(ratio > 5, "Kompressionsrate sollte deutlich über 5 liegen, war " + ratio);
+        assertEquals(n, copy.size(), "Vergleichskopie sollte vollständig sein");
+    }
+
+    /**
+     * TEST 4: Kürzen lässt das jüngste Quote stehen, auch wenn es direkt nach dem Versiegeln im
+     * einzigen Block liegt
+     */
+    @Test
+    public void testTrimKeepsNewestQuote() {
+        List<Quote> data = feed(64, 3);
+        QuoteSeries qs = seriesOf(data.subList(0, 32), 32);
+
+        assertEquals(0, qs.trimOldest(), "Einziger versiegelter Block sollte nicht verworfen werden");
+        assertEquals(32, qs.size(), "Zeitreihe sollte vollständig bleiben");
+        assertEquals(data.get(31), qs.last(), "Jüngstes Quote sollte erhalten bleiben");
+
+        qs.append(data.get(32));
+        assertEquals(32, qs.trimOldest(), "Mit Quote im Puffer sollte der Block verworfen werden");
+        assertEquals(data.get(32), qs.first(), "Nur das Quote im Puffer sollte bleiben");
+        assertEquals(0, qs.trimOldest(), "Ein einzelnes Quote sollte nicht gekürzt werden");
+        assertFalse(qs.isEmpty(), "Zeitreihe sollte nie leer gekürzt werden");
+    }
+
+    private static void insertSorted(List<Quote> list, Quote q) {
+        int pos = list.size();
+        while (pos > 0 && list.get(pos - 1).tsUnixSec() > q.tsUnixSec())
+            pos--;
+        list.add(pos, q);
+    }
+}
@@ -0,0 +1,140 @@
+package de.berlin.htw.trading.quote;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.quote.dto.RangeStats;
+
+public class RangeAggregateIndexTest {
+
+    private record Tick(long ts, double price, long weight) {
+    }
+
+    // Randminuten wie aus der Zeitreihe: alle Ticks im Bereich
+    private static RangeAggregateIndex.EdgeSource edges(List<Tick> ticks) {
+        return (from, to, acc) -> {
+            for (Tick t : ticks)
+                if (t.ts >= from && t.ts <= to)
+                    acc.add(t.price, t.weight);
+        };
+    }
+
+    private static void assertMatches(List<Tick> ticks, RangeAggregateIndex idx, long from, long to) {
+        long count = 0;
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY, sum = 0, pv = 0;
+        long vol = 0;
+        for (Tick t : ticks) {
+            if (t.ts < from || t.ts > to)
+                continue;
+            count++;
+            min = Math.min(min, t.price);
+            max = Math.max(max, t.price);
+            sum += t.price;
+            pv += t.price * t.weight;
+            vol += t.weight;
+        }
+        RangeStats st = idx.query(from, to, edges(ticks));
+        String range = "[" + from + ", " + to + "]";
+        assertEquals(count, st.count(), "Anzahl in " + range + " sollte stimmen");
+        if (count == 0) {
+            assertNull(st.min(), "Leerer Bereich hat kein Minimum");
+            return;
+        }
+        assertEquals(min, st.min(), "Minimum in " + range + " sollte stimmen");
+        assertEquals(max, st.max(), "Maximum in " + range + " sollte stimmen");
+        assertEquals(sum, st.sum(), 1e-6, "Summe in " + range + " sollte stimmen");
+        assertEquals(sum / count, st.avg(), 1e-9, "Durchschnitt in " + range + " sollte stimmen");
+        assertEquals(pv / vol, st.vwap(), 1e-9, "VWAP in " + range + " sollte stimmen");
+    }
+
+    /**
+     * TEST 1: Abfragen stimmen mit einer Neuberechnung über alle Ticks überein, auch bei
+     * mehreren Ticks pro Sekunde, Lücken, Nachzüglern und Wachstum des Rings
+     */
+    @Test
+    public void testMatchesBruteForce() {
+        Random rnd = new Random(1);
+        RangeAggregateIndex idx = new RangeAggregateIndex();
+        List<Tick> ticks = new ArrayList<>();
+        long ts = 1_700_000_000L;
+        double px = 16000;
+        for (int i = 0; i < 20_000; i++) {
+            px += (rnd.nextInt(9) - 4) * 0.25;
+            if (rnd.nextInt(3) == 0)
+                ts += 1 + (rnd.nextInt(10) == 0 ? rnd.nextInt(60) : 0);
+            // gelegentlich ein Nachzügler, auch in bisher leere Sekunden
+            long t = i % 97 == 96 ? ts - rnd.nextInt(500) : ts;
+            Tick tick = new Tick(t, px, 1 + rnd.nextInt(5));
+            ticks.add(tick);
+            idx.add(tick.ts, tick.price, tick.weight);
+        }
+
+        long first = 1_700_000_000L - 600;
+        for (int r = 0; r < 500; r++) {
+            long from = first + rnd.nextInt((int) (ts - first) + 10);
+            long to = from + rnd.nextInt(rnd.nextBoolean() ? 60 : 5_000);
+            assertMatches(ticks, idx, from, to);
+        }
+        assertMatches(ticks, idx, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * TEST 2: Nach der Verdrängung zählen nur noch jüngere Quotes, auch wenn die Grenze mitten in
+     * einer Minute liegt und der Ring danach überläuft und alte Positionen wiederverwendet
+     */
+    @Test
+    public void testEvictionAndWrapAround() {
+        RangeAggregateIndex idx = new RangeAggregateIndex();
+        List<Tick> ticks = new ArrayList<>();
+        Random rnd = new Random(2);
+        for (long ts = 0; ts < 10_000; ts++) {
+            Tick t = new Tick(ts, 100 + rnd.nextGaussian(), 1);
+            ticks.add(t);
+            idx.add(t.ts, t.price, t.weight);
+            // Fenster von 50 Sekunden: der Ring bleibt klein und läuft ständig über
+            idx.evictOlderThan(ts - 50);
+            ticks.removeIf(x -> x.ts < t.ts - 50);
+            if (ts % 37 == 0) {
+                assertMatches(ticks, idx, ts - 20, ts);
+                assertMatches(ticks, idx, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+        }
+        assertTrue(idx.buckets() <= 2, "Es sollten nur die Minuten im Fenster übrig sein");
+
+        idx.evictOlderThan(Long.MAX_VALUE);
+        assertTrue(idx.isEmpty(), "Index sollte leer sein");
+        assertEquals(0, idx.query(Long.MIN_VALUE, Long.MAX_VALUE, edges(ticks)).count(),
+                "Leerer Index liefert keine Treffer");
+    }
+
+    /**
+     * TEST 3: 24 Stunden mit einem Quote pro Sekunde belegen nur einen Bruchteil dessen, was ein
+     * Bucket pro Sekunde kosten würde, und Abfragen über Minutengrenzen bleiben exakt
+     */
+    @Test
+    public void testDayFitsInMinuteBuckets() {
+        RangeAggregateIndex idx = new RangeAggregateIndex();
+        List<Tick> ticks = new ArrayList<>();
+        Random rnd = new Random(3);
+        // auf eine volle Minute ausgerichtet
+        long start = 1_699_999_980L;
+        for (long ts = start; ts < start + 86_400; ts++) {
+            Tick t = new Tick(ts, 100 + rnd.nextGaussian(), 1 + rnd.nextInt(3));
+            ticks.add(t);
+            idx.add(t.ts, t.price, t.weight);
+        }
+        assertEquals(1_440, idx.buckets(), "Ein Bucket pro Minute erwartet");
+        assertTrue(idx.footprintBytes() < 256 * 1024, "Index sollte unter 256 KB bleiben: " + idx.footprintBytes());
+
+        for (int r = 0; r < 200; r++) {
+            long from = start + rnd.nextInt(86_400);
+            long to = from + rnd.nextInt(rnd.nextBoolean() ? 90 : 20_000);
+            assertMatches(ticks, idx, from, to);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package de.berlin.htw.trading.retention;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.berlin.htw.trading.marketdata.InMemoryMarketDataBuffer;
+import de.berlin.htw.trading.quote.dto.Quote;
+import de.berlin.htw.trading.quote.dto.SymbolKey;
+
+public class TimerWheelTest {
+
+    /**
+     * TEST 1: Fristen über alle Ebenen laufen weder zu früh noch zu spät ab, auch wenn das Rad
+     * in unregelmäßigen Sprüngen weitergedreht und zwischendurch verschoben bzw. abgesagt wird
+     */
+    @Test
+    public void testDeadlinesFireOnTime() {
+        long start = 1_700_000_000_000L;
+        TimerWheel<Integer> wheel = new TimerWheel<>(1000, () -> start);
+        Random rnd = new Random(42);
+        Map<Integer, Long> pending = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            // Bis etwa 30 Tage: deckt Ebene 0 bis 3 ab
+            long deadline = start + (long) (Math.pow(rnd.nextDouble(), 3) * 30L * 86_400_000L);
+            wheel.schedule(i, deadline);
+            pending.put(i, deadline);
+        }
+        for (int i = 0; i < 500; i++) {
+            long deadline = start + rnd.nextInt(86_400_000);
+            wheel.schedule(i, deadline);
+            pending.put(i, deadline);
+        }
+        for (int i = 500; i < 600; i++) {
+            wheel.cancel(i);
+            pending.remove(i);
+        }
+        assertEquals(pending.size(), wheel.size(), "Jeder Schlüssel sollte nur einmal eingeplant sein");
+
+        long now = start;
+        long prev = start;
+        while (!pending.isEmpty()) {
+            now += 1 + rnd.nextInt(20_000_000);
+            for (int key : wheel.expire(now)) {
+                long deadline = pending.remove(key);
+                assertTrue(deadline <= now, "Frist sollte nicht vor ihrem Zeitpunkt ablaufen: " + key);
+                assertTrue(deadline > prev - 1000, "Frist sollte im ersten Lauf danach ablaufen: " + key);
+            }
+            for (var e : pending.entrySet())
+                assertTrue(e.getValue() > now - 1000, "Frist sollte nicht liegen bleiben: " + e.getKey());
+            prev = now;
+        }
+        assertEquals(0, wheel.size(), "Rad sollte leer sein");
+    }
+
+    /**
+     * TEST 2: Der Buffer verdrängt ohne weitere Appends: ein ruhiges Symbol läuft nach der
+     * Retention vollständig ab, ein aktives behält sein jüngstes Fenster
+     */
+    @Test
+    public void testBufferSweepsQuietSymbols() {
+        var buffer = new InMemoryMarketDataBuffer();
+        long now = System.currentTimeMillis() / 1000;
+        var quiet = new SymbolKey("133900", "22", "last");
+        var active = new SymbolKey("133901", "22", "last");
+        buffer.appendFull(quote(quiet, now - 86_400 + 5, 0));
+        for (int i = 0; i < 100; i++)
+            buffer.appendFull(quote(active, now - 86_400 + 5 + i * 60, 1));
+        assertEquals(2, buffer.tracked(), "Beide Symbole sollten eine Frist haben");
+
+        assertEquals(0, buffer.sweep(now * 1000), "Vor Ablauf sollte nichts fällig sein");
+        assertEquals(2, buffer.sweep((now + 10) * 1000), "Beide Symbole sollten fällig sein");
+        assertTrue(buffer.snapshot(quiet, Duration.ofDays(2)).window().isEmpty(),
+                "Ruhiges Symbol sollte ohne neue Ticks verdrängt sein");
+        assertEquals(99, buffer.snapshot(active, Duration.ofDays(2)).window().size(),
+                "Aktives Symbol sollte nur das älteste Quote verlieren");
+        assertEquals(1, buffer.tracked(), "Nur das aktive Symbol sollte weiter eingeplant sein");
+        assertEquals(0, buffer.memory().perSymbol().getOrDefault(quiet.toString(), 0L),
+                "Speicherbudget sollte das verdrängte Symbol nicht mehr zählen");
+    }
+
+    private static Quote quote(SymbolKey key, long ts, int subId) {
+        return new Quote(key, ts, 100.0, 100.0, 100.0, 100.0, 100.0, 0.0, 0.0, 0.5, true, ts, subId, 2.0);
+    }
+}
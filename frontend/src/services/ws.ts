@@ -1,13 +1,185 @@
 import type { Candle, SymbolKey, Subscription, Quote } from "../types/trading";
 
 export type WSMessage =
-  | { type: "candles"; key: SymbolKey; data: Candle[] }
+  | { type: "candles"; key: SymbolKey; seq?: number; data: Candle[] }
   | { type: "candle"; key: SymbolKey; data: Candle }
-  | { type: "quotes"; key: SymbolKey; data: Quote | Quote[] }
-  | { type: "quote"; key: SymbolKey; data: Quote }
+  | { type: "quotes"; key: SymbolKey; seq?: number; data: Quote | Quote[] }
+  | { type: "quote"; key: SymbolKey; seq?: number; data: Quote }
+  | { type: "qd"; key: SymbolKey; seq?: number; data: QuoteDelta }
+  | {
+      type: "history";
+      requestId?: string | null;
+      key: SymbolKey;
+      frame: HistoryFrame;
+      page: number;
+      data: Candle[] | Quote[];
+      next?: string | null;
+      done: boolean;
+    }
+  | { type: "stats"; requestId?: string | null; key: SymbolKey; data: RangeStats }
+  | { type: "alerts"; requestId?: string | null; data: PriceAlert[] }
+  | { type: "alert"; data: AlertTrigger[] }
+  | { type: "topic"; topic: "correlation"; data: CorrelationMatrix }
+  | { type: "handle"; key: SymbolKey; handle: number }
+  | { type: "batch"; data: WSMessage[] }
+  | { type: "configured"; epoch: number }
+  | { type: "resumed"; full: boolean; replayed: number }
   | { type: "pong" }
   | { type: "error"; message: string };
 
+export type HistoryFrame = "candles" | "quotes";
+
+// Kennzahlen eines Zeitbereichs; bei count 0 sind alle Werte null
+export type RangeStats = {
+  fromSec: number;
+  toSec: number;
+  count: number;
+  min: number | null;
+  max: number | null;
+  sum: number | null;
+  avg: number | null;
+  vwap: number | null;
+};
+
+// Einmaliger Kursalarm; "above" löst beim ersten Kurs >= threshold aus, "below" bei <= threshold
+export type PriceAlert = {
+  id: number;
+  key: SymbolKey;
+  direction: "ABOVE" | "BELOW";
+  threshold: number;
+};
+
+export type AlertTrigger = { alert: PriceAlert; price: number; tsUnixSec: number };
+
+// Rollierende Kennzahlen der Minuten-Log-Renditen; Indizes entsprechen symbols,
+// nicht definierte Werte sind null
+export type CorrelationMatrix = {
+  bucketStartSec: number;
+  frameSec: number;
+  window: number;
+  samples: number;
+  symbols: SymbolKey[];
+  lastClose: (number | null)[];
+  meanReturn: (number | null)[];
+  volatility: (number | null)[];
+  covariance: (number | null)[][];
+  correlation: (number | null)[][];
+};
+
+// Geänderte Felder gegenüber dem zuletzt empfangenen Quote desselben Symbols:
+// p Preis, t Sekunden seit dem Vorgänger, k Tick-Delta, h/l neues Hoch/Tief, a/r abs/rel
+export type QuoteDelta = {
+  p?: number;
+  t?: number;
+  k?: number;
+  h?: number;
+  l?: number;
+  a?: number;
+  r?: number;
+};
+
+export const applyQuoteDelta = (prev: Quote, d: QuoteDelta): Quote => ({
+  ...prev,
+  price: d.p ?? prev.price,
+  tsUnixSec: prev.tsUnixSec + (d.t ?? 0),
+  tick: prev.tick + (d.k ?? 0),
+  high: d.h ?? prev.high,
+  low: d.l ?? prev.low,
+  abs: d.a ?? prev.abs,
+  rel: d.r ?? prev.rel,
+});
+
+export type HistoryHandler = (
+  subId: string,
+  frame: HistoryFrame,
+  data: Candle[] | Quote[],
+  next: string | null,
+  done: boolean
+) => void;
+
+// Obergrenze für Line-Chart-Punkte pro Snapshot; der Server dünnt per LTTB aus
+const QUOTE_MAX_POINTS = 2000;
+
+const subscribeMsg = (sub: Subscription) => ({
+  action: "subscribe",
+  ...sub.key,
+  window: sub.windowSecs,
+  maxPoints: QUOTE_MAX_POINTS,
+});
+
+// Binäres Subprotokoll (siehe BinaryCodec im Backend): feste Frame-Längen, little-endian
+const BIN_PROTOCOL = "quotes.bin.v1";
+const JSON_PROTOCOL = "quotes.json.v1";
+const BIN_QUOTE = 1;
+const BIN_CANDLE = 2;
+const BIN_QUOTE_SIZE = 96;
+const BIN_CANDLE_SIZE = 64;
+
+// i64 ohne BigInt: Zeitstempel und Tickzähler liegen weit unter 2^53
+const i64 = (v: DataView, off: number) =>
+  v.getUint32(off, true) + v.getInt32(off + 4, true) * 2 ** 32;
+
+export function decodeBinary(
+  buf: ArrayBuffer,
+  handles: Map<number, SymbolKey>
+): WSMessage[] {
+  const v = new DataView(buf);
+  const out: WSMessage[] = [];
+  let o = 0;
+  while (o < v.byteLength) {
+    const type = v.getUint8(o);
+    const presence = v.getUint16(o + 2, true);
+    const key = handles.get(v.getInt32(o + 4, true));
+    const f64 = (off: number) => v.getFloat64(o + off, true);
+    const opt = (bit: number, off: number) =>
+      presence & (1 << bit) ? f64(off) : null;
+
+    if (type === BIN_QUOTE) {
+      if (key)
+        out.push({
+          type: "quote",
+          key,
+          data: {
+            s: key,
+            tsUnixSec: i64(v, o + 8),
+            tick: i64(v, o + 16),
+            price: f64(24),
+            high: opt(0, 32),
+            low: opt(1, 40),
+            open: opt(2, 48),
+            prevClose: opt(3, 56),
+            abs: f64(64),
+            rel: f64(72),
+            tickSize: f64(80),
+            precision: opt(4, 88),
+            active: (v.getUint8(o + 1) & 1) === 1,
+            subId: null,
+          },
+        });
+      o += BIN_QUOTE_SIZE;
+    } else if (type === BIN_CANDLE) {
+      if (key)
+        out.push({
+          type: "candle",
+          key,
+          data: {
+            bucketStartSec: i64(v, o + 8),
+            open: f64(16),
+            high: f64(24),
+            low: f64(32),
+            close: f64(40),
+            ticks: i64(v, o + 48),
+            precision: opt(0, 56),
+          },
+        });
+      o += BIN_CANDLE_SIZE;
+    } else {
+      break;
+    }
+  }
+  return out;
+}
+
 const keyHash = (k: SymbolKey) =>
   `${k.venueId}:${k.symbolId}:${k.channel ?? "last"}`;
 
@@ -22,17 +194,41 @@ export class WSClient {
   private onCandles: (subId: string, payload: Candle[] | Candle) => void;
   private onQuote: (subId: string, payload: Quote | Quote[]) => void;
   private onStatus: (msg: string) => void;
+  private onHistory?: HistoryHandler;
+  private binary: boolean;
+  private flushMs: number;
+  private handles = new Map<number, SymbolKey>();
+  // Zuletzt empfangenes Quote pro Symbol, Basis für "qd"-Deltas
+  private lastQuotes = new Map<string, Quote>();
+  // Buffer-Epoche und zuletzt gesehene Sequenz pro Symbol; überleben den Reconnect,
+  // damit per "resume" nur die verpassten Änderungen nachgeladen werden
+  private epoch?: number;
+  private seqs = new Map<string, number>();
+  // Offene "stats"-Anfragen nach requestId
+  private pendingStats = new Map<string, (s: RangeStats) => void>();
+  private nextRequestId = 0;
+  // Gedrosselte Updates des Topics "correlation"
+  onCorrelation?: (m: CorrelationMatrix) => void;
+  private correlation = false;
+  // Ausgelöste Kursalarme dieser Verbindung
+  onAlert?: (triggers: AlertTrigger[]) => void;
 
   constructor(
     url: string,
     onCandles: (subId: string, payload: Candle[] | Candle) => void,
     onQuote: (subId: string, payload: Quote | Quote[]) => void,
-    onStatus: (s: string) => void
+    onStatus: (s: string) => void,
+    onHistory?: HistoryHandler,
+    binary = false,
+    flushMs = 0
   ) {
     this.url = url;
     this.onCandles = onCandles;
     this.onQuote = onQuote;
     this.onStatus = onStatus;
+    this.onHistory = onHistory;
+    this.binary = binary;
+    this.flushMs = flushMs;
   }
 
   connect() {
@@ -43,12 +239,41 @@ export class WSClient {
     )
       return;
     this.onStatus("Verbinde…");
-    this.ws = new WebSocket(this.url);
+    this.ws = this.binary
+      ? new WebSocket(this.url, [BIN_PROTOCOL, JSON_PROTOCOL])
+      : new WebSocket(this.url);
+    this.ws.binaryType = "arraybuffer";
+    this.handles.clear();
+    this.lastQuotes.clear();
 
     this.ws.onopen = () => {
       this.onStatus("Verbunden");
-      for (const sub of this.subs.values())
-        this.send({ action: "subscribe", ...sub.key, window: sub.windowSecs });
+      // Im JSON-Modus Quotes als Deltas mit periodischen Keyframes empfangen;
+      // optional alle Updates eines Zeitfensters in einem Frame
+      this.send({
+        action: "configure",
+        delta: !this.binary,
+        flushMs: this.flushMs,
+      });
+      if (this.correlation) this.subscribeCorrelation(true);
+      const subs = [...this.subs.values()];
+      const resumable =
+        !this.binary &&
+        this.epoch !== undefined &&
+        subs.length > 0 &&
+        subs.every((s) => this.seqs.has(keyHash(s.key)));
+      if (resumable) {
+        this.send({
+          action: "resume",
+          epoch: this.epoch,
+          subs: subs.map((s) => ({
+            ...subscribeMsg(s),
+            seq: this.seqs.get(keyHash(s.key)),
+          })),
+        });
+      } else {
+        for (const sub of subs) this.send(subscribeMsg(sub));
+      }
       this.heartbeat && clearInterval(this.heartbeat);
       this.heartbeat = window.setInterval(
         () => this.send({ type: "ping" }),
@@ -58,6 +283,11 @@ export class WSClient {
 
     this.ws.onmessage = (e) => {
       try {
+        if (e.data instanceof ArrayBuffer) {
+          for (const m of decodeBinary(e.data, this.handles)) this.dispatch(m);
+          return;
+        }
+
         const msg: WSMessage | Candle[] = JSON.parse(e.data);
 
         if (Array.isArray(msg)) {
@@ -68,30 +298,7 @@ export class WSClient {
           return;
         }
 
-        if (msg.type === "error") {
-          this.onStatus(`Fehler: ${msg.message}`);
-          return;
-        }
-        if (msg.type === "pong") return;
-
-        let subId: string | undefined;
-        if ((msg as any).key) {
-          const hash = keyHash((msg as any).key as SymbolKey);
-          const sub = [...this.subs.values()].find(
-            (s) => keyHash(s.key) === hash
-          );
-          if (sub) subId = sub.id;
-        } else if (this.subs.size === 1) {
-          subId = [...this.subs.values()][0]?.id;
-        }
-        if (!subId) return;
-
-        if (msg.type === "candles" || msg.type === "candle") {
-          this.onCandles(subId, msg.data);
-        } else if (msg.type === "quotes" || msg.type === "quote") {
-          const data = msg.data as Quote | Quote[];
-          this.onQuote(subId, data);
-        }
+        this.dispatch(msg);
       } catch {}
     };
 
@@ -104,11 +311,91 @@ export class WSClient {
     this.ws.onerror = scheduleReconnect;
   }
 
+  private dispatch(msg: WSMessage) {
+    if (msg.type === "error") {
+      this.onStatus(`Fehler: ${msg.message}`);
+      return;
+    }
+    if (msg.type === "pong") return;
+    if (msg.type === "batch") {
+      for (const m of msg.data) this.dispatch(m);
+      return;
+    }
+    if (msg.type === "configured") {
+      if (this.epoch !== msg.epoch) this.seqs.clear();
+      this.epoch = msg.epoch;
+      return;
+    }
+    if (msg.type === "resumed") return;
+    if (msg.type === "topic") {
+      if (msg.topic === "correlation") this.onCorrelation?.(msg.data);
+      return;
+    }
+    if (msg.type === "alerts") return;
+    if (msg.type === "alert") {
+      this.onAlert?.(msg.data);
+      return;
+    }
+    if (msg.type === "stats") {
+      const resolve = msg.requestId ? this.pendingStats.get(msg.requestId) : undefined;
+      if (resolve) {
+        this.pendingStats.delete(msg.requestId!);
+        resolve(msg.data);
+      }
+      return;
+    }
+    if (msg.type === "handle") {
+      this.handles.set(msg.handle, msg.key);
+      return;
+    }
+    if (msg.type === "quote") {
+      this.lastQuotes.set(keyHash(msg.key), msg.data);
+    } else if (msg.type === "qd") {
+      const hash = keyHash(msg.key);
+      const prev = this.lastQuotes.get(hash);
+      if (!prev) return;
+      const data = applyQuoteDelta(prev, msg.data);
+      this.lastQuotes.set(hash, data);
+      msg = { type: "quote", key: msg.key, seq: msg.seq, data };
+    }
+    if (
+      (msg.type === "quote" || msg.type === "quotes" || msg.type === "candles") &&
+      msg.seq !== undefined
+    ) {
+      const hash = keyHash(msg.key);
+      const seen = this.seqs.get(hash) ?? 0;
+      // Live-Update, das ein Resume-Replay bereits enthalten hat
+      if (msg.type === "quote" && msg.seq <= seen) return;
+      if (msg.seq > seen) this.seqs.set(hash, msg.seq);
+    }
+
+    let subId: string | undefined;
+    if ((msg as any).key) {
+      const hash = keyHash((msg as any).key as SymbolKey);
+      const sub = [...this.subs.values()].find(
+        (s) => keyHash(s.key) === hash
+      );
+      if (sub) subId = sub.id;
+    } else if (this.subs.size === 1) {
+      subId = [...this.subs.values()][0]?.id;
+    }
+    if (!subId) return;
+
+    if (msg.type === "history") {
+      this.onHistory?.(subId, msg.frame, msg.data, msg.next ?? null, msg.done);
+    } else if (msg.type === "candles" || msg.type === "candle") {
+      this.onCandles(subId, msg.data);
+    } else if (msg.type === "quotes" || msg.type === "quote") {
+      const data = msg.data as Quote | Quote[];
+      this.onQuote(subId, data);
+    }
+  }
+
   add(sub: Subscription) {
     const hash = keyHash(sub.key);
     this.subs.set(hash, sub);
     this.connect();
-    this.send({ action: "subscribe", ...sub.key, window: sub.windowSecs });
+    this.send(subscribeMsg(sub));
   }
 
   update(sub: Subscription) {
@@ -121,16 +408,58 @@ export class WSClient {
       if (newHash !== oldHash) {
         this.send({ action: "unsubscribe", ...old.key });
         this.subs.delete(oldHash);
+        this.seqs.delete(oldHash);
       }
     }
     this.subs.set(keyHash(sub.key), sub);
     this.connect();
-    this.send({ action: "subscribe", ...sub.key, window: sub.windowSecs });
+    this.send(subscribeMsg(sub));
+  }
+
+  history(
+    sub: Subscription,
+    frame: HistoryFrame,
+    fromSec: number,
+    toSec: number,
+    cursor?: string
+  ) {
+    this.send({
+      action: "history",
+      ...sub.key,
+      frame,
+      from: fromSec,
+      to: toSec,
+      maxPoints: frame === "quotes" ? QUOTE_MAX_POINTS : undefined,
+      cursor,
+    });
+  }
+
+  // min/max/Durchschnitt/VWAP über [fromSec, toSec], ohne die Rohdaten zu laden
+  stats(key: SymbolKey, fromSec: number, toSec: number): Promise<RangeStats> {
+    const requestId = `s${++this.nextRequestId}`;
+    return new Promise((resolve) => {
+      this.pendingStats.set(requestId, resolve);
+      this.send({ action: "stats", requestId, ...key, from: fromSec, to: toSec });
+    });
+  }
+
+  alert(key: SymbolKey, direction: "above" | "below", threshold: number) {
+    this.send({ action: "alert", ...key, direction, threshold });
+  }
+
+  subscribeCorrelation(on: boolean) {
+    this.correlation = on;
+    this.send({ action: on ? "subscribeTopic" : "unsubscribeTopic", topic: "correlation" });
+  }
+
+  cancelAlert(id: number) {
+    this.send({ action: "cancelAlert", id });
   }
 
   remove(sub: Subscription) {
     const hash = keyHash(sub.key);
     this.subs.delete(hash);
+    this.seqs.delete(hash);
     this.send({ action: "unsubscribe", ...sub.key });
     if (!this.subs.size) this.close();
   }
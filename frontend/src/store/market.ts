@@ -1,11 +1,14 @@
 import { defineStore } from "pinia";
 import type { Candle, Subscription, Quote } from "../types/trading";
-import { WSClient } from "../services/ws";
+import { WSClient, type HistoryFrame } from "../services/ws";
 
 const toSec = (ts: number) => (ts > 1e12 ? Math.floor(ts / 1000) : ts);
 
 const MAX_CANDLE_BUCKETS = 10000;
 const MAX_QUOTE_POINTS = 20000;
+const HISTORY_CHUNK_SECS = 3600;
+
+type HistoryRequest = { frame: HistoryFrame; fromSec: number; toSec: number };
 
 function aggregateCandles(candles: Candle[], bucketSecs: number): Candle[] {
   if (!candles?.length || bucketSecs <= 60) return candles;
@@ -68,6 +71,10 @@ export const useMarketStore = defineStore("market", {
     quotes: {} as Record<string, Quote | undefined>,
     quoteHist: {} as Record<string, Array<{ tsSec: number; price: number }>>,
 
+    historyFloor: {} as Record<string, number>,
+    historyPending: {} as Record<string, HistoryRequest | undefined>,
+    historyExhausted: {} as Record<string, Partial<Record<HistoryFrame, boolean>>>,
+
     status: "" as string | "",
     ws: null as null | WSClient,
 
@@ -104,7 +111,11 @@ export const useMarketStore = defineStore("market", {
           WS_BASE,
           (id, payload) => this.upsertCandles(id, payload),
           (id, payload) => this.upsertQuote(id, payload),
-          (s) => (this.status = s)
+          (s) => (this.status = s),
+          (id, frame, data, next, done) =>
+            this.onHistory(id, frame, data, next, done),
+          import.meta.env.VITE_WS_BINARY === "true",
+          Number(import.meta.env.VITE_WS_FLUSH_MS ?? 0) || 0
         );
       }
       this.ws.connect();
@@ -134,7 +145,10 @@ export const useMarketStore = defineStore("market", {
       const sub = this.subs.find((s) => s.id === id);
       if (sub && cur.length) {
         const lastSec = cur[cur.length - 1]!.bucketStartSec;
-        const minSec = lastSec - sub.windowSecs;
+        const minSec = Math.min(
+          lastSec - sub.windowSecs,
+          this.historyFloor[id] ?? Infinity
+        );
         let firstKeep = 0;
         while (
           firstKeep < cur.length &&
@@ -167,7 +181,10 @@ export const useMarketStore = defineStore("market", {
       const sub = this.subs.find((s) => s.id === id);
       if (sub && hist.length) {
         const lastSec = hist[hist.length - 1]!.tsSec;
-        const minSec = lastSec - sub.windowSecs;
+        const minSec = Math.min(
+          lastSec - sub.windowSecs,
+          this.historyFloor[id] ?? Infinity
+        );
         let firstKeep = 0;
         while (firstKeep < hist.length && hist[firstKeep]!.tsSec < minSec)
           firstKeep++;
@@ -180,6 +197,71 @@ export const useMarketStore = defineStore("market", {
       this.quoteHist[id] = hist;
     },
 
+    loadOlder(id: string) {
+      const sub = this.subs.find((s) => s.id === id);
+      if (!sub || !this.ws || this.historyPending[id]) return;
+      const frame: HistoryFrame =
+        this.activeMode === "candles" ? "candles" : "quotes";
+      if (this.historyExhausted[id]?.[frame]) return;
+
+      const oldest =
+        frame === "candles"
+          ? this.data[id]?.[0]?.bucketStartSec
+          : this.quoteHist[id]?.[0]?.tsSec;
+      if (oldest === undefined) return;
+
+      const toSec = oldest - 1;
+      const fromSec = toSec - HISTORY_CHUNK_SECS;
+      this.historyFloor[id] = Math.min(this.historyFloor[id] ?? Infinity, fromSec);
+      this.historyPending[id] = { frame, fromSec, toSec };
+      this.ws.history(sub, frame, fromSec, toSec);
+    },
+
+    onHistory(
+      id: string,
+      frame: HistoryFrame,
+      data: Candle[] | Quote[],
+      next: string | null,
+      done: boolean
+    ) {
+      const req = this.historyPending[id];
+      if (frame === "candles") {
+        if (data.length) this.upsertCandles(id, data as Candle[]);
+      } else {
+        this.mergeQuoteHistory(id, data as Quote[]);
+      }
+
+      if (!req) return;
+      if (next) {
+        const sub = this.subs.find((s) => s.id === id);
+        if (sub) this.ws?.history(sub, frame, req.fromSec, req.toSec, next);
+        return;
+      }
+      if (done) {
+        this.historyPending[id] = undefined;
+        const hasOlder =
+          frame === "candles"
+            ? (this.data[id]?.[0]?.bucketStartSec ?? Infinity) <= req.toSec
+            : (this.quoteHist[id]?.[0]?.tsSec ?? Infinity) <= req.toSec;
+        if (!hasOlder)
+          this.historyExhausted[id] = {
+            ...(this.historyExhausted[id] ?? {}),
+            [frame]: true,
+          };
+      }
+    },
+
+    mergeQuoteHistory(id: string, list: Quote[]) {
+      if (!list.length) return;
+      const pts = list.map((q) => ({ tsSec: q.tsUnixSec, price: q.price }));
+      const hist = pts
+        .concat(this.quoteHist[id] ?? [])
+        .sort((a, b) => a.tsSec - b.tsSec);
+      if (hist.length > MAX_QUOTE_POINTS)
+        hist.splice(0, hist.length - MAX_QUOTE_POINTS);
+      this.quoteHist[id] = hist;
+    },
+
     setActiveMode(mode: "candles" | "quote") {
       this.activeMode = mode;
     },
@@ -207,6 +289,9 @@ export const useMarketStore = defineStore("market", {
       delete this.data[id];
       delete this.quotes[id];
       delete this.quoteHist[id];
+      delete this.historyFloor[id];
+      delete this.historyPending[id];
+      delete this.historyExhausted[id];
       if (this.activeId === id) this.activeId = this.subs[0]?.id ?? "";
     },
     setActive(id: string) {